@@ -7,6 +7,8 @@ import org.usfirst.frc4904.standard.custom.CommandSendableChooser;
 import org.usfirst.frc4904.standard.custom.TypedNamedSendableChooser;
 import org.usfirst.frc4904.standard.humaninput.Driver;
 import org.usfirst.frc4904.standard.humaninput.Operator;
+import org.usfirst.frc4904.standard.logging.KittenCommandProfiler;
+import org.usfirst.frc4904.standard.logging.KittenLoopTimer;
 import edu.wpi.first.wpilibj.IterativeRobot;
 import edu.wpi.first.wpilibj.command.Command;
 import edu.wpi.first.wpilibj.command.Scheduler;
@@ -26,6 +28,7 @@ public abstract class CommandRobotBase extends IterativeRobot {
 	protected CommandSendableChooser autoChooser;
 	protected TypedNamedSendableChooser<Driver> driverChooser;
 	protected TypedNamedSendableChooser<Operator> operatorChooser;
+	protected final KittenLoopTimer loopTimer = new KittenLoopTimer();
 
 	/**
 	 * This displays our choosers.
@@ -91,6 +94,7 @@ public abstract class CommandRobotBase extends IterativeRobot {
 	 */
 	@Override
 	public final void teleopInit() {
+		KittenCommandProfiler.setMode(KittenCommandProfiler.Mode.TELEOP);
 		cleanup();
 		if (driverChooser.getSelected() != null) {
 			LogKitten.d("Loading driver " + driverChooser.getSelected().getName());
@@ -118,9 +122,13 @@ public abstract class CommandRobotBase extends IterativeRobot {
 	 */
 	@Override
 	public final void teleopPeriodic() {
+		long start = System.nanoTime();
 		Scheduler.getInstance().run();
+		long scheduled = System.nanoTime();
 		teleopExecute();
+		long executed = System.nanoTime();
 		alwaysExecute();
+		loopTimer.record(start, scheduled, executed, System.nanoTime());
 	}
 
 	/**
@@ -135,6 +143,7 @@ public abstract class CommandRobotBase extends IterativeRobot {
 	 */
 	@Override
 	public final void autonomousInit() {
+		KittenCommandProfiler.setMode(KittenCommandProfiler.Mode.AUTONOMOUS);
 		cleanup();
 		autonomousCommand = autoChooser.getSelected();
 		if (autonomousCommand != null) {
@@ -154,9 +163,13 @@ public abstract class CommandRobotBase extends IterativeRobot {
 	 */
 	@Override
 	public final void autonomousPeriodic() {
+		long start = System.nanoTime();
 		Scheduler.getInstance().run();
+		long scheduled = System.nanoTime();
 		autonomousExecute();
+		long executed = System.nanoTime();
 		alwaysExecute();
+		loopTimer.record(start, scheduled, executed, System.nanoTime());
 	}
 
 	/**
@@ -170,6 +183,7 @@ public abstract class CommandRobotBase extends IterativeRobot {
 	 */
 	@Override
 	public final void disabledInit() {
+		KittenCommandProfiler.setMode(KittenCommandProfiler.Mode.DISABLED);
 		cleanup();
 		disabledInitialize();
 	}
@@ -185,9 +199,13 @@ public abstract class CommandRobotBase extends IterativeRobot {
 	 */
 	@Override
 	public final void disabledPeriodic() {
+		long start = System.nanoTime();
 		Scheduler.getInstance().run();
+		long scheduled = System.nanoTime();
 		disabledExecute();
+		long executed = System.nanoTime();
 		alwaysExecute();
+		loopTimer.record(start, scheduled, executed, System.nanoTime());
 	}
 
 	/**
@@ -201,6 +219,7 @@ public abstract class CommandRobotBase extends IterativeRobot {
 	 */
 	@Override
 	public final void testInit() {
+		KittenCommandProfiler.setMode(KittenCommandProfiler.Mode.TEST);
 		cleanup();
 		testInitialize();
 	}
@@ -241,6 +260,35 @@ public abstract class CommandRobotBase extends IterativeRobot {
 		healthcheckCommand = new CheckHealth(healthChecks);
 	}
 
+	/**
+	 * Sets the loop time budget.
+	 * Loops (scheduler, execute and alwaysExecute together) longer than this are counted as overruns.
+	 *
+	 * @param budgetMillis
+	 *        The budget in milliseconds (20 by default)
+	 */
+	public final void setLoopBudget(double budgetMillis) {
+		loopTimer.setBudget(budgetMillis);
+	}
+
+	/**
+	 * Sets how often the loop timing summary is logged.
+	 *
+	 * @param summaryPeriodSeconds
+	 *        The period in seconds (10 by default, 0 or less to never log it)
+	 */
+	public final void setLoopSummaryPeriod(double summaryPeriodSeconds) {
+		loopTimer.setSummaryPeriod(summaryPeriodSeconds);
+	}
+
+	/**
+	 * @return How long each phase of the teleop, autonomous and disabled loops has taken (p50, p99 and max)
+	 *         and how many loops have overrun the budget.
+	 */
+	public final KittenLoopTimer.Snapshot getLoopTiming() {
+		return loopTimer.getSnapshot();
+	}
+
 	/**
 	 * @return True if the robot is enabled and is in operator control.
 	 */
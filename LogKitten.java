@@ -5,15 +5,30 @@ import java.io.File;
 import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.file.Files;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import org.usfirst.frc4904.standard.logging.KittenBinaryWriter;
+import org.usfirst.frc4904.standard.logging.KittenRateLimiter;
+import org.usfirst.frc4904.standard.logging.KittenRateLimiter.CallSite;
+import org.usfirst.frc4904.standard.logging.KittenRecord;
+import org.usfirst.frc4904.standard.logging.KittenRingBuffer;
+import org.usfirst.frc4904.standard.logging.KittenRingBuffer.OverflowPolicy;
+import org.usfirst.frc4904.standard.logging.KittenSegmentWriter;
+import org.usfirst.frc4904.standard.logging.KittenTelemetry;
+import org.usfirst.frc4904.standard.logging.KittenTextLine;
+import org.usfirst.frc4904.standard.logging.KittenTimestampFormatter;
+import org.usfirst.frc4904.standard.logging.KittenTimestampFormatter.Precision;
 import edu.wpi.first.wpilibj.hal.HAL;
 
 public class LogKitten {
-	private static BufferedOutputStream fileOutput;
+	private static OutputStream fileOutput;
+	private static KittenBinaryWriter binaryOutput;
+	private static boolean binaryEnabled = false;
 	public final static KittenLevel LEVEL_WTF = KittenLevel.WTF;
 	public final static KittenLevel LEVEL_FATAL = KittenLevel.FATAL;
 	public final static KittenLevel LEVEL_ERROR = KittenLevel.ERROR;
@@ -23,13 +38,41 @@ public class LogKitten {
 	public final static KittenLevel DEFAULT_LOG_LEVEL = KittenLevel.DEBUG;
 	public final static KittenLevel DEFAULT_PRINT_LEVEL = KittenLevel.WARN;
 	public final static KittenLevel DEFAULT_DS_LEVEL = LogKitten.DEFAULT_PRINT_LEVEL;
+	public final static KittenLevel DEFAULT_CALLER_LEVEL = KittenLevel.DEBUG;
+	public final static String UNKNOWN_CALLER = "?";
+	public final static int DEFAULT_ASYNC_CAPACITY = 1024;
+	public final static OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.DROP_OLDEST;
+	public final static int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024; // 4 megabytes
+	public final static long DEFAULT_DISK_BUDGET = 100 * 1024 * 1024; // 100 megabytes
+	public final static Precision DEFAULT_TIMESTAMP_PRECISION = Precision.MILLISECONDS;
+	public final static double DEFAULT_RATE_LIMIT = 10; // messages per second from each call site
+	public final static double DEFAULT_RATE_BURST = 20;
+	public final static double DEFAULT_SUMMARY_INTERVAL = 1.0; // seconds
+	private final static long WRITER_IDLE_NANOS = 5000000; // 5 milliseconds
+	private final static long WRITER_JOIN_MILLIS = 500;
 	private static KittenLevel logLevel = LogKitten.DEFAULT_LOG_LEVEL;
 	private static KittenLevel printLevel = LogKitten.DEFAULT_PRINT_LEVEL;
 	private static KittenLevel dsLevel = LogKitten.DEFAULT_DS_LEVEL;
+	private static KittenLevel callerLevel = LogKitten.DEFAULT_CALLER_LEVEL;
+	private static volatile Precision timestampPrecision = LogKitten.DEFAULT_TIMESTAMP_PRECISION;
 	private static String LOG_PATH = "/home/lvuser/logs/";
 	private static String LOG_ALIAS_PATH = LogKitten.LOG_PATH + "recent.log";
+	private static String BINARY_LOG_ALIAS_PATH = LogKitten.LOG_PATH + "recent.kitten";
+	private static String TELEMETRY_ALIAS_PATH = LogKitten.LOG_PATH + "recent.telemetry";
+	private static final long SESSION_START_MILLIS = System.currentTimeMillis();
+	private static final long SESSION_START_NANOS = System.nanoTime();
+	private static String sessionName;
 	private static volatile boolean PRINT_MUTE = false;
-	private static final SimpleDateFormat TIMESTAMP_FORMAT = new SimpleDateFormat("yyyy-MM-dd_HH:mm:ss");
+	private static final KittenTimestampFormatter TIMESTAMP_FORMATTER = new KittenTimestampFormatter();
+	private static final String CLASS_NAME = LogKitten.class.getName();
+	private static final ConcurrentHashMap<String, String> SIMPLE_CLASS_NAMES = new ConcurrentHashMap<String, String>();
+	private static final Object ASYNC_LOCK = new Object();
+	private static volatile KittenRingBuffer asyncBuffer = null;
+	private static KittenRingBuffer lastAsyncBuffer = null;
+	private static KittenWriter asyncWriter = null;
+	private static volatile KittenRateLimiter rateLimiter = null;
+	private static final ThreadLocal<KittenRecord> SCRATCH_RECORD = ThreadLocal.withInitial(KittenRecord::new);
+	private static final ThreadLocal<KittenTextLine> TEXT_LINE = ThreadLocal.withInitial(KittenTextLine::new);
 	static {
 		File logPathDirectory = new File(LogKitten.LOG_PATH);
 		try {
@@ -41,7 +84,8 @@ public class LogKitten {
 			System.out.println("Could not create log directory");
 			se.printStackTrace();
 		}
-		String filePath = LogKitten.LOG_PATH + LogKitten.timestamp() + ".log"; // Set this sessions log to /home/lvuser/logs/[current time].log
+		LogKitten.sessionName = LogKitten.timestamp(LogKitten.SESSION_START_MILLIS);
+		String filePath = LogKitten.LOG_PATH + LogKitten.sessionName + ".log"; // Set this sessions log to /home/lvuser/logs/[current time].log
 		File file = new File(filePath);
 		try {
 			// Create new file if it doesn't exist (this should happen)
@@ -67,25 +111,37 @@ public class LogKitten {
 	}
 
 	/**
-	 * Get the name of a logger method's caller
+	 * Get the stack frame of a logger method's caller
+	 * (the first frame outside of LogKitten).
+	 * The stack is only captured once per message.
 	 *
-	 * @return the caller for the callee `f`, `e`, `w`, `v`, or `d`
+	 * @return the caller for the callee `f`, `e`, `w`, `v`, or `d`, or null if it could not be found
 	 */
-	private static String getLoggerMethodCallerMethodName() {
-		return Thread.currentThread().getStackTrace()[4].getMethodName(); // caller of the logger method is fifth in the stack trace
+	private static StackTraceElement getLoggerMethodCaller() {
+		StackTraceElement[] trace = new Throwable().getStackTrace();
+		for (StackTraceElement element : trace) {
+			if (!LogKitten.CLASS_NAME.equals(element.getClassName())) {
+				return element;
+			}
+		}
+		return null;
 	}
 
 	/**
-	 * Get the name of a logger method's calling class
+	 * Get a class name without its package.
+	 * Results are cached, since the same few classes log over and over.
 	 *
-	 * @return the caller for the callee `f`, `e`, `w`, `v`, or `d`
+	 * @param className
+	 *        fully qualified class name
+	 * @return the class name without the package name
 	 */
-	private static String getLoggerMethodCallerClassName() {
-		String[] trace = Thread.currentThread().getStackTrace()[4].getClassName().split("\\."); // caller of the logger method is fifth in the stack trace
-		if (trace.length == 0) {
-			return "";
+	private static String getSimpleClassName(String className) {
+		String simpleName = LogKitten.SIMPLE_CLASS_NAMES.get(className);
+		if (simpleName == null) {
+			simpleName = className.substring(className.lastIndexOf('.') + 1); // don't include the package name
+			LogKitten.SIMPLE_CLASS_NAMES.putIfAbsent(className, simpleName);
 		}
-		return trace[trace.length - 1]; // don't include the package name
+		return simpleName;
 	}
 
 	/**
@@ -138,6 +194,29 @@ public class LogKitten {
 		LogKitten.PRINT_MUTE = mute;
 	}
 
+	/**
+	 * Set the least severe level for which the calling class and method are looked up.
+	 * Less severe messages are logged without a caller, which skips stack inspection.
+	 * Messages logged with an explicit tag never inspect the stack.
+	 *
+	 * @param CALLER_LEVEL
+	 *        caller lookup level
+	 */
+	public static void setCallerLevel(KittenLevel CALLER_LEVEL) {
+		LogKitten.callerLevel = CALLER_LEVEL;
+	}
+
+	/**
+	 * Set how many fractional digits of a second the logfile timestamps show.
+	 * Microseconds are measured with System.nanoTime().
+	 *
+	 * @param TIMESTAMP_PRECISION
+	 *        logfile timestamp precision
+	 */
+	public static void setTimestampPrecision(Precision TIMESTAMP_PRECISION) {
+		LogKitten.timestampPrecision = TIMESTAMP_PRECISION;
+	}
+
 	/**
 	 * Like DriverStation.reportError, but w/o stack trace nor printing to System.err
 	 * (updated for 2017 WPILib release)
@@ -149,16 +228,466 @@ public class LogKitten {
 		HAL.sendError(true, logLevel.getSeverity(), false, errorMessage, details, "", false);
 	}
 
-	public static synchronized void logMessage(Object message, KittenLevel level, boolean override) {
-		message = message.toString(); // Not strictly needed, but good practice
+	/**
+	 * Sends log messages through a ring buffer drained by a background writer thread,
+	 * so that logging callers never wait on file, console or driver station I/O.
+	 *
+	 * @param capacity
+	 *        The number of messages that can be waiting to be written
+	 * @param overflowPolicy
+	 *        What to do with messages logged while the buffer is full
+	 */
+	public static void enableAsync(int capacity, OverflowPolicy overflowPolicy) {
+		synchronized (LogKitten.ASYNC_LOCK) {
+			LogKitten.disableAsync();
+			KittenRingBuffer buffer = new KittenRingBuffer(capacity, overflowPolicy);
+			LogKitten.asyncWriter = new KittenWriter(buffer);
+			LogKitten.lastAsyncBuffer = buffer;
+			LogKitten.asyncBuffer = buffer;
+			LogKitten.asyncWriter.start();
+		}
+	}
+
+	/**
+	 * Sends log messages through a ring buffer drained by a background writer thread,
+	 * using the default capacity and overflow policy.
+	 */
+	public static void enableAsync() {
+		LogKitten.enableAsync(LogKitten.DEFAULT_ASYNC_CAPACITY, LogKitten.DEFAULT_OVERFLOW_POLICY);
+	}
+
+	/**
+	 * Stops the background writer thread, writes any messages
+	 * still waiting and goes back to writing on the calling thread.
+	 * Messages being published while this runs are either written here
+	 * or by their own thread, never lost.
+	 */
+	public static void disableAsync() {
+		synchronized (LogKitten.ASYNC_LOCK) {
+			KittenRingBuffer buffer = LogKitten.asyncBuffer;
+			if (buffer == null) {
+				return;
+			}
+			LogKitten.asyncBuffer = null; // New messages are written synchronously from here on
+			LogKitten.asyncWriter.finish();
+			LogKitten.asyncWriter = null;
+			// Producers that still see the buffer now write synchronously, and those that claimed a slot finish filling it
+			buffer.awaitCommitted();
+			LogKitten.drain(buffer, new KittenRecord()); // Catch anything published while the writer was stopping
+		}
+	}
+
+	/**
+	 * @return whether messages are being written by the background writer thread
+	 */
+	public static boolean isAsync() {
+		return LogKitten.asyncBuffer != null;
+	}
+
+	/**
+	 * Get the number of messages dropped because the async buffer was full.
+	 * This counts from the most recent call to enableAsync.
+	 *
+	 * @return the number of dropped messages
+	 */
+	public static long getDroppedMessageCount() {
+		synchronized (LogKitten.ASYNC_LOCK) {
+			if (LogKitten.lastAsyncBuffer == null) {
+				return 0;
+			}
+			return LogKitten.lastAsyncBuffer.getDroppedCount();
+		}
+	}
+
+	/**
+	 * Writes the text logfile into preallocated, memory-mapped segments of a fixed size
+	 * (/home/lvuser/logs/[session start].[n].log) instead of one ever-growing file.
+	 * recent.log follows the live segment, and the oldest logs from previous sessions
+	 * are deleted to keep the log directory within the disk budget.
+	 *
+	 * @param segmentSize
+	 *        bytes per segment
+	 * @param diskBudget
+	 *        bytes the log directory may use in total
+	 */
+	public static synchronized void enableLogSegments(int segmentSize, long diskBudget) {
+		if (LogKitten.fileOutput instanceof KittenSegmentWriter) {
+			return;
+		}
+		KittenSegmentWriter segmentWriter;
+		try {
+			segmentWriter = new KittenSegmentWriter(new File(LogKitten.LOG_PATH), LogKitten.sessionName, ".log", segmentSize,
+				diskBudget, new File(LogKitten.LOG_ALIAS_PATH));
+		}
+		catch (IOException ioe) {
+			System.out.println("Could not open log segment");
+			ioe.printStackTrace();
+			return;
+		}
+		try {
+			if (LogKitten.fileOutput != null) {
+				LogKitten.fileOutput.close();
+			}
+		}
+		catch (IOException ioe) {
+			System.out.println("Could not close logfile output");
+			ioe.printStackTrace();
+		}
+		File unsegmentedFile = new File(LogKitten.LOG_PATH + LogKitten.sessionName + ".log");
+		if (unsegmentedFile.length() == 0) {
+			unsegmentedFile.delete(); // Nothing was logged before segments were enabled
+		}
+		LogKitten.fileOutput = segmentWriter;
+	}
+
+	/**
+	 * Writes the text logfile into memory-mapped segments, using the default segment size and disk budget.
+	 */
+	public static void enableLogSegments() {
+		LogKitten.enableLogSegments(LogKitten.DEFAULT_SEGMENT_SIZE, LogKitten.DEFAULT_DISK_BUDGET);
+	}
+
+	/**
+	 * Writes logfile messages to a compact binary session file
+	 * (/home/lvuser/logs/[session start].kitten, aliased as recent.kitten)
+	 * instead of the text logfile. Templates such as debugf("{} {}", a, b) are stored as
+	 * raw numbers and never formatted. Use KittenDecoder to read the file.
+	 *
+	 * @see org.usfirst.frc4904.standard.logging.KittenDecoder
+	 */
+	public static synchronized void enableBinaryLog() {
+		if (LogKitten.binaryOutput == null) {
+			File file = new File(LogKitten.LOG_PATH + LogKitten.sessionName + ".kitten");
+			try {
+				LogKitten.binaryOutput = new KittenBinaryWriter(new FileOutputStream(file), LogKitten.SESSION_START_MILLIS,
+					LogKitten.SESSION_START_NANOS);
+			}
+			catch (IOException ioe) {
+				System.out.println("Could not open binary logfile");
+				ioe.printStackTrace();
+				return;
+			}
+			File logAlias = new File(LogKitten.BINARY_LOG_ALIAS_PATH);
+			try {
+				if (logAlias.exists()) {
+					logAlias.delete();
+				}
+				Files.createSymbolicLink(logAlias.toPath(), file.toPath());
+			}
+			catch (IOException ioe) {
+				System.out.println("Could not alias binary logfile");
+				ioe.printStackTrace();
+			}
+		}
+		LogKitten.binaryEnabled = true;
+	}
+
+	/**
+	 * Goes back to writing logfile messages as text.
+	 * The binary session file is kept open in case binary logging is enabled again.
+	 */
+	public static synchronized void disableBinaryLog() {
+		LogKitten.binaryEnabled = false;
+		LogKitten.flush();
+	}
+
+	/**
+	 * Records numeric telemetry (see KittenTelemetry) to
+	 * /home/lvuser/logs/[session start].telemetry, aliased as recent.telemetry.
+	 * Signals are columns of doubles and never go to the text logfile.
+	 * Use KittenTelemetryDecoder to read the file.
+	 *
+	 * @param flushPeriodMillis
+	 *        How often samples are written
+	 * @see org.usfirst.frc4904.standard.logging.KittenTelemetryDecoder
+	 */
+	public static synchronized void enableTelemetry(long flushPeriodMillis) {
+		if (KittenTelemetry.isRecording()) {
+			return;
+		}
+		File file = new File(LogKitten.LOG_PATH + LogKitten.sessionName + ".telemetry");
+		for (int restart = 1; file.exists(); restart++) { // Telemetry was stopped and started again this session
+			file = new File(LogKitten.LOG_PATH + LogKitten.sessionName + "-" + restart + ".telemetry");
+		}
+		try {
+			KittenTelemetry.start(new FileOutputStream(file), LogKitten.SESSION_START_MILLIS,
+				LogKitten.SESSION_START_NANOS, flushPeriodMillis);
+		}
+		catch (IOException ioe) {
+			System.out.println("Could not start telemetry");
+			ioe.printStackTrace();
+			return;
+		}
+		File logAlias = new File(LogKitten.TELEMETRY_ALIAS_PATH);
+		try {
+			if (logAlias.exists()) {
+				logAlias.delete();
+			}
+			Files.createSymbolicLink(logAlias.toPath(), file.toPath());
+		}
+		catch (IOException ioe) {
+			System.out.println("Could not alias telemetry file");
+			ioe.printStackTrace();
+		}
+	}
+
+	/**
+	 * Records numeric telemetry, writing samples every 100 milliseconds.
+	 */
+	public static void enableTelemetry() {
+		LogKitten.enableTelemetry(KittenTelemetry.DEFAULT_FLUSH_PERIOD_MILLIS);
+	}
+
+	/**
+	 * Stops recording numeric telemetry and closes the telemetry file.
+	 */
+	public static synchronized void disableTelemetry() {
+		KittenTelemetry.stop();
+	}
+
+	/**
+	 * Limits how often each call site (calling class and method, or tag) may log.
+	 * Each call site gets a token bucket, and a message identical to the call site's
+	 * previous message is only logged once per summary interval. Suppressed messages
+	 * are counted and summarized ("suppressed 412 similar messages in last 1.0s")
+	 * from the same call site once the interval has passed.
+	 * Messages logged below the caller level share one call site.
+	 *
+	 * @param messagesPerSecond
+	 *        sustained messages per second allowed from each call site
+	 * @param burst
+	 *        messages a call site may log at once before it is limited
+	 * @param summaryInterval
+	 *        seconds between summaries of suppressed messages
+	 */
+	public static void enableRateLimit(double messagesPerSecond, double burst, double summaryInterval) {
+		LogKitten.reportSuppressed();
+		LogKitten.rateLimiter = new KittenRateLimiter(messagesPerSecond, burst, summaryInterval);
+	}
+
+	/**
+	 * Limits how often each call site may log, using the default rate, burst and summary interval.
+	 */
+	public static void enableRateLimit() {
+		LogKitten.enableRateLimit(LogKitten.DEFAULT_RATE_LIMIT, LogKitten.DEFAULT_RATE_BURST,
+			LogKitten.DEFAULT_SUMMARY_INTERVAL);
+	}
+
+	/**
+	 * Stops limiting how often call sites may log, after summarizing anything suppressed.
+	 */
+	public static void disableRateLimit() {
+		LogKitten.reportSuppressed();
+		LogKitten.rateLimiter = null;
+	}
+
+	/**
+	 * Logs a summary for every call site with suppressed messages, without waiting for the summary interval.
+	 */
+	public static void reportSuppressed() {
+		KittenRateLimiter limiter = LogKitten.rateLimiter;
+		if (limiter != null) {
+			limiter.summarize(System.nanoTime(), true, LogKitten::publishSuppressed);
+		}
+	}
+
+	/**
+	 * Logs how many messages were suppressed, as though it came from the call site that logged them.
+	 */
+	private static void publishSuppressed(CallSite callSite, KittenLevel level, int suppressed, double seconds) {
+		LogKitten.publishRecord(level, false, callSite.className, callSite.methodName,
+			LogKitten.suppressedMessage(suppressed, seconds), null, 0, 0, 0, 0);
+	}
+
+	private static String suppressedMessage(int suppressed, double seconds) {
+		return String.format("suppressed %d similar messages in last %.1fs", suppressed, seconds);
+	}
+
+	public static void logMessage(Object message, KittenLevel level, boolean override) {
+		if (!LogKitten.isLogged(level, override)) {
+			return;
+		}
+		LogKitten.logRecord(level, override, null, message.toString(), null, 0, 0, 0, 0);
+	}
+
+	/**
+	 * Log a message with an explicit tag in place of the calling class and method.
+	 * This never inspects the stack.
+	 *
+	 * @param tag
+	 *        shown where the caller would be
+	 * @param message
+	 * @param level
+	 * @param override
+	 */
+	public static void logMessage(String tag, Object message, KittenLevel level, boolean override) {
+		if (!LogKitten.isLogged(level, override)) {
+			return;
+		}
+		LogKitten.logRecord(level, override, tag, message.toString(), null, 0, 0, 0, 0);
+	}
+
+	/**
+	 * Would a message at this level go anywhere?
+	 */
+	private static boolean isLogged(KittenLevel level, boolean override) {
+		if (LogKitten.logLevel.compareTo(level) >= 0) {
+			return true;
+		}
+		return (!LogKitten.PRINT_MUTE || override)
+			&& (LogKitten.printLevel.compareTo(level) >= 0 || LogKitten.dsLevel.compareTo(level) >= 0);
+	}
+
+	/**
+	 * Is any of the logfile, console or driver station accepting messages at this level?
+	 * Use this to skip building expensive messages that would be thrown away.
+	 *
+	 * @param level
+	 * @return whether a message at this level would be logged
+	 */
+	public static boolean isEnabled(KittenLevel level) {
+		return LogKitten.isLogged(level, false);
+	}
+
+	/**
+	 * Log a message that is only built if it will be logged.
+	 *
+	 * @param messageSupplier
+	 *        builds the message (not called if the level is disabled)
+	 * @param level
+	 * @param override
+	 */
+	public static void logMessage(Supplier<String> messageSupplier, KittenLevel level, boolean override) {
+		if (!LogKitten.isLogged(level, override)) {
+			return;
+		}
+		LogKitten.logRecord(level, override, null, messageSupplier.get(), null, 0, 0, 0, 0);
+	}
+
+	/**
+	 * Log a message from a template.
+	 * Each "{}" in the template is replaced by the next argument, but only
+	 * when a text sink needs it; the binary logfile stores the raw numbers.
+	 *
+	 * @param format
+	 *        the message template
+	 * @param argumentCount
+	 *        the number of arguments (0 to 3) that are used
+	 */
+	private static void logFormatted(KittenLevel level, String format, int argumentCount, double a, double b, double c) {
+		if (!LogKitten.isLogged(level, false)) {
+			return;
+		}
+		LogKitten.logRecord(level, false, null, null, format, argumentCount, a, b, c);
+	}
+
+	/**
+	 * Looks up the caller (unless there is a tag), applies the rate limit
+	 * if there is one, and publishes the message.
+	 *
+	 * @param tag
+	 *        shown in place of the caller, or null to look up the caller
+	 * @param message
+	 *        the finished message, or null if there is a template
+	 * @param format
+	 *        the message template, or null if there is a finished message
+	 */
+	private static void logRecord(KittenLevel level, boolean override, String tag, String message, String format,
+		int argumentCount, double a, double b, double c) {
+		String callerClassName = null;
+		String callerMethodName = tag;
+		if (tag == null) {
+			callerMethodName = LogKitten.UNKNOWN_CALLER;
+			if (LogKitten.callerLevel.compareTo(level) >= 0) {
+				StackTraceElement caller = LogKitten.getLoggerMethodCaller();
+				if (caller != null) {
+					callerClassName = LogKitten.getSimpleClassName(caller.getClassName());
+					callerMethodName = caller.getMethodName();
+				}
+			}
+		}
+		KittenRateLimiter limiter = LogKitten.rateLimiter;
+		if (limiter != null) {
+			long now = System.nanoTime();
+			CallSite callSite = limiter.getCallSite(callerClassName, callerMethodName);
+			callSite.summarize(now, false, LogKitten::publishSuppressed); // Before this message, so the log stays in order
+			if (!callSite.allow(now, level, message, format, argumentCount, a, b, c)) {
+				return;
+			}
+		}
+		LogKitten.publishRecord(level, override, callerClassName, callerMethodName, message, format, argumentCount, a, b,
+			c);
+	}
+
+	/**
+	 * Fills a record and hands it to the async buffer if there is one,
+	 * otherwise writes it immediately.
+	 *
+	 * @param callerClassName
+	 *        the calling class, or null if the method name is a tag
+	 * @param callerMethodName
+	 *        the calling method or tag
+	 */
+	private static void publishRecord(KittenLevel level, boolean override, String callerClassName,
+		String callerMethodName, String message, String format, int argumentCount, double a, double b, double c) {
+		KittenRingBuffer buffer = LogKitten.asyncBuffer;
+		KittenRecord record;
+		if (buffer != null) {
+			record = buffer.claim();
+			if (record == null) {
+				if (!buffer.isClosed()) {
+					return; // Dropped by the overflow policy
+				}
+				buffer = null; // Closed by disableAsync, so write it here
+				record = LogKitten.SCRATCH_RECORD.get();
+			}
+		} else {
+			record = LogKitten.SCRATCH_RECORD.get();
+		}
+		record.level = level;
+		record.override = override;
+		record.message = message;
+		record.format = format;
+		record.argumentCount = argumentCount;
+		record.a = a;
+		record.b = b;
+		record.c = c;
+		record.callerClassName = callerClassName;
+		record.callerMethodName = callerMethodName;
+		record.timeMillis = System.currentTimeMillis();
+		record.timeNanos = System.nanoTime();
+		if (buffer != null) {
+			buffer.commit(record);
+			return;
+		}
+		LogKitten.writeRecord(record);
+		record.clear();
+	}
+
+	/**
+	 * Writes a record to the logfile, console and driver station
+	 * (as allowed by their levels).
+	 * Text lines are rendered into a per-thread buffer, so the
+	 * lock is only held while the bytes are written.
+	 */
+	private static void writeRecord(KittenRecord record) {
+		KittenLevel level = record.level;
 		if (LogKitten.logLevel.compareTo(level) >= 0) {
-			String content = LogKitten.timestamp() + " " + level.getName() + ": " + LogKitten.getLoggerMethodCallerMethodName()
-				+ ": " + message + " \n";
 			try {
-				if (LogKitten.fileOutput != null) {
-					LogKitten.fileOutput.write(content.getBytes());
-				} else {
-					System.out.println("Error logging: logfile not open");
+				if (!LogKitten.writeBinary(record)) {
+					KittenTextLine line = LogKitten.TEXT_LINE.get();
+					line.clear();
+					line.appendTimestamp(LogKitten.TIMESTAMP_FORMATTER, record.timeMillis, record.timeNanos,
+						LogKitten.timestampPrecision);
+					line.append(' ');
+					line.append(level.getName());
+					line.append(": ");
+					line.append(record.callerMethodName);
+					line.append(": ");
+					line.append(record.getMessage());
+					line.append(" \n");
+					int length = line.encode();
+					LogKitten.writeText(line.getBytes(), length);
 				}
 			}
 			catch (IOException ioe) {
@@ -166,20 +695,75 @@ public class LogKitten {
 				ioe.printStackTrace();
 			}
 		}
-		if (!LogKitten.PRINT_MUTE || override) {
-			String printContent = level.getName() + ": " + LogKitten.getLoggerMethodCallerClassName() + "#"
-				+ LogKitten.getLoggerMethodCallerMethodName() + ": " + message + " \n";
+		if (!LogKitten.PRINT_MUTE || record.override) {
+			String caller = record.callerClassName == null ? record.callerMethodName
+				: record.callerClassName + "#" + record.callerMethodName;
 			if (LogKitten.printLevel.compareTo(level) >= 0) {
-				System.out.println(printContent);
+				System.out.println(level.getName() + ": " + caller + ": " + record.getMessage() + " \n");
 			}
 			if (LogKitten.dsLevel.compareTo(level) >= 0) {
-				LogKitten.reportErrorToDriverStation(
-					LogKitten.getLoggerMethodCallerClassName() + "#" + LogKitten.getLoggerMethodCallerMethodName(),
-					level.getName() + ": " + message, level);
+				LogKitten.reportErrorToDriverStation(caller, level.getName() + ": " + record.getMessage(), level);
 			}
 		}
 	}
 
+	/**
+	 * Writes a record to the binary logfile, if it is enabled.
+	 *
+	 * @return whether the record was written
+	 */
+	private static synchronized boolean writeBinary(KittenRecord record) throws IOException {
+		if (!LogKitten.binaryEnabled) {
+			return false;
+		}
+		LogKitten.binaryOutput.write(record);
+		return true;
+	}
+
+	private static synchronized void writeText(byte[] bytes, int length) throws IOException {
+		if (LogKitten.fileOutput == null) {
+			System.out.println("Error logging: logfile not open");
+			return;
+		}
+		LogKitten.fileOutput.write(bytes, 0, length);
+	}
+
+	/**
+	 * Writes every message waiting in an async buffer, then flushes the logfile.
+	 *
+	 * @return whether any messages were written
+	 */
+	private static boolean drain(KittenRingBuffer buffer, KittenRecord record) {
+		boolean wrote = false;
+		while (buffer.poll(record)) {
+			LogKitten.writeRecord(record);
+			record.clear();
+			wrote = true;
+		}
+		if (wrote) {
+			LogKitten.flush();
+		}
+		return wrote;
+	}
+
+	/**
+	 * Tries to flush the logfile stream
+	 */
+	private static synchronized void flush() {
+		try {
+			if (LogKitten.fileOutput != null) {
+				LogKitten.fileOutput.flush();
+			}
+			if (LogKitten.binaryOutput != null) {
+				LogKitten.binaryOutput.flush();
+			}
+		}
+		catch (IOException ioe) {
+			System.out.println("Could not flush logfile output");
+			ioe.printStackTrace();
+		}
+	}
+
 	/**
 	 * What a Terrible Failure: Report a condition that should never happen, allowing override
 	 *
@@ -200,6 +784,29 @@ public class LogKitten {
 		LogKitten.logMessage(message, KittenLevel.WTF, false);
 	}
 
+	/**
+	 * What a Terrible Failure: Report a condition that should never happen with a tag in place of the calling class and method
+	 * (skips stack inspection)
+	 *
+	 * @param tag
+	 *        shown where the caller would be
+	 * @param message
+	 *        the message to log
+	 */
+	public static void wtf(String tag, Object message) {
+		LogKitten.logMessage(tag, message, KittenLevel.WTF, false);
+	}
+
+	/**
+	 * What a Terrible Failure: Report a condition that should never happen, only building the message if it will be logged
+	 *
+	 * @param messageSupplier
+	 *        builds the message to log
+	 */
+	public static void wtf(Supplier<String> messageSupplier) {
+		LogKitten.logMessage(messageSupplier, KittenLevel.WTF, false);
+	}
+
 	/**
 	 * Log message at level FATAL allowing override
 	 *
@@ -220,6 +827,29 @@ public class LogKitten {
 		LogKitten.logMessage(message, KittenLevel.FATAL, false);
 	}
 
+	/**
+	 * Log message at level FATAL with a tag in place of the calling class and method
+	 * (skips stack inspection)
+	 *
+	 * @param tag
+	 *        shown where the caller would be
+	 * @param message
+	 *        the message to log
+	 */
+	public static void f(String tag, Object message) {
+		LogKitten.logMessage(tag, message, KittenLevel.FATAL, false);
+	}
+
+	/**
+	 * Log message at level FATAL, only building the message if it will be logged
+	 *
+	 * @param messageSupplier
+	 *        builds the message to log
+	 */
+	public static void f(Supplier<String> messageSupplier) {
+		LogKitten.logMessage(messageSupplier, KittenLevel.FATAL, false);
+	}
+
 	/**
 	 * Log message at ERROR allowing override
 	 *
@@ -240,6 +870,29 @@ public class LogKitten {
 		LogKitten.logMessage(message, KittenLevel.ERROR, false);
 	}
 
+	/**
+	 * Log message at level ERROR with a tag in place of the calling class and method
+	 * (skips stack inspection)
+	 *
+	 * @param tag
+	 *        shown where the caller would be
+	 * @param message
+	 *        the message to log
+	 */
+	public static void e(String tag, Object message) {
+		LogKitten.logMessage(tag, message, KittenLevel.ERROR, false);
+	}
+
+	/**
+	 * Log message at level ERROR, only building the message if it will be logged
+	 *
+	 * @param messageSupplier
+	 *        builds the message to log
+	 */
+	public static void e(Supplier<String> messageSupplier) {
+		LogKitten.logMessage(messageSupplier, KittenLevel.ERROR, false);
+	}
+
 	/**
 	 * Log message at WARN allowing override
 	 *
@@ -260,6 +913,29 @@ public class LogKitten {
 		LogKitten.logMessage(message, KittenLevel.WARN, false);
 	}
 
+	/**
+	 * Log message at level WARN with a tag in place of the calling class and method
+	 * (skips stack inspection)
+	 *
+	 * @param tag
+	 *        shown where the caller would be
+	 * @param message
+	 *        the message to log
+	 */
+	public static void w(String tag, Object message) {
+		LogKitten.logMessage(tag, message, KittenLevel.WARN, false);
+	}
+
+	/**
+	 * Log message at level WARN, only building the message if it will be logged
+	 *
+	 * @param messageSupplier
+	 *        builds the message to log
+	 */
+	public static void w(Supplier<String> messageSupplier) {
+		LogKitten.logMessage(messageSupplier, KittenLevel.WARN, false);
+	}
+
 	/**
 	 * Log message at VERBOSE allowing override
 	 *
@@ -280,6 +956,60 @@ public class LogKitten {
 		LogKitten.logMessage(message, KittenLevel.VERBOSE, false);
 	}
 
+	/**
+	 * Log message at level VERBOSE with a tag in place of the calling class and method
+	 * (skips stack inspection)
+	 *
+	 * @param tag
+	 *        shown where the caller would be
+	 * @param message
+	 *        the message to log
+	 */
+	public static void v(String tag, Object message) {
+		LogKitten.logMessage(tag, message, KittenLevel.VERBOSE, false);
+	}
+
+	/**
+	 * Log message at level VERBOSE, only building the message if it will be logged
+	 *
+	 * @param messageSupplier
+	 *        builds the message to log
+	 */
+	public static void v(Supplier<String> messageSupplier) {
+		LogKitten.logMessage(messageSupplier, KittenLevel.VERBOSE, false);
+	}
+
+	/**
+	 * Log message at level VERBOSE, only formatting the message if it will be logged
+	 * (not an overload of v, so that v("Speed", 5) still logs 5 under a tag)
+	 *
+	 * @param format
+	 *        the message, with "{}" in place of each argument
+	 */
+	public static void verbosef(String format, double a) {
+		LogKitten.logFormatted(KittenLevel.VERBOSE, format, 1, a, 0, 0);
+	}
+
+	/**
+	 * Log message at level VERBOSE, only formatting the message if it will be logged
+	 *
+	 * @param format
+	 *        the message, with "{}" in place of each argument
+	 */
+	public static void verbosef(String format, double a, double b) {
+		LogKitten.logFormatted(KittenLevel.VERBOSE, format, 2, a, b, 0);
+	}
+
+	/**
+	 * Log message at level VERBOSE, only formatting the message if it will be logged
+	 *
+	 * @param format
+	 *        the message, with "{}" in place of each argument
+	 */
+	public static void verbosef(String format, double a, double b, double c) {
+		LogKitten.logFormatted(KittenLevel.VERBOSE, format, 3, a, b, c);
+	}
+
 	/**
 	 * Log message at VERBOSE (INFO links to verbose) allowing override
 	 *
@@ -299,6 +1029,60 @@ public class LogKitten {
 		LogKitten.logMessage(message, KittenLevel.VERBOSE, false);
 	}
 
+	/**
+	 * Log message at VERBOSE (INFO links to verbose) with a tag in place of the calling class and method
+	 * (skips stack inspection)
+	 *
+	 * @param tag
+	 *        shown where the caller would be
+	 * @param message
+	 *        the message to log
+	 */
+	public static void i(String tag, Object message) {
+		LogKitten.logMessage(tag, message, KittenLevel.VERBOSE, false);
+	}
+
+	/**
+	 * Log message at VERBOSE (INFO links to verbose), only building the message if it will be logged
+	 *
+	 * @param messageSupplier
+	 *        builds the message to log
+	 */
+	public static void i(Supplier<String> messageSupplier) {
+		LogKitten.logMessage(messageSupplier, KittenLevel.VERBOSE, false);
+	}
+
+	/**
+	 * Log message at VERBOSE (INFO links to verbose), only formatting the message if it will be logged
+	 * (not an overload of i, so that i("Speed", 5) still logs 5 under a tag)
+	 *
+	 * @param format
+	 *        the message, with "{}" in place of each argument
+	 */
+	public static void infof(String format, double a) {
+		LogKitten.logFormatted(KittenLevel.VERBOSE, format, 1, a, 0, 0);
+	}
+
+	/**
+	 * Log message at VERBOSE (INFO links to verbose), only formatting the message if it will be logged
+	 *
+	 * @param format
+	 *        the message, with "{}" in place of each argument
+	 */
+	public static void infof(String format, double a, double b) {
+		LogKitten.logFormatted(KittenLevel.VERBOSE, format, 2, a, b, 0);
+	}
+
+	/**
+	 * Log message at VERBOSE (INFO links to verbose), only formatting the message if it will be logged
+	 *
+	 * @param format
+	 *        the message, with "{}" in place of each argument
+	 */
+	public static void infof(String format, double a, double b, double c) {
+		LogKitten.logFormatted(KittenLevel.VERBOSE, format, 3, a, b, c);
+	}
+
 	/**
 	 * Log message at level DEBUG allowing override
 	 *
@@ -319,6 +1103,60 @@ public class LogKitten {
 		LogKitten.logMessage(message, KittenLevel.DEBUG, false);
 	}
 
+	/**
+	 * Log message at level DEBUG with a tag in place of the calling class and method
+	 * (skips stack inspection)
+	 *
+	 * @param tag
+	 *        shown where the caller would be
+	 * @param message
+	 *        the message to log
+	 */
+	public static void d(String tag, Object message) {
+		LogKitten.logMessage(tag, message, KittenLevel.DEBUG, false);
+	}
+
+	/**
+	 * Log message at level DEBUG, only building the message if it will be logged
+	 *
+	 * @param messageSupplier
+	 *        builds the message to log
+	 */
+	public static void d(Supplier<String> messageSupplier) {
+		LogKitten.logMessage(messageSupplier, KittenLevel.DEBUG, false);
+	}
+
+	/**
+	 * Log message at level DEBUG, only formatting the message if it will be logged
+	 * (not an overload of d, so that d("Speed", 5) still logs 5 under a tag)
+	 *
+	 * @param format
+	 *        the message, with "{}" in place of each argument
+	 */
+	public static void debugf(String format, double a) {
+		LogKitten.logFormatted(KittenLevel.DEBUG, format, 1, a, 0, 0);
+	}
+
+	/**
+	 * Log message at level DEBUG, only formatting the message if it will be logged
+	 *
+	 * @param format
+	 *        the message, with "{}" in place of each argument
+	 */
+	public static void debugf(String format, double a, double b) {
+		LogKitten.logFormatted(KittenLevel.DEBUG, format, 2, a, b, 0);
+	}
+
+	/**
+	 * Log message at level DEBUG, only formatting the message if it will be logged
+	 *
+	 * @param format
+	 *        the message, with "{}" in place of each argument
+	 */
+	public static void debugf(String format, double a, double b, double c) {
+		LogKitten.logFormatted(KittenLevel.DEBUG, format, 3, a, b, c);
+	}
+
 	/**
 	 * Log exception at level ERROR allowing override
 	 *
@@ -346,11 +1184,21 @@ public class LogKitten {
 	/**
 	 * Tries to close the logfile stream
 	 */
-	public static synchronized void clean() {
+	public static void clean() {
+		LogKitten.reportSuppressed();
+		LogKitten.disableAsync();
+		LogKitten.closeFile();
+	}
+
+	private static synchronized void closeFile() {
+		LogKitten.binaryEnabled = false;
 		try {
 			if (LogKitten.fileOutput != null) {
 				LogKitten.fileOutput.close();
 			}
+			if (LogKitten.binaryOutput != null) {
+				LogKitten.binaryOutput.close();
+			}
 		}
 		catch (IOException ioe) {
 			System.out.println("Could not close logfile output. This should never happen");
@@ -359,12 +1207,77 @@ public class LogKitten {
 	}
 
 	/**
-	 * Get a timestamp for the current datetime - me-wow!
+	 * Get a timestamp for a given datetime - me-wow!
 	 *
+	 * @param timeMillis
+	 *        milliseconds since the epoch
 	 * @return timestamp as string in the format "YEAR-MONTH-DAY_HOUR:MIN:SEC"
 	 */
-	private static synchronized String timestamp() {
-		return LogKitten.TIMESTAMP_FORMAT.format(new Date());
+	private static String timestamp(long timeMillis) {
+		return LogKitten.TIMESTAMP_FORMATTER.format(timeMillis);
+	}
+
+	/**
+	 * The background thread that drains the async buffer
+	 * to the logfile, console and driver station.
+	 */
+	private static class KittenWriter extends Thread implements KittenRateLimiter.Summarizer {
+		private final KittenRingBuffer buffer;
+		private final KittenRecord summaryRecord;
+		private volatile boolean running;
+
+		public KittenWriter(KittenRingBuffer buffer) {
+			super("LogKitten writer");
+			this.buffer = buffer;
+			summaryRecord = new KittenRecord();
+			running = true;
+			setDaemon(true);
+			setPriority(Thread.MIN_PRIORITY);
+		}
+
+		@Override
+		public void run() {
+			KittenRecord record = new KittenRecord();
+			while (running) {
+				if (!LogKitten.drain(buffer, record)) {
+					KittenRateLimiter limiter = LogKitten.rateLimiter;
+					if (limiter != null) {
+						limiter.summarize(System.nanoTime(), false, this); // Summarize call sites that have gone quiet
+					}
+					LockSupport.parkNanos(LogKitten.WRITER_IDLE_NANOS);
+				}
+			}
+		}
+
+		/**
+		 * Writes a summary directly, since publishing it to the buffer this thread drains could block.
+		 */
+		@Override
+		public void summarize(CallSite callSite, KittenLevel level, int suppressed, double seconds) {
+			summaryRecord.level = level;
+			summaryRecord.message = LogKitten.suppressedMessage(suppressed, seconds);
+			summaryRecord.callerClassName = callSite.className;
+			summaryRecord.callerMethodName = callSite.methodName;
+			summaryRecord.timeMillis = System.currentTimeMillis();
+			summaryRecord.timeNanos = System.nanoTime();
+			LogKitten.writeRecord(summaryRecord);
+			summaryRecord.clear();
+			LogKitten.flush();
+		}
+
+		/**
+		 * Stops the writer and waits for it to exit.
+		 */
+		public void finish() {
+			running = false;
+			LockSupport.unpark(this);
+			try {
+				join(LogKitten.WRITER_JOIN_MILLIS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
 	}
 
 	public static enum KittenLevel {
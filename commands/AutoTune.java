@@ -0,0 +1,134 @@
+package org.usfirst.frc4904.standard.commands;
+
+
+import org.usfirst.frc4904.standard.LogKitten;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.CustomPIDController;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.RelayAutoTuner;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.TunedGains;
+import org.usfirst.frc4904.standard.custom.sensors.InvalidSensorException;
+import org.usfirst.frc4904.standard.subsystems.motor.SensorMotor;
+import edu.wpi.first.wpilibj.PIDOutput;
+import edu.wpi.first.wpilibj.command.Command;
+import edu.wpi.first.wpilibj.command.Subsystem;
+
+/**
+ * Tunes a PID controller with a relay experiment (see {@link RelayAutoTuner}).
+ * The mechanism oscillates around the tuner's setpoint for a few seconds, then
+ * the controller's gains are set and saved to the {@link TunedGains} file under
+ * this command's name.
+ * <p>
+ * The mechanism moves on its own while this runs, so give it room.
+ *
+ */
+public class AutoTune extends Command {
+	protected final CustomPIDController controller;
+	protected final PIDOutput output;
+	protected final SensorMotor motor;
+	protected final RelayAutoTuner tuner;
+	protected final RelayAutoTuner.Rule rule;
+
+	/**
+	 * Tunes the controller of any mechanism, such as a chassis axis.
+	 *
+	 * @param name
+	 *        The name the gains are saved under
+	 * @param controller
+	 *        The controller to tune (its sensor is read, and it must not be enabled)
+	 * @param output
+	 *        What the relay drives
+	 * @param tuner
+	 *        The relay experiment
+	 * @param rule
+	 *        How to turn the experiment into gains
+	 * @param timeout
+	 *        Seconds to give up after
+	 * @param requirements
+	 *        The subsystems the output drives
+	 */
+	public AutoTune(String name, CustomPIDController controller, PIDOutput output, RelayAutoTuner tuner,
+		RelayAutoTuner.Rule rule, double timeout, Subsystem... requirements) {
+		super(name, timeout);
+		this.controller = controller;
+		this.output = output;
+		this.tuner = tuner;
+		this.rule = rule;
+		motor = null;
+		for (Subsystem requirement : requirements) {
+			requires(requirement);
+		}
+	}
+
+	/**
+	 * Tunes a SensorMotor's controller.
+	 *
+	 * @param name
+	 *        The name the gains are saved under
+	 * @param motor
+	 *        The motor to run the experiment on (its motion controller is disabled while tuning)
+	 * @param controller
+	 *        The motor's controller
+	 * @param tuner
+	 *        The relay experiment
+	 * @param rule
+	 *        How to turn the experiment into gains
+	 * @param timeout
+	 *        Seconds to give up after
+	 */
+	public AutoTune(String name, SensorMotor motor, CustomPIDController controller, RelayAutoTuner tuner,
+		RelayAutoTuner.Rule rule, double timeout) {
+		super(name, timeout);
+		this.controller = controller;
+		output = motor;
+		this.motor = motor;
+		this.tuner = tuner;
+		this.rule = rule;
+		requires(motor);
+	}
+
+	@Override
+	protected void initialize() {
+		if (motor != null) {
+			motor.disableMotionController();
+		}
+		tuner.reset();
+	}
+
+	@Override
+	protected void execute() {
+		double measurement;
+		try {
+			measurement = controller.getInputSafely();
+		}
+		catch (InvalidSensorException e) {
+			LogKitten.w("Cancelling AutoTune " + getName() + ": sensor failed");
+			output.pidWrite(0);
+			cancel();
+			return;
+		}
+		output.pidWrite(tuner.update(measurement, System.nanoTime()));
+	}
+
+	@Override
+	protected boolean isFinished() {
+		return tuner.isFinished() || isTimedOut();
+	}
+
+	@Override
+	protected void end() {
+		output.pidWrite(0);
+		if (!tuner.isFinished()) {
+			LogKitten.w("AutoTune " + getName() + " timed out before the mechanism oscillated steadily");
+			return;
+		}
+		double[] gains = tuner.getGains(rule);
+		RelayAutoTuner.apply(controller, gains);
+		TunedGains.save(getName(), gains, tuner.getUltimateGain(), tuner.getUltimatePeriod());
+		LogKitten.i("AutoTune " + getName() + ": Ku " + tuner.getUltimateGain() + ", Tu " + tuner.getUltimatePeriod()
+			+ "s, " + rule + " gains P " + gains[0] + " I " + gains[1] + " D " + gains[2] + " (per second)");
+	}
+
+	@Override
+	protected void interrupted() {
+		output.pidWrite(0);
+	}
+}
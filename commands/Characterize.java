@@ -0,0 +1,237 @@
+package org.usfirst.frc4904.standard.commands;
+
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.usfirst.frc4904.standard.LogKitten;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.sysid.SysIdFit;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.sysid.SysIdRecorder;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.sysid.SysIdRecorder.Test;
+import org.usfirst.frc4904.standard.custom.sensors.CustomEncoder;
+import org.usfirst.frc4904.standard.custom.sensors.InvalidSensorException;
+import org.usfirst.frc4904.standard.custom.sensors.PDP;
+import org.usfirst.frc4904.standard.subsystems.chassis.Chassis;
+import org.usfirst.frc4904.standard.subsystems.motor.Motor;
+import org.usfirst.frc4904.standard.subsystems.motor.SensorMotor;
+import edu.wpi.first.wpilibj.PIDOutput;
+import edu.wpi.first.wpilibj.command.Command;
+
+/**
+ * Characterizes a motor or drivetrain for {@link SysIdFit}.
+ * <p>
+ * Runs four tests, resting between them: a slow voltage ramp forward and backward
+ * (quasistatic), then a voltage step forward and backward (dynamic). Every loop, the
+ * voltage applied (output times the battery voltage from the PDP) and the position and
+ * velocity (averaged over the encoders) are recorded. When finished, the samples are
+ * written to [directory]/[name]-[time].sysid.
+ * <p>
+ * The mechanism moves a long way. Give it room, and keep the tests short enough
+ * for an arm or elevator to stay within its travel.
+ *
+ */
+public class Characterize extends Command {
+	public static final String DEFAULT_DIRECTORY = "/home/lvuser/sysid/";
+	public static final double DEFAULT_RAMP_RATE = 0.05; // Output per second
+	public static final double DEFAULT_STEP_OUTPUT = 0.5;
+	public static final double DEFAULT_QUASISTATIC_SECONDS = 10.0;
+	public static final double DEFAULT_DYNAMIC_SECONDS = 3.0;
+	public static final double DEFAULT_REST_SECONDS = 2.0;
+	public static final double LOOP_HERTZ = 50.0;
+	protected final PIDOutput output;
+	protected final Motor motor;
+	protected final PDP pdp;
+	protected final CustomEncoder[] encoders;
+	protected final double rampRate;
+	protected final double stepOutput;
+	protected final double quasistaticSeconds;
+	protected final double dynamicSeconds;
+	protected final double restSeconds;
+	protected final SysIdRecorder recorder;
+	protected int testIndex;
+	protected boolean resting;
+	protected long phaseStartNanos;
+	protected long startEpochMillis;
+
+	protected Characterize(String name, PIDOutput output, Motor motor, PDP pdp, double rampRate, double stepOutput,
+		double quasistaticSeconds, double dynamicSeconds, double restSeconds, CustomEncoder... encoders) {
+		super(name);
+		this.output = output;
+		this.motor = motor;
+		this.pdp = pdp;
+		this.encoders = encoders;
+		this.rampRate = rampRate;
+		this.stepOutput = stepOutput;
+		this.quasistaticSeconds = quasistaticSeconds;
+		this.dynamicSeconds = dynamicSeconds;
+		this.restSeconds = restSeconds;
+		int capacity = (int) Math.ceil((2 * quasistaticSeconds + 2 * dynamicSeconds) * Characterize.LOOP_HERTZ * 1.5);
+		recorder = new SysIdRecorder(capacity);
+	}
+
+	/**
+	 * Characterizes a motor.
+	 *
+	 * @param name
+	 *        The file name prefix
+	 * @param motor
+	 *        The motor (a SensorMotor's motion controller is disabled while characterizing)
+	 * @param pdp
+	 *        For the battery voltage
+	 * @param rampRate
+	 *        How fast the quasistatic tests raise the output (per second)
+	 * @param stepOutput
+	 *        The output the dynamic tests apply
+	 * @param quasistaticSeconds
+	 *        How long each quasistatic test runs
+	 * @param dynamicSeconds
+	 *        How long each dynamic test runs
+	 * @param encoders
+	 *        Averaged for the position and velocity
+	 */
+	public Characterize(String name, Motor motor, PDP pdp, double rampRate, double stepOutput, double quasistaticSeconds,
+		double dynamicSeconds, CustomEncoder... encoders) {
+		this(name, motor, motor, pdp, rampRate, stepOutput, quasistaticSeconds, dynamicSeconds,
+			Characterize.DEFAULT_REST_SECONDS, encoders);
+		requires(motor);
+	}
+
+	/**
+	 * Characterizes a motor with the default tests.
+	 *
+	 * @param name
+	 *        The file name prefix
+	 * @param motor
+	 * @param pdp
+	 *        For the battery voltage
+	 * @param encoders
+	 *        Averaged for the position and velocity
+	 */
+	public Characterize(String name, Motor motor, PDP pdp, CustomEncoder... encoders) {
+		this(name, motor, pdp, Characterize.DEFAULT_RAMP_RATE, Characterize.DEFAULT_STEP_OUTPUT,
+			Characterize.DEFAULT_QUASISTATIC_SECONDS, Characterize.DEFAULT_DYNAMIC_SECONDS, encoders);
+	}
+
+	/**
+	 * Characterizes a drivetrain driving straight.
+	 *
+	 * @param name
+	 *        The file name prefix
+	 * @param chassis
+	 * @param pdp
+	 *        For the battery voltage
+	 * @param rampRate
+	 *        How fast the quasistatic tests raise the output (per second)
+	 * @param stepOutput
+	 *        The output the dynamic tests apply
+	 * @param quasistaticSeconds
+	 *        How long each quasistatic test runs
+	 * @param dynamicSeconds
+	 *        How long each dynamic test runs
+	 * @param encoders
+	 *        Averaged for the position and velocity (such as the left and right encoders)
+	 */
+	public Characterize(String name, Chassis chassis, PDP pdp, double rampRate, double stepOutput,
+		double quasistaticSeconds, double dynamicSeconds, CustomEncoder... encoders) {
+		this(name, speed -> chassis.moveCartesian(0.0, speed, 0.0), null, pdp, rampRate, stepOutput, quasistaticSeconds,
+			dynamicSeconds, Characterize.DEFAULT_REST_SECONDS, encoders);
+		requires(chassis);
+	}
+
+	/**
+	 * Characterizes a drivetrain driving straight with the default tests.
+	 *
+	 * @param name
+	 *        The file name prefix
+	 * @param chassis
+	 * @param pdp
+	 *        For the battery voltage
+	 * @param encoders
+	 *        Averaged for the position and velocity (such as the left and right encoders)
+	 */
+	public Characterize(String name, Chassis chassis, PDP pdp, CustomEncoder... encoders) {
+		this(name, chassis, pdp, Characterize.DEFAULT_RAMP_RATE, Characterize.DEFAULT_STEP_OUTPUT,
+			Characterize.DEFAULT_QUASISTATIC_SECONDS, Characterize.DEFAULT_DYNAMIC_SECONDS, encoders);
+	}
+
+	@Override
+	protected void initialize() {
+		if (motor instanceof SensorMotor) {
+			((SensorMotor) motor).disableMotionController();
+		}
+		recorder.reset();
+		testIndex = 0;
+		resting = false;
+		phaseStartNanos = System.nanoTime();
+		startEpochMillis = System.currentTimeMillis();
+	}
+
+	@Override
+	protected void execute() {
+		if (isFinished()) {
+			return;
+		}
+		long now = System.nanoTime();
+		double seconds = (now - phaseStartNanos) / 1.0e9;
+		Test test = Test.values()[testIndex];
+		if (resting) {
+			output.pidWrite(0.0);
+			if (seconds >= restSeconds) {
+				resting = false;
+				phaseStartNanos = now;
+			}
+			return;
+		}
+		if (seconds >= (test.quasistatic ? quasistaticSeconds : dynamicSeconds)) {
+			output.pidWrite(0.0);
+			testIndex++;
+			resting = true;
+			phaseStartNanos = now;
+			return;
+		}
+		double speed = Math.max(Math.min(test.getOutput(seconds, rampRate, stepOutput), 1.0), -1.0);
+		output.pidWrite(speed);
+		double position = 0.0;
+		double velocity = 0.0;
+		try {
+			for (CustomEncoder encoder : encoders) {
+				position += encoder.getDistanceSafely();
+				velocity += encoder.getRateSafely();
+			}
+			recorder.record(test, now, speed * pdp.getVoltageSafely(), position / encoders.length,
+				velocity / encoders.length);
+		}
+		catch (InvalidSensorException e) {
+			LogKitten.w("Skipping a characterization sample: " + e.getMessage());
+		}
+	}
+
+	@Override
+	protected boolean isFinished() {
+		return testIndex >= Test.values().length;
+	}
+
+	@Override
+	protected void end() {
+		output.pidWrite(0.0);
+		File directory = new File(Characterize.DEFAULT_DIRECTORY);
+		if (!directory.isDirectory()) {
+			directory.mkdirs();
+		}
+		File file = new File(directory, getName() + "-" + startEpochMillis + ".sysid");
+		try (OutputStream out = new FileOutputStream(file)) {
+			recorder.write(out, startEpochMillis);
+			LogKitten.i("Characterization of " + getName() + " saved to " + file + " (" + recorder.getCount()
+				+ " samples, " + recorder.getDroppedCount() + " dropped)");
+		}
+		catch (IOException e) {
+			LogKitten.ex(e);
+		}
+	}
+
+	@Override
+	protected void interrupted() {
+		output.pidWrite(0.0);
+	}
+}
@@ -4,6 +4,8 @@ package org.usfirst.frc4904.standard.commands.chassis;
 import org.usfirst.frc4904.standard.LogKitten;
 import org.usfirst.frc4904.standard.commands.motor.MotorSet;
 import org.usfirst.frc4904.standard.custom.ChassisController;
+import org.usfirst.frc4904.standard.logging.KittenCommandProfiler;
+import org.usfirst.frc4904.standard.logging.KittenCommandProfiler.Section;
 import org.usfirst.frc4904.standard.subsystems.chassis.Chassis;
 import org.usfirst.frc4904.standard.subsystems.motor.Motor;
 import org.usfirst.frc4904.standard.subsystems.motor.VelocitySensorMotor;
@@ -24,6 +26,7 @@ public class ChassisMove extends CommandGroup {
 	protected final boolean usePID;
 	protected final Chassis chassis;
 	protected final ChassisController controller;
+	protected final KittenCommandProfiler.Probe probe = KittenCommandProfiler.probe(getName());
 
 	/**
 	 * @param chassis
@@ -77,18 +80,25 @@ public class ChassisMove extends CommandGroup {
 
 	@Override
 	protected void execute() {
+		long start = probe.begin();
 		chassis.moveCartesian(controller.getX(), controller.getY(), controller.getTurnSpeed());
 		motorSpeeds = chassis.getMotorSpeeds();
-		StringBuilder motorSpeedsString = new StringBuilder();
-		motorSpeedsString.append("Motor speeds:");
 		for (int i = 0; i < motorSpins.length; i++) {
-			LogKitten.d(Double.toString(motorSpeeds[i]));
+			LogKitten.debugf("{}", motorSpeeds[i]);
 			motorSpins[i].set(motorSpeeds[i]);
-			motorSpeedsString.append(' ');
-			motorSpeedsString.append(motorSpeeds[i]);
 		}
 		LogKitten.d("ChassisMove executing");
-		LogKitten.d(motorSpeedsString.toString());
+		if (LogKitten.isEnabled(LogKitten.LEVEL_DEBUG)) {
+			// Only build the summary if it will be logged
+			StringBuilder motorSpeedsString = new StringBuilder();
+			motorSpeedsString.append("Motor speeds:");
+			for (int i = 0; i < motorSpins.length; i++) {
+				motorSpeedsString.append(' ');
+				motorSpeedsString.append(motorSpeeds[i]);
+			}
+			LogKitten.d(motorSpeedsString.toString());
+		}
+		probe.end(Section.EXECUTE, start);
 	}
 
 	@Override
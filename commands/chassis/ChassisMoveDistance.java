@@ -5,6 +5,8 @@ import org.usfirst.frc4904.standard.LogKitten;
 import org.usfirst.frc4904.standard.custom.ChassisController;
 import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionController;
 import org.usfirst.frc4904.standard.custom.sensors.InvalidSensorException;
+import org.usfirst.frc4904.standard.logging.KittenCommandProfiler;
+import org.usfirst.frc4904.standard.logging.KittenCommandProfiler.Section;
 import org.usfirst.frc4904.standard.subsystems.chassis.Chassis;
 import edu.wpi.first.wpilibj.command.Command;
 
@@ -14,12 +16,16 @@ public class ChassisMoveDistance extends Command implements ChassisController {
 	protected final Command fallbackCommand;
 	protected final double distance;
 	protected boolean runOnce;
+	protected final KittenCommandProfiler.Probe probe = KittenCommandProfiler.probe(getName());
 
 	/**
 	 * Constructor.
 	 * This command moves the chassis forward a known distance via a set of encoders.
 	 * The distance is calculated as the average of the provided encoders.
 	 * The speed is decided by the provided motionController.
+	 * It ends when the motion controller is on target; give the controller settle criteria
+	 * ({@link MotionController#setSettleCriteria(double, double)}) so that it ends when the
+	 * chassis has stopped at the distance, rather than as it rolls through it.
 	 *
 	 * @param chassis
 	 * @param distance
@@ -68,10 +74,20 @@ public class ChassisMoveDistance extends Command implements ChassisController {
 			}
 			return;
 		}
-		motionController.setSetpoint(motionController.getSensorValue() + distance);
+		startMove(motionController.getSensorValue());
 		motionController.enable();
 	}
 
+	/**
+	 * Points the motion controller at the end of the move.
+	 *
+	 * @param start
+	 *        Where the chassis is now
+	 */
+	protected void startMove(double start) {
+		motionController.setSetpoint(start + distance);
+	}
+
 	@Override
 	public double getX() {
 		return 0;
@@ -92,7 +108,7 @@ public class ChassisMoveDistance extends Command implements ChassisController {
 			}
 			speed = 0;
 		}
-		LogKitten.d("MotionProfileSpeed: " + speed);
+		LogKitten.debugf("MotionProfileSpeed: {}", speed);
 		return speed;
 	}
 
@@ -103,6 +119,10 @@ public class ChassisMoveDistance extends Command implements ChassisController {
 
 	@Override
 	protected void end() {
+		double timeToSettle = motionController.getTimeToSettle();
+		if (!Double.isNaN(timeToSettle)) {
+			LogKitten.verbosef("ChassisMoveDistance settled in {}s", timeToSettle);
+		}
 		chassisMove.cancel();
 		motionController.disable();
 		motionController.reset();
@@ -119,9 +139,12 @@ public class ChassisMoveDistance extends Command implements ChassisController {
 
 	@Override
 	protected boolean isFinished() {
+		long start = probe.begin();
 		if (chassisMove.isRunning() && !runOnce) {
 			runOnce = true;
 		}
-		return (motionController.onTarget() || !chassisMove.isRunning()) && runOnce;
+		boolean finished = (motionController.onTarget() || !chassisMove.isRunning()) && runOnce;
+		probe.end(Section.IS_FINISHED, start);
+		return finished;
 	}
 }
@@ -0,0 +1,71 @@
+package org.usfirst.frc4904.standard.commands.chassis;
+
+
+import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionController;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.TrapezoidalProfile;
+import org.usfirst.frc4904.standard.subsystems.chassis.Chassis;
+import edu.wpi.first.wpilibj.command.Command;
+
+/**
+ * Moves the chassis forward a known distance, like ChassisMoveDistance,
+ * but moves the setpoint along a trapezoidal profile instead of jumping it
+ * to the end. The motion controller then follows a setpoint it can keep up
+ * with, so it does not saturate, slip the wheels or overshoot.
+ */
+public class ChassisMoveDistanceProfiled extends ChassisMoveDistance {
+	protected final double maxVelocity;
+	protected final double maxAcceleration;
+
+	/**
+	 * Constructor.
+	 * This command moves the chassis forward a known distance via a set of encoders,
+	 * with the setpoint following a trapezoidal profile.
+	 *
+	 * @param chassis
+	 * @param distance
+	 *        distance to move in encoder ticks
+	 * @param maxVelocity
+	 *        fastest setpoint speed in encoder ticks per second
+	 * @param maxAcceleration
+	 *        fastest setpoint acceleration in encoder ticks per second squared
+	 * @param motionController
+	 * @param fallbackCommand
+	 *        If the sensor fails for some reason, this command will be cancelled, then the fallbackCommand will start
+	 */
+	public ChassisMoveDistanceProfiled(Chassis chassis, double distance, double maxVelocity, double maxAcceleration,
+		MotionController motionController, Command fallbackCommand) {
+		super(chassis, distance, motionController, fallbackCommand);
+		this.maxVelocity = maxVelocity;
+		this.maxAcceleration = maxAcceleration;
+	}
+
+	/**
+	 * Constructor.
+	 * This command moves the chassis forward a known distance via a set of encoders,
+	 * with the setpoint following a trapezoidal profile.
+	 *
+	 * @param chassis
+	 * @param distance
+	 *        distance to move in encoder ticks
+	 * @param maxVelocity
+	 *        fastest setpoint speed in encoder ticks per second
+	 * @param maxAcceleration
+	 *        fastest setpoint acceleration in encoder ticks per second squared
+	 * @param motionController
+	 */
+	public ChassisMoveDistanceProfiled(Chassis chassis, double distance, double maxVelocity, double maxAcceleration,
+		MotionController motionController) {
+		this(chassis, distance, maxVelocity, maxAcceleration, motionController, null);
+	}
+
+	@Override
+	protected void startMove(double start) {
+		motionController.followProfile(new TrapezoidalProfile(start, start + distance, maxVelocity, maxAcceleration));
+	}
+
+	@Override
+	protected boolean isFinished() {
+		boolean finished = super.isFinished();
+		return finished && motionController.isProfileFinished();
+	}
+}
@@ -1,10 +1,13 @@
 package org.usfirst.frc4904.standard.commands.chassis;
 
 
+import org.usfirst.frc4904.standard.LogKitten;
 import org.usfirst.frc4904.standard.custom.ChassisController;
 import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionController;
 import org.usfirst.frc4904.standard.custom.sensors.IMU;
 import org.usfirst.frc4904.standard.custom.sensors.InvalidSensorException;
+import org.usfirst.frc4904.standard.logging.KittenCommandProfiler;
+import org.usfirst.frc4904.standard.logging.KittenCommandProfiler.Section;
 import org.usfirst.frc4904.standard.subsystems.chassis.Chassis;
 import edu.wpi.first.wpilibj.command.Command;
 
@@ -16,10 +19,14 @@ public class ChassisTurn extends Command implements ChassisController {
 	protected final Command fallbackCommand;
 	protected final IMU imu;
 	protected boolean runOnce;
+	protected final KittenCommandProfiler.Probe probe = KittenCommandProfiler.probe(getName());
 
 	/**
 	 * Constructor
-	 * This command rotates the chassis to a position relative to the current angle of the robot
+	 * This command rotates the chassis to a position relative to the current angle of the robot.
+	 * It ends when the motion controller is on target; give the controller settle criteria
+	 * ({@link MotionController#setSettleCriteria(double, double)}) so that it ends when the
+	 * chassis has stopped at the angle, rather than as it swings through it.
 	 *
 	 * @param chassis
 	 * @param finalAngle
@@ -94,22 +101,31 @@ public class ChassisTurn extends Command implements ChassisController {
 
 	@Override
 	protected void execute() {
+		long start = probe.begin();
 		motionController.setSetpoint(((finalAngle + initialAngle) + 360) % 360 - 180);
 		if (!motionController.isEnabled()) {
 			motionController.enable();
 		}
+		probe.end(Section.EXECUTE, start);
 	}
 
 	@Override
 	protected boolean isFinished() {
+		long start = probe.begin();
 		if (move.isRunning() && !runOnce) {
 			runOnce = true;
 		}
-		return (motionController.onTarget() || !move.isRunning()) && runOnce;
+		boolean finished = (motionController.onTarget() || !move.isRunning()) && runOnce;
+		probe.end(Section.IS_FINISHED, start);
+		return finished;
 	}
 
 	@Override
 	protected void end() {
+		double timeToSettle = motionController.getTimeToSettle();
+		if (!Double.isNaN(timeToSettle)) {
+			LogKitten.verbosef("ChassisTurn settled in {}s", timeToSettle);
+		}
 		motionController.disable();
 		move.cancel();
 		// Please just die in a hole and never come back
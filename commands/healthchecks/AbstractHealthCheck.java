@@ -5,10 +5,13 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import org.usfirst.frc4904.standard.LogKitten;
 import org.usfirst.frc4904.standard.commands.TimedCommand;
+import org.usfirst.frc4904.standard.logging.KittenCommandProfiler;
+import org.usfirst.frc4904.standard.logging.KittenCommandProfiler.Section;
 
 public abstract class AbstractHealthCheck extends TimedCommand { // Many of our healthchecks will use timing, so a TimedCommand is needed
 	protected HashMap<HealthLevel, ArrayList<HealthProtectCommand>> commands;
 	protected volatile HealthLevel status;
+	protected final KittenCommandProfiler.Probe probe = KittenCommandProfiler.probe(getName());
 
 	public AbstractHealthCheck(String name) {
 		super(name);
@@ -42,8 +45,11 @@ public abstract class AbstractHealthCheck extends TimedCommand { // Many of our
 
 	@Override
 	protected final void execute() { // It should not be possible to override this
+		long start = probe.begin();
 		status = getStatus();
-		LogKitten.v(getName() + " healthCheck: " + status);
+		if (LogKitten.isEnabled(LogKitten.LEVEL_VERBOSE)) {
+			LogKitten.v(getName() + " healthCheck: " + status);
+		}
 		for (HealthLevel other : commands.keySet()) {
 			if (other != status) {
 				for (HealthProtectCommand hpc : commands.get(other)) {
@@ -61,6 +67,7 @@ public abstract class AbstractHealthCheck extends TimedCommand { // Many of our
 				}
 			}
 		}
+		probe.end(Section.EXECUTE, start);
 	}
 
 	@Override
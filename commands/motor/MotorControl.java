@@ -3,6 +3,8 @@ package org.usfirst.frc4904.standard.commands.motor;
 
 import org.usfirst.frc4904.standard.LogKitten;
 import org.usfirst.frc4904.standard.custom.controllers.Controller;
+import org.usfirst.frc4904.standard.logging.KittenCommandProfiler;
+import org.usfirst.frc4904.standard.logging.KittenCommandProfiler.Section;
 import org.usfirst.frc4904.standard.subsystems.motor.Motor;
 import org.usfirst.frc4904.standard.subsystems.motor.PositionSensorMotor;
 import edu.wpi.first.wpilibj.command.Command;
@@ -17,6 +19,7 @@ public class MotorControl extends Command {
 	protected final Controller controller;
 	protected final int axis;
 	protected final double scale;
+	protected final KittenCommandProfiler.Probe probe = KittenCommandProfiler.probe(getName());
 
 	/**
 	 * This Command directly controls a Motor based on an axis of the Controller.
@@ -61,8 +64,10 @@ public class MotorControl extends Command {
 
 	@Override
 	protected void execute() {
-		LogKitten.d("MotorControl executing: " + controller.getAxis(axis));
+		long start = probe.begin();
+		LogKitten.debugf("MotorControl executing: {}", controller.getAxis(axis));
 		motor.set(controller.getAxis(axis) * scale);
+		probe.end(Section.EXECUTE, start);
 	}
 
 	@Override
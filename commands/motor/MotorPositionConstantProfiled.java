@@ -0,0 +1,141 @@
+package org.usfirst.frc4904.standard.commands.motor;
+
+
+import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionProfile;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.SCurveProfile;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.TrapezoidalProfile;
+import org.usfirst.frc4904.standard.custom.sensors.InvalidSensorException;
+import org.usfirst.frc4904.standard.subsystems.motor.PositionSensorMotor;
+import edu.wpi.first.wpilibj.command.Command;
+
+/**
+ * Moves a motor to a position, like MotorPositionConstant,
+ * but moves the setpoint along a trapezoidal profile instead of jumping it
+ * to the position, so the motion controller does not saturate or overshoot.
+ * With a jerk limit, the profile is an S-curve, which keeps arms and
+ * elevators from ringing.
+ */
+public class MotorPositionConstantProfiled extends MotorPositionConstant {
+	protected final double maxVelocity;
+	protected final double maxAcceleration;
+	protected final double maxJerk;
+
+	/**
+	 * @param motor
+	 * @param position
+	 * @param maxVelocity
+	 *        fastest setpoint speed in position units per second
+	 * @param maxAcceleration
+	 *        fastest setpoint acceleration in position units per second squared
+	 * @param maxJerk
+	 *        fastest change in setpoint acceleration in position units per second cubed (0 for no limit)
+	 * @param endOnArrival
+	 *        end once the profile is over and the motor is on target
+	 * @param fallbackCommand
+	 *        If the sensor fails for some reason, this command will be cancelled, then the fallbackCommand will start
+	 */
+	public MotorPositionConstantProfiled(PositionSensorMotor motor, double position, double maxVelocity,
+		double maxAcceleration, double maxJerk, boolean endOnArrival, Command fallbackCommand) {
+		super(motor, position, endOnArrival, fallbackCommand);
+		this.maxVelocity = maxVelocity;
+		this.maxAcceleration = maxAcceleration;
+		this.maxJerk = maxJerk;
+	}
+
+	/**
+	 * @param motor
+	 * @param position
+	 * @param maxVelocity
+	 *        fastest setpoint speed in position units per second
+	 * @param maxAcceleration
+	 *        fastest setpoint acceleration in position units per second squared
+	 * @param endOnArrival
+	 *        end once the profile is over and the motor is on target
+	 * @param fallbackCommand
+	 *        If the sensor fails for some reason, this command will be cancelled, then the fallbackCommand will start
+	 */
+	public MotorPositionConstantProfiled(PositionSensorMotor motor, double position, double maxVelocity,
+		double maxAcceleration, boolean endOnArrival, Command fallbackCommand) {
+		this(motor, position, maxVelocity, maxAcceleration, 0, endOnArrival, fallbackCommand);
+	}
+
+	/**
+	 * @param motor
+	 * @param position
+	 * @param maxVelocity
+	 *        fastest setpoint speed in position units per second
+	 * @param maxAcceleration
+	 *        fastest setpoint acceleration in position units per second squared
+	 * @param endOnArrival
+	 *        end once the profile is over and the motor is on target
+	 */
+	public MotorPositionConstantProfiled(PositionSensorMotor motor, double position, double maxVelocity,
+		double maxAcceleration, boolean endOnArrival) {
+		this(motor, position, maxVelocity, maxAcceleration, endOnArrival, null);
+	}
+
+	/**
+	 * @param motor
+	 * @param position
+	 * @param maxVelocity
+	 *        fastest setpoint speed in position units per second
+	 * @param maxAcceleration
+	 *        fastest setpoint acceleration in position units per second squared
+	 */
+	public MotorPositionConstantProfiled(PositionSensorMotor motor, double position, double maxVelocity,
+		double maxAcceleration) {
+		this(motor, position, maxVelocity, maxAcceleration, true, null);
+	}
+
+	/**
+	 * @param motor
+	 * @param position
+	 * @param maxVelocity
+	 *        fastest setpoint speed in position units per second
+	 * @param maxAcceleration
+	 *        fastest setpoint acceleration in position units per second squared
+	 * @param maxJerk
+	 *        fastest change in setpoint acceleration in position units per second cubed
+	 */
+	public MotorPositionConstantProfiled(PositionSensorMotor motor, double position, double maxVelocity,
+		double maxAcceleration, double maxJerk) {
+		this(motor, position, maxVelocity, maxAcceleration, maxJerk, true, null);
+	}
+
+	/**
+	 * @param start
+	 *        Where the motor is now
+	 * @return the profile to the position
+	 */
+	protected MotionProfile makeProfile(double start) {
+		if (maxJerk > 0) {
+			return new SCurveProfile(start, position, maxVelocity, maxAcceleration, maxJerk);
+		}
+		return new TrapezoidalProfile(start, position, maxVelocity, maxAcceleration);
+	}
+
+	@Override
+	protected void initialize() {
+		try {
+			motor.reset();
+			motor.enableMotionController();
+			double start = motor.getPositionSafely();
+			motor.followProfile(makeProfile(start));
+		}
+		catch (InvalidSensorException e) {
+			cancel();
+			if (fallbackCommand != null) {
+				fallbackCommand.start();
+			}
+			return;
+		}
+	}
+
+	@Override
+	protected boolean isFinished() {
+		if (endOnArrival) {
+			return motor.isProfileFinished() && motor.onTarget();
+		}
+		return false;
+	}
+}
@@ -5,6 +5,8 @@ import org.usfirst.frc4904.standard.LogKitten;
 import org.usfirst.frc4904.standard.Util;
 import org.usfirst.frc4904.standard.custom.controllers.Controller;
 import org.usfirst.frc4904.standard.custom.sensors.InvalidSensorException;
+import org.usfirst.frc4904.standard.logging.KittenCommandProfiler;
+import org.usfirst.frc4904.standard.logging.KittenCommandProfiler.Section;
 import org.usfirst.frc4904.standard.subsystems.motor.PositionSensorMotor;
 import edu.wpi.first.wpilibj.command.Command;
 
@@ -19,6 +21,7 @@ public class MotorPositionControl extends Command {
 	protected final boolean invert;
 	protected final Util.Range motorPositionRange;
 	protected final Command fallbackCommand;
+	protected final KittenCommandProfiler.Probe probe = KittenCommandProfiler.probe(getName());
 
 	/**
 	 * This Command directly controls a SensorMotor's position based on an axis of the Controller.
@@ -65,9 +68,10 @@ public class MotorPositionControl extends Command {
 
 	@Override
 	protected void execute() {
+		long start = probe.begin();
 		double axisValue = invert ? -1.0 * controller.getAxis(axis) : controller.getAxis(axis);
 		double targetPosition = motorPositionRange.scaleValue(axisValue);
-		LogKitten.d("MotorPositionControl executing: " + targetPosition);
+		LogKitten.debugf("MotorPositionControl executing: {}", targetPosition);
 		try {
 			motor.setPositionSafely(targetPosition);
 		}
@@ -77,6 +81,7 @@ public class MotorPositionControl extends Command {
 				fallbackCommand.start();
 			}
 		}
+		probe.end(Section.EXECUTE, start);
 	}
 
 	@Override
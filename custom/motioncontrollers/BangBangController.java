@@ -3,6 +3,7 @@ package org.usfirst.frc4904.standard.custom.motioncontrollers;
 
 import org.usfirst.frc4904.standard.LogKitten;
 import org.usfirst.frc4904.standard.custom.sensors.InvalidSensorException;
+import org.usfirst.frc4904.standard.custom.sensors.NativeDerivativeSensor;
 import org.usfirst.frc4904.standard.custom.sensors.PIDSensor;
 import edu.wpi.first.wpilibj.PIDSource;
 
@@ -11,6 +12,16 @@ import edu.wpi.first.wpilibj.PIDSource;
  * The bang bang controller increases the value of the output
  * if it is below the setpoint or decreases the value of the
  * output if it is above the setpoint.
+ * <p>
+ * The output is F * setpoint plus A while the input is above the setpoint, and minus A while it is
+ * below, so a mechanism whose input rises with the output needs a negative A.
+ * <p>
+ * In hysteresis mode (for flywheels), the controller drives up until the velocity
+ * passes the setpoint by an upper band, then drives down until it falls below the
+ * setpoint by a lower band, rather than switching every tick around the setpoint.
+ * A has the same sign in both modes.
+ * The velocity is the sensor's native rate when it is a {@link NativeDerivativeSensor}
+ * (such as a CustomEncoder), so the encoder can stay in displacement mode.
  *
  */
 public class BangBangController extends MotionController {
@@ -18,6 +29,10 @@ public class BangBangController extends MotionController {
 	protected double A;
 	protected double F;
 	protected double threshold;
+	protected boolean hysteresis;
+	protected double lowerBand;
+	protected double upperBand;
+	protected boolean rising;
 
 	/**
 	 * BangBang controller
@@ -115,12 +130,53 @@ public class BangBangController extends MotionController {
 		this(source, A, F, Double.MIN_VALUE);
 	}
 
+	/**
+	 * Switches to hysteresis mode, for velocity control.
+	 * The output is F * setpoint - A until the velocity rises above setpoint + upperBand,
+	 * then F * setpoint + A until it falls below setpoint - lowerBand, and so on.
+	 * These are the outputs the threshold mode gives below and above the setpoint,
+	 * so switching modes never reverses the mechanism (A is negative for a flywheel that
+	 * speeds up with a positive output).
+	 *
+	 * @param lowerBand
+	 *        How far below the setpoint the velocity may fall before driving up again
+	 * @param upperBand
+	 *        How far above the setpoint the velocity may rise before driving down again
+	 */
+	public void setHysteresis(double lowerBand, double upperBand) {
+		this.lowerBand = lowerBand;
+		this.upperBand = upperBand;
+		hysteresis = true;
+	}
+
+	/**
+	 * Switches back to the threshold mode.
+	 */
+	public void disableHysteresis() {
+		hysteresis = false;
+	}
+
+	public boolean isHysteresis() {
+		return hysteresis;
+	}
+
 	/**
 	 * Sets the stored error value to zero (0)
 	 */
 	@Override
 	public void resetErrorToZero() {
 		error = 0;
+		rising = true; // Start by driving up to speed
+	}
+
+	/**
+	 * @return the velocity, from the native rate if the sensor has one
+	 */
+	protected double getVelocitySafely() throws InvalidSensorException {
+		if (sensor instanceof NativeDerivativeSensor) {
+			return ((NativeDerivativeSensor) sensor).getRateSafely();
+		}
+		return sensor.pidGetSafely();
 	}
 
 	/**
@@ -136,10 +192,22 @@ public class BangBangController extends MotionController {
 		if (!isEnabled()) {
 			return F * setpoint;
 		}
+		if (hysteresis) {
+			double velocity = getVelocitySafely();
+			measurement = velocity;
+			error = setpoint - velocity;
+			if (rising && velocity > setpoint + upperBand) {
+				rising = false;
+			} else if (!rising && velocity < setpoint - lowerBand) {
+				rising = true;
+			}
+			// The same signs as below the setpoint (rising) and above it in the threshold mode
+			return (rising ? -A : A) + F * setpoint;
+		}
 		double input = 0.0;
 		input = sensor.pidGetSafely();
+		measurement = input;
 		error = setpoint - input;
-		LogKitten.v(input + " " + setpoint + " " + error);
 		if (continuous) {
 			double range = inputMax - inputMin;
 			// If the error is more than half of the range, it is faster to increase the error and loop around the boundary
@@ -152,10 +220,8 @@ public class BangBangController extends MotionController {
 			}
 		}
 		if (error < 0.0 && Math.abs(error) > threshold) {
-			LogKitten.v("+A " + error);
 			return A + F * setpoint;
 		} else if (error > 0.0 && Math.abs(error) > threshold) {
-			LogKitten.v("-A" + error);
 			return -1.0 * A + F * setpoint;
 		}
 		return F * setpoint;
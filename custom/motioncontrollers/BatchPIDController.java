@@ -0,0 +1,389 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers;
+
+
+import edu.wpi.first.wpilibj.util.BoundaryException;
+
+/**
+ * Many PID loops evaluated together, such as the drive and steer loops of every swerve module.
+ * <p>
+ * Each loop behaves like a {@link CustomPIDController} in high rate mode (I and D per second),
+ * including I thresholds, derivative filtering, setpoint weights, anti-windup, output ranges,
+ * minimum nominal output and continuous input (for steering angles). The gains and state of
+ * every loop are kept in parallel arrays and {@link #calculate(double[], long)} runs every loop
+ * in one pass, with no objects, virtual calls or logging per loop, and no allocation.
+ * <p>
+ * The caller supplies the measurements (read from the sensors however it likes) and writes the
+ * outputs, once per tick, such as from a subsystem's periodic method. Unlike CustomPIDController,
+ * the derivative is always of the error, never a sensor's native rate.
+ *
+ */
+public class BatchPIDController {
+	protected final int size;
+	protected final double[] P;
+	protected final double[] I;
+	protected final double[] D;
+	protected final double[] F;
+	protected final double[] integralThreshold;
+	protected final double[] derivativeFilter;
+	protected final double[] proportionalWeight;
+	protected final double[] derivativeWeight;
+	protected final double[] antiWindupGain;
+	protected final double[] minimumNominalOutput;
+	protected final boolean[] capOutput;
+	protected final double[] outputMin;
+	protected final double[] outputMax;
+	protected final boolean[] continuous;
+	protected final double[] inputMin;
+	protected final double[] inputMax;
+	protected final double[] absoluteTolerance;
+	protected final boolean[] enabled;
+	protected final double[] setpoint;
+	protected final double[] totalError;
+	protected final double[] lastError;
+	protected final double[] lastSetpoint;
+	protected final double[] filteredDerivative;
+	protected final boolean[] justReset;
+	protected final double[] output;
+	protected long lastNanos;
+
+	/**
+	 * Many PID loops with no gains, enabled.
+	 *
+	 * @param size
+	 *        The number of loops
+	 */
+	public BatchPIDController(int size) {
+		this.size = size;
+		P = new double[size];
+		I = new double[size];
+		D = new double[size];
+		F = new double[size];
+		integralThreshold = new double[size];
+		derivativeFilter = new double[size];
+		proportionalWeight = new double[size];
+		derivativeWeight = new double[size];
+		antiWindupGain = new double[size];
+		minimumNominalOutput = new double[size];
+		capOutput = new boolean[size];
+		outputMin = new double[size];
+		outputMax = new double[size];
+		continuous = new boolean[size];
+		inputMin = new double[size];
+		inputMax = new double[size];
+		absoluteTolerance = new double[size];
+		enabled = new boolean[size];
+		setpoint = new double[size];
+		totalError = new double[size];
+		lastError = new double[size];
+		lastSetpoint = new double[size];
+		filteredDerivative = new double[size];
+		justReset = new boolean[size];
+		output = new double[size];
+		for (int i = 0; i < size; i++) {
+			proportionalWeight[i] = 1.0;
+			derivativeWeight[i] = 1.0;
+			absoluteTolerance[i] = Double.MIN_VALUE; // Nonzero to avoid floating point errors
+			enabled[i] = true;
+			justReset[i] = true;
+		}
+	}
+
+	/**
+	 * @return the number of loops
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Sets one loop's gains.
+	 *
+	 * @param loop
+	 * @param P
+	 * @param I
+	 *        Per second
+	 * @param D
+	 *        Per second
+	 */
+	public void setPID(int loop, double P, double I, double D) {
+		this.P[loop] = P;
+		this.I[loop] = I;
+		this.D[loop] = D;
+	}
+
+	/**
+	 * Sets one loop's gains.
+	 *
+	 * @param loop
+	 * @param P
+	 * @param I
+	 *        Per second
+	 * @param D
+	 *        Per second
+	 * @param F
+	 */
+	public void setPIDF(int loop, double P, double I, double D, double F) {
+		setPID(loop, P, I, D);
+		this.F[loop] = F;
+	}
+
+	public double getP(int loop) {
+		return P[loop];
+	}
+
+	public double getI(int loop) {
+		return I[loop];
+	}
+
+	public double getD(int loop) {
+		return D[loop];
+	}
+
+	public double getF(int loop) {
+		return F[loop];
+	}
+
+	/**
+	 * @see CustomPIDController#setIThreshold(double)
+	 */
+	public void setIThreshold(int loop, double integralThreshold) {
+		if (integralThreshold < 0) {
+			throw new BoundaryException("I threshold negative");
+		}
+		this.integralThreshold[loop] = integralThreshold;
+	}
+
+	/**
+	 * @see CustomPIDController#setDerivativeFilter(double)
+	 */
+	public void setDerivativeFilter(int loop, double timeConstant) {
+		if (timeConstant < 0) {
+			throw new BoundaryException("Derivative filter time constant negative");
+		}
+		derivativeFilter[loop] = timeConstant;
+	}
+
+	/**
+	 * @see CustomPIDController#setSetpointWeights(double, double)
+	 */
+	public void setSetpointWeights(int loop, double proportionalWeight, double derivativeWeight) {
+		if (proportionalWeight < 0 || proportionalWeight > 1 || derivativeWeight < 0 || derivativeWeight > 1) {
+			throw new BoundaryException("Setpoint weights must be between 0 and 1");
+		}
+		if (continuous[loop] && proportionalWeight != 1.0) {
+			throw new BoundaryException("Proportional setpoint weight must be 1 on a continuous input");
+		}
+		this.proportionalWeight[loop] = proportionalWeight;
+		this.derivativeWeight[loop] = derivativeWeight;
+	}
+
+	/**
+	 * @see CustomPIDController#setAntiWindup(double)
+	 */
+	public void setAntiWindup(int loop, double antiWindupGain) {
+		if (antiWindupGain < 0) {
+			throw new BoundaryException("Anti-windup gain negative");
+		}
+		this.antiWindupGain[loop] = antiWindupGain;
+	}
+
+	/**
+	 * @see CustomPIDController#setMinimumNominalOutput(double)
+	 */
+	public void setMinimumNominalOutput(int loop, double minimumNominalOutput) {
+		this.minimumNominalOutput[loop] = minimumNominalOutput;
+	}
+
+	/**
+	 * @see MotionController#setOutputRange(double, double)
+	 */
+	public void setOutputRange(int loop, double minimum, double maximum) {
+		outputMin[loop] = minimum;
+		outputMax[loop] = maximum;
+		capOutput[loop] = true;
+	}
+
+	public void disableOutputRange(int loop) {
+		capOutput[loop] = false;
+	}
+
+	/**
+	 * @see MotionController#setInputRange(double, double)
+	 */
+	public void setInputRange(int loop, double minimum, double maximum) {
+		if (minimum > maximum) {
+			throw new BoundaryException("Minimum is greater than maximum");
+		}
+		inputMin[loop] = minimum;
+		inputMax[loop] = maximum;
+	}
+
+	/**
+	 * @throws BoundaryException
+	 *         when the loop has a proportional setpoint weight other than 1
+	 * @see CustomPIDController#setContinuous(boolean)
+	 */
+	public void setContinuous(int loop, boolean continuous) {
+		if (continuous && proportionalWeight[loop] != 1.0) {
+			throw new BoundaryException("Proportional setpoint weight must be 1 on a continuous input");
+		}
+		this.continuous[loop] = continuous;
+	}
+
+	/**
+	 * @see MotionController#setAbsoluteTolerance(double)
+	 */
+	public void setAbsoluteTolerance(int loop, double absoluteTolerance) {
+		if (absoluteTolerance < 0) {
+			throw new BoundaryException("Absolute tolerance negative");
+		}
+		this.absoluteTolerance[loop] = absoluteTolerance;
+	}
+
+	public void setSetpoint(int loop, double setpoint) {
+		this.setpoint[loop] = setpoint;
+	}
+
+	public double getSetpoint(int loop) {
+		return setpoint[loop];
+	}
+
+	/**
+	 * Turns one loop on. Its first calculation after being off only records the starting state.
+	 *
+	 * @param loop
+	 */
+	public void enable(int loop) {
+		if (!enabled[loop]) {
+			enabled[loop] = true;
+			justReset[loop] = true;
+		}
+	}
+
+	/**
+	 * Turns one loop off: its output becomes F * setpoint.
+	 *
+	 * @param loop
+	 */
+	public void disable(int loop) {
+		enabled[loop] = false;
+	}
+
+	public boolean isEnabled(int loop) {
+		return enabled[loop];
+	}
+
+	/**
+	 * Clears one loop's accumulated error.
+	 * Its next calculation only records the starting state.
+	 *
+	 * @param loop
+	 */
+	public void reset(int loop) {
+		totalError[loop] = 0.0;
+		lastError[loop] = 0.0;
+		filteredDerivative[loop] = 0.0;
+		justReset[loop] = true;
+	}
+
+	/**
+	 * Clears every loop's accumulated error.
+	 */
+	public void reset() {
+		for (int i = 0; i < size; i++) {
+			reset(i);
+		}
+	}
+
+	/**
+	 * @return the most recent error of one loop
+	 */
+	public double getError(int loop) {
+		return lastError[loop];
+	}
+
+	/**
+	 * @return the most recent output of one loop
+	 */
+	public double getOutput(int loop) {
+		return output[loop];
+	}
+
+	public boolean onTarget(int loop) {
+		return Math.abs(lastError[loop]) <= absoluteTolerance[loop];
+	}
+
+	/**
+	 * Runs every loop once.
+	 *
+	 * @param measurements
+	 *        Each loop's sensor reading
+	 * @param nanos
+	 *        When the readings were taken (such as System.nanoTime())
+	 * @return each loop's output (the same array every call, overwritten by the next)
+	 */
+	public double[] calculate(double[] measurements, long nanos) {
+		double seconds = (nanos - lastNanos) / 1.0e9;
+		lastNanos = nanos;
+		for (int i = 0; i < size; i++) {
+			double target = setpoint[i];
+			double feedForward = F[i] * target;
+			if (!enabled[i]) {
+				output[i] = feedForward;
+				continue;
+			}
+			double error = target - measurements[i];
+			double setpointChange = target - lastSetpoint[i];
+			if (continuous[i]) {
+				double range = inputMax[i] - inputMin[i];
+				error = CustomPIDController.wrap(error, range);
+				setpointChange = CustomPIDController.wrap(setpointChange, range);
+			}
+			if (justReset[i]) {
+				justReset[i] = false;
+				lastError[i] = error;
+				lastSetpoint[i] = target;
+				output[i] = feedForward;
+				continue;
+			}
+			double errorDerivative;
+			if (seconds <= 0) {
+				errorDerivative = 0.0; // Called twice in the same tick
+			} else {
+				errorDerivative = ((error - lastError[i]) - (1 - derivativeWeight[i]) * setpointChange) / seconds;
+			}
+			if (derivativeFilter[i] > 0) {
+				if (seconds > 0) {
+					filteredDerivative[i] += seconds / (derivativeFilter[i] + seconds) * (errorDerivative
+						- filteredDerivative[i]);
+				}
+				errorDerivative = filteredDerivative[i];
+			}
+			boolean integrating = integralThreshold[i] != 0 && Math.abs(error) < integralThreshold[i];
+			if (integrating) {
+				totalError[i] += error * seconds;
+			} else {
+				totalError[i] = 0.0;
+			}
+			// The proportional weight is 1 on continuous inputs
+			double proportionalError = error - (1 - proportionalWeight[i]) * target;
+			double result = P[i] * proportionalError + I[i] * totalError[i] + D[i] * errorDerivative + feedForward;
+			lastError[i] = error;
+			lastSetpoint[i] = target;
+			if (capOutput[i]) {
+				double capped = Math.max(Math.min(result, outputMax[i]), outputMin[i]);
+				if (antiWindupGain[i] > 0 && integrating && I[i] != 0) {
+					// Back-calculation, only unwinding toward zero
+					double unwound = totalError[i] + antiWindupGain[i] * (capped - result) / I[i] * seconds;
+					totalError[i] = CustomPIDController.unwind(totalError[i], unwound);
+				}
+				result = capped;
+			}
+			if (Math.abs(result) < minimumNominalOutput[i]) {
+				result = Math.signum(result) * minimumNominalOutput[i];
+			}
+			output[i] = result;
+		}
+		return output;
+	}
+}
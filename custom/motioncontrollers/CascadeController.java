@@ -0,0 +1,183 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers;
+
+
+import org.usfirst.frc4904.standard.LogKitten;
+import org.usfirst.frc4904.standard.custom.sensors.InvalidSensorException;
+import org.usfirst.frc4904.standard.custom.sensors.SnapshotSensor;
+
+/**
+ * Two motion controllers in series: an outer (position) loop whose output is the
+ * setpoint of an inner (velocity) loop, whose output drives the mechanism.
+ * Elevators and turrets use this to limit how fast they move while holding position.
+ * <p>
+ * Both loops run in the same tick, outer first, on the
+ * {@link MotionControllerExecutor} thread. Only the cascade is enabled and registered;
+ * the loops are never run on their own. If a loop's sensor is a {@link SnapshotSensor},
+ * it is captured at the start of every tick, so both loops see the mechanism at the
+ * same instant (useful when both read one encoder).
+ * <p>
+ * Each loop keeps its own output range: the outer loop's range is the fastest the
+ * inner loop will be asked to move, and the inner loop's range is the output.
+ * The cascade's setpoint (and any profile it follows) goes to the outer loop, so an outer
+ * {@link FeedforwardPIDController} with kV = 1 adds the profile's velocity to the inner setpoint.
+ *
+ */
+public class CascadeController extends MotionController {
+	protected final MotionController outer;
+	protected final MotionController inner;
+	protected double innerSetpoint;
+	protected boolean innerOnTarget;
+
+	/**
+	 * Two motion controllers in series.
+	 *
+	 * @param outer
+	 *        The position loop, whose output is the velocity setpoint of the inner loop
+	 * @param inner
+	 *        The velocity loop, whose output drives the mechanism
+	 */
+	public CascadeController(MotionController outer, MotionController inner) {
+		super(outer.sensor);
+		this.outer = outer;
+		this.inner = inner;
+		innerSetpoint = 0.0;
+		innerOnTarget = false;
+	}
+
+	public MotionController getOuter() {
+		return outer;
+	}
+
+	public MotionController getInner() {
+		return inner;
+	}
+
+	/**
+	 * @return the velocity the outer loop asked for on the latest tick
+	 */
+	public double getInnerSetpoint() {
+		return innerSetpoint;
+	}
+
+	@Override
+	protected void resetErrorToZero() {
+		if (outer == null) {
+			return; // Called from the MotionController constructor, before the loops are set
+		}
+		captureSnapshots();
+		outer.reset();
+		inner.reset();
+		innerSetpoint = 0.0;
+	}
+
+	protected void captureSnapshots() {
+		if (outer.sensor instanceof SnapshotSensor) {
+			((SnapshotSensor) outer.sensor).capture();
+		}
+		if (inner.sensor instanceof SnapshotSensor && inner.sensor != outer.sensor) {
+			((SnapshotSensor) inner.sensor).capture();
+		}
+	}
+
+	/**
+	 * Runs the outer loop, then the inner loop.
+	 *
+	 * @return the inner loop's output
+	 * @throws InvalidSensorException
+	 *         when either loop's sensor fails
+	 */
+	@Override
+	public double getSafely() throws InvalidSensorException {
+		if (!isEnabled()) {
+			return 0.0;
+		}
+		captureSnapshots();
+		boolean afterReset = didJustReset();
+		outer.setpoint = setpoint;
+		outer.setpointVelocity = setpointVelocity;
+		outer.setpointAcceleration = setpointAcceleration;
+		innerSetpoint = outer.calculateNested(afterReset);
+		inner.setpoint = innerSetpoint;
+		inner.setpointVelocity = setpointAcceleration; // How fast the velocity setpoint is changing along a profile
+		inner.setpointAcceleration = 0.0;
+		double result = inner.calculateNested(afterReset);
+		measurement = outer.measurement;
+		return result;
+	}
+
+	/**
+	 * Publishes each loop's part of the tick, so either can be read on its own.
+	 */
+	@Override
+	void publishNestedStates() {
+		outer.publishNestedState(innerSetpoint);
+		inner.publishNestedState(tickOutput);
+	}
+
+	@Override
+	public double get() {
+		try {
+			return getSafely();
+		}
+		catch (Exception e) {
+			LogKitten.ex(e);
+			return 0;
+		}
+	}
+
+	/**
+	 * @return the outer (position) loop's error
+	 */
+	@Override
+	public double getError() {
+		return outer.getError();
+	}
+
+	/**
+	 * Makes onTarget also wait for the inner loop to be on target (the mechanism has stopped).
+	 * Set the inner loop's absolute tolerance first: its default is so small that the inner
+	 * loop is practically never on target, so commands waiting on the cascade would never finish.
+	 * Settle criteria ({@link #setSettleCriteria(double, double)}) on the cascade are another
+	 * way to wait for the mechanism to stop.
+	 *
+	 * @param innerOnTarget
+	 *        Whether onTarget checks the inner loop (false by default)
+	 */
+	public void setInnerOnTarget(boolean innerOnTarget) {
+		if (innerOnTarget && inner.getAbsoluteTolerance() <= Double.MIN_VALUE) {
+			LogKitten.w("Cascade waits for an inner loop with no absolute tolerance, so it will never be on target");
+		}
+		this.innerOnTarget = innerOnTarget;
+	}
+
+	public boolean isInnerOnTarget() {
+		return innerOnTarget;
+	}
+
+	/**
+	 * True if the position is within this controller's tolerance (and settled, with settle criteria set),
+	 * and, if {@link #setInnerOnTarget(boolean)} is set, the inner loop is on target too.
+	 */
+	@Override
+	public boolean onTarget() {
+		return super.onTarget() && (!innerOnTarget || inner.onTarget());
+	}
+
+	@Override
+	public void enable() {
+		super.enable();
+		if (isEnabled()) {
+			outer.enable = true;
+			inner.enable = true;
+		}
+	}
+
+	@Override
+	public void disable() {
+		super.disable();
+		if (!isEnabled()) {
+			outer.enable = false;
+			inner.enable = false;
+		}
+	}
+}
@@ -5,6 +5,8 @@ import org.usfirst.frc4904.standard.LogKitten;
 import org.usfirst.frc4904.standard.custom.sensors.InvalidSensorException;
 import org.usfirst.frc4904.standard.custom.sensors.NativeDerivativeSensor;
 import org.usfirst.frc4904.standard.custom.sensors.PIDSensor;
+import org.usfirst.frc4904.standard.logging.KittenSignal;
+import org.usfirst.frc4904.standard.logging.KittenTelemetry;
 import edu.wpi.first.wpilibj.PIDSource;
 import edu.wpi.first.wpilibj.PIDSourceType;
 import edu.wpi.first.wpilibj.util.BoundaryException;
@@ -23,7 +25,18 @@ public class CustomPIDController extends MotionController {
 	protected double totalError;
 	protected double lastError;
 	protected long lastTime;
+	protected long lastNanos;
+	protected boolean highRate = false;
 	protected double minimumNominalOutput = 0.0;
+	protected double derivativeFilter = 0.0;
+	protected double filteredDerivative;
+	protected double proportionalWeight = 1.0;
+	protected double derivativeWeight = 1.0;
+	protected double antiWindupGain = 0.0;
+	protected double lastSetpoint;
+	protected KittenSignal inputSignal;
+	protected KittenSignal setpointSignal;
+	protected KittenSignal outputSignal;
 
 	/**
 	 * An extremely basic PID controller.
@@ -248,6 +261,180 @@ public class CustomPIDController extends MotionController {
 		return integralThreshold;
 	}
 
+	/**
+	 * Low-pass filters the derivative, so that the D term does not amplify sensor noise.
+	 *
+	 * @param timeConstant
+	 *        Seconds for the filtered derivative to reach 63% of a change (0, the default, for no filter).
+	 *        A few ticks is a good start.
+	 */
+	public void setDerivativeFilter(double timeConstant) {
+		if (timeConstant < 0) {
+			throw new BoundaryException("Derivative filter time constant negative");
+		}
+		derivativeFilter = timeConstant;
+	}
+
+	/**
+	 * @return the derivative filter time constant in seconds
+	 */
+	public double getDerivativeFilter() {
+		return derivativeFilter;
+	}
+
+	/**
+	 * Sets how much of the setpoint the P and D terms see.
+	 * The P term acts on (proportionalWeight * setpoint - input) and the D term on the rate of
+	 * change of (derivativeWeight * setpoint - input). With a derivative weight of 0, the D term
+	 * only sees the measurement, so it does not kick when the setpoint jumps; a proportional weight
+	 * below 1 softens the P kick as well. The I term always sees the whole error, so the
+	 * controller still settles on the setpoint.
+	 * <p>
+	 * On a continuous input ({@link #setContinuous(boolean)}), the setpoint change the D term
+	 * leaves out is taken the short way around, like the error. The proportional weight must
+	 * stay 1 there: part of an angle is not a position on the circle.
+	 *
+	 * @param proportionalWeight
+	 *        Between 0 and 1 (1 by default)
+	 * @param derivativeWeight
+	 *        Between 0 and 1 (1 by default)
+	 */
+	public void setSetpointWeights(double proportionalWeight, double derivativeWeight) {
+		if (proportionalWeight < 0 || proportionalWeight > 1 || derivativeWeight < 0 || derivativeWeight > 1) {
+			throw new BoundaryException("Setpoint weights must be between 0 and 1");
+		}
+		if (continuous && proportionalWeight != 1.0) {
+			throw new BoundaryException("Proportional setpoint weight must be 1 on a continuous input");
+		}
+		this.proportionalWeight = proportionalWeight;
+		this.derivativeWeight = derivativeWeight;
+	}
+
+	/**
+	 * @throws BoundaryException
+	 *         when a proportional setpoint weight other than 1 is set
+	 * @see #setSetpointWeights(double, double)
+	 */
+	@Override
+	public void setContinuous(boolean continuous) {
+		if (continuous && proportionalWeight != 1.0) {
+			throw new BoundaryException("Proportional setpoint weight must be 1 on a continuous input");
+		}
+		super.setContinuous(continuous);
+	}
+
+	public double getProportionalWeight() {
+		return proportionalWeight;
+	}
+
+	public double getDerivativeWeight() {
+		return derivativeWeight;
+	}
+
+	/**
+	 * Unwinds the integral while the output is capped (back-calculation), so that a long
+	 * saturated move does not build up an integral that overshoots once the output range is reached.
+	 * Only applies while the output range is capped ({@link #setOutputRange(double, double)}).
+	 * The integral is only unwound toward zero, never wound away from it or past it.
+	 * The minimum nominal output is not counted as saturation: it is raised to overcome
+	 * friction, and unwinding toward it would push the integral away from the setpoint.
+	 *
+	 * @param antiWindupGain
+	 *        How fast (per second) the integral is pulled back toward what the output range allows
+	 *        (0, the default, for no anti-windup). 10 to 50 is typical.
+	 */
+	public void setAntiWindup(double antiWindupGain) {
+		if (antiWindupGain < 0) {
+			throw new BoundaryException("Anti-windup gain negative");
+		}
+		this.antiWindupGain = antiWindupGain;
+	}
+
+	public double getAntiWindup() {
+		return antiWindupGain;
+	}
+
+	/**
+	 * Takes a difference between two points on a continuous input the short way around.
+	 *
+	 * @param difference
+	 * @param range
+	 *        The size of the input range
+	 * @return the difference, within half the range of zero
+	 */
+	protected static double wrap(double difference, double range) {
+		// If the difference is more than half of the range, it is shorter to loop around the boundary
+		if (Math.abs(difference) > range / 2) {
+			if (difference > 0) {
+				return difference - range;
+			}
+			return difference + range;
+		}
+		return difference;
+	}
+
+	/**
+	 * Keeps a back-calculated integral only where it unwinds the old one toward zero.
+	 *
+	 * @param totalError
+	 *        The integral before back-calculation
+	 * @param unwound
+	 *        The integral after back-calculation
+	 * @return unwound if it is closer to zero on the same side, zero if it went past zero,
+	 *         and the old integral if back-calculation would wind it further from zero
+	 * @see #setAntiWindup(double)
+	 */
+	protected static double unwind(double totalError, double unwound) {
+		if (Math.abs(unwound) > Math.abs(totalError)) {
+			return totalError;
+		}
+		if (Math.signum(unwound) != Math.signum(totalError)) {
+			return 0.0;
+		}
+		return unwound;
+	}
+
+	/**
+	 * Switches to timing suited to loops of 200 Hz to 1 kHz
+	 * (see {@link MotionControllerExecutor#setPeriod(double)}).
+	 * The time between ticks is measured in fractional seconds from a monotonic clock
+	 * instead of whole milliseconds, so the I and D terms are not quantized at short periods
+	 * and mean the same thing at any loop rate. Nothing is logged while calculating.
+	 * <p>
+	 * I and D are per second rather than per millisecond in this mode:
+	 * multiply I by 1000 and divide D by 1000 to keep the same behavior.
+	 * The accumulated error is cleared and the next tick only records the state, as after a reset,
+	 * so switching mid-run neither kicks D nor pumps I.
+	 *
+	 * @param highRate
+	 */
+	public void setHighRate(boolean highRate) {
+		this.highRate = highRate;
+		restartTiming();
+	}
+
+	/**
+	 * @return whether the time between ticks is measured in fractional seconds
+	 * @see #setHighRate(boolean)
+	 */
+	public boolean isHighRate() {
+		return highRate;
+	}
+
+	/**
+	 * Records the input, setpoint and output of every tick as telemetry
+	 * (name/input, name/setpoint and name/output), one row per tick.
+	 *
+	 * @param name
+	 *        The prefix for the signal names (such as "Shooter")
+	 * @see KittenTelemetry
+	 */
+	public void setTelemetryName(String name) {
+		inputSignal = KittenTelemetry.signal(name + "/input");
+		setpointSignal = KittenTelemetry.signal(name + "/setpoint");
+		outputSignal = KittenTelemetry.signal(name + "/output");
+	}
+
 	/**
 	 * Resets the PID controller error to zero.
 	 */
@@ -255,6 +442,7 @@ public class CustomPIDController extends MotionController {
 	protected void resetErrorToZero() {
 		totalError = 0;
 		lastError = 0;
+		filteredDerivative = 0;
 	}
 
 	@Override
@@ -262,6 +450,16 @@ public class CustomPIDController extends MotionController {
 		return lastError;
 	}
 
+	/**
+	 * The part of the output that does not depend on the error.
+	 * Subclasses with more detailed models of the mechanism override this.
+	 *
+	 * @return F times the setpoint
+	 */
+	protected double feedForward() {
+		return F * setpoint;
+	}
+
 	/**
 	 * Get the current output of the PID loop.
 	 * This should be used to set the output (like a Motor).
@@ -274,26 +472,26 @@ public class CustomPIDController extends MotionController {
 	public double getSafely() throws InvalidSensorException {
 		// If PID is not enabled, use feedforward only
 		if (!isEnabled()) {
-			return F * setpoint;
+			return feedForward();
 		}
 		double input = 0.0;
 		input = sensor.pidGet();
+		measurement = input;
 		double error = setpoint - input;
+		double setpointChange = setpoint - lastSetpoint;
 		// Account for continuous input ranges
 		if (continuous) {
 			double range = inputMax - inputMin;
-			// If the error is more than half of the range, it is faster to increase the error and loop around the boundary
-			if (Math.abs(error) > range / 2) {
-				if (error > 0) {
-					error -= range;
-				} else {
-					error += range;
-				}
-			}
+			error = CustomPIDController.wrap(error, range);
+			setpointChange = CustomPIDController.wrap(setpointChange, range);
 		}
-		long latestTime = System.currentTimeMillis();
-		long timeDiff = latestTime - lastTime;
+		long latestNanos = getTimeNanos();
+		long latestTime = latestNanos / 1000000; // Whole milliseconds, which the gains were tuned for
+		double timeDiff = highRate ? (latestNanos - lastNanos) / 1.0e9 : latestTime - lastTime;
+		// Both clocks advance in either mode, so neither is stale after setHighRate
 		lastTime = latestTime;
+		lastNanos = latestNanos;
+		double secondsDiff = highRate ? timeDiff : timeDiff / 1000.0;
 		// If we just reset, then the lastTime could be way before the latestTime and so timeDiff would be huge.
 		// This would lead to a very big I (and a big D, briefly).
 		// Also, D could be unpredictable because lastError could be wildly different than error (since they're
@@ -301,35 +499,61 @@ public class CustomPIDController extends MotionController {
 		// Hence, if we just reset, just pretend we're still disabled and record the lastTime and lastError for next tick.
 		if (didJustReset()) {
 			lastError = error;
-			return F * setpoint;
+			lastSetpoint = setpoint;
+			return feedForward();
 		}
 		double errorDerivative;
 		// Check if the sensor supports native derivative calculations and that we're doing displacement PID
 		// (if we're doing rate PID, then getRate() would be the PID input rather then the input's derivative)
 		if (sensor instanceof NativeDerivativeSensor && sensor.getPIDSourceType() == PIDSourceType.kDisplacement) {
 			errorDerivative = ((NativeDerivativeSensor) sensor).getRateSafely();
+		} else if (highRate && timeDiff <= 0) {
+			errorDerivative = 0.0; // Called twice in the same tick
 		} else {
-			// Calculate the approximation of the derivative.
-			errorDerivative = (error - lastError) / timeDiff;
+			// Calculate the approximation of the derivative, leaving out the unweighted part of any setpoint change
+			errorDerivative = ((error - lastError) - (1 - derivativeWeight) * setpointChange) / timeDiff;
 		}
-		if (integralThreshold != 0 && Math.abs(error) < integralThreshold) {
+		if (derivativeFilter > 0) {
+			if (secondsDiff > 0) {
+				filteredDerivative += secondsDiff / (derivativeFilter + secondsDiff) * (errorDerivative - filteredDerivative);
+			}
+			errorDerivative = filteredDerivative;
+		}
+		boolean integrating = integralThreshold != 0 && Math.abs(error) < integralThreshold;
+		if (integrating) {
 			// Calculate the approximation of the error's integral
 			totalError += error * timeDiff;
 		} else {
 			totalError = 0.0;
 		}
-		// Calculate the result using the PIDF formula
-		double result = P * error + I * totalError + D * errorDerivative + F * setpoint;
+		// Calculate the result using the PIDF formula (the proportional weight is 1 on continuous inputs)
+		double proportionalError = error - (1 - proportionalWeight) * setpoint;
+		double result = P * proportionalError + I * totalError + D * errorDerivative + feedForward();
 		// Save the error for calculating future derivatives
 		lastError = error;
-		LogKitten.v(input + " " + setpoint + " " + result);
+		lastSetpoint = setpoint;
+		if (!highRate) {
+			LogKitten.verbosef("{} {} {}", input, setpoint, result);
+		}
 		if (capOutput) {
 			// Limit the result to be within the output range [outputMin, outputMax]
-			result = Math.max(Math.min(result, outputMax), outputMin);
+			double capped = Math.max(Math.min(result, outputMax), outputMin);
+			if (antiWindupGain > 0 && integrating && I != 0) {
+				// Back-calculation: pull the I term toward the output that was actually allowed,
+				// but only unwind it; winding it past zero would hold the mechanism short of the setpoint
+				double unwound = totalError + antiWindupGain * (capped - result) / I * secondsDiff;
+				totalError = CustomPIDController.unwind(totalError, unwound);
+			}
+			result = capped;
 		}
 		if (Math.abs(result) < minimumNominalOutput) {
 			result = Math.signum(result) * minimumNominalOutput;
 		}
+		if (outputSignal != null && KittenTelemetry.isRecording()) {
+			inputSignal.record(latestNanos, input);
+			setpointSignal.record(latestNanos, setpoint);
+			outputSignal.record(latestNanos, result);
+		}
 		return result;
 	}
 
@@ -0,0 +1,179 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers;
+
+
+import org.usfirst.frc4904.standard.custom.sensors.PIDSensor;
+import edu.wpi.first.wpilibj.PIDSource;
+import edu.wpi.first.wpilibj.PIDSourceType;
+
+/**
+ * A PID controller that also predicts the output the mechanism needs,
+ * so that PID only has to correct what the prediction gets wrong.
+ * <p>
+ * The prediction is the output a DC motor mechanism needs to move at a
+ * velocity with an acceleration:
+ * kS * sign(velocity) + kV * velocity + kA * acceleration,
+ * plus a gravity term for elevators (constant) or arms (scaled by the cosine of the angle).
+ * <p>
+ * For velocity loops (PIDSourceType.kRate, such as a flywheel or drivetrain on a VelocitySensorMotor),
+ * the velocity is the setpoint, and the acceleration is how fast a profile moves the setpoint.
+ * For position loops, the velocity and acceleration come from the profile being followed
+ * ({@link MotionController#followProfile(MotionProfile)}), and are zero without one.
+ *
+ */
+public class FeedforwardPIDController extends CustomPIDController {
+	protected double kS;
+	protected double kV;
+	protected double kA;
+	protected double kG;
+	protected boolean arm;
+	protected double horizontalPosition;
+	protected double radiansPerUnit;
+
+	/**
+	 * A PID controller that also predicts the output the mechanism needs.
+	 *
+	 * @param P
+	 *        Initial P constant
+	 * @param I
+	 *        Initial I constant
+	 * @param D
+	 *        Initial D constant
+	 * @param kS
+	 *        Output needed to overcome static friction
+	 * @param kV
+	 *        Output per unit of velocity
+	 * @param kA
+	 *        Output per unit of acceleration
+	 * @param sensor
+	 *        The sensor linked to the output
+	 */
+	public FeedforwardPIDController(double P, double I, double D, double kS, double kV, double kA, PIDSensor sensor) {
+		super(P, I, D, sensor);
+		this.kS = kS;
+		this.kV = kV;
+		this.kA = kA;
+		kG = 0.0;
+		arm = false;
+		horizontalPosition = 0.0;
+		radiansPerUnit = 1.0;
+	}
+
+	/**
+	 * A PID controller that also predicts the output the mechanism needs.
+	 *
+	 * @param P
+	 *        Initial P constant
+	 * @param I
+	 *        Initial I constant
+	 * @param D
+	 *        Initial D constant
+	 * @param kS
+	 *        Output needed to overcome static friction
+	 * @param kV
+	 *        Output per unit of velocity
+	 * @param kA
+	 *        Output per unit of acceleration
+	 * @param source
+	 *        The sensor linked to the output
+	 */
+	public FeedforwardPIDController(double P, double I, double D, double kS, double kV, double kA, PIDSource source) {
+		this(P, I, D, kS, kV, kA, new PIDSensor.PIDSourceWrapper(source));
+	}
+
+	/**
+	 * A PID controller that also predicts the output the mechanism needs.
+	 *
+	 * @param P
+	 *        Initial P constant
+	 * @param I
+	 *        Initial I constant
+	 * @param D
+	 *        Initial D constant
+	 * @param sensor
+	 *        The sensor linked to the output
+	 */
+	public FeedforwardPIDController(double P, double I, double D, PIDSensor sensor) {
+		this(P, I, D, 0, 0, 0, sensor);
+	}
+
+	/**
+	 * Sets the mechanism model.
+	 *
+	 * @param kS
+	 *        Output needed to overcome static friction
+	 * @param kV
+	 *        Output per unit of velocity
+	 * @param kA
+	 *        Output per unit of acceleration
+	 */
+	public void setFeedforward(double kS, double kV, double kA) {
+		this.kS = kS;
+		this.kV = kV;
+		this.kA = kA;
+	}
+
+	/**
+	 * Adds a constant output to hold up an elevator.
+	 *
+	 * @param kG
+	 *        Output needed to hold the elevator still
+	 */
+	public void setElevatorGravity(double kG) {
+		this.kG = kG;
+		arm = false;
+	}
+
+	/**
+	 * Adds an output to hold up an arm, strongest when the arm is horizontal.
+	 * Only used for position loops.
+	 *
+	 * @param kG
+	 *        Output needed to hold the arm still when horizontal
+	 * @param horizontalPosition
+	 *        The sensor reading when the arm is horizontal
+	 * @param radiansPerUnit
+	 *        Radians the arm turns per unit of sensor reading
+	 */
+	public void setArmGravity(double kG, double horizontalPosition, double radiansPerUnit) {
+		this.kG = kG;
+		this.horizontalPosition = horizontalPosition;
+		this.radiansPerUnit = radiansPerUnit;
+		arm = true;
+	}
+
+	public double getKS() {
+		return kS;
+	}
+
+	public double getKV() {
+		return kV;
+	}
+
+	public double getKA() {
+		return kA;
+	}
+
+	public double getKG() {
+		return kG;
+	}
+
+	/**
+	 * The output the model predicts, plus F times the setpoint.
+	 */
+	@Override
+	protected double feedForward() {
+		double velocity;
+		double acceleration;
+		double gravity;
+		if (sensor.getPIDSourceType() == PIDSourceType.kRate) {
+			velocity = setpoint;
+			acceleration = setpointVelocity;
+			gravity = arm ? 0.0 : kG;
+		} else {
+			velocity = setpointVelocity;
+			acceleration = setpointAcceleration;
+			gravity = arm ? kG * Math.cos((setpoint - horizontalPosition) * radiansPerUnit) : kG;
+		}
+		return kS * Math.signum(velocity) + kV * velocity + kA * acceleration + gravity + super.feedForward();
+	}
+}
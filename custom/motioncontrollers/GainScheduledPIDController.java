@@ -0,0 +1,198 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers;
+
+
+import java.util.function.DoubleSupplier;
+import org.usfirst.frc4904.standard.custom.sensors.InvalidSensorException;
+import org.usfirst.frc4904.standard.custom.sensors.PIDSensor;
+import edu.wpi.first.wpilibj.util.BoundaryException;
+
+/**
+ * A PID controller whose gains change with the mechanism's state, such as
+ * an arm whose load changes with its angle, or a drivetrain in high or low gear.
+ * <p>
+ * Gains come from a table of points sorted by a scheduling variable
+ * (the setpoint by default). Every tick, the variable is found in the table by
+ * binary search and the gains are interpolated linearly between the two nearest
+ * points (or held at the first or last point outside the table). Nothing is allocated.
+ * <p>
+ * Gain changes are bumpless: when I changes, the error sum is rescaled so the
+ * I term's output stays where it was, rather than jumping with the new gain.
+ * <p>
+ * To schedule by shift state:
+ *
+ * <pre>
+ * controller.scheduleBy(() -&gt; shifters.getShiftState() == ShiftState.UP ? 1 : 0);
+ * </pre>
+ *
+ * with a table at 0 (low gear) and 1 (high gear).
+ *
+ */
+public class GainScheduledPIDController extends CustomPIDController {
+	protected final double[] points;
+	protected final double[] Ps;
+	protected final double[] Is;
+	protected final double[] Ds;
+	protected final double[] Fs;
+	protected DoubleSupplier scheduler;
+	protected boolean scheduleByMeasurement;
+	protected double scheduleValue;
+
+	/**
+	 * A PID controller whose gains change with the mechanism's state.
+	 * Each gain array has one entry per point.
+	 *
+	 * @param points
+	 *        Values of the scheduling variable, in increasing order
+	 * @param P
+	 *        P at each point
+	 * @param I
+	 *        I at each point
+	 * @param D
+	 *        D at each point
+	 * @param F
+	 *        F at each point
+	 * @param sensor
+	 *        The sensor linked to the output
+	 */
+	public GainScheduledPIDController(double[] points, double[] P, double[] I, double[] D, double[] F, PIDSensor sensor) {
+		super(sensor);
+		if (points.length == 0 || P.length != points.length || I.length != points.length || D.length != points.length
+			|| F.length != points.length) {
+			throw new BoundaryException("Gain table must have one P, I, D and F per point");
+		}
+		for (int i = 1; i < points.length; i++) {
+			if (points[i] <= points[i - 1]) {
+				throw new BoundaryException("Gain table points must be increasing");
+			}
+		}
+		this.points = points.clone();
+		Ps = P.clone();
+		Is = I.clone();
+		Ds = D.clone();
+		Fs = F.clone();
+		scheduler = null;
+		scheduleByMeasurement = false;
+		schedule(points[0]);
+	}
+
+	/**
+	 * A PID controller whose gains change with the mechanism's state (without F).
+	 *
+	 * @param points
+	 *        Values of the scheduling variable, in increasing order
+	 * @param P
+	 *        P at each point
+	 * @param I
+	 *        I at each point
+	 * @param D
+	 *        D at each point
+	 * @param sensor
+	 *        The sensor linked to the output
+	 */
+	public GainScheduledPIDController(double[] points, double[] P, double[] I, double[] D, PIDSensor sensor) {
+		this(points, P, I, D, new double[points.length], sensor);
+	}
+
+	/**
+	 * Schedules gains by the setpoint (the default).
+	 */
+	public void scheduleBySetpoint() {
+		scheduler = null;
+		scheduleByMeasurement = false;
+	}
+
+	/**
+	 * Schedules gains by the sensor's reading.
+	 */
+	public void scheduleByMeasurement() {
+		scheduler = null;
+		scheduleByMeasurement = true;
+	}
+
+	/**
+	 * Schedules gains by any variable, such as shift state or battery voltage.
+	 * The supplier is called once per tick on the MotionControllerExecutor thread,
+	 * so it should be quick and must not allocate.
+	 *
+	 * @param scheduler
+	 */
+	public void scheduleBy(DoubleSupplier scheduler) {
+		this.scheduler = scheduler;
+		scheduleByMeasurement = false;
+	}
+
+	/**
+	 * @return the scheduling variable the current gains were looked up with
+	 */
+	public double getScheduleValue() {
+		return scheduleValue;
+	}
+
+	/**
+	 * Looks up and switches to the gains for a value of the scheduling variable.
+	 *
+	 * @param value
+	 */
+	public void schedule(double value) {
+		scheduleValue = value;
+		int last = points.length - 1;
+		double newP;
+		double newI;
+		double newD;
+		double newF;
+		if (value <= points[0]) {
+			newP = Ps[0];
+			newI = Is[0];
+			newD = Ds[0];
+			newF = Fs[0];
+		} else if (value >= points[last]) {
+			newP = Ps[last];
+			newI = Is[last];
+			newD = Ds[last];
+			newF = Fs[last];
+		} else {
+			// Find the last point at or below the value
+			int low = 0;
+			int high = last;
+			while (high - low > 1) {
+				int middle = (low + high) >>> 1;
+				if (points[middle] <= value) {
+					low = middle;
+				} else {
+					high = middle;
+				}
+			}
+			double fraction = (value - points[low]) / (points[high] - points[low]);
+			newP = Ps[low] + fraction * (Ps[high] - Ps[low]);
+			newI = Is[low] + fraction * (Is[high] - Is[low]);
+			newD = Ds[low] + fraction * (Ds[high] - Ds[low]);
+			newF = Fs[low] + fraction * (Fs[high] - Fs[low]);
+		}
+		if (newI != I) {
+			// Keep the I term's output the same, so the output does not jump
+			totalError = newI == 0 ? 0.0 : totalError * I / newI;
+		}
+		P = newP;
+		I = newI;
+		D = newD;
+		F = newF;
+	}
+
+	/**
+	 * Schedules the gains, then calculates like a CustomPIDController.
+	 * Gains set with setPID or setPIDF are replaced every tick.
+	 */
+	@Override
+	public double getSafely() throws InvalidSensorException {
+		if (isEnabled()) {
+			if (scheduler != null) {
+				schedule(scheduler.getAsDouble());
+			} else if (scheduleByMeasurement) {
+				schedule(sensor.pidGet());
+			} else {
+				schedule(setpoint);
+			}
+		}
+		return super.getSafely();
+	}
+}
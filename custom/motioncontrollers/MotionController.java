@@ -1,8 +1,6 @@
 package org.usfirst.frc4904.standard.custom.motioncontrollers;
 
 
-import java.util.Timer;
-import java.util.TimerTask;
 import org.usfirst.frc4904.standard.custom.sensors.InvalidSensorException;
 import org.usfirst.frc4904.standard.custom.sensors.PIDSensor;
 import edu.wpi.first.wpilibj.PIDOutput;
@@ -12,12 +10,14 @@ import edu.wpi.first.wpilibj.util.BoundaryException;
 /**
  * A MotionController modifies an output using a sensor
  * to precisely maintain a certain input.
+ * <p>
+ * Each tick on the {@link MotionControllerExecutor} thread publishes what the controller
+ * saw and did (see {@link #getState(MotionControllerState)}), so commands and dashboards on
+ * other threads read a coherent tick rather than fields the executor is halfway through writing.
  *
  */
 public abstract class MotionController {
 	protected PIDOutput output;
-	protected Timer timer;
-	protected MotionControllerTask task;
 	protected final PIDSensor sensor;
 	protected double setpoint;
 	protected double absoluteTolerance;
@@ -30,6 +30,27 @@ public abstract class MotionController {
 	protected boolean enable;
 	protected boolean overridden;
 	protected Exception sensorException;
+	protected double tickOutput;
+	protected MotionProfile profile;
+	protected long profileStartNanos;
+	protected double setpointVelocity;
+	protected double setpointAcceleration;
+	protected boolean tickCalculated;
+	protected double measurement;
+	// Published with a sequence lock: the sequence is odd while a tick is being published,
+	// so a reader that sees it change (or odd) reads again. Only the executor thread publishes.
+	private volatile long stateSequence;
+	private volatile int stateGeneration; // Changed on reset, so ticks from before are not read as current
+	private volatile int publishedGeneration;
+	private volatile double publishedSetpoint;
+	private volatile double publishedMeasurement;
+	private volatile double publishedError;
+	private volatile double publishedOutput;
+	private volatile long publishedNanos;
+	private volatile boolean publishedSettled;
+	private volatile double publishedTimeToSettle;
+	protected volatile SettleDetector settleDetector;
+	private int settleGeneration; // Only used by the executor thread
 	private volatile boolean justReset;
 	private final Object lock = new Object();
 
@@ -44,8 +65,6 @@ public abstract class MotionController {
 	public MotionController(PIDSensor sensor) {
 		this.sensor = sensor;
 		output = null;
-		timer = new Timer();
-		task = new MotionControllerTask();
 		enable = false;
 		overridden = false;
 		absoluteTolerance = Double.MIN_VALUE; // Nonzero to avoid floating point errors
@@ -55,6 +74,12 @@ public abstract class MotionController {
 		inputMax = 0.0;
 		outputMin = 0.0;
 		outputMax = 0.0;
+		profile = null;
+		setpointVelocity = 0.0;
+		setpointAcceleration = 0.0;
+		measurement = Double.NaN;
+		stateSequence = 0;
+		stateGeneration = 0;
 		reset();
 		justReset = true;
 		sensorException = null;
@@ -92,9 +117,11 @@ public abstract class MotionController {
 	 * @warning this does not indicate sensor errors
 	 */
 	public final void reset() {
+		stopFollowingProfile();
 		resetErrorToZero();
 		setpoint = sensor.pidGet();
 		justReset = true;
+		stateGeneration++;
 	}
 
 	/**
@@ -102,9 +129,22 @@ public abstract class MotionController {
 	 * to a state such that it returns 0.
 	 */
 	public final void resetSafely() throws InvalidSensorException {
+		stopFollowingProfile();
 		resetErrorToZero();
 		setpoint = sensor.pidGetSafely();
 		justReset = true;
+		stateGeneration++;
+	}
+
+	/**
+	 * Clears the accumulated error without moving the setpoint, so the next
+	 * tick only records the starting state, as after a reset.
+	 * Used when the way the error is accumulated changes mid-run.
+	 */
+	protected final void restartTiming() {
+		resetErrorToZero();
+		justReset = true;
+		stateGeneration++;
 	}
 
 	/**
@@ -179,13 +219,94 @@ public abstract class MotionController {
 	/**
 	 * Sets the setpoint of the motion controller.
 	 * This is the value that the motion controller seeks.
+	 * Stops following a profile.
 	 *
 	 * @param setpoint
 	 */
 	public void setSetpoint(double setpoint) {
+		stopFollowingProfile();
 		this.setpoint = setpoint;
 	}
 
+	/**
+	 * Moves the setpoint along a profile, starting now.
+	 * Every tick, the setpoint becomes the profile's position at the
+	 * time since the profile started, until the profile is over.
+	 *
+	 * @param profile
+	 */
+	public void followProfile(MotionProfile profile) {
+		profileStartNanos = getTimeNanos();
+		setpoint = profile.getPosition(0);
+		setpointVelocity = profile.getVelocity(0);
+		setpointAcceleration = profile.getAcceleration(0);
+		this.profile = profile;
+	}
+
+	/**
+	 * Stops moving the setpoint along a profile.
+	 * The setpoint stays where it is.
+	 */
+	public void stopFollowingProfile() {
+		profile = null;
+		setpointVelocity = 0.0;
+		setpointAcceleration = 0.0;
+	}
+
+	/**
+	 * @return whether the setpoint is moving along a profile
+	 */
+	public boolean isFollowingProfile() {
+		return profile != null;
+	}
+
+	/**
+	 * @return true unless the setpoint is partway along a profile
+	 */
+	public boolean isProfileFinished() {
+		MotionProfile current = profile;
+		return current == null || (getTimeNanos() - profileStartNanos) / 1.0e9 >= current.getDuration();
+	}
+
+	/**
+	 * @return how fast the setpoint is moving along a profile (0 when not following one)
+	 */
+	public double getSetpointVelocity() {
+		return setpointVelocity;
+	}
+
+	/**
+	 * @return how fast the setpoint is accelerating along a profile (0 when not following one)
+	 */
+	public double getSetpointAcceleration() {
+		return setpointAcceleration;
+	}
+
+	/**
+	 * Moves the setpoint to where the profile says it should be now.
+	 * Called every tick before calculating.
+	 */
+	protected void updateProfileSetpoint() {
+		MotionProfile current = profile;
+		if (current == null) {
+			return;
+		}
+		double seconds = (getTimeNanos() - profileStartNanos) / 1.0e9;
+		setpoint = current.getPosition(seconds);
+		setpointVelocity = current.getVelocity(seconds);
+		setpointAcceleration = current.getAcceleration(seconds);
+	}
+
+	/**
+	 * The clock the controller is timed with.
+	 * Simulations override this to run faster than real time.
+	 *
+	 * @return a monotonic time in nanoseconds (System.nanoTime() by default)
+	 */
+	protected long getTimeNanos() {
+		return System.nanoTime();
+	}
+
 	public boolean didJustReset() {
 		return justReset;
 	}
@@ -200,6 +321,10 @@ public abstract class MotionController {
 	public void setAbsoluteTolerance(double absoluteTolerance) {
 		if (absoluteTolerance >= 0) {
 			this.absoluteTolerance = absoluteTolerance;
+			SettleDetector detector = settleDetector;
+			if (detector != null) {
+				detector.setCriteria(absoluteTolerance, detector.getRateTolerance(), detector.getSettleSeconds());
+			}
 			return;
 		}
 		throw new BoundaryException("Absolute tolerance negative");
@@ -276,14 +401,11 @@ public abstract class MotionController {
 			return;
 		}
 		enable = true;
-		try {
-			timer.scheduleAtFixedRate(task, 10, 20);
-			justReset = true;
-			// justReset is written to by both the main thread and the Task,
-			// so there is a 10 millisecond delay in the initial execution of
-			// the task, which should reduce blocking
+		if (!MotionControllerExecutor.isRegistered(this)) {
+			justReset = true; // Skip writing the first output, as the controller may have been stopped for a while
+			stateGeneration++;
+			MotionControllerExecutor.register(this);
 		}
-		catch (IllegalStateException e) {} // Do not die if the timer is already running
 	}
 
 	/**
@@ -296,9 +418,8 @@ public abstract class MotionController {
 			return;
 		}
 		enable = false;
-		task.cancel();
-		timer.purge();
-		task = new MotionControllerTask();
+		MotionControllerExecutor.deregister(this);
+		stopFollowingProfile();
 		setpoint = sensor.pidGet();
 	}
 
@@ -351,16 +472,172 @@ public abstract class MotionController {
 		return overridden;
 	}
 
+	/**
+	 * Makes onTarget wait until the mechanism has actually arrived, rather than
+	 * being true as it passes through the setpoint: the error must be within the
+	 * absolute tolerance and changing slower than a rate tolerance, both for a settle time.
+	 * Checked every tick by a {@link SettleDetector}.
+	 *
+	 * @param rateTolerance
+	 *        The fastest the error may change (per second) and still count as stopped
+	 * @param settleSeconds
+	 *        How long the error must stay within both tolerances
+	 */
+	public void setSettleCriteria(double rateTolerance, double settleSeconds) {
+		if (rateTolerance < 0 || settleSeconds < 0) {
+			throw new BoundaryException("Settle criteria negative");
+		}
+		SettleDetector detector = settleDetector;
+		if (detector == null) {
+			settleDetector = new SettleDetector(absoluteTolerance, rateTolerance, settleSeconds);
+		} else {
+			detector.setCriteria(absoluteTolerance, rateTolerance, settleSeconds);
+		}
+	}
+
+	/**
+	 * Makes onTarget only check the error against the absolute tolerance again.
+	 */
+	public void disableSettleCriteria() {
+		settleDetector = null;
+	}
+
+	/**
+	 * @return the settle detector, or null if settle criteria are not set
+	 */
+	public SettleDetector getSettleDetector() {
+		return settleDetector;
+	}
+
 	/**
 	 * True if the error in the motion controller is
-	 * less than the tolerance of the motion controller.
+	 * less than the tolerance of the motion controller
+	 * (and, with settle criteria set, has settled there).
+	 * Uses the latest tick, if one has run since the last reset.
 	 *
 	 * @return
 	 */
 	public boolean onTarget() {
-		return Math.abs(getError()) <= absoluteTolerance;
+		while (true) {
+			long sequence = stateSequence;
+			if ((sequence & 1) != 0) {
+				continue; // A tick is being published
+			}
+			int generation = publishedGeneration;
+			double error = publishedError;
+			boolean settled = publishedSettled;
+			if (stateSequence != sequence) {
+				continue;
+			}
+			boolean settling = settleDetector != null;
+			if (sequence != 0 && generation == stateGeneration) {
+				return settling ? settled : Math.abs(error) <= absoluteTolerance;
+			}
+			return !settling && Math.abs(getError()) <= absoluteTolerance;
+		}
+	}
+
+	/**
+	 * @return seconds from the first tick after the last reset until the mechanism settled,
+	 *         or NaN if it has not (or settle criteria are not set)
+	 */
+	public double getTimeToSettle() {
+		int generation = stateGeneration;
+		double timeToSettle = publishedTimeToSettle;
+		return stateSequence != 0 && publishedGeneration == generation ? timeToSettle : Double.NaN;
+	}
+
+	/**
+	 * Reads what the controller saw and did on its latest tick, without locking.
+	 * The values are all from the same tick, even while the executor is running the next one.
+	 *
+	 * @param state
+	 *        Filled in with the latest tick
+	 * @return false (leaving the state as it was) if no tick has run since the controller was last reset or enabled
+	 */
+	public boolean getState(MotionControllerState state) {
+		while (true) {
+			long sequence = stateSequence;
+			if ((sequence & 1) != 0) {
+				continue; // A tick is being published
+			}
+			int generation = publishedGeneration;
+			double setpoint = publishedSetpoint;
+			double measurement = publishedMeasurement;
+			double error = publishedError;
+			double output = publishedOutput;
+			long nanos = publishedNanos;
+			boolean settled = publishedSettled;
+			double timeToSettle = publishedTimeToSettle;
+			if (stateSequence != sequence) {
+				continue; // A tick was published while reading
+			}
+			if (sequence == 0 || generation != stateGeneration) {
+				return false;
+			}
+			state.setpoint = setpoint;
+			state.measurement = measurement;
+			state.error = error;
+			state.output = output;
+			state.nanos = nanos;
+			state.settled = settled;
+			state.timeToSettle = timeToSettle;
+			state.sequence = sequence / 2;
+			return true;
+		}
+	}
+
+	/**
+	 * Publishes this tick for {@link #getState(MotionControllerState)}.
+	 * Called only by the {@link MotionControllerExecutor} thread.
+	 *
+	 * @param generation
+	 *        The reset generation when the tick started
+	 */
+	void publishState(int generation) {
+		double error = getError();
+		long nanos = getTimeNanos();
+		boolean settled = false;
+		double timeToSettle = Double.NaN;
+		SettleDetector detector = settleDetector;
+		if (detector != null) {
+			if (generation != settleGeneration) {
+				detector.reset(); // A new move
+				settleGeneration = generation;
+			}
+			settled = detector.update(error, nanos);
+			timeToSettle = detector.getTimeToSettle();
+		}
+		long sequence = stateSequence;
+		stateSequence = sequence + 1;
+		publishedGeneration = generation;
+		publishedSetpoint = setpoint;
+		publishedMeasurement = measurement;
+		publishedError = error;
+		publishedOutput = tickOutput;
+		publishedNanos = nanos;
+		publishedSettled = settled;
+		publishedTimeToSettle = timeToSettle;
+		stateSequence = sequence + 2;
 	}
 
+	/**
+	 * Publishes the latest calculation of a loop run inside another controller's tick.
+	 *
+	 * @param output
+	 *        What the loop calculated
+	 */
+	void publishNestedState(double output) {
+		tickOutput = output;
+		publishState(stateGeneration);
+	}
+
+	/**
+	 * Publishes the states of any loops this controller runs inside its tick.
+	 * Called by the {@link MotionControllerExecutor} thread after this controller's state is published.
+	 */
+	void publishNestedStates() {}
+
 	/**
 	 * Check if the motion controller has generated
 	 * an exception within the TimerTask. If there is
@@ -373,28 +650,67 @@ public abstract class MotionController {
 	}
 
 	/**
-	 * The thread in which the output is updated with the
-	 * results of the motion controller calculation.
+	 * Calculates this controller's output as one loop inside another controller's tick
+	 * (see {@link CascadeController}), rather than on its own.
+	 * Like a tick, the first calculation after a reset only records the starting state.
 	 *
+	 * @param afterReset
+	 *        Whether the controller running this one just reset (or was just enabled)
 	 */
-	protected class MotionControllerTask extends TimerTask {
-		@Override
-		public void run() {
-			try {
-				double value = getSafely(); // Always calculate MC output
-				synchronized (lock) {
-					if (justReset) {
-						justReset = false;
-						return;
-					}
-				}
-				if (output != null && isEnabled()) {
-					output.pidWrite(value);
+	double calculateNested(boolean afterReset) throws InvalidSensorException {
+		if (afterReset) {
+			synchronized (lock) {
+				justReset = true;
+			}
+		}
+		double result = getSafely();
+		synchronized (lock) {
+			justReset = false;
+		}
+		return result;
+	}
+
+	/**
+	 * Calculates this controller's output for the current tick.
+	 * Called by the {@link MotionControllerExecutor} thread.
+	 */
+	void calculateTick() {
+		tickCalculated = false;
+		try {
+			int generation = stateGeneration;
+			updateProfileSetpoint();
+			tickOutput = getSafely(); // Always calculate MC output
+			publishState(generation);
+			publishNestedStates();
+			synchronized (lock) {
+				if (justReset) {
+					justReset = false;
+					return;
 				}
 			}
-			catch (Exception e) {
-				sensorException = e;
+			tickCalculated = true;
+		}
+		catch (Exception e) {
+			sensorException = e;
+		}
+	}
+
+	/**
+	 * Writes the output calculated this tick, once every controller's output has been calculated.
+	 * Called by the {@link MotionControllerExecutor} thread.
+	 */
+	void writeTick() {
+		if (!tickCalculated) {
+			return;
+		}
+		tickCalculated = false;
+		try {
+			if (output != null && isEnabled()) {
+				output.pidWrite(tickOutput);
 			}
 		}
+		catch (Exception e) {
+			sensorException = e;
+		}
 	}
 }
@@ -0,0 +1,202 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers;
+
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs every enabled MotionController on one shared, high priority thread.
+ * <p>
+ * Each tick first calculates every controller's output and then writes
+ * every output, so all mechanisms see outputs from the same instant.
+ * Ticks are kept on a fixed phase: a tick that runs long does not shift
+ * later ticks, and any ticks it runs past are skipped (and counted)
+ * rather than run back to back.
+ * <p>
+ * Controllers register themselves when enabled and deregister when disabled.
+ *
+ */
+public class MotionControllerExecutor {
+	public static final double DEFAULT_PERIOD_MILLIS = 20.0;
+	public static final int DEFAULT_PRIORITY = Thread.MAX_PRIORITY;
+	private static final CopyOnWriteArrayList<MotionController> CONTROLLERS = new CopyOnWriteArrayList<MotionController>();
+	private static volatile long periodNanos = (long) (MotionControllerExecutor.DEFAULT_PERIOD_MILLIS * 1.0e6);
+	private static volatile int priority = MotionControllerExecutor.DEFAULT_PRIORITY;
+	private static volatile long ticks = 0;
+	private static volatile long overruns = 0;
+	private static volatile long skippedTicks = 0;
+	private static volatile long maxTickNanos = 0;
+	private static volatile boolean manual = false;
+	private static Thread thread = null;
+
+	/**
+	 * Adds a controller to every tick, starting the executor thread the first time.
+	 *
+	 * @param controller
+	 */
+	public static void register(MotionController controller) {
+		MotionControllerExecutor.CONTROLLERS.addIfAbsent(controller);
+		if (!MotionControllerExecutor.manual) {
+			MotionControllerExecutor.start();
+		}
+	}
+
+	/**
+	 * Removes a controller from every tick.
+	 * The controller may still finish a tick that had already started.
+	 *
+	 * @param controller
+	 */
+	public static void deregister(MotionController controller) {
+		MotionControllerExecutor.CONTROLLERS.remove(controller);
+	}
+
+	/**
+	 * @param controller
+	 * @return whether a controller is run every tick
+	 */
+	public static boolean isRegistered(MotionController controller) {
+		return MotionControllerExecutor.CONTROLLERS.contains(controller);
+	}
+
+	/**
+	 * Sets how often every controller runs.
+	 *
+	 * @param periodMillis
+	 *        The time between ticks in milliseconds (20 by default)
+	 */
+	public static void setPeriod(double periodMillis) {
+		if (periodMillis <= 0) {
+			throw new IllegalArgumentException("MotionControllerExecutor period must be positive");
+		}
+		MotionControllerExecutor.periodNanos = (long) (periodMillis * 1.0e6);
+	}
+
+	/**
+	 * @return the time between ticks in milliseconds
+	 */
+	public static double getPeriod() {
+		return MotionControllerExecutor.periodNanos / 1.0e6;
+	}
+
+	/**
+	 * Sets the priority of the executor thread.
+	 *
+	 * @param priority
+	 *        Between Thread.MIN_PRIORITY and Thread.MAX_PRIORITY (MAX_PRIORITY by default)
+	 */
+	public static synchronized void setPriority(int priority) {
+		MotionControllerExecutor.priority = priority;
+		if (MotionControllerExecutor.thread != null) {
+			MotionControllerExecutor.thread.setPriority(priority);
+		}
+	}
+
+	/**
+	 * Stops (or resumes) ticking on the executor thread, so that a simulation can
+	 * run ticks itself with {@link #tickManually()} at its own simulated rate.
+	 *
+	 * @param manual
+	 */
+	public static void setManual(boolean manual) {
+		MotionControllerExecutor.manual = manual;
+		if (!manual && !MotionControllerExecutor.CONTROLLERS.isEmpty()) {
+			MotionControllerExecutor.start();
+		}
+	}
+
+	/**
+	 * Runs one tick of every registered controller on the calling thread.
+	 * Only call this after {@link #setManual(boolean) setManual(true)}.
+	 */
+	public static void tickManually() {
+		MotionControllerExecutor.tick();
+	}
+
+	/**
+	 * @return the number of ticks run
+	 */
+	public static long getTickCount() {
+		return MotionControllerExecutor.ticks;
+	}
+
+	/**
+	 * @return the number of ticks that took longer than the period
+	 */
+	public static long getOverrunCount() {
+		return MotionControllerExecutor.overruns;
+	}
+
+	/**
+	 * @return the number of ticks skipped because an earlier tick ran past them
+	 */
+	public static long getSkippedTickCount() {
+		return MotionControllerExecutor.skippedTicks;
+	}
+
+	/**
+	 * @return the longest tick in nanoseconds
+	 */
+	public static long getMaxTickNanos() {
+		return MotionControllerExecutor.maxTickNanos;
+	}
+
+	/**
+	 * Forgets the tick and overrun counts.
+	 */
+	public static void resetCounts() {
+		MotionControllerExecutor.ticks = 0;
+		MotionControllerExecutor.overruns = 0;
+		MotionControllerExecutor.skippedTicks = 0;
+		MotionControllerExecutor.maxTickNanos = 0;
+	}
+
+	private static synchronized void start() {
+		if (MotionControllerExecutor.thread != null) {
+			return;
+		}
+		MotionControllerExecutor.thread = new Thread(MotionControllerExecutor::run, "MotionControllerExecutor");
+		MotionControllerExecutor.thread.setDaemon(true);
+		MotionControllerExecutor.thread.setPriority(MotionControllerExecutor.priority);
+		MotionControllerExecutor.thread.start();
+	}
+
+	private static void run() {
+		long deadline = System.nanoTime();
+		while (true) {
+			long period = MotionControllerExecutor.periodNanos;
+			deadline += period;
+			long now;
+			while ((now = System.nanoTime()) < deadline) {
+				LockSupport.parkNanos(deadline - now);
+			}
+			if (MotionControllerExecutor.manual) {
+				continue;
+			}
+			MotionControllerExecutor.tick();
+			long tick = System.nanoTime() - now;
+			MotionControllerExecutor.ticks++;
+			if (tick > MotionControllerExecutor.maxTickNanos) {
+				MotionControllerExecutor.maxTickNanos = tick;
+			}
+			if (tick > period) {
+				MotionControllerExecutor.overruns++;
+			}
+			long late = System.nanoTime() - deadline;
+			if (late >= period) {
+				long skipped = late / period;
+				MotionControllerExecutor.skippedTicks += skipped;
+				deadline += skipped * period; // Stay on phase instead of running the missed ticks back to back
+			}
+		}
+	}
+
+	private static void tick() {
+		for (MotionController controller : MotionControllerExecutor.CONTROLLERS) {
+			controller.calculateTick();
+		}
+		for (MotionController controller : MotionControllerExecutor.CONTROLLERS) {
+			controller.writeTick();
+		}
+	}
+}
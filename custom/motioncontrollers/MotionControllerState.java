@@ -0,0 +1,78 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers;
+
+
+/**
+ * What a MotionController saw and did on one tick: the setpoint, the sensor
+ * reading, the error and the output, all from the same tick.
+ * <p>
+ * Filled in by {@link MotionController#getState(MotionControllerState)}. Readers keep
+ * one of these and refill it each time, so reading does not allocate.
+ *
+ */
+public class MotionControllerState {
+	protected double setpoint;
+	protected double measurement;
+	protected double error;
+	protected double output;
+	protected long nanos;
+	protected boolean settled;
+	protected double timeToSettle;
+	protected long sequence;
+
+	public double getSetpoint() {
+		return setpoint;
+	}
+
+	/**
+	 * @return the sensor reading (NaN if the controller does not report one)
+	 */
+	public double getMeasurement() {
+		return measurement;
+	}
+
+	public double getError() {
+		return error;
+	}
+
+	/**
+	 * @return the output calculated (not written on the first tick after a reset)
+	 */
+	public double getOutput() {
+		return output;
+	}
+
+	/**
+	 * @return when the tick ran, on the controller's clock (System.nanoTime() by default)
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * @return whether the controller's settle criteria were met (false if none are set)
+	 */
+	public boolean isSettled() {
+		return settled;
+	}
+
+	/**
+	 * @return seconds from the first tick after the last reset until the mechanism settled, or NaN
+	 */
+	public double getTimeToSettle() {
+		return timeToSettle;
+	}
+
+	/**
+	 * @return how many ticks the controller had published, counting this one
+	 *         (if it is the same as last read, no tick has run since)
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	@Override
+	public String toString() {
+		return "#" + sequence + " at " + nanos + "ns: setpoint " + setpoint + ", measurement " + measurement + ", error "
+			+ error + ", output " + output;
+	}
+}
@@ -0,0 +1,36 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers;
+
+
+/**
+ * A planned move, giving the position, velocity and acceleration
+ * a mechanism should have at each time since the move started.
+ * MotionControllers follow profiles with {@link MotionController#followProfile(MotionProfile)}.
+ *
+ */
+public interface MotionProfile {
+	/**
+	 * @return how long the move takes, in seconds
+	 */
+	public double getDuration();
+
+	/**
+	 * @param seconds
+	 *        Time since the move started
+	 * @return where the mechanism should be (the end position after the move is over)
+	 */
+	public double getPosition(double seconds);
+
+	/**
+	 * @param seconds
+	 *        Time since the move started
+	 * @return how fast the mechanism should be moving (0 after the move is over)
+	 */
+	public double getVelocity(double seconds);
+
+	/**
+	 * @param seconds
+	 *        Time since the move started
+	 * @return how fast the mechanism should be accelerating (0 after the move is over)
+	 */
+	public double getAcceleration(double seconds);
+}
@@ -0,0 +1,249 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers;
+
+
+/**
+ * Finds PID gains with a relay (bang-bang) experiment.
+ * <p>
+ * The output is switched between bias + amplitude and bias - amplitude whenever the
+ * measurement crosses the setpoint (with some hysteresis), which makes the mechanism
+ * oscillate at its ultimate period. From the size of the oscillation, the ultimate gain
+ * (the P at which a P controller would oscillate) is 4 * amplitude / (pi * oscillation).
+ * Tuning rules turn the ultimate gain and period into PID gains.
+ * <p>
+ * The tuner is plain math fed one measurement at a time, so it runs the same against
+ * a robot (see the AutoTune command) or a simulation. It does not allocate while running.
+ *
+ */
+public class RelayAutoTuner {
+	public static final int DEFAULT_CYCLES = 4;
+	public static final int MAX_CYCLES = 32;
+
+	/**
+	 * Rules for turning the ultimate gain and period into gains. Each is
+	 * P = kp * Ku, integral time = ti * Tu and derivative time = td * Tu.
+	 */
+	public static enum Rule {
+		/**
+		 * Fast, with some overshoot.
+		 */
+		ZIEGLER_NICHOLS(0.6, 0.5, 0.125),
+		/**
+		 * Ziegler-Nichols without D, for noisy sensors.
+		 */
+		ZIEGLER_NICHOLS_PI(0.45, 1 / 1.2, 0.0),
+		/**
+		 * Slower and more robust than Ziegler-Nichols, with less overshoot.
+		 */
+		TYREUS_LUYBEN(1 / 2.2, 2.2, 1 / 6.3),
+		/**
+		 * Tyreus-Luyben without D.
+		 */
+		TYREUS_LUYBEN_PI(1 / 3.2, 2.2, 0.0),
+		/**
+		 * Ziegler-Nichols softened to (mostly) avoid overshoot.
+		 */
+		NO_OVERSHOOT(0.2, 0.5, 1 / 3.0);
+		public final double kp;
+		public final double ti;
+		public final double td;
+
+		private Rule(double kp, double ti, double td) {
+			this.kp = kp;
+			this.ti = ti;
+			this.td = td;
+		}
+	}
+
+	protected final double setpoint;
+	protected final double amplitude;
+	protected final double bias;
+	protected final double hysteresis;
+	protected final int cycles;
+	protected final double[] periods;
+	protected final double[] oscillations;
+	protected int measured;
+	protected boolean started;
+	protected boolean high;
+	protected long lastRiseNanos;
+	protected double max;
+	protected double min;
+	protected double ultimateGain;
+	protected double ultimatePeriod;
+
+	/**
+	 * Finds PID gains with a relay experiment.
+	 *
+	 * @param setpoint
+	 *        The measurement to oscillate around
+	 * @param amplitude
+	 *        How far the output swings above and below the bias
+	 * @param bias
+	 *        The output in the middle of the swing (such as the output that holds up an arm)
+	 * @param hysteresis
+	 *        How far past the setpoint the measurement must go before the output switches
+	 *        (a little more than the sensor noise)
+	 * @param cycles
+	 *        How many oscillations to average, after the first (at most {@link #MAX_CYCLES})
+	 */
+	public RelayAutoTuner(double setpoint, double amplitude, double bias, double hysteresis, int cycles) {
+		if (amplitude <= 0 || hysteresis < 0 || cycles < 1 || cycles > RelayAutoTuner.MAX_CYCLES) {
+			throw new IllegalArgumentException("RelayAutoTuner needs a positive amplitude and 1 to "
+				+ RelayAutoTuner.MAX_CYCLES + " cycles");
+		}
+		this.setpoint = setpoint;
+		this.amplitude = amplitude;
+		this.bias = bias;
+		this.hysteresis = hysteresis;
+		this.cycles = cycles;
+		periods = new double[cycles];
+		oscillations = new double[cycles];
+		reset();
+	}
+
+	/**
+	 * Finds PID gains with a relay experiment, with no bias and {@link #DEFAULT_CYCLES} cycles.
+	 *
+	 * @param setpoint
+	 *        The measurement to oscillate around
+	 * @param amplitude
+	 *        How far the output swings above and below zero
+	 * @param hysteresis
+	 *        How far past the setpoint the measurement must go before the output switches
+	 */
+	public RelayAutoTuner(double setpoint, double amplitude, double hysteresis) {
+		this(setpoint, amplitude, 0.0, hysteresis, RelayAutoTuner.DEFAULT_CYCLES);
+	}
+
+	/**
+	 * Starts the experiment over.
+	 */
+	public void reset() {
+		measured = -1; // The first oscillation is still settling, so it is not measured
+		started = false;
+		high = true;
+		lastRiseNanos = 0;
+		max = Double.NEGATIVE_INFINITY;
+		min = Double.POSITIVE_INFINITY;
+		ultimateGain = Double.NaN;
+		ultimatePeriod = Double.NaN;
+	}
+
+	/**
+	 * Feeds the tuner a measurement.
+	 *
+	 * @param measurement
+	 *        The sensor reading
+	 * @param nanos
+	 *        When it was read (such as System.nanoTime())
+	 * @return the output to apply until the next measurement (the bias once finished)
+	 */
+	public double update(double measurement, long nanos) {
+		if (isFinished()) {
+			return bias;
+		}
+		if (!started) {
+			started = true;
+			high = measurement < setpoint;
+		}
+		max = Math.max(max, measurement);
+		min = Math.min(min, measurement);
+		double error = setpoint - measurement;
+		if (high && error < -hysteresis) {
+			high = false;
+		} else if (!high && error > hysteresis) {
+			high = true;
+			// A full oscillation ends each time the output switches high
+			if (measured >= 0) {
+				periods[measured] = (nanos - lastRiseNanos) / 1.0e9;
+				oscillations[measured] = (max - min) / 2;
+			}
+			measured++;
+			lastRiseNanos = nanos;
+			max = measurement;
+			min = measurement;
+			if (measured == cycles) {
+				finish();
+				return bias;
+			}
+		}
+		return high ? bias + amplitude : bias - amplitude;
+	}
+
+	protected void finish() {
+		double period = 0.0;
+		double oscillation = 0.0;
+		for (int i = 0; i < cycles; i++) {
+			period += periods[i];
+			oscillation += oscillations[i];
+		}
+		ultimatePeriod = period / cycles;
+		oscillation /= cycles;
+		// Hysteresis delays each switch; correct for it (describing function of a relay with hysteresis)
+		double effective = Math.sqrt(Math.max(oscillation * oscillation - hysteresis * hysteresis,
+			oscillation * oscillation * 0.01));
+		ultimateGain = 4 * amplitude / (Math.PI * effective);
+	}
+
+	/**
+	 * @return whether enough oscillations have been measured
+	 */
+	public boolean isFinished() {
+		return measured >= cycles;
+	}
+
+	/**
+	 * @return the P at which a P controller would oscillate (NaN until finished)
+	 */
+	public double getUltimateGain() {
+		return ultimateGain;
+	}
+
+	/**
+	 * @return the period of that oscillation in seconds (NaN until finished)
+	 */
+	public double getUltimatePeriod() {
+		return ultimatePeriod;
+	}
+
+	/**
+	 * Gains from the ultimate gain and period, with I and D per second
+	 * (as {@link CustomPIDController#setHighRate(boolean) high-rate} CustomPIDControllers use).
+	 *
+	 * @param rule
+	 * @return {P, I, D}
+	 */
+	public double[] getGains(Rule rule) {
+		return RelayAutoTuner.getGains(rule, ultimateGain, ultimatePeriod);
+	}
+
+	/**
+	 * Gains from an ultimate gain and period, with I and D per second.
+	 *
+	 * @param rule
+	 * @param ultimateGain
+	 * @param ultimatePeriod
+	 *        In seconds
+	 * @return {P, I, D}
+	 */
+	public static double[] getGains(Rule rule, double ultimateGain, double ultimatePeriod) {
+		double P = rule.kp * ultimateGain;
+		double I = P / (rule.ti * ultimatePeriod);
+		double D = P * rule.td * ultimatePeriod;
+		return new double[] {P, I, D};
+	}
+
+	/**
+	 * Sets a controller's gains, in whichever units its timing uses.
+	 *
+	 * @param controller
+	 * @param gains
+	 *        {P, I, D} with I and D per second
+	 */
+	public static void apply(CustomPIDController controller, double[] gains) {
+		if (controller.isHighRate()) {
+			controller.setPID(gains[0], gains[1], gains[2]);
+		} else {
+			controller.setPID(gains[0], gains[1] / 1000.0, gains[2] * 1000.0);
+		}
+	}
+}
@@ -0,0 +1,302 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers;
+
+
+/**
+ * A jerk-limited ("S-curve") move: acceleration ramps up and down at a limited
+ * rate instead of stepping, which excites much less oscillation in arms and
+ * elevators than a trapezoidal profile.
+ * <p>
+ * The move has up to seven phases (jerk up, constant acceleration, jerk down,
+ * cruise, and the same three to slow down). Their lengths are solved in closed form
+ * (Biagiotti and Melchiorri's double S trajectory), and positions are evaluated from
+ * the phase polynomials, so nothing is sampled or stored per tick.
+ * <p>
+ * A move may start while already moving, so a profile can be regenerated
+ * mid-motion when the target changes:
+ *
+ * <pre>
+ * controller.followProfile(new SCurveProfile(controller.getSetpoint(), newTarget,
+ * 	controller.getSetpointVelocity(), maxVelocity, maxAcceleration, maxJerk));
+ * </pre>
+ *
+ * The new move starts with zero acceleration, so regenerating while accelerating
+ * steps the acceleration once. If the mechanism is moving too fast to stop at the
+ * target, it stops past the target and comes back.
+ *
+ */
+public class SCurveProfile implements MotionProfile {
+	protected static final double ACCELERATION_SHRINK = 0.99;
+	protected static final int MAX_SHRINKS = 1000;
+	protected final double start;
+	protected final double end;
+	protected final double direction;
+	protected final double startVelocity;
+	protected final double maxJerk;
+	protected double accelerationTime;
+	protected double accelerationJerkTime;
+	protected double cruiseTime;
+	protected double decelerationTime;
+	protected double decelerationJerkTime;
+	protected double cruiseVelocity;
+	protected double duration;
+	protected SCurveProfile next; // The move back, if the mechanism had to stop past the target
+
+	/**
+	 * A jerk-limited move.
+	 *
+	 * @param start
+	 *        Where the move starts
+	 * @param end
+	 *        Where the move ends (at rest)
+	 * @param startVelocity
+	 *        How fast the mechanism is already moving (position units per second)
+	 * @param maxVelocity
+	 *        The fastest the mechanism may move (position units per second)
+	 * @param maxAcceleration
+	 *        The fastest the mechanism may speed up or slow down (position units per second squared)
+	 * @param maxJerk
+	 *        The fastest the acceleration may change (position units per second cubed)
+	 */
+	public SCurveProfile(double start, double end, double startVelocity, double maxVelocity, double maxAcceleration,
+		double maxJerk) {
+		if (maxVelocity <= 0 || maxAcceleration <= 0 || maxJerk <= 0) {
+			throw new IllegalArgumentException("SCurveProfile limits must be positive");
+		}
+		this.start = start;
+		this.maxJerk = maxJerk;
+		next = null;
+		// Solve the move in the positive direction and flip it back when evaluating
+		double direction = end >= start ? 1.0 : -1.0;
+		if (end == start && startVelocity != 0) {
+			direction = Math.signum(startVelocity);
+		}
+		double distance = direction * (end - start);
+		double velocity = direction * startVelocity;
+		// Stopping from the starting velocity takes a fixed distance; if the target is closer than that, stop past it
+		double stopJerkTime = Math.min(Math.sqrt(Math.abs(velocity) / maxJerk), maxAcceleration / maxJerk);
+		double stopTime = stopJerkTime == maxAcceleration / maxJerk ? stopJerkTime + Math.abs(velocity) / maxAcceleration
+			: 2 * stopJerkTime;
+		double stopDistance = velocity * stopTime / 2;
+		if (velocity < 0 || distance < stopDistance) {
+			// Moving away from the target, or too fast to stop at it: stop first, then make a second move
+			this.direction = Math.signum(startVelocity);
+			this.startVelocity = Math.abs(velocity);
+			this.end = start + direction * stopDistance;
+			accelerationTime = 0;
+			accelerationJerkTime = 0;
+			cruiseTime = 0;
+			decelerationTime = stopTime;
+			decelerationJerkTime = stopJerkTime;
+			cruiseVelocity = this.startVelocity;
+			duration = stopTime;
+			next = new SCurveProfile(this.end, end, 0, maxVelocity, maxAcceleration, maxJerk);
+			return;
+		}
+		this.direction = direction;
+		this.startVelocity = velocity;
+		this.end = end;
+		solve(distance, Math.max(maxVelocity, velocity), maxAcceleration);
+	}
+
+	/**
+	 * A jerk-limited move from rest.
+	 *
+	 * @param start
+	 *        Where the move starts
+	 * @param end
+	 *        Where the move ends (at rest)
+	 * @param maxVelocity
+	 *        The fastest the mechanism may move (position units per second)
+	 * @param maxAcceleration
+	 *        The fastest the mechanism may speed up or slow down (position units per second squared)
+	 * @param maxJerk
+	 *        The fastest the acceleration may change (position units per second cubed)
+	 */
+	public SCurveProfile(double start, double end, double maxVelocity, double maxAcceleration, double maxJerk) {
+		this(start, end, 0, maxVelocity, maxAcceleration, maxJerk);
+	}
+
+	/**
+	 * Solves the phase lengths of a move in the positive direction that ends at rest.
+	 */
+	protected void solve(double distance, double maxVelocity, double maxAcceleration) {
+		double v0 = startVelocity;
+		if (distance == 0) {
+			accelerationTime = 0;
+			accelerationJerkTime = 0;
+			cruiseTime = 0;
+			decelerationTime = 0;
+			decelerationJerkTime = 0;
+			cruiseVelocity = 0;
+			duration = 0;
+			return;
+		}
+		// First assume the move reaches full speed
+		if ((maxVelocity - v0) * maxJerk < maxAcceleration * maxAcceleration) {
+			accelerationJerkTime = Math.sqrt((maxVelocity - v0) / maxJerk);
+			accelerationTime = 2 * accelerationJerkTime;
+		} else {
+			accelerationJerkTime = maxAcceleration / maxJerk;
+			accelerationTime = accelerationJerkTime + (maxVelocity - v0) / maxAcceleration;
+		}
+		if (maxVelocity * maxJerk < maxAcceleration * maxAcceleration) {
+			decelerationJerkTime = Math.sqrt(maxVelocity / maxJerk);
+			decelerationTime = 2 * decelerationJerkTime;
+		} else {
+			decelerationJerkTime = maxAcceleration / maxJerk;
+			decelerationTime = decelerationJerkTime + maxVelocity / maxAcceleration;
+		}
+		cruiseTime = distance / maxVelocity - accelerationTime / 2 * (1 + v0 / maxVelocity) - decelerationTime / 2;
+		if (cruiseTime < 0 && v0 == 0) {
+			// From rest, full speed is never reached
+			cruiseTime = 0;
+			double jerkTime = maxAcceleration / maxJerk;
+			double peakTime = (jerkTime + Math.sqrt(jerkTime * jerkTime + 4 * distance / maxAcceleration)) / 2;
+			if (peakTime < 2 * jerkTime) {
+				// Nor is full acceleration
+				jerkTime = Math.cbrt(distance / (2 * maxJerk));
+				peakTime = 2 * jerkTime;
+			}
+			accelerationJerkTime = jerkTime;
+			accelerationTime = peakTime;
+			decelerationJerkTime = jerkTime;
+			decelerationTime = peakTime;
+		} else if (cruiseTime < 0) {
+			// Full speed is never reached; find the largest acceleration limit whose phases fit
+			cruiseTime = 0;
+			double acceleration = maxAcceleration;
+			for (int i = 0; i < SCurveProfile.MAX_SHRINKS; i++) {
+				double jerkTime = acceleration / maxJerk;
+				double a2 = acceleration * acceleration;
+				double delta = a2 * a2 / (maxJerk * maxJerk) + 2 * v0 * v0
+					+ acceleration * (4 * distance - 2 * acceleration / maxJerk * v0);
+				accelerationJerkTime = jerkTime;
+				decelerationJerkTime = jerkTime;
+				accelerationTime = (a2 / maxJerk - 2 * v0 + Math.sqrt(delta)) / (2 * acceleration);
+				decelerationTime = (a2 / maxJerk + Math.sqrt(delta)) / (2 * acceleration);
+				if (accelerationTime < 0) {
+					// Only slowing down fits
+					accelerationTime = 0;
+					accelerationJerkTime = 0;
+					decelerationTime = 2 * distance / v0;
+					decelerationJerkTime = (maxJerk * distance
+						- Math.sqrt(Math.max(0, maxJerk * (maxJerk * distance * distance - v0 * v0 * v0)))) / (maxJerk * v0);
+					break;
+				}
+				if (accelerationTime >= 2 * jerkTime && decelerationTime >= 2 * jerkTime) {
+					break;
+				}
+				acceleration *= SCurveProfile.ACCELERATION_SHRINK;
+			}
+		}
+		double accelerationLimit = maxJerk * accelerationJerkTime;
+		cruiseVelocity = v0 + (accelerationTime - accelerationJerkTime) * accelerationLimit;
+		duration = accelerationTime + cruiseTime + decelerationTime;
+	}
+
+	@Override
+	public double getDuration() {
+		return next == null ? duration : duration + next.getDuration();
+	}
+
+	/**
+	 * Evaluates the move in the positive direction.
+	 *
+	 * @param t
+	 *        Seconds since the move started
+	 * @param derivative
+	 *        0 for the distance from the start, 1 for velocity, 2 for acceleration
+	 */
+	protected double evaluate(double t, int derivative) {
+		double j = maxJerk;
+		double v0 = startVelocity;
+		double vlim = cruiseVelocity;
+		double Ta = accelerationTime;
+		double Tj1 = accelerationJerkTime;
+		double Td = decelerationTime;
+		double Tj2 = decelerationJerkTime;
+		double T = duration;
+		double h = Math.abs(end - start);
+		double p;
+		double v;
+		double a;
+		if (t <= 0) {
+			p = 0;
+			v = v0;
+			a = 0;
+		} else if (t < Tj1) {
+			p = v0 * t + j * t * t * t / 6;
+			v = v0 + j * t * t / 2;
+			a = j * t;
+		} else if (t < Ta - Tj1) {
+			double alim = j * Tj1;
+			p = v0 * t + alim / 6 * (3 * t * t - 3 * Tj1 * t + Tj1 * Tj1);
+			v = v0 + alim * (t - Tj1 / 2);
+			a = alim;
+		} else if (t < Ta) {
+			double r = Ta - t;
+			p = (vlim + v0) * Ta / 2 - vlim * r + j * r * r * r / 6;
+			v = vlim - j * r * r / 2;
+			a = j * r;
+		} else if (t < Ta + cruiseTime) {
+			p = (vlim + v0) * Ta / 2 + vlim * (t - Ta);
+			v = vlim;
+			a = 0;
+		} else if (t < T) {
+			double s = t - T + Td;
+			if (s < Tj2) {
+				p = h - vlim * Td / 2 + vlim * s - j * s * s * s / 6;
+				v = vlim - j * s * s / 2;
+				a = -j * s;
+			} else if (s < Td - Tj2) {
+				double alim = -j * Tj2;
+				p = h - vlim * Td / 2 + vlim * s + alim / 6 * (3 * s * s - 3 * Tj2 * s + Tj2 * Tj2);
+				v = vlim + alim * (s - Tj2 / 2);
+				a = alim;
+			} else {
+				double r = T - t;
+				p = h - j * r * r * r / 6;
+				v = j * r * r / 2;
+				a = -j * r;
+			}
+		} else {
+			p = h;
+			v = 0;
+			a = 0;
+		}
+		return derivative == 0 ? p : derivative == 1 ? v : a;
+	}
+
+	@Override
+	public double getPosition(double seconds) {
+		if (next != null && seconds >= duration) {
+			return next.getPosition(seconds - duration);
+		}
+		if (seconds >= duration) {
+			return end;
+		}
+		return start + direction * evaluate(seconds, 0);
+	}
+
+	@Override
+	public double getVelocity(double seconds) {
+		if (next != null && seconds >= duration) {
+			return next.getVelocity(seconds - duration);
+		}
+		if (seconds >= duration) {
+			return 0;
+		}
+		return direction * evaluate(seconds, 1);
+	}
+
+	@Override
+	public double getAcceleration(double seconds) {
+		if (next != null && seconds >= duration) {
+			return next.getAcceleration(seconds - duration);
+		}
+		if (seconds >= duration) {
+			return 0;
+		}
+		return direction * evaluate(seconds, 2);
+	}
+}
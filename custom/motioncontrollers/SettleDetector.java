@@ -0,0 +1,160 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers;
+
+
+/**
+ * Decides when a mechanism has actually arrived, rather than just passing through its target:
+ * the error must be within a tolerance, the error must be changing slower than a rate tolerance,
+ * and both must hold for a settle time.
+ * <p>
+ * Feed it one error per controller tick with {@link #update(double, long)}. It reports how long
+ * the mechanism took to settle, counted from the first update after {@link #reset()} to the
+ * start of the time it held still. It does not allocate.
+ * <p>
+ * MotionControllers run one of these every tick once
+ * {@link MotionController#setSettleCriteria(double, double)} is called, and
+ * {@link MotionController#onTarget()} then waits for it.
+ *
+ */
+public class SettleDetector {
+	protected double errorTolerance;
+	protected double rateTolerance;
+	protected double settleSeconds;
+	protected double rateFilter;
+	protected boolean started;
+	protected long startNanos;
+	protected long lastNanos;
+	protected double lastError;
+	protected double rate;
+	protected boolean inBand;
+	protected long inBandNanos;
+	protected boolean settled;
+	protected double timeToSettle;
+
+	/**
+	 * @param errorTolerance
+	 *        The largest error that counts as arrived
+	 * @param rateTolerance
+	 *        The fastest the error may change (per second) and still count as stopped
+	 * @param settleSeconds
+	 *        How long both must hold
+	 */
+	public SettleDetector(double errorTolerance, double rateTolerance, double settleSeconds) {
+		this.errorTolerance = errorTolerance;
+		this.rateTolerance = rateTolerance;
+		this.settleSeconds = settleSeconds;
+		rateFilter = 0.0;
+		reset();
+	}
+
+	/**
+	 * Changes the criteria. Takes effect on the next update.
+	 *
+	 * @param errorTolerance
+	 * @param rateTolerance
+	 *        Per second
+	 * @param settleSeconds
+	 */
+	public void setCriteria(double errorTolerance, double rateTolerance, double settleSeconds) {
+		this.errorTolerance = errorTolerance;
+		this.rateTolerance = rateTolerance;
+		this.settleSeconds = settleSeconds;
+	}
+
+	/**
+	 * Smooths the error rate, so that sensor noise does not read as motion.
+	 *
+	 * @param timeConstant
+	 *        The time constant of the low-pass filter on the rate, in seconds (0 to disable)
+	 */
+	public void setRateFilter(double timeConstant) {
+		rateFilter = timeConstant;
+	}
+
+	public double getErrorTolerance() {
+		return errorTolerance;
+	}
+
+	public double getRateTolerance() {
+		return rateTolerance;
+	}
+
+	public double getSettleSeconds() {
+		return settleSeconds;
+	}
+
+	/**
+	 * Starts over, such as for a new move. The next update starts the settle clock.
+	 */
+	public void reset() {
+		started = false;
+		rate = 0.0;
+		inBand = false;
+		settled = false;
+		timeToSettle = Double.NaN;
+	}
+
+	/**
+	 * Adds one sample.
+	 *
+	 * @param error
+	 *        The controller's error
+	 * @param nanos
+	 *        When the error was measured (the controller's clock)
+	 * @return whether the mechanism has settled
+	 */
+	public boolean update(double error, long nanos) {
+		if (!started) {
+			started = true;
+			startNanos = nanos;
+			lastNanos = nanos;
+			lastError = error;
+			return false; // The rate is unknown until a second sample
+		}
+		double seconds = (nanos - lastNanos) / 1.0e9;
+		if (seconds <= 0) {
+			return settled; // Same tick
+		}
+		double latestRate = (error - lastError) / seconds;
+		if (rateFilter > 0) {
+			rate += seconds / (rateFilter + seconds) * (latestRate - rate);
+		} else {
+			rate = latestRate;
+		}
+		lastNanos = nanos;
+		lastError = error;
+		if (Math.abs(error) > errorTolerance || Math.abs(rate) > rateTolerance) {
+			inBand = false;
+			settled = false;
+			timeToSettle = Double.NaN;
+			return false;
+		}
+		if (!inBand) {
+			inBand = true;
+			inBandNanos = nanos;
+		}
+		if (!settled && (nanos - inBandNanos) / 1.0e9 >= settleSeconds) {
+			settled = true;
+			timeToSettle = (inBandNanos - startNanos) / 1.0e9;
+		}
+		return settled;
+	}
+
+	public boolean isSettled() {
+		return settled;
+	}
+
+	/**
+	 * @return the error rate from the latest update (per second)
+	 */
+	public double getRate() {
+		return rate;
+	}
+
+	/**
+	 * @return seconds from the first update to when the mechanism arrived and stayed,
+	 *         or NaN if it has not settled (or has since moved away)
+	 */
+	public double getTimeToSettle() {
+		return timeToSettle;
+	}
+}
@@ -0,0 +1,250 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers;
+
+
+import org.usfirst.frc4904.standard.LogKitten;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.statespace.KalmanObserver;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.statespace.LinearQuadraticRegulator;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.statespace.LinearSystem;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.statespace.Matrix;
+import org.usfirst.frc4904.standard.custom.sensors.InvalidSensorException;
+import org.usfirst.frc4904.standard.custom.sensors.PIDSensor;
+import edu.wpi.first.wpilibj.PIDSource;
+import edu.wpi.first.wpilibj.PIDSourceType;
+
+/**
+ * A model-based controller for a mechanism with one input (the motor voltage)
+ * and one sensor, such as a flywheel or one side of a drivetrain.
+ * <p>
+ * Every tick, a {@link KalmanObserver} estimates the mechanism's state (such as position
+ * and velocity) from the sensor, a {@link LinearQuadraticRegulator} drives the estimate
+ * toward the reference, and the model is inverted to add the voltage the reference's own
+ * motion needs. The reference is the setpoint and, when following a profile, its velocity
+ * and acceleration: the model's first state is compared to the setpoint, and its second to
+ * the setpoint's velocity.
+ * <p>
+ * The model (usually {@link LinearSystem#velocity(double, double, double)} or
+ * {@link LinearSystem#position(double, double, double)} with kV and kA from
+ * {@link org.usfirst.frc4904.standard.custom.motioncontrollers.sysid.SysIdFit})
+ * must be built for the {@link MotionControllerExecutor} period, and works in volts;
+ * the output is the voltage over the nominal battery voltage. Static friction (kS) is
+ * not linear, so it is added separately, in the direction the reference is moving.
+ * <p>
+ * The gains are solved for when the regulator and observer are made, so a tick is
+ * only a few small matrix multiplies and does not allocate. Continuous input ranges
+ * are not supported.
+ *
+ */
+public class StateSpaceController extends MotionController {
+	public static final double DEFAULT_NOMINAL_VOLTAGE = 12.0;
+	protected final LinearSystem system;
+	protected final LinearQuadraticRegulator regulator;
+	protected final KalmanObserver observer;
+	protected final Matrix reference;
+	protected final Matrix nextReference;
+	protected final Matrix referenceStep;
+	protected final Matrix plantInversion;
+	protected final Matrix feedforwardInput;
+	protected final Matrix measurementVector;
+	protected final Matrix input;
+	protected double kS;
+	protected double nominalVoltage;
+	protected double error;
+	protected double voltage;
+
+	/**
+	 * A model-based controller.
+	 *
+	 * @param system
+	 *        The mechanism's model, with one input and one output
+	 * @param regulator
+	 *        The state feedback for the model
+	 * @param observer
+	 *        The state estimator for the model
+	 * @param sensor
+	 *        The sensor linked to the output (measuring the model's first state)
+	 */
+	public StateSpaceController(LinearSystem system, LinearQuadraticRegulator regulator, KalmanObserver observer,
+		PIDSensor sensor) {
+		super(sensor);
+		if (system.getInputs() != 1 || system.getOutputs() != 1) {
+			throw new IllegalArgumentException("StateSpaceController needs a model with one input and one output");
+		}
+		this.system = system;
+		this.regulator = regulator;
+		this.observer = observer;
+		int states = system.getStates();
+		reference = new Matrix(states, 1);
+		nextReference = new Matrix(states, 1);
+		referenceStep = new Matrix(states, 1);
+		// input = (B' B)^-1 B' (next reference - A * reference) makes the model follow the reference
+		Matrix B = system.getB();
+		plantInversion = B.transpose().times(B).inverse().times(B.transpose());
+		feedforwardInput = new Matrix(1, 1);
+		measurementVector = new Matrix(1, 1);
+		input = new Matrix(1, 1);
+		kS = 0.0;
+		nominalVoltage = StateSpaceController.DEFAULT_NOMINAL_VOLTAGE;
+		error = 0.0;
+		voltage = 0.0;
+	}
+
+	/**
+	 * A model-based controller.
+	 *
+	 * @param system
+	 *        The mechanism's model, with one input and one output
+	 * @param regulator
+	 *        The state feedback for the model
+	 * @param observer
+	 *        The state estimator for the model
+	 * @param source
+	 *        The sensor linked to the output (measuring the model's first state)
+	 */
+	public StateSpaceController(LinearSystem system, LinearQuadraticRegulator regulator, KalmanObserver observer,
+		PIDSource source) {
+		this(system, regulator, observer, new PIDSensor.PIDSourceWrapper(source));
+	}
+
+	/**
+	 * @param kS
+	 *        Volts needed to overcome static friction
+	 */
+	public void setStaticFriction(double kS) {
+		this.kS = kS;
+	}
+
+	public double getStaticFriction() {
+		return kS;
+	}
+
+	/**
+	 * @param nominalVoltage
+	 *        The voltage a full output gives (12 by default)
+	 */
+	public void setNominalVoltage(double nominalVoltage) {
+		this.nominalVoltage = nominalVoltage;
+	}
+
+	public double getNominalVoltage() {
+		return nominalVoltage;
+	}
+
+	public LinearSystem getSystem() {
+		return system;
+	}
+
+	public LinearQuadraticRegulator getRegulator() {
+		return regulator;
+	}
+
+	public KalmanObserver getObserver() {
+		return observer;
+	}
+
+	/**
+	 * @return the voltage asked for on the latest tick
+	 */
+	public double getVoltage() {
+		return voltage;
+	}
+
+	@Override
+	protected void resetErrorToZero() {
+		if (observer == null) {
+			return; // Called from the MotionController constructor, before the model is set
+		}
+		error = 0.0;
+		voltage = 0.0;
+		for (int i = 0; i < system.getStates(); i++) {
+			observer.setEstimate(i, 0.0);
+		}
+	}
+
+	/**
+	 * @param derivative
+	 *        0 for the setpoint, 1 for its velocity, 2 for its acceleration
+	 * @return that derivative of the setpoint (0 beyond acceleration)
+	 */
+	protected double getSetpointDerivative(int derivative) {
+		switch (derivative) {
+			case 0:
+				return setpoint;
+			case 1:
+				return setpointVelocity;
+			case 2:
+				return setpointAcceleration;
+			default:
+				return 0.0;
+		}
+	}
+
+	/**
+	 * @return volts to overcome static friction in the direction the reference is moving
+	 */
+	protected double staticFriction() {
+		double velocity = sensor.getPIDSourceType() == PIDSourceType.kRate ? setpoint : setpointVelocity;
+		return kS * Math.signum(velocity);
+	}
+
+	/**
+	 * Fills in the reference and the model's inverse (the voltage that moves the model along it).
+	 */
+	protected void updateReference() {
+		double period = system.getPeriod();
+		for (int i = 0; i < system.getStates(); i++) {
+			reference.set(i, 0, getSetpointDerivative(i));
+			nextReference.set(i, 0, getSetpointDerivative(i) + period * getSetpointDerivative(i + 1));
+		}
+		referenceStep.multiply(system.getA(), reference);
+		referenceStep.subtract(nextReference, referenceStep);
+		feedforwardInput.multiply(plantInversion, referenceStep);
+	}
+
+	@Override
+	public double getSafely() throws InvalidSensorException {
+		updateReference();
+		double feedforward = feedforwardInput.get(0, 0) + staticFriction();
+		if (!isEnabled()) {
+			return feedforward / nominalVoltage;
+		}
+		double reading = sensor.pidGetSafely();
+		measurement = reading;
+		error = setpoint - reading;
+		if (didJustReset()) {
+			// Start the estimate at the reading, at rest
+			resetErrorToZero();
+			observer.setEstimate(0, reading);
+			error = setpoint - reading;
+			return feedforward / nominalVoltage;
+		}
+		measurementVector.set(0, 0, reading);
+		observer.correct(measurementVector);
+		double result = regulator.calculate(reference, observer.getEstimate()).get(0, 0) + feedforward;
+		double maxVoltage = capOutput ? outputMax * nominalVoltage : nominalVoltage;
+		double minVoltage = capOutput ? outputMin * nominalVoltage : -nominalVoltage;
+		voltage = Math.max(Math.min(result, maxVoltage), minVoltage);
+		// The model only knows about the voltage that actually moved the mechanism
+		input.set(0, 0, voltage - staticFriction());
+		observer.predict(input);
+		return voltage / nominalVoltage;
+	}
+
+	@Override
+	public double get() {
+		try {
+			return getSafely();
+		}
+		catch (Exception e) {
+			LogKitten.ex(e);
+			return 0;
+		}
+	}
+
+	/**
+	 * @return the setpoint minus the latest reading
+	 */
+	@Override
+	public double getError() {
+		return error;
+	}
+}
@@ -0,0 +1,154 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers;
+
+
+import org.usfirst.frc4904.standard.LogKitten;
+import org.usfirst.frc4904.standard.custom.sensors.InvalidSensorException;
+import org.usfirst.frc4904.standard.custom.sensors.NativeDerivativeSensor;
+import org.usfirst.frc4904.standard.custom.sensors.PIDSensor;
+import edu.wpi.first.wpilibj.PIDSource;
+
+/**
+ * A take-back-half velocity controller, for flywheels.
+ * <p>
+ * The output integrates the error (output += gain * error * seconds). Every time the
+ * velocity crosses the setpoint, the output is set halfway between itself and the
+ * output at the previous crossing, so it closes in on the output that holds the
+ * setpoint, and the flywheel settles without overshooting much. With no gain to tune
+ * but the one, it is quick to set up, and it recovers from shots like an integrator.
+ * <p>
+ * The first crossing takes half back from the output F * setpoint, so with F close to
+ * one over the free speed the flywheel settles almost at once. The velocity is the sensor's
+ * native rate when it is a {@link NativeDerivativeSensor} (such as a CustomEncoder).
+ *
+ */
+public class TakeBackHalfController extends MotionController {
+	protected double gain;
+	protected double F;
+	protected double error;
+	protected double output;
+	protected double takeBackHalf;
+	protected double lastSetpoint;
+	protected long lastNanos;
+
+	/**
+	 * A take-back-half velocity controller.
+	 *
+	 * @param gain
+	 *        Output per unit of error per second
+	 * @param F
+	 *        Estimated output per unit of velocity (such as one over the free speed), where the
+	 *        first crossing takes half back from
+	 * @param sensor
+	 *        The sensor linked to the output
+	 */
+	public TakeBackHalfController(double gain, double F, PIDSensor sensor) {
+		super(sensor);
+		this.gain = gain;
+		this.F = F;
+	}
+
+	/**
+	 * A take-back-half velocity controller.
+	 *
+	 * @param gain
+	 *        Output per unit of error per second
+	 * @param F
+	 *        Estimated output per unit of velocity (such as one over the free speed), where the
+	 *        first crossing takes half back from
+	 * @param source
+	 *        The sensor linked to the output
+	 */
+	public TakeBackHalfController(double gain, double F, PIDSource source) {
+		this(gain, F, new PIDSensor.PIDSourceWrapper(source));
+	}
+
+	public double getGain() {
+		return gain;
+	}
+
+	public double getF() {
+		return F;
+	}
+
+	/**
+	 * @param gain
+	 *        Output per unit of error per second
+	 * @param F
+	 *        Estimated output per unit of velocity
+	 */
+	public void setGains(double gain, double F) {
+		this.gain = gain;
+		this.F = F;
+	}
+
+	@Override
+	protected void resetErrorToZero() {
+		error = 0.0;
+		output = 0.0;
+		takeBackHalf = F * setpoint;
+		lastSetpoint = setpoint;
+	}
+
+	/**
+	 * @return the velocity, from the native rate if the sensor has one
+	 */
+	protected double getVelocitySafely() throws InvalidSensorException {
+		if (sensor instanceof NativeDerivativeSensor) {
+			return ((NativeDerivativeSensor) sensor).getRateSafely();
+		}
+		return sensor.pidGetSafely();
+	}
+
+	@Override
+	public double getSafely() throws InvalidSensorException {
+		if (!isEnabled()) {
+			return F * setpoint;
+		}
+		double velocity = getVelocitySafely();
+		measurement = velocity;
+		double latestError = setpoint - velocity;
+		long latestNanos = getTimeNanos();
+		if (didJustReset()) {
+			// Carry on from the output that was last written, if any
+			error = latestError;
+			lastNanos = latestNanos;
+			lastSetpoint = setpoint;
+			takeBackHalf = F * setpoint;
+			return output;
+		}
+		if (setpoint != lastSetpoint) {
+			// A new speed: take the next crossing back toward the estimate for it
+			takeBackHalf = F * setpoint;
+			lastSetpoint = setpoint;
+		}
+		double seconds = (latestNanos - lastNanos) / 1.0e9;
+		lastNanos = latestNanos;
+		output += gain * latestError * seconds;
+		double max = capOutput ? outputMax : 1.0;
+		double min = capOutput ? outputMin : -1.0;
+		output = Math.max(Math.min(output, max), min);
+		if (Math.signum(latestError) != Math.signum(error) && latestError != 0.0) {
+			// Crossed the setpoint
+			output = (output + takeBackHalf) / 2;
+			takeBackHalf = output;
+		}
+		error = latestError;
+		return output;
+	}
+
+	@Override
+	public double get() {
+		try {
+			return getSafely();
+		}
+		catch (Exception e) {
+			LogKitten.ex(e);
+			return 0;
+		}
+	}
+
+	@Override
+	public double getError() {
+		return error;
+	}
+}
@@ -0,0 +1,152 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers;
+
+
+/**
+ * A move that accelerates at a constant rate up to a maximum velocity,
+ * cruises, and then decelerates to stop at the target.
+ * Short moves that never reach the maximum velocity are triangular.
+ * <p>
+ * The profile is sampled once, when it is made, into primitive arrays,
+ * so looking up a setpoint each tick is an index and an interpolation.
+ *
+ */
+public class TrapezoidalProfile implements MotionProfile {
+	public static final double DEFAULT_SAMPLE_PERIOD = 0.005; // seconds
+	protected final double start;
+	protected final double end;
+	protected final double duration;
+	protected final double samplePeriod;
+	protected final double[] positions;
+	protected final double[] velocities;
+	protected final double[] accelerations;
+
+	/**
+	 * A move that accelerates at a constant rate up to a maximum velocity,
+	 * cruises, and then decelerates to stop at the target.
+	 *
+	 * @param start
+	 *        Where the move starts
+	 * @param end
+	 *        Where the move ends
+	 * @param maxVelocity
+	 *        The fastest the mechanism may move (position units per second)
+	 * @param maxAcceleration
+	 *        The fastest the mechanism may speed up or slow down (position units per second squared)
+	 * @param samplePeriod
+	 *        Seconds between precomputed samples
+	 */
+	public TrapezoidalProfile(double start, double end, double maxVelocity, double maxAcceleration, double samplePeriod) {
+		if (maxVelocity <= 0 || maxAcceleration <= 0 || samplePeriod <= 0) {
+			throw new IllegalArgumentException("TrapezoidalProfile limits and sample period must be positive");
+		}
+		this.start = start;
+		this.end = end;
+		this.samplePeriod = samplePeriod;
+		double distance = Math.abs(end - start);
+		double direction = Math.signum(end - start);
+		// Time to reach full speed, and the distance covered doing so
+		double accelerationTime = maxVelocity / maxAcceleration;
+		double accelerationDistance = 0.5 * maxAcceleration * accelerationTime * accelerationTime;
+		double cruiseVelocity = maxVelocity;
+		if (2 * accelerationDistance > distance) { // Triangular
+			accelerationTime = Math.sqrt(distance / maxAcceleration);
+			accelerationDistance = distance / 2;
+			cruiseVelocity = maxAcceleration * accelerationTime;
+		}
+		// A move of no distance has no cruise (and a cruise velocity of 0), so it takes no time
+		double cruiseTime = cruiseVelocity > 0 ? (distance - 2 * accelerationDistance) / cruiseVelocity : 0.0;
+		duration = 2 * accelerationTime + cruiseTime;
+		int samples = (int) Math.ceil(duration / samplePeriod) + 1;
+		positions = new double[samples];
+		velocities = new double[samples];
+		accelerations = new double[samples];
+		for (int i = 0; i < samples; i++) {
+			double t = i * samplePeriod;
+			double travelled;
+			double velocity;
+			double acceleration;
+			if (t < accelerationTime) {
+				travelled = 0.5 * maxAcceleration * t * t;
+				velocity = maxAcceleration * t;
+				acceleration = maxAcceleration;
+			} else if (t < accelerationTime + cruiseTime) {
+				travelled = accelerationDistance + cruiseVelocity * (t - accelerationTime);
+				velocity = cruiseVelocity;
+				acceleration = 0;
+			} else if (t < duration) {
+				double remaining = duration - t;
+				travelled = distance - 0.5 * maxAcceleration * remaining * remaining;
+				velocity = maxAcceleration * remaining;
+				acceleration = -maxAcceleration;
+			} else {
+				travelled = distance;
+				velocity = 0;
+				acceleration = 0;
+			}
+			positions[i] = start + direction * travelled;
+			velocities[i] = direction * velocity;
+			accelerations[i] = direction * acceleration;
+		}
+	}
+
+	/**
+	 * A move that accelerates at a constant rate up to a maximum velocity,
+	 * cruises, and then decelerates to stop at the target.
+	 * Sampled every 5 milliseconds.
+	 *
+	 * @param start
+	 *        Where the move starts
+	 * @param end
+	 *        Where the move ends
+	 * @param maxVelocity
+	 *        The fastest the mechanism may move (position units per second)
+	 * @param maxAcceleration
+	 *        The fastest the mechanism may speed up or slow down (position units per second squared)
+	 */
+	public TrapezoidalProfile(double start, double end, double maxVelocity, double maxAcceleration) {
+		this(start, end, maxVelocity, maxAcceleration, TrapezoidalProfile.DEFAULT_SAMPLE_PERIOD);
+	}
+
+	@Override
+	public double getDuration() {
+		return duration;
+	}
+
+	@Override
+	public double getPosition(double seconds) {
+		if (seconds >= duration) {
+			return end;
+		}
+		return interpolate(positions, seconds);
+	}
+
+	@Override
+	public double getVelocity(double seconds) {
+		if (seconds >= duration) {
+			return 0;
+		}
+		return interpolate(velocities, seconds);
+	}
+
+	@Override
+	public double getAcceleration(double seconds) {
+		if (seconds >= duration) {
+			return 0;
+		}
+		// Acceleration steps between phases, so it is not interpolated
+		return accelerations[Math.max(Math.min((int) (seconds / samplePeriod), accelerations.length - 1), 0)];
+	}
+
+	protected double interpolate(double[] samples, double seconds) {
+		if (seconds <= 0) {
+			return samples[0];
+		}
+		double index = seconds / samplePeriod;
+		int below = (int) index;
+		if (below >= samples.length - 1) {
+			return samples[samples.length - 1];
+		}
+		double fraction = index - below;
+		return samples[below] + (samples[below + 1] - samples[below]) * fraction;
+	}
+}
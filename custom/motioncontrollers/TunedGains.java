@@ -0,0 +1,117 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers;
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import org.usfirst.frc4904.standard.LogKitten;
+
+/**
+ * A file of PID gains found by auto-tuning, kept between robot restarts.
+ * <p>
+ * Gains are saved by name (such as "Elevator") in a properties file, as
+ * name.P, name.I and name.D, with I and D per second, along with the ultimate
+ * gain and period they came from. Robot code loads them into its controllers
+ * at startup, falling back to its own gains if none were saved.
+ *
+ */
+public class TunedGains {
+	public static final String DEFAULT_PATH = "/home/lvuser/gains.properties";
+	private static String path = TunedGains.DEFAULT_PATH;
+
+	/**
+	 * @param path
+	 *        Where the gains file is ({@link #DEFAULT_PATH} by default)
+	 */
+	public static synchronized void setPath(String path) {
+		TunedGains.path = path;
+	}
+
+	public static synchronized String getPath() {
+		return TunedGains.path;
+	}
+
+	protected static Properties read() {
+		Properties properties = new Properties();
+		File file = new File(TunedGains.path);
+		if (!file.isFile()) {
+			return properties;
+		}
+		try (InputStream in = new FileInputStream(file)) {
+			properties.load(in);
+		}
+		catch (IOException e) {
+			LogKitten.ex(e);
+		}
+		return properties;
+	}
+
+	/**
+	 * Saves gains under a name, replacing any saved before.
+	 *
+	 * @param name
+	 * @param gains
+	 *        {P, I, D} with I and D per second
+	 * @param ultimateGain
+	 * @param ultimatePeriod
+	 *        In seconds
+	 * @return whether the file was written
+	 */
+	public static synchronized boolean save(String name, double[] gains, double ultimateGain, double ultimatePeriod) {
+		Properties properties = TunedGains.read();
+		properties.setProperty(name + ".P", Double.toString(gains[0]));
+		properties.setProperty(name + ".I", Double.toString(gains[1]));
+		properties.setProperty(name + ".D", Double.toString(gains[2]));
+		properties.setProperty(name + ".Ku", Double.toString(ultimateGain));
+		properties.setProperty(name + ".Tu", Double.toString(ultimatePeriod));
+		try (OutputStream out = new FileOutputStream(TunedGains.path)) {
+			properties.store(out, "Auto-tuned PID gains (I and D per second)");
+			return true;
+		}
+		catch (IOException e) {
+			LogKitten.ex(e);
+			return false;
+		}
+	}
+
+	/**
+	 * @param name
+	 * @return {P, I, D} with I and D per second, or null if none are saved under the name
+	 */
+	public static synchronized double[] get(String name) {
+		Properties properties = TunedGains.read();
+		String P = properties.getProperty(name + ".P");
+		String I = properties.getProperty(name + ".I");
+		String D = properties.getProperty(name + ".D");
+		if (P == null || I == null || D == null) {
+			return null;
+		}
+		try {
+			return new double[] {Double.parseDouble(P), Double.parseDouble(I), Double.parseDouble(D)};
+		}
+		catch (NumberFormatException e) {
+			LogKitten.w("Unreadable tuned gains for " + name);
+			return null;
+		}
+	}
+
+	/**
+	 * Sets a controller's gains to those saved under a name, if any.
+	 *
+	 * @param name
+	 * @param controller
+	 * @return whether gains were found
+	 */
+	public static boolean load(String name, CustomPIDController controller) {
+		double[] gains = TunedGains.get(name);
+		if (gains == null) {
+			return false;
+		}
+		RelayAutoTuner.apply(controller, gains);
+		return true;
+	}
+}
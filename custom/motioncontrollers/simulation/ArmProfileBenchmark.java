@@ -0,0 +1,119 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers.simulation;
+
+
+import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionControllerExecutor;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionProfile;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.SCurveProfile;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.TrapezoidalProfile;
+
+/**
+ * Compares moving a simulated flexible arm with a plain setpoint step, a trapezoidal
+ * profile and an S-curve profile. This runs on a laptop, not on the robot:
+ *
+ * <pre>
+ * java org.usfirst.frc4904.standard.custom.motioncontrollers.simulation.ArmProfileBenchmark
+ * </pre>
+ *
+ * The arm lifts from horizontal against gravity, and its end rings at 4 Hz.
+ * Overshoot and settling are measured at the end of the arm, which is what
+ * hits the game piece. The last run changes the target partway through the
+ * move and regenerates the S-curve from where the setpoint is.
+ * <p>
+ * Before the moves, both profiles are checked to finish at once when the target is
+ * where the arm already is, so commands waiting on them do not hang.
+ */
+public class ArmProfileBenchmark {
+	public static final double HERTZ = 200.0;
+	public static final double SECONDS = 4.0;
+	public static final double TARGET = 1.2; // radians
+	public static final double RETARGET = 0.9; // radians
+	public static final double RETARGET_SECONDS = 0.3;
+	public static final double TOLERANCE = 0.01; // radians
+	public static final double MAX_VELOCITY = 3.0; // radians per second
+	public static final double MAX_ACCELERATION = 12.0; // radians per second squared
+	public static final double MAX_JERK = 80.0; // radians per second cubed
+
+	public static enum Move {
+		STEP, TRAPEZOIDAL, SCURVE, SCURVE_RETARGETED;
+	}
+
+	/**
+	 * Runs one move.
+	 *
+	 * @param move
+	 * @return the overshoot (radians) and the time until the end of the arm settles within tolerance (seconds)
+	 */
+	public static double[] run(Move move) {
+		SimulatedMechanism arm = new SimulatedMechanism(6.0, 0.05);
+		arm.setGravity(8.0, true);
+		arm.setCompliance(4.0, 0.05);
+		arm.reset(0.0);
+		PIDRateBenchmark.SimulatedPIDController controller = new PIDRateBenchmark.SimulatedPIDController(20.0, 15.0, 1.0,
+			arm);
+		controller.setHighRate(true);
+		controller.setIThreshold(0.2);
+		controller.setOutputRange(-1.0, 1.0);
+		controller.setOutput(arm);
+		controller.enable();
+		if (move == Move.STEP) {
+			controller.setSetpoint(ArmProfileBenchmark.TARGET);
+		} else if (move == Move.TRAPEZOIDAL) {
+			controller.followProfile(new TrapezoidalProfile(0.0, ArmProfileBenchmark.TARGET,
+				ArmProfileBenchmark.MAX_VELOCITY, ArmProfileBenchmark.MAX_ACCELERATION));
+		} else {
+			controller.followProfile(new SCurveProfile(0.0, ArmProfileBenchmark.TARGET, ArmProfileBenchmark.MAX_VELOCITY,
+				ArmProfileBenchmark.MAX_ACCELERATION, ArmProfileBenchmark.MAX_JERK));
+		}
+		double target = ArmProfileBenchmark.TARGET;
+		long periodNanos = (long) (1.0e9 / ArmProfileBenchmark.HERTZ);
+		long end = (long) (ArmProfileBenchmark.SECONDS * 1.0e9);
+		double overshoot = 0.0;
+		long settled = 0;
+		for (long now = 0; now < end; now += periodNanos) {
+			controller.nanos = now;
+			if (move == Move.SCURVE_RETARGETED && target != ArmProfileBenchmark.RETARGET
+				&& now >= ArmProfileBenchmark.RETARGET_SECONDS * 1.0e9) {
+				target = ArmProfileBenchmark.RETARGET;
+				MotionProfile profile = new SCurveProfile(controller.getSetpoint(), target, controller.getSetpointVelocity(),
+					ArmProfileBenchmark.MAX_VELOCITY, ArmProfileBenchmark.MAX_ACCELERATION, ArmProfileBenchmark.MAX_JERK);
+				controller.followProfile(profile);
+			}
+			MotionControllerExecutor.tickManually();
+			arm.step(periodNanos / 1.0e9);
+			double error = arm.getLoadPosition() - target;
+			overshoot = Math.max(overshoot, error);
+			if (Math.abs(error) > ArmProfileBenchmark.TOLERANCE) {
+				settled = now + periodNanos;
+			}
+		}
+		controller.disable();
+		return new double[] {overshoot, settled / 1.0e9};
+	}
+
+	/**
+	 * Checks that a profile to where the arm already is takes no time and holds the target.
+	 *
+	 * @throws IllegalStateException
+	 *         if it does not
+	 */
+	public static void checkZeroDistance(MotionProfile profile) {
+		if (profile.getDuration() != 0.0 || profile.getPosition(0.0) != ArmProfileBenchmark.TARGET
+			|| profile.getVelocity(0.0) != 0.0) {
+			throw new IllegalStateException(profile.getClass().getSimpleName() + " of zero distance takes "
+				+ profile.getDuration() + " s to " + profile.getPosition(0.0));
+		}
+	}
+
+	public static void main(String[] args) {
+		MotionControllerExecutor.setManual(true);
+		ArmProfileBenchmark.checkZeroDistance(new TrapezoidalProfile(ArmProfileBenchmark.TARGET, ArmProfileBenchmark.TARGET,
+			ArmProfileBenchmark.MAX_VELOCITY, ArmProfileBenchmark.MAX_ACCELERATION));
+		ArmProfileBenchmark.checkZeroDistance(new SCurveProfile(ArmProfileBenchmark.TARGET, ArmProfileBenchmark.TARGET,
+			ArmProfileBenchmark.MAX_VELOCITY, ArmProfileBenchmark.MAX_ACCELERATION, ArmProfileBenchmark.MAX_JERK));
+		System.out.println("move                overshoot (rad)  settle time (s)");
+		for (Move move : Move.values()) {
+			double[] result = ArmProfileBenchmark.run(move);
+			System.out.println(String.format("%-19s %15.4f %16.3f", move, result[0], result[1]));
+		}
+	}
+}
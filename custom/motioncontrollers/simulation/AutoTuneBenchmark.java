@@ -0,0 +1,136 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers.simulation;
+
+
+import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionControllerExecutor;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.RelayAutoTuner;
+import edu.wpi.first.wpilibj.PIDSourceType;
+
+/**
+ * Auto-tunes simulated first-order (flywheel velocity) and second-order (mechanism position)
+ * plants with {@link RelayAutoTuner}, then checks each rule's gains with a step response.
+ * This runs on a laptop, not on the robot:
+ *
+ * <pre>
+ * java org.usfirst.frc4904.standard.custom.motioncontrollers.simulation.AutoTuneBenchmark
+ * </pre>
+ *
+ * Both the experiment and the step run at 50 Hz, like the AutoTune command.
+ */
+public class AutoTuneBenchmark {
+	public static final double HERTZ = 50.0;
+	public static final double EXPERIMENT_SECONDS = 20.0;
+	public static final double STEP_SECONDS = 6.0;
+	public static final double TOLERANCE = 0.02; // Fraction of the step
+
+	/**
+	 * A plant and how to tune it.
+	 */
+	protected static class Plant {
+		public final String name;
+		public final boolean velocity;
+		public final double setpoint;
+		public final double amplitude;
+		public final double bias;
+		public final double hysteresis;
+
+		protected Plant(String name, boolean velocity, double setpoint, double amplitude, double bias, double hysteresis) {
+			this.name = name;
+			this.velocity = velocity;
+			this.setpoint = setpoint;
+			this.amplitude = amplitude;
+			this.bias = bias;
+			this.hysteresis = hysteresis;
+		}
+
+		protected SimulatedMechanism make() {
+			SimulatedMechanism mechanism = velocity ? new SimulatedMechanism(3.0, 0.15) : new SimulatedMechanism(2.0, 0.08);
+			mechanism.setNoise(velocity ? 0.002 : 0.0005);
+			mechanism.setPIDSourceType(velocity ? PIDSourceType.kRate : PIDSourceType.kDisplacement);
+			return mechanism;
+		}
+	}
+
+	public static final Plant[] PLANTS = {new Plant("first-order", true, 1.5, 0.3, 0.5, 0.01),
+			new Plant("second-order", false, 0.5, 0.3, 0.0, 0.003)};
+
+	/**
+	 * Runs the relay experiment.
+	 *
+	 * @return the finished tuner
+	 */
+	public static RelayAutoTuner tune(Plant plant) {
+		SimulatedMechanism mechanism = plant.make();
+		if (plant.velocity) {
+			// Start near the operating point, as a flywheel being tuned would be
+			mechanism.pidWrite(plant.bias);
+			mechanism.step(2.0);
+		} else {
+			mechanism.reset(plant.setpoint);
+		}
+		RelayAutoTuner tuner = new RelayAutoTuner(plant.setpoint, plant.amplitude, plant.bias, plant.hysteresis,
+			RelayAutoTuner.DEFAULT_CYCLES);
+		long periodNanos = (long) (1.0e9 / AutoTuneBenchmark.HERTZ);
+		for (long now = 0; now < AutoTuneBenchmark.EXPERIMENT_SECONDS * 1.0e9 && !tuner.isFinished(); now += periodNanos) {
+			mechanism.pidWrite(tuner.update(mechanism.pidGet(), now));
+			mechanism.step(periodNanos / 1.0e9);
+		}
+		return tuner;
+	}
+
+	/**
+	 * Steps the plant from rest with tuned gains.
+	 *
+	 * @return the overshoot and the settle time (seconds), both relative to the step
+	 */
+	public static double[] step(Plant plant, double[] gains) {
+		SimulatedMechanism mechanism = plant.make();
+		PIDRateBenchmark.SimulatedPIDController controller = new PIDRateBenchmark.SimulatedPIDController(gains[0],
+			gains[1], gains[2], mechanism);
+		controller.setHighRate(true);
+		controller.setIThreshold(plant.setpoint * 2);
+		controller.setOutputRange(-1.0, 1.0);
+		controller.setAntiWindup(20.0);
+		controller.setOutput(mechanism);
+		controller.setSetpoint(0.0);
+		controller.enable();
+		long periodNanos = (long) (1.0e9 / AutoTuneBenchmark.HERTZ);
+		double overshoot = 0.0;
+		long settled = 0;
+		for (long now = 0, tick = 0; now < AutoTuneBenchmark.STEP_SECONDS * 1.0e9; now += periodNanos, tick++) {
+			controller.nanos = now;
+			if (tick == 2) {
+				controller.setSetpoint(plant.setpoint);
+			}
+			MotionControllerExecutor.tickManually();
+			mechanism.step(periodNanos / 1.0e9);
+			double actual = plant.velocity ? mechanism.getVelocity() : mechanism.getPosition();
+			double error = (actual - plant.setpoint) / plant.setpoint;
+			overshoot = Math.max(overshoot, error);
+			if (Math.abs(error) > AutoTuneBenchmark.TOLERANCE) {
+				settled = now + periodNanos;
+			}
+		}
+		controller.disable();
+		return new double[] {overshoot, settled / 1.0e9};
+	}
+
+	public static void main(String[] args) {
+		MotionControllerExecutor.setManual(true);
+		for (Plant plant : AutoTuneBenchmark.PLANTS) {
+			RelayAutoTuner tuner = AutoTuneBenchmark.tune(plant);
+			if (!tuner.isFinished()) {
+				System.out.println(plant.name + ": did not oscillate steadily");
+				continue;
+			}
+			System.out.println(String.format("%s: Ku %.3f, Tu %.3f s", plant.name, tuner.getUltimateGain(),
+				tuner.getUltimatePeriod()));
+			System.out.println("  rule                     P        I        D   overshoot  settle (2%)");
+			for (RelayAutoTuner.Rule rule : RelayAutoTuner.Rule.values()) {
+				double[] gains = tuner.getGains(rule);
+				double[] result = AutoTuneBenchmark.step(plant, gains);
+				System.out.println(String.format("  %-18s %7.3f %8.3f %8.4f %10.1f%% %10.2f s", rule, gains[0], gains[1],
+					gains[2], result[0] * 100, result[1]));
+			}
+		}
+	}
+}
@@ -0,0 +1,271 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers.simulation;
+
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.BatchPIDController;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.CustomPIDController;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionControllerExecutor;
+import org.usfirst.frc4904.standard.custom.sensors.PIDSensor;
+import edu.wpi.first.wpilibj.PIDOutput;
+import edu.wpi.first.wpilibj.PIDSourceType;
+
+/**
+ * Compares running N CustomPIDControllers on the executor with one BatchPIDController
+ * running the same N loops, as a swerve drive would (half steering loops with continuous
+ * input, half drive loops with I, F and a derivative filter). This runs on a laptop, not on the robot:
+ *
+ * <pre>
+ * java org.usfirst.frc4904.standard.custom.motioncontrollers.simulation.BatchPIDBenchmark
+ * </pre>
+ *
+ * Both read the same sensors and write the same outputs every tick, and their outputs are
+ * checked against each other, with the steering setpoints jumping across the boundary now and then. Each is warmed up, then timed over many ticks in several trials;
+ * the fastest trial is reported, as the one least disturbed by the rest of the laptop.
+ * Allocation is measured over a further run of batch ticks.
+ */
+public class BatchPIDBenchmark {
+	public static final int[] SIZES = {4, 8, 16};
+	public static final int WARMUP_TICKS = 200000;
+	public static final int TIMED_TICKS = 200000;
+	public static final int TRIALS = 7;
+	public static final int READINGS = 1024; // Rows of precomputed sensor readings
+	public static final long PERIOD_NANOS = 5000000;
+	protected static long now = 0;
+
+	/**
+	 * A sensor that reads one column of a table of readings.
+	 */
+	protected static class TableSensor implements PIDSensor {
+		protected final double[][] readings;
+		protected final int column;
+		protected int row;
+
+		public TableSensor(double[][] readings, int column) {
+			this.readings = readings;
+			this.column = column;
+			row = 0;
+		}
+
+		@Override
+		public void setPIDSourceType(PIDSourceType pidSource) {}
+
+		@Override
+		public PIDSourceType getPIDSourceType() {
+			return PIDSourceType.kDisplacement;
+		}
+
+		@Override
+		public double pidGet() {
+			return readings[row][column];
+		}
+
+		@Override
+		public double pidGetSafely() {
+			return pidGet();
+		}
+	}
+
+	/**
+	 * A CustomPIDController timed by the benchmark's clock.
+	 */
+	protected static class ClockedPIDController extends CustomPIDController {
+		public ClockedPIDController(PIDSensor sensor) {
+			super(sensor);
+		}
+
+		@Override
+		protected long getTimeNanos() {
+			return BatchPIDBenchmark.now;
+		}
+	}
+
+	/**
+	 * An output that records what it is given.
+	 */
+	protected static class RecordingOutput implements PIDOutput {
+		protected double value;
+
+		@Override
+		public void pidWrite(double output) {
+			value = output;
+		}
+	}
+
+	protected static long getAllocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread
+			.currentThread().getId());
+	}
+
+	protected static double[][] makeReadings(int size) {
+		Random random = new Random(4904);
+		double[][] readings = new double[BatchPIDBenchmark.READINGS][size];
+		for (double[] row : readings) {
+			for (int i = 0; i < size; i++) {
+				row[i] = i % 2 == 0 ? random.nextDouble() * 360 - 180 : random.nextGaussian() * 2;
+			}
+		}
+		return readings;
+	}
+
+	/**
+	 * Sets up loop i the same way on either controller: even loops steer, odd loops drive.
+	 */
+	protected static void configure(CustomPIDController controller, int i) {
+		if (i % 2 == 0) {
+			controller.setPID(0.02, 0.0, 0.001);
+			controller.setInputRange(-180, 180);
+			controller.setContinuous(true);
+			controller.setSetpointWeights(1.0, 0.0);
+			controller.setOutputRange(-1, 1);
+			controller.setSetpoint(30 * (i + 1) - 180);
+		} else {
+			controller.setPIDF(0.1, 0.5, 0.01, 0.2);
+			controller.setIThreshold(5.0);
+			controller.setDerivativeFilter(0.02);
+			controller.setOutputRange(-1, 1);
+			controller.setAntiWindup(1.0);
+			controller.setSetpoint(1.5);
+		}
+	}
+
+	protected static void configure(BatchPIDController batch, int i) {
+		if (i % 2 == 0) {
+			batch.setPID(i, 0.02, 0.0, 0.001);
+			batch.setInputRange(i, -180, 180);
+			batch.setContinuous(i, true);
+			batch.setSetpointWeights(i, 1.0, 0.0);
+			batch.setOutputRange(i, -1, 1);
+			batch.setSetpoint(i, 30 * (i + 1) - 180);
+		} else {
+			batch.setPIDF(i, 0.1, 0.5, 0.01, 0.2);
+			batch.setIThreshold(i, 5.0);
+			batch.setDerivativeFilter(i, 0.02);
+			batch.setOutputRange(i, -1, 1);
+			batch.setAntiWindup(i, 1.0);
+			batch.setSetpoint(i, 1.5);
+		}
+	}
+
+	/**
+	 * Times N loops both ways.
+	 *
+	 * @param size
+	 * @return nanoseconds per tick for the separate controllers and for the batch,
+	 *         the largest difference between their outputs, and the bytes the batch allocates per tick
+	 */
+	public static double[] run(int size) {
+		double[][] readings = BatchPIDBenchmark.makeReadings(size);
+		TableSensor[] sensors = new TableSensor[size];
+		RecordingOutput[] controllerOutputs = new RecordingOutput[size];
+		RecordingOutput[] batchOutputs = new RecordingOutput[size];
+		ClockedPIDController[] controllers = new ClockedPIDController[size];
+		BatchPIDController batch = new BatchPIDController(size);
+		double[] measurements = new double[size];
+		for (int i = 0; i < size; i++) {
+			sensors[i] = new TableSensor(readings, i);
+			controllerOutputs[i] = new RecordingOutput();
+			batchOutputs[i] = new RecordingOutput();
+			controllers[i] = new ClockedPIDController(sensors[i]);
+			controllers[i].setHighRate(true);
+			BatchPIDBenchmark.configure(controllers[i], i);
+			controllers[i].setOutput(controllerOutputs[i]);
+			BatchPIDBenchmark.configure(batch, i);
+		}
+		// Check that both give the same outputs, tick by tick
+		for (ClockedPIDController controller : controllers) {
+			controller.enable();
+		}
+		double maxDifference = 0.0;
+		for (int tick = 0; tick < 10 * BatchPIDBenchmark.READINGS; tick++) {
+			BatchPIDBenchmark.now += BatchPIDBenchmark.PERIOD_NANOS;
+			int row = tick % BatchPIDBenchmark.READINGS;
+			for (int i = 0; i < size; i++) {
+				sensors[i].row = row;
+				if (i % 2 == 0 && tick % 256 == 255) {
+					// Across the boundary, such as from -150 to 150 degrees
+					controllers[i].setSetpoint(-controllers[i].getSetpoint());
+					batch.setSetpoint(i, -batch.getSetpoint(i));
+				}
+			}
+			MotionControllerExecutor.tickManually();
+			BatchPIDBenchmark.tickBatch(batch, sensors, measurements, batchOutputs);
+			if (tick > 0) {
+				for (int i = 0; i < size; i++) {
+					maxDifference = Math.max(maxDifference, Math.abs(controllerOutputs[i].value - batchOutputs[i].value));
+				}
+			}
+		}
+		long[] separate = new long[BatchPIDBenchmark.TRIALS];
+		long[] batched = new long[BatchPIDBenchmark.TRIALS];
+		BatchPIDBenchmark.timeSeparate(sensors, BatchPIDBenchmark.WARMUP_TICKS);
+		BatchPIDBenchmark.timeBatch(batch, sensors, measurements, batchOutputs, BatchPIDBenchmark.WARMUP_TICKS);
+		for (int trial = 0; trial < BatchPIDBenchmark.TRIALS; trial++) {
+			separate[trial] = BatchPIDBenchmark.timeSeparate(sensors, BatchPIDBenchmark.TIMED_TICKS);
+			batched[trial] = BatchPIDBenchmark.timeBatch(batch, sensors, measurements, batchOutputs,
+				BatchPIDBenchmark.TIMED_TICKS);
+		}
+		long before = BatchPIDBenchmark.getAllocatedBytes();
+		BatchPIDBenchmark.timeBatch(batch, sensors, measurements, batchOutputs, BatchPIDBenchmark.TIMED_TICKS);
+		double allocated = (BatchPIDBenchmark.getAllocatedBytes() - before) / (double) BatchPIDBenchmark.TIMED_TICKS;
+		for (ClockedPIDController controller : controllers) {
+			controller.disable();
+		}
+		Arrays.sort(separate);
+		Arrays.sort(batched);
+		return new double[] {separate[0] / (double) BatchPIDBenchmark.TIMED_TICKS,
+				batched[0] / (double) BatchPIDBenchmark.TIMED_TICKS, maxDifference, allocated};
+	}
+
+	/**
+	 * One batch tick, as a subsystem would run it: read every sensor, calculate, write every output.
+	 */
+	protected static void tickBatch(BatchPIDController batch, TableSensor[] sensors, double[] measurements,
+		RecordingOutput[] outputs) {
+		for (int i = 0; i < sensors.length; i++) {
+			measurements[i] = sensors[i].pidGet();
+		}
+		double[] results = batch.calculate(measurements, BatchPIDBenchmark.now);
+		for (int i = 0; i < outputs.length; i++) {
+			outputs[i].pidWrite(results[i]);
+		}
+	}
+
+	protected static long timeSeparate(TableSensor[] sensors, int ticks) {
+		long start = System.nanoTime();
+		for (int tick = 0; tick < ticks; tick++) {
+			BatchPIDBenchmark.now += BatchPIDBenchmark.PERIOD_NANOS;
+			int row = tick & (BatchPIDBenchmark.READINGS - 1);
+			for (TableSensor sensor : sensors) {
+				sensor.row = row;
+			}
+			MotionControllerExecutor.tickManually();
+		}
+		return System.nanoTime() - start;
+	}
+
+	protected static long timeBatch(BatchPIDController batch, TableSensor[] sensors, double[] measurements,
+		RecordingOutput[] outputs, int ticks) {
+		long start = System.nanoTime();
+		for (int tick = 0; tick < ticks; tick++) {
+			BatchPIDBenchmark.now += BatchPIDBenchmark.PERIOD_NANOS;
+			int row = tick & (BatchPIDBenchmark.READINGS - 1);
+			for (TableSensor sensor : sensors) {
+				sensor.row = row;
+			}
+			BatchPIDBenchmark.tickBatch(batch, sensors, measurements, outputs);
+		}
+		return System.nanoTime() - start;
+	}
+
+	public static void main(String[] args) {
+		MotionControllerExecutor.setManual(true);
+		System.out.println("loops  separate (ns/tick)  batch (ns/tick)  speedup  max output difference  batch bytes/tick");
+		for (int size : BatchPIDBenchmark.SIZES) {
+			double[] result = BatchPIDBenchmark.run(size);
+			System.out.println(String.format("%5d %19.1f %16.1f %8.2fx %22.2e %17.2f", size, result[0],
+				result[1], result[0] / result[1], result[2], result[3]));
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers.simulation;
+
+
+import org.usfirst.frc4904.standard.custom.motioncontrollers.FeedforwardPIDController;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionControllerExecutor;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.TrapezoidalProfile;
+import edu.wpi.first.wpilibj.PIDSourceType;
+
+/**
+ * Compares spinning up a simulated flywheel with PID alone and with feedforward.
+ * This runs on a laptop, not on the robot:
+ *
+ * <pre>
+ * java org.usfirst.frc4904.standard.custom.motioncontrollers.simulation.FeedforwardBenchmark
+ * </pre>
+ *
+ * The feedforward gains are the flywheel's own (kS is its friction, kV is one over its
+ * free speed and kA is its time constant over its free speed), as system identification would find.
+ */
+public class FeedforwardBenchmark {
+	public static final double HERTZ = 200.0;
+	public static final double SECONDS = 5.0;
+	public static final double FREE_SPEED = 100.0; // rotations per second
+	public static final double TIME_CONSTANT = 0.3; // seconds
+	public static final double FRICTION = 0.05;
+	public static final double TARGET = 70.0; // rotations per second
+	public static final double MAX_ACCELERATION = 150.0; // rotations per second squared
+	public static final double TOLERANCE = 1.0; // rotations per second
+
+	public static enum Control {
+		PID, PID_KV, PID_KS_KV_KA_PROFILED;
+	}
+
+	/**
+	 * A FeedforwardPIDController timed by the simulation.
+	 */
+	protected static class SimulatedFeedforwardController extends FeedforwardPIDController {
+		protected long nanos;
+
+		public SimulatedFeedforwardController(double P, double I, double D, SimulatedMechanism mechanism) {
+			super(P, I, D, mechanism);
+			nanos = 0;
+		}
+
+		@Override
+		protected long getTimeNanos() {
+			return nanos;
+		}
+	}
+
+	/**
+	 * Spins up the flywheel.
+	 *
+	 * @param control
+	 * @return the time until the flywheel stays within tolerance of the target (seconds) and the overshoot
+	 */
+	public static double[] run(Control control) {
+		SimulatedMechanism flywheel = new SimulatedMechanism(FeedforwardBenchmark.FREE_SPEED,
+			FeedforwardBenchmark.TIME_CONSTANT);
+		flywheel.setFriction(FeedforwardBenchmark.FRICTION);
+		flywheel.setPIDSourceType(PIDSourceType.kRate);
+		SimulatedFeedforwardController controller = new SimulatedFeedforwardController(0.03, 0.1, 0.0, flywheel);
+		controller.setHighRate(true);
+		controller.setIThreshold(20.0);
+		controller.setOutputRange(-1.0, 1.0);
+		controller.setOutput(flywheel);
+		if (control == Control.PID_KV) {
+			controller.setFeedforward(0.0, 1.0 / FeedforwardBenchmark.FREE_SPEED, 0.0);
+		} else if (control == Control.PID_KS_KV_KA_PROFILED) {
+			controller.setFeedforward(FeedforwardBenchmark.FRICTION, 1.0 / FeedforwardBenchmark.FREE_SPEED,
+				FeedforwardBenchmark.TIME_CONSTANT / FeedforwardBenchmark.FREE_SPEED);
+		}
+		controller.enable();
+		if (control == Control.PID_KS_KV_KA_PROFILED) {
+			// The setpoint is a velocity, so the profile's velocity is the flywheel's acceleration
+			controller.followProfile(new TrapezoidalProfile(0.0, FeedforwardBenchmark.TARGET,
+				FeedforwardBenchmark.MAX_ACCELERATION, 100 * FeedforwardBenchmark.MAX_ACCELERATION));
+		} else {
+			controller.setSetpoint(FeedforwardBenchmark.TARGET);
+		}
+		long periodNanos = (long) (1.0e9 / FeedforwardBenchmark.HERTZ);
+		long end = (long) (FeedforwardBenchmark.SECONDS * 1.0e9);
+		long settled = 0;
+		double overshoot = 0.0;
+		for (long now = 0; now < end; now += periodNanos) {
+			controller.nanos = now;
+			MotionControllerExecutor.tickManually();
+			flywheel.step(periodNanos / 1.0e9);
+			double error = flywheel.getVelocity() - FeedforwardBenchmark.TARGET;
+			overshoot = Math.max(overshoot, error);
+			if (Math.abs(error) > FeedforwardBenchmark.TOLERANCE) {
+				settled = now + periodNanos;
+			}
+		}
+		controller.disable();
+		return new double[] {settled / 1.0e9, overshoot};
+	}
+
+	public static void main(String[] args) {
+		MotionControllerExecutor.setManual(true);
+		System.out.println("control                  time to speed (s)  overshoot (rps)");
+		for (Control control : Control.values()) {
+			double[] result = FeedforwardBenchmark.run(control);
+			System.out.println(String.format("%-24s %17.3f %16.2f", control, result[0], result[1]));
+		}
+	}
+}
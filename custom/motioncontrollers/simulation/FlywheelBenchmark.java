@@ -0,0 +1,192 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers.simulation;
+
+
+import java.lang.management.ManagementFactory;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.BangBangController;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionController;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionControllerExecutor;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.TakeBackHalfController;
+import org.usfirst.frc4904.standard.custom.sensors.NativeDerivativeSensor;
+
+/**
+ * Compares flywheel velocity controllers spinning up a simulated shooter, at 50 Hz
+ * (the default executor rate). This runs on a laptop, not on the robot:
+ *
+ * <pre>
+ * java org.usfirst.frc4904.standard.custom.motioncontrollers.simulation.FlywheelBenchmark
+ * </pre>
+ *
+ * The flywheel is heavy (a 1 second time constant), its encoder is noisy and stays in
+ * displacement mode, so the controllers read its native rate. Four seconds after starting,
+ * a shot takes 20% of the speed out. Spin-up and recovery are the time until the speed first
+ * comes within 2% of the target; ripple is the RMS speed error in the second before the shot,
+ * and switches count the ticks the output jumps by more than 0.05.
+ * Allocation is measured by calling the warmed-up controller directly.
+ */
+public class FlywheelBenchmark {
+	public static final double HERTZ = 50.0;
+	public static final double SECONDS = 6.0;
+	public static final double SHOT_SECONDS = 4.0;
+	public static final double SHOT_LOSS = 0.2;
+	public static final double FREE_SPEED = 100.0; // rotations per second
+	public static final double TIME_CONSTANT = 1.0; // seconds
+	public static final double FRICTION = 0.03;
+	public static final double NOISE = 0.5; // rotations per second
+	public static final double TARGET = 70.0; // rotations per second
+	public static final double BAND = 0.02; // Fraction of the target
+	public static final int ALLOCATION_CALLS = 100000;
+
+	public static enum Control {
+		PIDF, BANG_BANG, BANG_BANG_HYSTERESIS, TAKE_BACK_HALF;
+	}
+
+	/**
+	 * A simulated flywheel whose encoder reports its rate natively.
+	 */
+	protected static class SimulatedFlywheel extends SimulatedMechanism implements NativeDerivativeSensor {
+		public SimulatedFlywheel() {
+			super(FlywheelBenchmark.FREE_SPEED, FlywheelBenchmark.TIME_CONSTANT);
+		}
+
+		@Override
+		public double getRate() {
+			return noise == 0.0 ? velocity : velocity + noise * random.nextGaussian();
+		}
+
+		@Override
+		public double getRateSafely() {
+			return getRate();
+		}
+	}
+
+	/**
+	 * A TakeBackHalfController timed by the simulation.
+	 */
+	protected static class SimulatedTakeBackHalfController extends TakeBackHalfController {
+		protected long nanos;
+
+		public SimulatedTakeBackHalfController(double gain, double F, SimulatedMechanism mechanism) {
+			super(gain, F, mechanism);
+			nanos = 0;
+		}
+
+		@Override
+		protected long getTimeNanos() {
+			return nanos;
+		}
+	}
+
+	protected static long getAllocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread
+			.currentThread().getId());
+	}
+
+	/**
+	 * Spins up the flywheel and takes a shot.
+	 *
+	 * @param control
+	 * @return the spin-up time and recovery time (seconds), the ripple once spun up (rotations per second),
+	 *         the output switches per second once spun up, and the bytes allocated per call
+	 */
+	public static double[] run(Control control) {
+		SimulatedFlywheel flywheel = new SimulatedFlywheel();
+		flywheel.setFriction(FlywheelBenchmark.FRICTION);
+		flywheel.setNoise(FlywheelBenchmark.NOISE);
+		MotionController controller;
+		double F = 1.0 / FlywheelBenchmark.FREE_SPEED;
+		if (control == Control.TAKE_BACK_HALF) {
+			controller = new SimulatedTakeBackHalfController(0.1, F, flywheel);
+		} else if (control == Control.PIDF) {
+			// The PID reads the rate as its input through a rate-mode view of the flywheel
+			SimulatedMechanism rate = new SimulatedMechanism(FlywheelBenchmark.FREE_SPEED, FlywheelBenchmark.TIME_CONSTANT) {
+				@Override
+				public double pidGet() {
+					return flywheel.getRate();
+				}
+			};
+			PIDRateBenchmark.SimulatedPIDController pid = new PIDRateBenchmark.SimulatedPIDController(0.05, 0.1, 0.0, rate);
+			pid.setPIDF(0.05, 0.1, 0.0, F);
+			pid.setHighRate(true);
+			pid.setIThreshold(10.0);
+			controller = pid;
+		} else {
+			// A is negative because the flywheel speeds up with a positive output
+			BangBangController bangBang = new BangBangController(flywheel, -0.3, F);
+			if (control == Control.BANG_BANG_HYSTERESIS) {
+				bangBang.setHysteresis(1.0, 1.0);
+			} else {
+				bangBang.setHysteresis(0.0, 0.0); // Switches whenever the speed crosses the setpoint
+			}
+			controller = bangBang;
+		}
+		controller.setOutput(flywheel);
+		controller.setOutputRange(-1.0, 1.0);
+		controller.setSetpoint(FlywheelBenchmark.TARGET);
+		controller.enable();
+		long periodNanos = (long) (1.0e9 / FlywheelBenchmark.HERTZ);
+		long end = (long) (FlywheelBenchmark.SECONDS * 1.0e9);
+		long shot = (long) (FlywheelBenchmark.SHOT_SECONDS * 1.0e9);
+		double band = FlywheelBenchmark.BAND * FlywheelBenchmark.TARGET;
+		long spunUp = -1;
+		long recovered = -1;
+		double squaredRipple = 0.0;
+		int rippleTicks = 0;
+		int switches = 0;
+		double lastOutput = 0.0;
+		for (long now = 0; now < end; now += periodNanos) {
+			if (controller instanceof SimulatedTakeBackHalfController) {
+				((SimulatedTakeBackHalfController) controller).nanos = now;
+			} else if (controller instanceof PIDRateBenchmark.SimulatedPIDController) {
+				((PIDRateBenchmark.SimulatedPIDController) controller).nanos = now;
+			}
+			if (now == shot) {
+				flywheel.setVelocity(flywheel.getVelocity() * (1 - FlywheelBenchmark.SHOT_LOSS));
+			}
+			MotionControllerExecutor.tickManually();
+			flywheel.step(periodNanos / 1.0e9);
+			double error = flywheel.getVelocity() - FlywheelBenchmark.TARGET;
+			if (Math.abs(error) <= band) {
+				if (now < shot && spunUp < 0) {
+					spunUp = now + periodNanos;
+				} else if (now >= shot && recovered < 0) {
+					recovered = now + periodNanos;
+				}
+			}
+			if (now >= shot - 1000000000L && now < shot) {
+				// The second before the shot, by which time every controller has spun up
+				squaredRipple += error * error;
+				rippleTicks++;
+				if (Math.abs(flywheel.getOutput() - lastOutput) > 0.05) {
+					switches++;
+				}
+			}
+			lastOutput = flywheel.getOutput();
+		}
+		controller.disable();
+		controller.enable();
+		controller.get();
+		long before = FlywheelBenchmark.getAllocatedBytes();
+		for (int i = 0; i < FlywheelBenchmark.ALLOCATION_CALLS; i++) {
+			controller.get();
+		}
+		double allocated = (FlywheelBenchmark.getAllocatedBytes() - before) / (double) FlywheelBenchmark.ALLOCATION_CALLS;
+		controller.disable();
+		return new double[] {spunUp / 1.0e9, (recovered - shot) / 1.0e9, Math.sqrt(squaredRipple / rippleTicks),
+				switches / ((double) rippleTicks / FlywheelBenchmark.HERTZ), allocated};
+	}
+
+	public static void main(String[] args) {
+		MotionControllerExecutor.setManual(true);
+		for (int i = 0; i < 10; i++) {
+			for (Control control : Control.values()) {
+				FlywheelBenchmark.run(control); // Warm up the JIT
+			}
+		}
+		System.out.println("control               spin-up (s)  recovery (s)  ripple (rps)  switches/s  bytes/call");
+		for (Control control : Control.values()) {
+			double[] result = FlywheelBenchmark.run(control);
+			System.out.println(String.format("%-21s %11.2f %13.2f %13.2f %11.1f %11.2f", control, result[0], result[1],
+				result[2], result[3], result[4]));
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers.simulation;
+
+
+import java.util.Random;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.CustomPIDController;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionControllerExecutor;
+
+/**
+ * Compares CustomPIDController tracking error at 50 Hz and 500 Hz on a simulated mechanism.
+ * This runs on a laptop, not on the robot:
+ *
+ * <pre>
+ * java org.usfirst.frc4904.standard.custom.motioncontrollers.simulation.PIDRateBenchmark
+ * </pre>
+ *
+ * The mechanism follows a 1 Hz sine wave for 10 seconds. Each tick starts up to
+ * 0.4 milliseconds early or late, like a real loop. Gains are per second, and are
+ * converted to per millisecond for the original (millisecond) timing.
+ */
+public class PIDRateBenchmark {
+	public static final double SECONDS = 10.0;
+	public static final double AMPLITUDE = 0.2; // meters
+	public static final double FREQUENCY = 1.0; // hertz
+	public static final long JITTER_NANOS = 400000;
+	public static final double[][] GAINS = { {50.0, 25.0, 2.0}, {200.0, 100.0, 2.0}};
+
+	/**
+	 * A CustomPIDController timed by the simulation.
+	 */
+	protected static class SimulatedPIDController extends CustomPIDController {
+		protected long nanos;
+
+		public SimulatedPIDController(double P, double I, double D, SimulatedMechanism mechanism) {
+			super(P, I, D, mechanism);
+			nanos = 0;
+		}
+
+		@Override
+		protected long getTimeNanos() {
+			return nanos;
+		}
+	}
+
+	protected static double target(long nanos) {
+		return PIDRateBenchmark.AMPLITUDE * Math.sin(2 * Math.PI * PIDRateBenchmark.FREQUENCY * nanos / 1.0e9);
+	}
+
+	/**
+	 * Runs the sine wave.
+	 *
+	 * @param hertz
+	 *        The controller rate
+	 * @param highRate
+	 *        Whether to time in fractional seconds
+	 * @param gains
+	 *        P, I and D per second
+	 * @return the RMS and maximum tracking error, in meters
+	 */
+	public static double[] run(double hertz, boolean highRate, double[] gains) {
+		SimulatedMechanism mechanism = new SimulatedMechanism(3.0, 0.08);
+		SimulatedPIDController controller;
+		if (highRate) {
+			controller = new SimulatedPIDController(gains[0], gains[1], gains[2], mechanism);
+			controller.setHighRate(true);
+		} else {
+			controller = new SimulatedPIDController(gains[0], gains[1] / 1000.0, gains[2] * 1000.0, mechanism);
+		}
+		controller.setIThreshold(1.0);
+		controller.setOutputRange(-1.0, 1.0);
+		controller.setOutput(mechanism);
+		controller.enable();
+		Random random = new Random(4904);
+		long periodNanos = (long) (1.0e9 / hertz);
+		long end = (long) (PIDRateBenchmark.SECONDS * 1.0e9);
+		long now = 0;
+		double squaredError = 0.0;
+		double maxError = 0.0;
+		long samples = 0;
+		for (long tick = periodNanos; now < end; tick += periodNanos) {
+			controller.nanos = now;
+			controller.setSetpoint(PIDRateBenchmark.target(now));
+			MotionControllerExecutor.tickManually();
+			long next = tick + (long) ((random.nextDouble() * 2 - 1) * PIDRateBenchmark.JITTER_NANOS);
+			// Measure the error every simulated 0.1 milliseconds, not just at controller ticks
+			while (now < next) {
+				long step = Math.min(100000, next - now);
+				mechanism.step(step / 1.0e9);
+				now += step;
+				if (now > 1.0e9) { // Skip the first second, while the integral winds up
+					double error = PIDRateBenchmark.target(now) - mechanism.getPosition();
+					squaredError += error * error;
+					maxError = Math.max(maxError, Math.abs(error));
+					samples++;
+				}
+			}
+		}
+		controller.disable();
+		return new double[] {Math.sqrt(squaredError / samples), maxError};
+	}
+
+	public static void main(String[] args) {
+		MotionControllerExecutor.setManual(true);
+		System.out.println("gains (P, I, D)     rate    timing        RMS error (mm)  max error (mm)");
+		for (double[] gains : PIDRateBenchmark.GAINS) {
+			for (double hertz : new double[] {50, 500}) {
+				for (boolean highRate : new boolean[] {false, true}) {
+					double[] error = PIDRateBenchmark.run(hertz, highRate, gains);
+					System.out.println(String.format("%4.0f, %4.0f, %4.1f    %4.0f Hz %-13s %14.2f %15.2f", gains[0], gains[1],
+						gains[2], hertz, highRate ? "seconds" : "milliseconds", error[0] * 1000, error[1] * 1000));
+				}
+			}
+		}
+	}
+}
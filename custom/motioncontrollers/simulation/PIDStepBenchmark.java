@@ -0,0 +1,97 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers.simulation;
+
+
+import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionControllerExecutor;
+
+/**
+ * Compares CustomPIDController step responses with and without the derivative filter,
+ * setpoint weighting and anti-windup, on a simulated mechanism with a noisy sensor.
+ * This runs on a laptop, not on the robot:
+ *
+ * <pre>
+ * java org.usfirst.frc4904.standard.custom.motioncontrollers.simulation.PIDStepBenchmark
+ * </pre>
+ *
+ * The mechanism steps 1 meter, which saturates the output for most of the move.
+ * Output chatter is the RMS change in output between ticks once settled, which is
+ * what sensor noise through the D term does to the motor.
+ */
+public class PIDStepBenchmark {
+	public static final double HERTZ = 500.0;
+	public static final double SECONDS = 6.0;
+	public static final double STEP = 1.0; // meters
+	public static final double NOISE = 0.0005; // meters
+	public static final double TOLERANCE = 0.01; // meters
+	public static final double P = 6.0;
+	public static final double I = 2.0;
+	public static final double D = 0.4;
+
+	public static enum Tuning {
+		PLAIN, FILTERED_DERIVATIVE, SETPOINT_WEIGHTED, ANTI_WINDUP, ALL;
+	}
+
+	/**
+	 * Runs one step.
+	 *
+	 * @param tuning
+	 * @return the overshoot (meters), the settle time (seconds) and the output chatter once settled
+	 */
+	public static double[] run(Tuning tuning) {
+		SimulatedMechanism mechanism = new SimulatedMechanism(2.0, 0.08);
+		mechanism.setNoise(PIDStepBenchmark.NOISE);
+		PIDRateBenchmark.SimulatedPIDController controller = new PIDRateBenchmark.SimulatedPIDController(
+			PIDStepBenchmark.P, PIDStepBenchmark.I, PIDStepBenchmark.D, mechanism);
+		controller.setHighRate(true);
+		controller.setIThreshold(2.0 * PIDStepBenchmark.STEP); // Integrate the whole move, so windup shows
+		controller.setOutputRange(-1.0, 1.0);
+		controller.setOutput(mechanism);
+		if (tuning == Tuning.FILTERED_DERIVATIVE || tuning == Tuning.ALL) {
+			controller.setDerivativeFilter(0.01);
+		}
+		if (tuning == Tuning.SETPOINT_WEIGHTED || tuning == Tuning.ALL) {
+			controller.setSetpointWeights(1.0, 0.0);
+		}
+		if (tuning == Tuning.ANTI_WINDUP || tuning == Tuning.ALL) {
+			controller.setAntiWindup(20.0);
+		}
+		controller.setSetpoint(0.0);
+		controller.enable();
+		long periodNanos = (long) (1.0e9 / PIDStepBenchmark.HERTZ);
+		long end = (long) (PIDStepBenchmark.SECONDS * 1.0e9);
+		double overshoot = 0.0;
+		long settled = 0;
+		double lastOutput = 0.0;
+		double chatter = 0.0;
+		long chatterSamples = 0;
+		for (long now = 0, tick = 0; now < end; now += periodNanos, tick++) {
+			controller.nanos = now;
+			if (tick == 2) {
+				controller.setSetpoint(PIDStepBenchmark.STEP);
+			}
+			MotionControllerExecutor.tickManually();
+			mechanism.step(periodNanos / 1.0e9);
+			double error = mechanism.getPosition() - PIDStepBenchmark.STEP;
+			overshoot = Math.max(overshoot, error);
+			if (Math.abs(error) > PIDStepBenchmark.TOLERANCE) {
+				settled = now + periodNanos;
+			}
+			if (now > end / 2) { // Well after settling
+				double change = mechanism.getOutput() - lastOutput;
+				chatter += change * change;
+				chatterSamples++;
+			}
+			lastOutput = mechanism.getOutput();
+		}
+		controller.disable();
+		return new double[] {overshoot, settled / 1.0e9, Math.sqrt(chatter / chatterSamples)};
+	}
+
+	public static void main(String[] args) {
+		MotionControllerExecutor.setManual(true);
+		System.out.println("tuning               overshoot (mm)  settle time (s)  output chatter");
+		for (Tuning tuning : Tuning.values()) {
+			double[] result = PIDStepBenchmark.run(tuning);
+			System.out.println(String.format("%-20s %14.1f %16.3f %15.4f", tuning, result[0] * 1000, result[1], result[2]));
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers.simulation;
+
+
+import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionControllerExecutor;
+
+/**
+ * Compares ways of deciding when an autonomous move is done, by chaining moves
+ * on a simulated mechanism with a noisy sensor, at 200 Hz.
+ * This runs on a laptop, not on the robot:
+ *
+ * <pre>
+ * java org.usfirst.frc4904.standard.custom.motioncontrollers.simulation.SettleBenchmark
+ * </pre>
+ *
+ * Each move starts the moment the previous one is judged done, like a command group.
+ * Judged by the error alone, a move ends as the mechanism swings through the target, so the
+ * next move starts from the wrong place at speed. A fixed time per move is safe but slow.
+ * With settle criteria, a move ends once the mechanism has stopped at the target.
+ * The handoff error and speed are the worst of any move's, at the moment the next move starts.
+ */
+public class SettleBenchmark {
+	public static final double HERTZ = 200.0;
+	public static final double[] TARGETS = {1.0, 0.3, 1.5, 0.5}; // meters
+	public static final double NOISE = 0.0005; // meters
+	public static final double TOLERANCE = 0.02; // meters
+	public static final double RATE_TOLERANCE = 0.05; // meters per second
+	public static final double SETTLE_SECONDS = 0.1;
+	public static final double RATE_FILTER = 0.05; // seconds
+	public static final double FIXED_SECONDS = 2.0; // per move
+	public static final double TIMEOUT_SECONDS = 10.0; // per move
+
+	public static enum Strategy {
+		ERROR_ONLY, FIXED_TIME, SETTLE;
+	}
+
+	/**
+	 * Runs every move in turn.
+	 *
+	 * @param strategy
+	 * @return the total time (seconds), the worst handoff error (meters) and speed (meters per second),
+	 *         and the mean time to settle reported by the controller (seconds, NaN without settle criteria)
+	 */
+	public static double[] run(Strategy strategy) {
+		SimulatedMechanism mechanism = new SimulatedMechanism(2.0, 0.1);
+		mechanism.setNoise(SettleBenchmark.NOISE);
+		PIDRateBenchmark.SimulatedPIDController controller = new PIDRateBenchmark.SimulatedPIDController(7.0, 0.0, 0.15,
+			mechanism);
+		controller.setHighRate(true);
+		controller.setOutputRange(-1.0, 1.0);
+		controller.setAbsoluteTolerance(SettleBenchmark.TOLERANCE);
+		controller.setOutput(mechanism);
+		if (strategy == Strategy.SETTLE) {
+			controller.setSettleCriteria(SettleBenchmark.RATE_TOLERANCE, SettleBenchmark.SETTLE_SECONDS);
+			controller.getSettleDetector().setRateFilter(SettleBenchmark.RATE_FILTER);
+		}
+		controller.enable();
+		long periodNanos = (long) (1.0e9 / SettleBenchmark.HERTZ);
+		long now = 0;
+		double worstError = 0.0;
+		double worstSpeed = 0.0;
+		double totalSettle = 0.0;
+		for (double target : SettleBenchmark.TARGETS) {
+			controller.nanos = now;
+			controller.reset();
+			controller.setSetpoint(target);
+			long moveStart = now;
+			while (true) {
+				controller.nanos = now;
+				MotionControllerExecutor.tickManually();
+				mechanism.step(periodNanos / 1.0e9);
+				now += periodNanos;
+				double seconds = (now - moveStart) / 1.0e9;
+				boolean done;
+				if (strategy == Strategy.FIXED_TIME) {
+					done = seconds >= SettleBenchmark.FIXED_SECONDS;
+				} else {
+					done = controller.onTarget() || seconds >= SettleBenchmark.TIMEOUT_SECONDS;
+				}
+				if (done) {
+					break;
+				}
+			}
+			totalSettle += controller.getTimeToSettle();
+			worstError = Math.max(worstError, Math.abs(mechanism.getPosition() - target));
+			worstSpeed = Math.max(worstSpeed, Math.abs(mechanism.getVelocity()));
+		}
+		controller.disable();
+		return new double[] {now / 1.0e9, worstError, worstSpeed, totalSettle / SettleBenchmark.TARGETS.length};
+	}
+
+	public static void main(String[] args) {
+		MotionControllerExecutor.setManual(true);
+		System.out.println("strategy    total time (s)  handoff error (m)  handoff speed (m/s)  mean time to settle (s)");
+		for (Strategy strategy : Strategy.values()) {
+			double[] result = SettleBenchmark.run(strategy);
+			System.out.println(String.format("%-11s %14.3f %18.4f %20.3f %24.3f", strategy, result[0], result[1], result[2],
+				result[3]));
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers.simulation;
+
+
+import java.util.Random;
+import org.usfirst.frc4904.standard.custom.sensors.PIDSensor;
+import edu.wpi.first.wpilibj.PIDOutput;
+import edu.wpi.first.wpilibj.PIDSourceType;
+
+/**
+ * A motor-driven mechanism simulated on a laptop, for benchmarking
+ * MotionControllers without a robot.
+ * <p>
+ * The motor accelerates the mechanism toward free speed times its output
+ * with a time constant, like a DC motor:
+ * acceleration = (freeSpeed * output - velocity) / timeConstant.
+ * Friction (the output needed to start moving) and gravity (constant, or
+ * varying with the cosine of the position for an arm) can be added.
+ * <p>
+ * Real arms and elevators flex. With compliance set, a load (the end of the arm)
+ * follows the measured position through a spring, so it rings after sudden changes
+ * in acceleration. The load is too light to pull back on the motor.
+ * <p>
+ * The mechanism is both the sensor (position, or velocity when the PIDSourceType is kRate)
+ * and the output of a MotionController. Call {@link #step(double)} to advance time.
+ *
+ */
+public class SimulatedMechanism implements PIDSensor, PIDOutput {
+	public static final double DEFAULT_SUBSTEP_SECONDS = 0.0001;
+	protected final double freeSpeed;
+	protected final double timeConstant;
+	protected double friction;
+	protected double gravity;
+	protected boolean arm;
+	protected double position;
+	protected double velocity;
+	protected double output;
+	protected double naturalFrequency;
+	protected double dampingRatio;
+	protected double loadPosition;
+	protected double loadVelocity;
+	protected double noise;
+	protected final Random random;
+	protected PIDSourceType pidSource;
+
+	/**
+	 * A motor-driven mechanism simulated on a laptop.
+	 *
+	 * @param freeSpeed
+	 *        Speed (position units per second) at full output with no load
+	 * @param timeConstant
+	 *        Seconds to reach 63% of a new speed
+	 */
+	public SimulatedMechanism(double freeSpeed, double timeConstant) {
+		this.freeSpeed = freeSpeed;
+		this.timeConstant = timeConstant;
+		friction = 0.0;
+		gravity = 0.0;
+		arm = false;
+		position = 0.0;
+		velocity = 0.0;
+		output = 0.0;
+		naturalFrequency = 0.0;
+		dampingRatio = 0.0;
+		loadPosition = 0.0;
+		loadVelocity = 0.0;
+		noise = 0.0;
+		random = new Random(4904);
+		pidSource = PIDSourceType.kDisplacement;
+	}
+
+	/**
+	 * @param friction
+	 *        The output needed to start the mechanism moving (opposes motion)
+	 */
+	public void setFriction(double friction) {
+		this.friction = friction;
+	}
+
+	/**
+	 * @param gravity
+	 *        Acceleration (position units per second squared) pulling the mechanism toward negative positions
+	 * @param arm
+	 *        If true, gravity is scaled by the cosine of the position (in radians from horizontal)
+	 */
+	public void setGravity(double gravity, boolean arm) {
+		this.gravity = gravity;
+		this.arm = arm;
+	}
+
+	/**
+	 * @param naturalFrequency
+	 *        How fast the load rings, in hertz (0 for a rigid mechanism)
+	 * @param dampingRatio
+	 *        How quickly the ringing dies out (1 or more for no ringing)
+	 */
+	public void setCompliance(double naturalFrequency, double dampingRatio) {
+		this.naturalFrequency = naturalFrequency;
+		this.dampingRatio = dampingRatio;
+	}
+
+	/**
+	 * Adds gaussian noise to what the sensor reads (not to the mechanism itself).
+	 * The noise is seeded, so runs are repeatable.
+	 *
+	 * @param noise
+	 *        The standard deviation of the noise
+	 */
+	public void setNoise(double noise) {
+		this.noise = noise;
+	}
+
+	/**
+	 * Moves the mechanism to a position, at rest.
+	 *
+	 * @param position
+	 */
+	public void reset(double position) {
+		this.position = position;
+		velocity = 0.0;
+		loadPosition = position;
+		loadVelocity = 0.0;
+	}
+
+	/**
+	 * Changes the speed suddenly, such as when a ball takes speed out of a flywheel.
+	 *
+	 * @param velocity
+	 */
+	public void setVelocity(double velocity) {
+		this.velocity = velocity;
+	}
+
+	/**
+	 * Advances the simulation.
+	 *
+	 * @param seconds
+	 */
+	public void step(double seconds) {
+		while (seconds > 0) {
+			double dt = Math.min(seconds, SimulatedMechanism.DEFAULT_SUBSTEP_SECONDS);
+			double drive = output;
+			if (velocity != 0.0) {
+				drive -= Math.signum(velocity) * friction;
+			} else if (Math.abs(drive) <= friction) {
+				drive = 0.0; // Stuck
+			} else {
+				drive -= Math.signum(drive) * friction;
+			}
+			double acceleration = (freeSpeed * drive - velocity) / timeConstant
+				- (arm ? gravity * Math.cos(position) : gravity);
+			double lastVelocity = velocity;
+			velocity += acceleration * dt;
+			if (friction > 0 && lastVelocity != 0.0 && Math.signum(velocity) != Math.signum(lastVelocity)
+				&& Math.abs(output) <= friction) {
+				velocity = 0.0; // Friction stops the mechanism rather than reversing it
+			}
+			position += velocity * dt;
+			if (naturalFrequency > 0) {
+				double omega = 2 * Math.PI * naturalFrequency;
+				loadVelocity += (omega * omega * (position - loadPosition)
+					+ 2 * dampingRatio * omega * (velocity - loadVelocity)) * dt;
+				loadPosition += loadVelocity * dt;
+			} else {
+				loadPosition = position;
+				loadVelocity = velocity;
+			}
+			seconds -= dt;
+		}
+	}
+
+	public double getPosition() {
+		return position;
+	}
+
+	public double getVelocity() {
+		return velocity;
+	}
+
+	/**
+	 * @return where the load is (the same as the position unless compliance is set)
+	 */
+	public double getLoadPosition() {
+		return loadPosition;
+	}
+
+	public double getOutput() {
+		return output;
+	}
+
+	@Override
+	public void pidWrite(double output) {
+		this.output = Math.max(Math.min(output, 1.0), -1.0);
+	}
+
+	@Override
+	public void setPIDSourceType(PIDSourceType pidSource) {
+		this.pidSource = pidSource;
+	}
+
+	@Override
+	public PIDSourceType getPIDSourceType() {
+		return pidSource;
+	}
+
+	@Override
+	public double pidGet() {
+		double value = pidSource == PIDSourceType.kRate ? velocity : position;
+		return noise == 0.0 ? value : value + noise * random.nextGaussian();
+	}
+
+	@Override
+	public double pidGetSafely() {
+		return pidGet();
+	}
+}
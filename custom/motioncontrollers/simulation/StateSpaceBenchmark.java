@@ -0,0 +1,230 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers.simulation;
+
+
+import java.lang.management.ManagementFactory;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.FeedforwardPIDController;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionController;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionControllerExecutor;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.StateSpaceController;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.TrapezoidalProfile;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.statespace.KalmanObserver;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.statespace.LinearQuadraticRegulator;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.statespace.LinearSystem;
+import edu.wpi.first.wpilibj.PIDSourceType;
+
+/**
+ * Compares a StateSpaceController with a FeedforwardPIDController (with the same
+ * kS, kV and kA) on a simulated flywheel and a simulated elevator, both with noisy sensors,
+ * at 200 Hz. This runs on a laptop, not on the robot:
+ *
+ * <pre>
+ * java org.usfirst.frc4904.standard.custom.motioncontrollers.simulation.StateSpaceBenchmark
+ * </pre>
+ *
+ * The models are the mechanisms' own constants, as system identification would find.
+ * Tracking error is the RMS difference between the true (noiseless) state and the profile.
+ * Output chatter is the RMS change in output between ticks once the profile is over,
+ * which is what sensor noise does to the motor. Tick time is measured around each
+ * manual executor tick, and allocation by calling the warmed-up controller directly.
+ */
+public class StateSpaceBenchmark {
+	public static final double HERTZ = 200.0;
+	public static final double SECONDS = 4.0;
+	public static final double VOLTS = 12.0;
+	public static final double FLYWHEEL_FREE_SPEED = 100.0; // rotations per second
+	public static final double FLYWHEEL_TIME_CONSTANT = 0.3; // seconds
+	public static final double FLYWHEEL_FRICTION = 0.05;
+	public static final double FLYWHEEL_NOISE = 1.0; // rotations per second
+	public static final double FLYWHEEL_TARGET = 70.0; // rotations per second
+	public static final double FLYWHEEL_ACCELERATION = 150.0; // rotations per second squared
+	public static final double ELEVATOR_FREE_SPEED = 2.0; // meters per second
+	public static final double ELEVATOR_TIME_CONSTANT = 0.1; // seconds
+	public static final double ELEVATOR_FRICTION = 0.04;
+	public static final double ELEVATOR_NOISE = 0.002; // meters
+	public static final double ELEVATOR_TARGET = 1.2; // meters
+	public static final double ELEVATOR_VELOCITY = 1.5; // meters per second
+	public static final double ELEVATOR_ACCELERATION = 6.0; // meters per second squared
+	public static final int ALLOCATION_CALLS = 100000;
+
+	public static enum Mechanism {
+		FLYWHEEL, ELEVATOR;
+	}
+
+	public static enum Control {
+		PID_FEEDFORWARD, STATE_SPACE;
+	}
+
+	/**
+	 * A FeedforwardPIDController timed by the simulation.
+	 */
+	protected static class SimulatedFeedforwardController extends FeedforwardPIDController {
+		protected long nanos;
+
+		public SimulatedFeedforwardController(double P, double I, double D, SimulatedMechanism mechanism) {
+			super(P, I, D, mechanism);
+			nanos = 0;
+		}
+
+		@Override
+		protected long getTimeNanos() {
+			return nanos;
+		}
+	}
+
+	/**
+	 * A StateSpaceController timed by the simulation.
+	 */
+	protected static class SimulatedStateSpaceController extends StateSpaceController {
+		protected long nanos;
+
+		public SimulatedStateSpaceController(LinearSystem system, LinearQuadraticRegulator regulator,
+			KalmanObserver observer, SimulatedMechanism mechanism) {
+			super(system, regulator, observer, mechanism);
+			nanos = 0;
+		}
+
+		@Override
+		protected long getTimeNanos() {
+			return nanos;
+		}
+	}
+
+	protected static long getAllocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread
+			.currentThread().getId());
+	}
+
+	/**
+	 * Runs one mechanism along its profile.
+	 *
+	 * @param mechanismType
+	 * @param control
+	 * @return the tracking error, the final error, the output chatter once the profile is over,
+	 *         the mean and longest tick (microseconds), and the bytes allocated per call
+	 */
+	public static double[] run(Mechanism mechanismType, Control control) {
+		boolean flywheel = mechanismType == Mechanism.FLYWHEEL;
+		double freeSpeed = flywheel ? StateSpaceBenchmark.FLYWHEEL_FREE_SPEED : StateSpaceBenchmark.ELEVATOR_FREE_SPEED;
+		double timeConstant = flywheel ? StateSpaceBenchmark.FLYWHEEL_TIME_CONSTANT
+			: StateSpaceBenchmark.ELEVATOR_TIME_CONSTANT;
+		double friction = flywheel ? StateSpaceBenchmark.FLYWHEEL_FRICTION : StateSpaceBenchmark.ELEVATOR_FRICTION;
+		double noise = flywheel ? StateSpaceBenchmark.FLYWHEEL_NOISE : StateSpaceBenchmark.ELEVATOR_NOISE;
+		double target = flywheel ? StateSpaceBenchmark.FLYWHEEL_TARGET : StateSpaceBenchmark.ELEVATOR_TARGET;
+		SimulatedMechanism mechanism = new SimulatedMechanism(freeSpeed, timeConstant);
+		mechanism.setFriction(friction);
+		mechanism.setNoise(noise);
+		mechanism.setPIDSourceType(flywheel ? PIDSourceType.kRate : PIDSourceType.kDisplacement);
+		// The mechanism's constants in volts, as SysIdFit would report them
+		double kS = friction * StateSpaceBenchmark.VOLTS;
+		double kV = StateSpaceBenchmark.VOLTS / freeSpeed;
+		double kA = StateSpaceBenchmark.VOLTS * timeConstant / freeSpeed;
+		double period = 1.0 / StateSpaceBenchmark.HERTZ;
+		MotionController controller;
+		if (control == Control.STATE_SPACE) {
+			LinearSystem system;
+			LinearQuadraticRegulator regulator;
+			KalmanObserver observer;
+			if (flywheel) {
+				system = LinearSystem.velocity(kV, kA, period);
+				regulator = new LinearQuadraticRegulator(system, new double[] {5.0},
+					new double[] {StateSpaceBenchmark.VOLTS});
+				observer = new KalmanObserver(system, new double[] {0.05}, new double[] {noise});
+			} else {
+				system = LinearSystem.position(kV, kA, period);
+				regulator = new LinearQuadraticRegulator(system, new double[] {0.01, 0.2},
+					new double[] {StateSpaceBenchmark.VOLTS});
+				observer = new KalmanObserver(system, new double[] {0.0005, 0.02}, new double[] {noise});
+			}
+			SimulatedStateSpaceController stateSpace = new SimulatedStateSpaceController(system, regulator, observer,
+				mechanism);
+			stateSpace.setStaticFriction(kS);
+			controller = stateSpace;
+		} else {
+			SimulatedFeedforwardController pid = flywheel
+				? new SimulatedFeedforwardController(0.03, 0.1, 0.0, mechanism)
+				: new SimulatedFeedforwardController(8.0, 0.0, 0.3, mechanism);
+			pid.setHighRate(true);
+			pid.setIThreshold(flywheel ? 20.0 : 0.0);
+			pid.setFeedforward(friction, 1.0 / freeSpeed, timeConstant / freeSpeed);
+			controller = pid;
+		}
+		controller.setOutputRange(-1.0, 1.0);
+		controller.setOutput(mechanism);
+		controller.setSetpoint(0.0);
+		controller.enable();
+		TrapezoidalProfile profile = flywheel
+			? new TrapezoidalProfile(0.0, target, StateSpaceBenchmark.FLYWHEEL_ACCELERATION,
+				100 * StateSpaceBenchmark.FLYWHEEL_ACCELERATION)
+			: new TrapezoidalProfile(0.0, target, StateSpaceBenchmark.ELEVATOR_VELOCITY,
+				StateSpaceBenchmark.ELEVATOR_ACCELERATION);
+		controller.followProfile(profile);
+		long periodNanos = (long) (1.0e9 / StateSpaceBenchmark.HERTZ);
+		long end = (long) (StateSpaceBenchmark.SECONDS * 1.0e9);
+		double squaredTracking = 0.0;
+		double squaredChatter = 0.0;
+		int ticks = 0;
+		int settledTicks = 0;
+		long totalTickNanos = 0;
+		long maxTickNanos = 0;
+		double lastOutput = 0.0;
+		for (long now = 0; now < end; now += periodNanos) {
+			if (controller instanceof SimulatedStateSpaceController) {
+				((SimulatedStateSpaceController) controller).nanos = now;
+			} else {
+				((SimulatedFeedforwardController) controller).nanos = now;
+			}
+			long tickStart = System.nanoTime();
+			MotionControllerExecutor.tickManually();
+			long tick = System.nanoTime() - tickStart;
+			totalTickNanos += tick;
+			maxTickNanos = Math.max(maxTickNanos, tick);
+			double seconds = now / 1.0e9;
+			double actual = flywheel ? mechanism.getVelocity() : mechanism.getPosition();
+			double tracking = actual - profile.getPosition(seconds);
+			squaredTracking += tracking * tracking;
+			ticks++;
+			if (seconds > profile.getDuration() + 0.5) {
+				double change = mechanism.getOutput() - lastOutput;
+				squaredChatter += change * change;
+				settledTicks++;
+			}
+			lastOutput = mechanism.getOutput();
+			mechanism.step(periodNanos / 1.0e9);
+		}
+		double finalError = (flywheel ? mechanism.getVelocity() : mechanism.getPosition()) - target;
+		controller.disable();
+		// Allocation, measured on the controller alone once the JIT has compiled it
+		controller.enable();
+		controller.get();
+		long before = StateSpaceBenchmark.getAllocatedBytes();
+		for (int i = 0; i < StateSpaceBenchmark.ALLOCATION_CALLS; i++) {
+			controller.get();
+		}
+		double allocated = (StateSpaceBenchmark.getAllocatedBytes() - before)
+			/ (double) StateSpaceBenchmark.ALLOCATION_CALLS;
+		controller.disable();
+		return new double[] {Math.sqrt(squaredTracking / ticks), finalError, Math.sqrt(squaredChatter / settledTicks),
+				totalTickNanos / 1.0e3 / ticks, maxTickNanos / 1.0e3, allocated};
+	}
+
+	public static void main(String[] args) {
+		MotionControllerExecutor.setManual(true);
+		// Warm up the JIT so tick times are representative
+		for (int i = 0; i < 20; i++) {
+			for (Mechanism mechanism : Mechanism.values()) {
+				for (Control control : Control.values()) {
+					StateSpaceBenchmark.run(mechanism, control);
+				}
+			}
+		}
+		System.out.println(
+			"mechanism control          tracking RMS  final error  output chatter  mean tick (us)  max tick (us)  bytes/call");
+		for (Mechanism mechanism : Mechanism.values()) {
+			for (Control control : Control.values()) {
+				double[] result = StateSpaceBenchmark.run(mechanism, control);
+				System.out.println(String.format("%-9s %-16s %12.4f %12.4f %15.4f %15.2f %14.1f %11.2f", mechanism, control,
+					result[0], result[1], result[2], result[3], result[4], result[5]));
+			}
+		}
+	}
+}
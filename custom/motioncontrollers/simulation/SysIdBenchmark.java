@@ -0,0 +1,65 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers.simulation;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.sysid.SysIdFit;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.sysid.SysIdRecorder;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.sysid.SysIdRecorder.Test;
+
+/**
+ * Characterizes a simulated mechanism the way the Characterize command does,
+ * writes and reads back the file, and compares the fitted constants to the true ones.
+ * This runs on a laptop, not on the robot:
+ *
+ * <pre>
+ * java org.usfirst.frc4904.standard.custom.motioncontrollers.simulation.SysIdBenchmark
+ * </pre>
+ *
+ * For a SimulatedMechanism on a 12 volt battery, kS is 12 * friction, kV is 12 / free speed
+ * and kA is 12 * time constant / free speed.
+ */
+public class SysIdBenchmark {
+	public static final double HERTZ = 50.0;
+	public static final double VOLTS = 12.0;
+	public static final double FREE_SPEED = 4.0; // meters per second
+	public static final double TIME_CONSTANT = 0.12; // seconds
+	public static final double FRICTION = 0.04;
+	public static final double VELOCITY_NOISE = 0.01; // meters per second
+	public static final double VOLTAGE_NOISE = 0.05; // volts
+
+	public static void main(String[] args) throws IOException {
+		SimulatedMechanism mechanism = new SimulatedMechanism(SysIdBenchmark.FREE_SPEED, SysIdBenchmark.TIME_CONSTANT);
+		mechanism.setFriction(SysIdBenchmark.FRICTION);
+		Random random = new Random(4904);
+		SysIdRecorder recorder = new SysIdRecorder(10000);
+		long periodNanos = (long) (1.0e9 / SysIdBenchmark.HERTZ);
+		long now = 0;
+		for (Test test : Test.values()) {
+			double seconds = test.quasistatic ? 10.0 : 3.0;
+			for (double t = 0; t < seconds; t += periodNanos / 1.0e9) {
+				double output = test.getOutput(t, 0.05, 0.5);
+				mechanism.pidWrite(output);
+				recorder.record(test, now, output * SysIdBenchmark.VOLTS + random.nextGaussian() * SysIdBenchmark.VOLTAGE_NOISE,
+					mechanism.getPosition(), mechanism.getVelocity() + random.nextGaussian() * SysIdBenchmark.VELOCITY_NOISE);
+				mechanism.step(periodNanos / 1.0e9);
+				now += periodNanos;
+			}
+			// Rest between tests
+			mechanism.pidWrite(0.0);
+			mechanism.step(2.0);
+			now += 2000000000L;
+		}
+		ByteArrayOutputStream file = new ByteArrayOutputStream();
+		recorder.write(file, 0);
+		System.out.println(String.format("%d samples, %d bytes", recorder.getCount(), file.size()));
+		System.out.println(String.format("true      kS %.5f V, kV %.5f V/(unit/s), kA %.5f V/(unit/s^2)",
+			SysIdBenchmark.VOLTS * SysIdBenchmark.FRICTION, SysIdBenchmark.VOLTS / SysIdBenchmark.FREE_SPEED,
+			SysIdBenchmark.VOLTS * SysIdBenchmark.TIME_CONSTANT / SysIdBenchmark.FREE_SPEED));
+		ArrayList<SysIdFit.Segment> segments = SysIdFit.read(new ByteArrayInputStream(file.toByteArray()));
+		SysIdFit.report(segments, SysIdFit.DEFAULT_MIN_VELOCITY);
+	}
+}
@@ -0,0 +1,143 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers.statespace;
+
+
+/**
+ * Estimates the state of a {@link LinearSystem} from noisy measurements,
+ * by predicting where the model says the state went and then correcting
+ * the prediction toward what the sensor reads.
+ * <p>
+ * This is a steady-state Kalman filter: the correction gain is solved for once,
+ * when the observer is made, rather than every tick. The gain depends on how much
+ * the model and the sensor are trusted, given as standard deviations. A noisy sensor
+ * makes the observer lean on the model; a poor model makes it lean on the sensor.
+ * <p>
+ * {@link #predict(Matrix)} and {@link #correct(Matrix)} do not allocate.
+ *
+ */
+public class KalmanObserver {
+	protected final LinearSystem system;
+	protected final Matrix L;
+	protected final Matrix estimate;
+	protected final Matrix stateStep;
+	protected final Matrix inputStep;
+	protected final Matrix expectedMeasurement;
+	protected final Matrix innovation;
+	protected final Matrix correction;
+
+	/**
+	 * A steady-state Kalman filter.
+	 *
+	 * @param system
+	 * @param stateStandardDeviations
+	 *        How far each state may drift from the model's prediction in one period
+	 * @param measurementStandardDeviations
+	 *        How noisy each measurement is
+	 */
+	public KalmanObserver(LinearSystem system, double[] stateStandardDeviations, double[] measurementStandardDeviations) {
+		this(system, KalmanObserver.solveGain(system, KalmanObserver.covariance(stateStandardDeviations),
+			KalmanObserver.covariance(measurementStandardDeviations)));
+	}
+
+	/**
+	 * An observer with a known gain, such as one solved for offline.
+	 *
+	 * @param system
+	 * @param L
+	 *        The correction gain (states by outputs)
+	 */
+	public KalmanObserver(LinearSystem system, Matrix L) {
+		this.system = system;
+		this.L = L;
+		estimate = new Matrix(system.getStates(), 1);
+		stateStep = new Matrix(system.getStates(), 1);
+		inputStep = new Matrix(system.getStates(), 1);
+		expectedMeasurement = new Matrix(system.getOutputs(), 1);
+		innovation = new Matrix(system.getOutputs(), 1);
+		correction = new Matrix(system.getStates(), 1);
+	}
+
+	/**
+	 * @param standardDeviations
+	 * @return a diagonal covariance matrix with the square of each standard deviation
+	 */
+	public static Matrix covariance(double... standardDeviations) {
+		double[] variances = new double[standardDeviations.length];
+		for (int i = 0; i < standardDeviations.length; i++) {
+			variances[i] = standardDeviations[i] * standardDeviations[i];
+		}
+		return Matrix.diagonal(variances);
+	}
+
+	/**
+	 * Solves for the steady-state correction gain, L = P C' (C P C' + R)^-1,
+	 * where P is the steady-state covariance of the prediction.
+	 *
+	 * @param system
+	 * @param Q
+	 *        The model's covariance per period (states by states)
+	 * @param R
+	 *        The measurements' covariance (outputs by outputs)
+	 * @return L (states by outputs)
+	 */
+	public static Matrix solveGain(LinearSystem system, Matrix Q, Matrix R) {
+		Matrix C = system.getC();
+		Matrix Ct = C.transpose();
+		// The observer's covariance is the regulator's Riccati equation for the dual system (A', C')
+		Matrix P = LinearQuadraticRegulator.solveRiccati(system.getA().transpose(), Ct, Q, R);
+		return P.times(Ct).times(C.times(P).times(Ct).plus(R).inverse());
+	}
+
+	public Matrix getL() {
+		return L;
+	}
+
+	/**
+	 * @return the estimated state (states by 1), updated in place
+	 */
+	public Matrix getEstimate() {
+		return estimate;
+	}
+
+	/**
+	 * @param state
+	 * @return the estimate of one state
+	 */
+	public double getEstimate(int state) {
+		return estimate.get(state, 0);
+	}
+
+	/**
+	 * Sets the estimate, such as when the mechanism is known to be at rest.
+	 *
+	 * @param state
+	 * @param value
+	 */
+	public void setEstimate(int state, double value) {
+		estimate.set(state, 0, value);
+	}
+
+	/**
+	 * Moves the estimate forward one period.
+	 *
+	 * @param input
+	 *        The input applied over the period (inputs by 1)
+	 */
+	public void predict(Matrix input) {
+		stateStep.multiply(system.getA(), estimate);
+		inputStep.multiply(system.getB(), input);
+		estimate.add(stateStep, inputStep);
+	}
+
+	/**
+	 * Corrects the estimate toward a measurement.
+	 *
+	 * @param measurement
+	 *        What the sensor reads (outputs by 1)
+	 */
+	public void correct(Matrix measurement) {
+		expectedMeasurement.multiply(system.getC(), estimate);
+		innovation.subtract(measurement, expectedMeasurement);
+		correction.multiply(L, innovation);
+		estimate.add(estimate, correction);
+	}
+}
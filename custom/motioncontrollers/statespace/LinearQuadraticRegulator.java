@@ -0,0 +1,151 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers.statespace;
+
+
+/**
+ * The optimal state feedback for a {@link LinearSystem}:
+ * input = K * (reference - state), with K chosen to minimize the sum over time of
+ * error' * Q * error + input' * R * input.
+ * <p>
+ * K is solved for once, when the regulator is made (do this at startup, not every tick).
+ * Q and R are usually set by Bryson's rule: each state's weight is one over the square of
+ * the largest error that state should have, and each input's is one over the square of
+ * the largest input it should use. Smaller allowed errors give a more aggressive controller.
+ * <p>
+ * {@link #calculate(Matrix, Matrix)} does not allocate.
+ *
+ */
+public class LinearQuadraticRegulator {
+	public static final int MAX_ITERATIONS = 100;
+	public static final double CONVERGENCE_TOLERANCE = 1e-10;
+	protected final Matrix K;
+	protected final Matrix error;
+	protected final Matrix input;
+
+	/**
+	 * An optimal regulator with weights from Bryson's rule.
+	 *
+	 * @param system
+	 * @param maxStateErrors
+	 *        The largest acceptable error in each state
+	 * @param maxInputs
+	 *        The largest acceptable value of each input (such as 12 volts)
+	 */
+	public LinearQuadraticRegulator(LinearSystem system, double[] maxStateErrors, double[] maxInputs) {
+		this(system, LinearQuadraticRegulator.brysonsRule(maxStateErrors), LinearQuadraticRegulator.brysonsRule(maxInputs));
+	}
+
+	/**
+	 * An optimal regulator.
+	 *
+	 * @param system
+	 * @param Q
+	 *        The cost of state error (states by states)
+	 * @param R
+	 *        The cost of input (inputs by inputs)
+	 */
+	public LinearQuadraticRegulator(LinearSystem system, Matrix Q, Matrix R) {
+		this(LinearQuadraticRegulator.solveGain(system.getA(), system.getB(), Q, R));
+	}
+
+	/**
+	 * A regulator with a known gain, such as one solved for offline.
+	 *
+	 * @param K
+	 *        The gain (inputs by states)
+	 */
+	public LinearQuadraticRegulator(Matrix K) {
+		this.K = K;
+		error = new Matrix(K.getColumns(), 1);
+		input = new Matrix(K.getRows(), 1);
+	}
+
+	/**
+	 * @param maxima
+	 * @return a diagonal weight matrix with one over the square of each maximum
+	 */
+	public static Matrix brysonsRule(double... maxima) {
+		double[] weights = new double[maxima.length];
+		for (int i = 0; i < maxima.length; i++) {
+			weights[i] = 1.0 / (maxima[i] * maxima[i]);
+		}
+		return Matrix.diagonal(weights);
+	}
+
+	/**
+	 * Solves for the optimal gain, K = (R + B' P B)^-1 B' P A.
+	 *
+	 * @param A
+	 * @param B
+	 * @param Q
+	 * @param R
+	 * @return K (inputs by states)
+	 */
+	public static Matrix solveGain(Matrix A, Matrix B, Matrix Q, Matrix R) {
+		Matrix P = LinearQuadraticRegulator.solveRiccati(A, B, Q, R);
+		Matrix Bt = B.transpose();
+		return R.plus(Bt.times(P).times(B)).inverse().times(Bt).times(P).times(A);
+	}
+
+	/**
+	 * Solves the discrete algebraic Riccati equation
+	 * P = A' P A - A' P B (R + B' P B)^-1 B' P A + Q
+	 * by the structure-preserving doubling algorithm, which converges in a few dozen
+	 * iterations even when the period is short and the model changes little per step.
+	 * The Kalman observer solves the same equation for its dual system.
+	 *
+	 * @param A
+	 * @param B
+	 * @param Q
+	 * @param R
+	 * @return P
+	 * @throws IllegalArgumentException
+	 *         If the system cannot be controlled (the iteration does not converge)
+	 */
+	public static Matrix solveRiccati(Matrix A, Matrix B, Matrix Q, Matrix R) {
+		int n = A.getRows();
+		Matrix identity = Matrix.identity(n);
+		Matrix Ak = A.copy();
+		Matrix Gk = B.times(R.inverse()).times(B.transpose());
+		Matrix Hk = Q.copy();
+		for (int i = 0; i < LinearQuadraticRegulator.MAX_ITERATIONS; i++) {
+			Matrix W = identity.plus(Gk.times(Hk)).inverse();
+			Matrix AW = Ak.times(W);
+			Matrix nextA = AW.times(Ak);
+			Matrix nextG = Gk.plus(AW.times(Gk).times(Ak.transpose()));
+			Matrix nextH = Hk.plus(Ak.transpose().times(Hk).times(W).times(Ak));
+			double change = 0.0;
+			double size = 0.0;
+			for (int r = 0; r < n; r++) {
+				for (int c = 0; c < n; c++) {
+					change = Math.max(change, Math.abs(nextH.get(r, c) - Hk.get(r, c)));
+					size = Math.max(size, Math.abs(nextH.get(r, c)));
+				}
+			}
+			Ak = nextA;
+			Gk = nextG;
+			Hk = nextH;
+			if (change <= LinearQuadraticRegulator.CONVERGENCE_TOLERANCE * Math.max(size, 1.0)) {
+				return Hk;
+			}
+		}
+		throw new IllegalArgumentException("Riccati equation did not converge; is the system controllable?");
+	}
+
+	public Matrix getK() {
+		return K;
+	}
+
+	/**
+	 * Calculates the input that drives the state toward the reference, without allocating.
+	 *
+	 * @param reference
+	 *        Where the state should be (states by 1)
+	 * @param state
+	 *        Where the state is (states by 1)
+	 * @return the input (inputs by 1), reused by the next call
+	 */
+	public Matrix calculate(Matrix reference, Matrix state) {
+		error.subtract(reference, state);
+		return input.multiply(K, error);
+	}
+}
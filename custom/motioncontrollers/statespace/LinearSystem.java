@@ -0,0 +1,145 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers.statespace;
+
+
+/**
+ * A discrete linear model of a mechanism:
+ * next state = A * state + B * input, and measurement = C * state.
+ * <p>
+ * The model is stepped once per controller tick, so it is built for the
+ * {@link org.usfirst.frc4904.standard.custom.motioncontrollers.MotionControllerExecutor} period.
+ * The input is in volts when the model comes from {@link org.usfirst.frc4904.standard.custom.motioncontrollers.sysid.SysIdFit}
+ * constants, and the states are the measured quantity and its derivatives, in order
+ * (position then velocity, or just velocity).
+ *
+ */
+public class LinearSystem {
+	protected final Matrix A;
+	protected final Matrix B;
+	protected final Matrix C;
+	protected final double period;
+
+	/**
+	 * A discrete linear model.
+	 *
+	 * @param A
+	 *        How the state evolves over one period (states by states)
+	 * @param B
+	 *        How the input moves the state over one period (states by inputs)
+	 * @param C
+	 *        What the sensor measures (outputs by states)
+	 * @param period
+	 *        Seconds per step
+	 */
+	public LinearSystem(Matrix A, Matrix B, Matrix C, double period) {
+		if (B.getRows() != A.getRows() || A.getRows() != A.getColumns() || C.getColumns() != A.getRows()) {
+			throw new IllegalArgumentException("Model matrices do not match in size");
+		}
+		this.A = A;
+		this.B = B;
+		this.C = C;
+		this.period = period;
+	}
+
+	/**
+	 * Turns a continuous model (state derivative = A * state + B * input) into a discrete one,
+	 * assuming the input is held for the whole period.
+	 *
+	 * @param continuousA
+	 * @param continuousB
+	 * @param C
+	 * @param period
+	 *        Seconds per step
+	 * @return the discrete model
+	 */
+	public static LinearSystem discretize(Matrix continuousA, Matrix continuousB, Matrix C, double period) {
+		int states = continuousA.getRows();
+		int inputs = continuousB.getColumns();
+		// exp([[A, B], [0, 0]] * period) = [[discrete A, discrete B], [0, I]]
+		Matrix augmented = new Matrix(states + inputs, states + inputs);
+		for (int r = 0; r < states; r++) {
+			for (int c = 0; c < states; c++) {
+				augmented.set(r, c, continuousA.get(r, c) * period);
+			}
+			for (int c = 0; c < inputs; c++) {
+				augmented.set(r, states + c, continuousB.get(r, c) * period);
+			}
+		}
+		Matrix exponential = augmented.exp();
+		Matrix A = new Matrix(states, states);
+		Matrix B = new Matrix(states, inputs);
+		for (int r = 0; r < states; r++) {
+			for (int c = 0; c < states; c++) {
+				A.set(r, c, exponential.get(r, c));
+			}
+			for (int c = 0; c < inputs; c++) {
+				B.set(r, c, exponential.get(r, states + c));
+			}
+		}
+		return new LinearSystem(A, B, C, period);
+	}
+
+	/**
+	 * A velocity model of a DC motor mechanism (such as a flywheel),
+	 * voltage = kV * velocity + kA * acceleration, measured by velocity.
+	 *
+	 * @param kV
+	 *        Volts per unit of velocity
+	 * @param kA
+	 *        Volts per unit of acceleration
+	 * @param period
+	 *        Seconds per controller tick
+	 * @return the model, with the state [velocity]
+	 */
+	public static LinearSystem velocity(double kV, double kA, double period) {
+		return LinearSystem.discretize(new Matrix(1, 1, -kV / kA), new Matrix(1, 1, 1.0 / kA), new Matrix(1, 1, 1.0),
+			period);
+	}
+
+	/**
+	 * A position model of a DC motor mechanism (such as an elevator or drivetrain side),
+	 * voltage = kV * velocity + kA * acceleration, measured by position.
+	 *
+	 * @param kV
+	 *        Volts per unit of velocity
+	 * @param kA
+	 *        Volts per unit of acceleration
+	 * @param period
+	 *        Seconds per controller tick
+	 * @return the model, with the state [position, velocity]
+	 */
+	public static LinearSystem position(double kV, double kA, double period) {
+		return LinearSystem.discretize(new Matrix(2, 2, 0.0, 1.0, 0.0, -kV / kA), new Matrix(2, 1, 0.0, 1.0 / kA),
+			new Matrix(1, 2, 1.0, 0.0), period);
+	}
+
+	public Matrix getA() {
+		return A;
+	}
+
+	public Matrix getB() {
+		return B;
+	}
+
+	public Matrix getC() {
+		return C;
+	}
+
+	/**
+	 * @return seconds per step
+	 */
+	public double getPeriod() {
+		return period;
+	}
+
+	public int getStates() {
+		return A.getRows();
+	}
+
+	public int getInputs() {
+		return B.getColumns();
+	}
+
+	public int getOutputs() {
+		return C.getRows();
+	}
+}
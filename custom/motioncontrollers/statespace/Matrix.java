@@ -0,0 +1,347 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers.statespace;
+
+
+/**
+ * A small, fixed-size matrix of doubles for state-space control.
+ * <p>
+ * The in-place operations ({@link #multiply(Matrix, Matrix)}, {@link #add(Matrix, Matrix)} and so on)
+ * write their result into this matrix and never allocate, so controllers preallocate
+ * every matrix they need and reuse them every tick. The result may not be one of the operands
+ * of a multiply, since it is overwritten while they are still being read.
+ * <p>
+ * The operations that return a new matrix ({@link #times(Matrix)}, {@link #inverse()},
+ * {@link #exp()} and so on) are for building models and solving for gains at startup.
+ *
+ */
+public class Matrix {
+	protected final int rows;
+	protected final int columns;
+	protected final double[] data; // Row-major
+
+	/**
+	 * A matrix of zeroes.
+	 *
+	 * @param rows
+	 * @param columns
+	 */
+	public Matrix(int rows, int columns) {
+		if (rows <= 0 || columns <= 0) {
+			throw new IllegalArgumentException("Matrix must have at least one row and column");
+		}
+		this.rows = rows;
+		this.columns = columns;
+		data = new double[rows * columns];
+	}
+
+	/**
+	 * A matrix with the given entries.
+	 *
+	 * @param rows
+	 * @param columns
+	 * @param values
+	 *        The entries, row by row
+	 */
+	public Matrix(int rows, int columns, double... values) {
+		this(rows, columns);
+		if (values.length != data.length) {
+			throw new IllegalArgumentException("Expected " + data.length + " entries, got " + values.length);
+		}
+		System.arraycopy(values, 0, data, 0, data.length);
+	}
+
+	/**
+	 * @param size
+	 * @return a new identity matrix
+	 */
+	public static Matrix identity(int size) {
+		Matrix identity = new Matrix(size, size);
+		for (int i = 0; i < size; i++) {
+			identity.data[i * size + i] = 1.0;
+		}
+		return identity;
+	}
+
+	/**
+	 * @param diagonal
+	 * @return a new square matrix with the given diagonal and zeroes elsewhere
+	 */
+	public static Matrix diagonal(double... diagonal) {
+		Matrix matrix = new Matrix(diagonal.length, diagonal.length);
+		for (int i = 0; i < diagonal.length; i++) {
+			matrix.data[i * diagonal.length + i] = diagonal[i];
+		}
+		return matrix;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public double get(int row, int column) {
+		return data[row * columns + column];
+	}
+
+	public void set(int row, int column, double value) {
+		data[row * columns + column] = value;
+	}
+
+	protected void checkSize(Matrix other, int rows, int columns) {
+		if (other.rows != rows || other.columns != columns) {
+			throw new IllegalArgumentException("Expected a " + rows + "x" + columns + " matrix, got " + other.rows + "x"
+				+ other.columns);
+		}
+	}
+
+	/**
+	 * Sets every entry.
+	 *
+	 * @param value
+	 * @return this matrix
+	 */
+	public Matrix fill(double value) {
+		for (int i = 0; i < data.length; i++) {
+			data[i] = value;
+		}
+		return this;
+	}
+
+	/**
+	 * Copies another matrix of the same size into this one.
+	 *
+	 * @param source
+	 * @return this matrix
+	 */
+	public Matrix setTo(Matrix source) {
+		checkSize(source, rows, columns);
+		System.arraycopy(source.data, 0, data, 0, data.length);
+		return this;
+	}
+
+	/**
+	 * Sets this matrix to a * b, without allocating.
+	 *
+	 * @param a
+	 * @param b
+	 * @return this matrix
+	 */
+	public Matrix multiply(Matrix a, Matrix b) {
+		if (a.columns != b.rows) {
+			throw new IllegalArgumentException("Cannot multiply a " + a.rows + "x" + a.columns + " matrix by a " + b.rows
+				+ "x" + b.columns + " matrix");
+		}
+		checkSize(this, a.rows, b.columns);
+		if (a == this || b == this) {
+			throw new IllegalArgumentException("The result of a multiply cannot be one of its operands");
+		}
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				double sum = 0.0;
+				for (int k = 0; k < a.columns; k++) {
+					sum += a.data[r * a.columns + k] * b.data[k * b.columns + c];
+				}
+				data[r * columns + c] = sum;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Sets this matrix to a + b, without allocating.
+	 *
+	 * @param a
+	 * @param b
+	 * @return this matrix
+	 */
+	public Matrix add(Matrix a, Matrix b) {
+		checkSize(a, rows, columns);
+		checkSize(b, rows, columns);
+		for (int i = 0; i < data.length; i++) {
+			data[i] = a.data[i] + b.data[i];
+		}
+		return this;
+	}
+
+	/**
+	 * Sets this matrix to a - b, without allocating.
+	 *
+	 * @param a
+	 * @param b
+	 * @return this matrix
+	 */
+	public Matrix subtract(Matrix a, Matrix b) {
+		checkSize(a, rows, columns);
+		checkSize(b, rows, columns);
+		for (int i = 0; i < data.length; i++) {
+			data[i] = a.data[i] - b.data[i];
+		}
+		return this;
+	}
+
+	/**
+	 * Sets this matrix to a * scalar, without allocating.
+	 *
+	 * @param a
+	 * @param scalar
+	 * @return this matrix
+	 */
+	public Matrix scale(Matrix a, double scalar) {
+		checkSize(a, rows, columns);
+		for (int i = 0; i < data.length; i++) {
+			data[i] = a.data[i] * scalar;
+		}
+		return this;
+	}
+
+	/**
+	 * @return a new copy of this matrix
+	 */
+	public Matrix copy() {
+		return new Matrix(rows, columns).setTo(this);
+	}
+
+	/**
+	 * @param other
+	 * @return a new matrix, this * other
+	 */
+	public Matrix times(Matrix other) {
+		return new Matrix(rows, other.columns).multiply(this, other);
+	}
+
+	/**
+	 * @param scalar
+	 * @return a new matrix, this * scalar
+	 */
+	public Matrix times(double scalar) {
+		return new Matrix(rows, columns).scale(this, scalar);
+	}
+
+	/**
+	 * @param other
+	 * @return a new matrix, this + other
+	 */
+	public Matrix plus(Matrix other) {
+		return new Matrix(rows, columns).add(this, other);
+	}
+
+	/**
+	 * @param other
+	 * @return a new matrix, this - other
+	 */
+	public Matrix minus(Matrix other) {
+		return new Matrix(rows, columns).subtract(this, other);
+	}
+
+	/**
+	 * @return a new matrix, the transpose of this one
+	 */
+	public Matrix transpose() {
+		Matrix transpose = new Matrix(columns, rows);
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				transpose.data[c * rows + r] = data[r * columns + c];
+			}
+		}
+		return transpose;
+	}
+
+	/**
+	 * Inverts this matrix by Gauss-Jordan elimination.
+	 *
+	 * @return a new matrix, the inverse of this one
+	 * @throws IllegalArgumentException
+	 *         If this matrix is not square or is singular
+	 */
+	public Matrix inverse() {
+		if (rows != columns) {
+			throw new IllegalArgumentException("Cannot invert a " + rows + "x" + columns + " matrix");
+		}
+		int n = rows;
+		Matrix work = copy();
+		Matrix inverse = Matrix.identity(n);
+		for (int column = 0; column < n; column++) {
+			int pivot = column;
+			for (int row = column + 1; row < n; row++) {
+				if (Math.abs(work.get(row, column)) > Math.abs(work.get(pivot, column))) {
+					pivot = row;
+				}
+			}
+			if (Math.abs(work.get(pivot, column)) < 1e-12) {
+				throw new IllegalArgumentException("Matrix is singular");
+			}
+			work.swapRows(column, pivot);
+			inverse.swapRows(column, pivot);
+			double scale = 1.0 / work.get(column, column);
+			for (int c = 0; c < n; c++) {
+				work.set(column, c, work.get(column, c) * scale);
+				inverse.set(column, c, inverse.get(column, c) * scale);
+			}
+			for (int row = 0; row < n; row++) {
+				double factor = work.get(row, column);
+				if (row == column || factor == 0.0) {
+					continue;
+				}
+				for (int c = 0; c < n; c++) {
+					work.set(row, c, work.get(row, c) - factor * work.get(column, c));
+					inverse.set(row, c, inverse.get(row, c) - factor * inverse.get(column, c));
+				}
+			}
+		}
+		return inverse;
+	}
+
+	protected void swapRows(int a, int b) {
+		if (a == b) {
+			return;
+		}
+		for (int c = 0; c < columns; c++) {
+			double swap = data[a * columns + c];
+			data[a * columns + c] = data[b * columns + c];
+			data[b * columns + c] = swap;
+		}
+	}
+
+	/**
+	 * The matrix exponential, by scaling and squaring a Taylor series.
+	 * Used to turn a continuous model into a discrete one.
+	 *
+	 * @return a new matrix, e to the power of this one
+	 */
+	public Matrix exp() {
+		if (rows != columns) {
+			throw new IllegalArgumentException("Cannot exponentiate a " + rows + "x" + columns + " matrix");
+		}
+		double norm = 0.0;
+		for (double value : data) {
+			norm = Math.max(norm, Math.abs(value));
+		}
+		int squarings = Math.max(0, (int) Math.ceil(Math.log(norm * rows * 2) / Math.log(2)));
+		Matrix scaled = times(Math.pow(2, -squarings));
+		Matrix result = Matrix.identity(rows);
+		Matrix term = Matrix.identity(rows);
+		for (int k = 1; k <= 20; k++) {
+			term = term.times(scaled).times(1.0 / k);
+			result = result.plus(term);
+		}
+		for (int i = 0; i < squarings; i++) {
+			result = result.times(result);
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int r = 0; r < rows; r++) {
+			builder.append(r == 0 ? "[" : " ");
+			for (int c = 0; c < columns; c++) {
+				builder.append(String.format("%12.6g", data[r * columns + c]));
+			}
+			builder.append(r == rows - 1 ? "]" : "\n");
+		}
+		return builder.toString();
+	}
+}
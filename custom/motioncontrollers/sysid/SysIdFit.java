@@ -0,0 +1,259 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers.sysid;
+
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+/**
+ * Fits kS, kV and kA (voltage = kS * sign(velocity) + kV * velocity + kA * acceleration)
+ * to a file written by {@link SysIdRecorder}, by least squares.
+ * This runs on a laptop, not on the robot:
+ *
+ * <pre>
+ * java org.usfirst.frc4904.standard.custom.motioncontrollers.sysid.SysIdFit [--min-velocity V] file.sysid
+ * </pre>
+ *
+ * Each direction is fit on its own (quasistatic and dynamic tests together), and then both together.
+ * Acceleration is the central difference of velocity within each test.
+ * Samples slower than --min-velocity (0.01 by default) are left out, since the mechanism
+ * is held by static friction there and the model does not apply.
+ * R² is the fraction of the voltage's variance the model explains.
+ * The constants are in volts per sensor unit, for {@link org.usfirst.frc4904.standard.custom.motioncontrollers.FeedforwardPIDController}
+ * (divide by 12 for output per sensor unit) and state-space models.
+ */
+public class SysIdFit {
+	public static final double DEFAULT_MIN_VELOCITY = 0.01;
+
+	/**
+	 * Fitted constants.
+	 */
+	public static class Result {
+		public final double kS;
+		public final double kV;
+		public final double kA;
+		public final double rSquared;
+		public final int samples;
+
+		public Result(double kS, double kV, double kA, double rSquared, int samples) {
+			this.kS = kS;
+			this.kV = kV;
+			this.kA = kA;
+			this.rSquared = rSquared;
+			this.samples = samples;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("kS %.5f V, kV %.5f V/(unit/s), kA %.5f V/(unit/s^2), R^2 %.4f (%d samples)", kS, kV, kA,
+				rSquared, samples);
+		}
+	}
+
+	/**
+	 * One test's samples, as read from a file.
+	 */
+	public static class Segment {
+		public final SysIdRecorder.Test test;
+		public final double[] seconds;
+		public final double[] voltages;
+		public final double[] positions;
+		public final double[] velocities;
+
+		public Segment(SysIdRecorder.Test test, int count) {
+			this.test = test;
+			seconds = new double[count];
+			voltages = new double[count];
+			positions = new double[count];
+			velocities = new double[count];
+		}
+
+		/**
+		 * @return the acceleration at each sample, by central difference (one-sided at the ends)
+		 */
+		public double[] getAccelerations() {
+			int count = velocities.length;
+			double[] accelerations = new double[count];
+			for (int i = 0; i < count; i++) {
+				int before = Math.max(i - 1, 0);
+				int after = Math.min(i + 1, count - 1);
+				double dt = seconds[after] - seconds[before];
+				accelerations[i] = dt > 0 ? (velocities[after] - velocities[before]) / dt : 0.0;
+			}
+			return accelerations;
+		}
+	}
+
+	/**
+	 * Reads every segment of a file.
+	 *
+	 * @param input
+	 * @return the segments, in order
+	 * @throws IOException
+	 *         If the header is missing or from an unknown version
+	 */
+	public static ArrayList<Segment> read(InputStream input) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(input));
+		if (data.readInt() != SysIdRecorder.MAGIC) {
+			throw new IOException("Not a system identification file");
+		}
+		short version = data.readShort();
+		if (version != SysIdRecorder.VERSION) {
+			throw new IOException("Unknown system identification file version " + version);
+		}
+		data.readLong(); // Start time
+		ArrayList<Segment> segments = new ArrayList<Segment>();
+		long origin = Long.MIN_VALUE;
+		while (true) {
+			int test;
+			try {
+				test = data.readByte();
+			}
+			catch (EOFException e) {
+				return segments;
+			}
+			int count = data.readInt();
+			Segment segment = new Segment(SysIdRecorder.Test.values()[test], count);
+			for (int i = 0; i < count; i++) {
+				long nanos = data.readLong();
+				if (origin == Long.MIN_VALUE) {
+					origin = nanos;
+				}
+				segment.seconds[i] = (nanos - origin) / 1.0e9;
+				segment.voltages[i] = data.readFloat();
+				segment.positions[i] = data.readFloat();
+				segment.velocities[i] = data.readFloat();
+			}
+			segments.add(segment);
+		}
+	}
+
+	/**
+	 * Fits the model to the segments moving in a direction.
+	 *
+	 * @param segments
+	 * @param direction
+	 *        1 for forward, -1 for backward, 0 for both
+	 * @param minVelocity
+	 *        Samples slower than this are left out
+	 * @return the fit, or null if there are too few samples
+	 */
+	public static Result fit(ArrayList<Segment> segments, int direction, double minVelocity) {
+		// Normal equations for voltage = kS * sign(v) + kV * v + kA * a
+		double[][] normal = new double[3][4];
+		double sumVoltage = 0.0;
+		double sumVoltageSquared = 0.0;
+		int samples = 0;
+		for (Segment segment : segments) {
+			if (direction != 0 && segment.test.direction != direction) {
+				continue;
+			}
+			double[] accelerations = segment.getAccelerations();
+			for (int i = 0; i < segment.velocities.length; i++) {
+				double velocity = segment.velocities[i];
+				if (Math.abs(velocity) < minVelocity) {
+					continue;
+				}
+				double[] row = {Math.signum(velocity), velocity, accelerations[i]};
+				double voltage = segment.voltages[i];
+				for (int r = 0; r < 3; r++) {
+					for (int c = 0; c < 3; c++) {
+						normal[r][c] += row[r] * row[c];
+					}
+					normal[r][3] += row[r] * voltage;
+				}
+				sumVoltage += voltage;
+				sumVoltageSquared += voltage * voltage;
+				samples++;
+			}
+		}
+		if (samples < 3) {
+			return null;
+		}
+		double[] k = SysIdFit.solve(new double[][] {normal[0].clone(), normal[1].clone(), normal[2].clone()});
+		if (k == null) {
+			return null;
+		}
+		// Residual sum of squares from the normal equations: sum(V^2) - k . (X^T V)
+		double residual = sumVoltageSquared - (k[0] * normal[0][3] + k[1] * normal[1][3] + k[2] * normal[2][3]);
+		double total = sumVoltageSquared - sumVoltage * sumVoltage / samples;
+		double rSquared = total > 0 ? 1 - residual / total : 1.0;
+		return new Result(k[0], k[1], k[2], rSquared, samples);
+	}
+
+	/**
+	 * Solves a 3 by 3 system (augmented with its right-hand side) by Gaussian elimination.
+	 *
+	 * @return the solution, or null if the system is singular
+	 */
+	protected static double[] solve(double[][] augmented) {
+		int n = augmented.length;
+		for (int column = 0; column < n; column++) {
+			int pivot = column;
+			for (int row = column + 1; row < n; row++) {
+				if (Math.abs(augmented[row][column]) > Math.abs(augmented[pivot][column])) {
+					pivot = row;
+				}
+			}
+			if (Math.abs(augmented[pivot][column]) < 1e-12) {
+				return null;
+			}
+			double[] swap = augmented[column];
+			augmented[column] = augmented[pivot];
+			augmented[pivot] = swap;
+			for (int row = column + 1; row < n; row++) {
+				double factor = augmented[row][column] / augmented[column][column];
+				for (int c = column; c <= n; c++) {
+					augmented[row][c] -= factor * augmented[column][c];
+				}
+			}
+		}
+		double[] solution = new double[n];
+		for (int row = n - 1; row >= 0; row--) {
+			double sum = augmented[row][n];
+			for (int c = row + 1; c < n; c++) {
+				sum -= augmented[row][c] * solution[c];
+			}
+			solution[row] = sum / augmented[row][row];
+		}
+		return solution;
+	}
+
+	/**
+	 * Prints the fits for each direction and both together.
+	 *
+	 * @param segments
+	 * @param minVelocity
+	 */
+	public static void report(ArrayList<Segment> segments, double minVelocity) {
+		String[] labels = {"forward", "backward", "both"};
+		int[] directions = {1, -1, 0};
+		for (int i = 0; i < labels.length; i++) {
+			Result result = SysIdFit.fit(segments, directions[i], minVelocity);
+			System.out.println(String.format("%-9s %s", labels[i], result == null ? "too few moving samples" : result));
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		double minVelocity = SysIdFit.DEFAULT_MIN_VELOCITY;
+		String path = null;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--min-velocity") && i + 1 < args.length) {
+				minVelocity = Double.parseDouble(args[++i]);
+			} else {
+				path = args[i];
+			}
+		}
+		if (path == null) {
+			System.err.println("Usage: SysIdFit [--min-velocity V] file.sysid");
+			System.exit(1);
+		}
+		try (InputStream input = new FileInputStream(path)) {
+			SysIdFit.report(SysIdFit.read(input), minVelocity);
+		}
+	}
+}
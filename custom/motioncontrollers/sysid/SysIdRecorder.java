@@ -0,0 +1,151 @@
+package org.usfirst.frc4904.standard.custom.motioncontrollers.sysid;
+
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Records system identification samples (applied voltage, position and velocity)
+ * into preallocated arrays, and writes them as a compact binary file for {@link SysIdFit}.
+ * <p>
+ * The file is a header (magic, version, start time) followed by one segment per
+ * run of samples from the same test: the test, the sample count, and per sample
+ * the time (long nanoseconds) and voltage, position and velocity (floats), 20 bytes in all.
+ * <p>
+ * Recording does not allocate; samples past the capacity are dropped and counted.
+ *
+ */
+public class SysIdRecorder {
+	public static final int MAGIC = 0x53595344; // "SYSD"
+	public static final short VERSION = 1;
+
+	/**
+	 * The tests a characterization runs.
+	 * Quasistatic tests ramp the voltage slowly, so acceleration is negligible and
+	 * kS and kV dominate; dynamic tests step the voltage, so kA shows.
+	 */
+	public static enum Test {
+		QUASISTATIC_FORWARD(true, 1), QUASISTATIC_BACKWARD(true, -1), DYNAMIC_FORWARD(false, 1), DYNAMIC_BACKWARD(false,
+			-1);
+		public final boolean quasistatic;
+		public final int direction;
+
+		private Test(boolean quasistatic, int direction) {
+			this.quasistatic = quasistatic;
+			this.direction = direction;
+		}
+
+		/**
+		 * @param seconds
+		 *        Since the test started
+		 * @param rampRate
+		 *        How fast quasistatic tests raise the output (per second)
+		 * @param stepOutput
+		 *        The output dynamic tests apply
+		 * @return the output to apply
+		 */
+		public double getOutput(double seconds, double rampRate, double stepOutput) {
+			return direction * (quasistatic ? rampRate * seconds : stepOutput);
+		}
+	}
+
+	protected final byte[] tests;
+	protected final long[] nanos;
+	protected final float[] voltages;
+	protected final float[] positions;
+	protected final float[] velocities;
+	protected int count;
+	protected long dropped;
+
+	/**
+	 * @param capacity
+	 *        The most samples to keep (such as the test seconds times the loop rate)
+	 */
+	public SysIdRecorder(int capacity) {
+		tests = new byte[capacity];
+		nanos = new long[capacity];
+		voltages = new float[capacity];
+		positions = new float[capacity];
+		velocities = new float[capacity];
+		count = 0;
+		dropped = 0;
+	}
+
+	/**
+	 * Records a sample.
+	 *
+	 * @param test
+	 *        The test being run
+	 * @param nanos
+	 *        When the sample was taken (such as System.nanoTime())
+	 * @param voltage
+	 *        The voltage applied to the motors
+	 * @param position
+	 * @param velocity
+	 */
+	public void record(Test test, long nanos, double voltage, double position, double velocity) {
+		if (count == this.nanos.length) {
+			dropped++;
+			return;
+		}
+		tests[count] = (byte) test.ordinal();
+		this.nanos[count] = nanos;
+		voltages[count] = (float) voltage;
+		positions[count] = (float) position;
+		velocities[count] = (float) velocity;
+		count++;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the number of samples dropped because the recorder was full
+	 */
+	public long getDroppedCount() {
+		return dropped;
+	}
+
+	/**
+	 * Forgets every sample.
+	 */
+	public void reset() {
+		count = 0;
+		dropped = 0;
+	}
+
+	/**
+	 * Writes every sample. Does not close the stream.
+	 *
+	 * @param out
+	 * @param startEpochMillis
+	 *        Wall-clock time the characterization started
+	 * @throws IOException
+	 */
+	public void write(OutputStream out, long startEpochMillis) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		data.writeInt(SysIdRecorder.MAGIC);
+		data.writeShort(SysIdRecorder.VERSION);
+		data.writeLong(startEpochMillis);
+		int start = 0;
+		while (start < count) {
+			int end = start;
+			while (end < count && tests[end] == tests[start]) {
+				end++;
+			}
+			data.writeByte(tests[start]);
+			data.writeInt(end - start);
+			for (int i = start; i < end; i++) {
+				data.writeLong(nanos[i]);
+				data.writeFloat(voltages[i]);
+				data.writeFloat(positions[i]);
+				data.writeFloat(velocities[i]);
+			}
+			start = end;
+		}
+		data.flush();
+	}
+}
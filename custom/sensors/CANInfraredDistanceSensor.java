@@ -36,7 +36,9 @@ public class CANInfraredDistanceSensor extends CANSensor implements DistanceSens
 	@Override
 	public double getDistanceSafely() throws InvalidSensorException {
 		int value = readSensor()[CANInfraredDistanceSensor.DISTANCE_SENSOR_ARRAY_INDEX];
-		LogKitten.d(name + " read value " + value);
+		if (LogKitten.isEnabled(LogKitten.LEVEL_DEBUG)) {
+			LogKitten.d(name + " read value " + value);
+		}
 		return value;
 	}
 }
@@ -61,7 +61,7 @@ public class CANSensor extends CustomCAN {
 			throw new InvalidSensorException(
 				"CAN data oudated For CAN sensor " + getName() + " with ID 0x" + Integer.toHexString(messageID));
 		}
-		LogKitten.v("Cached Sensor Value Used\n");
+		LogKitten.v(getName(), "Cached Sensor Value Used"); // Tagged, so a quiet device does not cost a stack capture every read
 		return values;
 	}
 }
@@ -0,0 +1,65 @@
+package org.usfirst.frc4904.standard.custom.sensors;
+
+
+import edu.wpi.first.wpilibj.PIDSourceType;
+
+/**
+ * A PIDSensor that reads another sensor only when captured,
+ * and returns that reading until the next capture.
+ * <p>
+ * This lets several controllers that run in one tick (such as the loops of a
+ * CascadeController) all see the sensor as it was at the start of the tick.
+ *
+ */
+public class SnapshotSensor implements PIDSensor {
+	protected final PIDSensor sensor;
+	protected double value;
+	protected InvalidSensorException exception;
+
+	/**
+	 * @param sensor
+	 *        The sensor to read
+	 */
+	public SnapshotSensor(PIDSensor sensor) {
+		this.sensor = sensor;
+		value = 0.0;
+		exception = null;
+	}
+
+	/**
+	 * Reads the sensor. Until the next capture, pidGet returns this reading
+	 * and pidGetSafely throws if the sensor failed.
+	 */
+	public void capture() {
+		try {
+			value = sensor.pidGetSafely();
+			exception = null;
+		}
+		catch (InvalidSensorException e) {
+			exception = e;
+		}
+	}
+
+	@Override
+	public void setPIDSourceType(PIDSourceType pidSource) {
+		sensor.setPIDSourceType(pidSource);
+	}
+
+	@Override
+	public PIDSourceType getPIDSourceType() {
+		return sensor.getPIDSourceType();
+	}
+
+	@Override
+	public double pidGet() {
+		return value;
+	}
+
+	@Override
+	public double pidGetSafely() throws InvalidSensorException {
+		if (exception != null) {
+			throw exception;
+		}
+		return value;
+	}
+}
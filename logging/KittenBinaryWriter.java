@@ -0,0 +1,181 @@
+package org.usfirst.frc4904.standard.logging;
+
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Writes LogKitten records as compact binary instead of text.
+ * <p>
+ * The file starts with a header (magic, version, session start
+ * wall-clock time in milliseconds and session start nanoTime).
+ * Every record after that starts with a type byte:
+ * <ul>
+ * <li>STRING: varint id, varint length, UTF-8 bytes.
+ * Defines an interned string (a call site or a template) the first time it is used.</li>
+ * <li>TEXT: timestamp, level byte, varint call site id, varint length, UTF-8 message bytes.</li>
+ * <li>VALUES: timestamp, level byte, varint call site id, varint template id, count byte, that many doubles.</li>
+ * </ul>
+ * Timestamps are nanoseconds since the session started, stored as a zigzag varint
+ * of the difference from the previous record's timestamp (usually 1-3 bytes).
+ * Strings are defined inline before their first use, so a session file
+ * stays readable even if the robot loses power mid-match.
+ *
+ * @see KittenDecoder
+ */
+public class KittenBinaryWriter {
+	public static final int MAGIC = 0x4B544E42; // "KTNB"
+	public static final short VERSION = 1;
+	public static final byte RECORD_STRING = 0;
+	public static final byte RECORD_TEXT = 1;
+	public static final byte RECORD_VALUES = 2;
+	public static final String CALL_SITE_SEPARATOR = "#";
+	protected final DataOutputStream output;
+	protected final long startNanos;
+	protected final HashMap<String, Integer> strings;
+	protected final HashMap<String, HashMap<String, Integer>> callSites;
+	protected int nextStringID;
+	protected long lastNanos;
+
+	/**
+	 * Writes LogKitten records as compact binary instead of text.
+	 *
+	 * @param output
+	 *        Where to write the session (buffered by this writer)
+	 * @param startEpochMillis
+	 *        Wall-clock time the session started
+	 * @param startNanos
+	 *        System.nanoTime() when the session started
+	 * @throws IOException
+	 */
+	public KittenBinaryWriter(OutputStream output, long startEpochMillis, long startNanos) throws IOException {
+		this.output = new DataOutputStream(new BufferedOutputStream(output));
+		this.startNanos = startNanos;
+		strings = new HashMap<String, Integer>();
+		callSites = new HashMap<String, HashMap<String, Integer>>();
+		nextStringID = 0;
+		lastNanos = 0;
+		this.output.writeInt(KittenBinaryWriter.MAGIC);
+		this.output.writeShort(KittenBinaryWriter.VERSION);
+		this.output.writeLong(startEpochMillis);
+		this.output.writeLong(startNanos);
+	}
+
+	/**
+	 * Writes a record.
+	 * Templates are written with their raw arguments and are never formatted.
+	 *
+	 * @param record
+	 * @throws IOException
+	 */
+	public void write(KittenRecord record) throws IOException {
+		int callSite = internCallSite(record.callerClassName, record.callerMethodName);
+		if (record.isFormatted()) {
+			int template = intern(record.format);
+			output.writeByte(KittenBinaryWriter.RECORD_VALUES);
+			writeHeader(record, callSite);
+			writeVarInt(template);
+			output.writeByte(record.argumentCount);
+			if (record.argumentCount > 0) {
+				output.writeDouble(record.a);
+			}
+			if (record.argumentCount > 1) {
+				output.writeDouble(record.b);
+			}
+			if (record.argumentCount > 2) {
+				output.writeDouble(record.c);
+			}
+			return;
+		}
+		output.writeByte(KittenBinaryWriter.RECORD_TEXT);
+		writeHeader(record, callSite);
+		writeString(record.getMessage());
+	}
+
+	protected void writeHeader(KittenRecord record, int callSite) throws IOException {
+		long nanos = record.timeNanos - startNanos;
+		long delta = nanos - lastNanos; // Async records can be written slightly out of order, so this may be negative
+		lastNanos = nanos;
+		writeVarLong((delta << 1) ^ (delta >> 63)); // Zigzag encoding keeps small negative numbers small
+		output.writeByte(record.level.getSeverity());
+		writeVarInt(callSite);
+	}
+
+	/**
+	 * Get the id of a call site, defining it if this is the first time it is seen.
+	 *
+	 * @param className
+	 *        The calling class, or null if the method name is a tag
+	 * @param methodName
+	 *        The calling method or tag
+	 */
+	protected int internCallSite(String className, String methodName) throws IOException {
+		HashMap<String, Integer> methods = callSites.get(className);
+		if (methods == null) {
+			methods = new HashMap<String, Integer>();
+			callSites.put(className, methods);
+		}
+		Integer id = methods.get(methodName);
+		if (id == null) {
+			id = intern(className == null ? methodName : className + KittenBinaryWriter.CALL_SITE_SEPARATOR + methodName);
+			methods.put(methodName, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Get the id of a string, defining it if this is the first time it is seen.
+	 */
+	protected int intern(String string) throws IOException {
+		Integer id = strings.get(string);
+		if (id != null) {
+			return id;
+		}
+		id = nextStringID++;
+		strings.put(string, id);
+		output.writeByte(KittenBinaryWriter.RECORD_STRING);
+		writeVarInt(id);
+		writeString(string);
+		return id;
+	}
+
+	protected void writeString(String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length);
+		output.write(bytes);
+	}
+
+	/**
+	 * Writes an unsigned int using 7 bits per byte.
+	 */
+	protected void writeVarInt(int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			output.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte(value);
+	}
+
+	/**
+	 * Writes an unsigned long using 7 bits per byte.
+	 */
+	protected void writeVarLong(long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			output.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte((int) value);
+	}
+
+	public void flush() throws IOException {
+		output.flush();
+	}
+
+	public void close() throws IOException {
+		output.close();
+	}
+}
@@ -0,0 +1,142 @@
+package org.usfirst.frc4904.standard.logging;
+
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import org.usfirst.frc4904.standard.LogKitten;
+
+/**
+ * Measures what finding the caller costs each LogKitten message. This runs on a laptop, not on the robot:
+ *
+ * <pre>
+ * java org.usfirst.frc4904.standard.logging.KittenCallerBenchmark
+ * </pre>
+ *
+ * Messages are DEBUG, so with the default levels they go to the logfile only. The ways of
+ * finding the caller are:
+ * <ul>
+ * <li>old: LogKitten before it captured the stack once. It called Thread.getStackTrace() once for
+ * the logfile line, then twice more (class and method) to build the console line whenever printing
+ * was not muted, even though the console level kept it from being printed (3 captures with the default
+ * levels), and twice more for the driver station when its level let the message through (5 captures).
+ * Muted, only the logfile line captured the stack (1 capture).</li>
+ * <li>once: LogKitten.d(message), which captures the stack once and caches simple class names</li>
+ * <li>tagged: LogKitten.d(tag, message), which never looks at the stack</li>
+ * <li>caller off: LogKitten.d(message) below the caller level ({@link LogKitten#setCallerLevel})</li>
+ * </ul>
+ * The old lookups (and the console line they built) are reproduced here and the caller logged with a tag,
+ * so every way writes the same line to the logfile. Each is warmed up, then timed in several trials;
+ * the fastest trial is reported.
+ */
+public class KittenCallerBenchmark {
+	public static final int WARMUP_CALLS = 100000;
+	public static final int TIMED_CALLS = 200000;
+	public static final int TRIALS = 5;
+	public static final String MESSAGE = "Benchmark message";
+
+	public static enum Lookup {
+		OLD_MUTED(1), OLD_DEFAULT(3), OLD_DRIVER_STATION(5), ONCE(1), TAGGED(0), CALLER_OFF(0);
+		public final int stackCaptures;
+
+		private Lookup(int stackCaptures) {
+			this.stackCaptures = stackCaptures;
+		}
+	}
+
+	protected static long getAllocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread
+			.currentThread().getId());
+	}
+
+	/**
+	 * The caller lookups LogKitten used to do, which captured the whole stack each time.
+	 */
+	protected static String getCallerMethodName() {
+		return Thread.currentThread().getStackTrace()[3].getMethodName();
+	}
+
+	protected static String getCallerClassName() {
+		String[] trace = Thread.currentThread().getStackTrace()[3].getClassName().split("\\.");
+		if (trace.length == 0) {
+			return "";
+		}
+		return trace[trace.length - 1];
+	}
+
+	/**
+	 * Finds the caller the old way.
+	 *
+	 * @param captures
+	 *        1 (muted), 3 (default levels) or 5 (driver station shown)
+	 * @return the caller for the logfile line
+	 */
+	protected static String oldLookup(int captures) {
+		String caller = KittenCallerBenchmark.getCallerMethodName();
+		if (captures >= 3) {
+			// Built whether or not the console level lets it through
+			String printContent = KittenCallerBenchmark.getCallerClassName() + "#"
+				+ KittenCallerBenchmark.getCallerMethodName() + ": " + KittenCallerBenchmark.MESSAGE;
+			if (printContent.isEmpty()) {
+				return null; // Never happens; keeps the string from being optimized away
+			}
+		}
+		if (captures >= 5) {
+			String details = KittenCallerBenchmark.getCallerClassName() + "#" + KittenCallerBenchmark.getCallerMethodName();
+			if (details.isEmpty()) {
+				return null;
+			}
+		}
+		return caller;
+	}
+
+	protected static void log(Lookup lookup, int calls) {
+		for (int i = 0; i < calls; i++) {
+			switch (lookup) {
+				case OLD_MUTED:
+				case OLD_DEFAULT:
+				case OLD_DRIVER_STATION:
+					LogKitten.d(KittenCallerBenchmark.oldLookup(lookup.stackCaptures), KittenCallerBenchmark.MESSAGE);
+					break;
+				case ONCE:
+				case CALLER_OFF:
+					LogKitten.d(KittenCallerBenchmark.MESSAGE);
+					break;
+				case TAGGED:
+					LogKitten.d("Benchmark", KittenCallerBenchmark.MESSAGE);
+					break;
+			}
+		}
+	}
+
+	/**
+	 * @param lookup
+	 * @return nanoseconds and bytes allocated per message
+	 */
+	public static double[] run(Lookup lookup) {
+		LogKitten.setCallerLevel(lookup == Lookup.CALLER_OFF ? LogKitten.LEVEL_VERBOSE : LogKitten.DEFAULT_CALLER_LEVEL);
+		KittenCallerBenchmark.log(lookup, KittenCallerBenchmark.WARMUP_CALLS);
+		long[] nanos = new long[KittenCallerBenchmark.TRIALS];
+		long[] bytes = new long[KittenCallerBenchmark.TRIALS];
+		for (int trial = 0; trial < KittenCallerBenchmark.TRIALS; trial++) {
+			long allocatedBefore = KittenCallerBenchmark.getAllocatedBytes();
+			long start = System.nanoTime();
+			KittenCallerBenchmark.log(lookup, KittenCallerBenchmark.TIMED_CALLS);
+			nanos[trial] = System.nanoTime() - start;
+			bytes[trial] = KittenCallerBenchmark.getAllocatedBytes() - allocatedBefore;
+		}
+		LogKitten.setCallerLevel(LogKitten.DEFAULT_CALLER_LEVEL);
+		Arrays.sort(nanos);
+		Arrays.sort(bytes);
+		return new double[] {nanos[0] / (double) KittenCallerBenchmark.TIMED_CALLS,
+				bytes[0] / (double) KittenCallerBenchmark.TIMED_CALLS};
+	}
+
+	public static void main(String[] args) {
+		System.out.println("lookup              stack captures  ns/message  bytes/message");
+		for (Lookup lookup : Lookup.values()) {
+			double[] result = KittenCallerBenchmark.run(lookup);
+			System.out.println(String.format("%-19s %14d %11.0f %14.0f", lookup, lookup.stackCaptures, result[0],
+				result[1]));
+		}
+	}
+}
@@ -0,0 +1,336 @@
+package org.usfirst.frc4904.standard.logging;
+
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.usfirst.frc4904.standard.LogKitten;
+
+/**
+ * Measures how much of the loop each command uses, so that
+ * the command eating the loop budget can be found.
+ * <p>
+ * Commands get a {@link Probe} (one per command name) and time their
+ * initialize, execute, isFinished and end with it:
+ *
+ * <pre>
+ * protected final KittenCommandProfiler.Probe probe = KittenCommandProfiler.probe(getName());
+ *
+ * protected void execute() {
+ * 	long start = probe.begin();
+ * 	...
+ * 	probe.end(Section.EXECUTE, start);
+ * }
+ * </pre>
+ *
+ * WPILib runs commands from Scheduler internals we can not hook, which is why
+ * commands time themselves. Probes do nothing but read a flag until the
+ * profiler is enabled. When enabled, each section costs two nanoTime reads, plus
+ * two thread CPU time reads if CPU timing is on. Stats are kept per robot mode.
+ *
+ */
+public class KittenCommandProfiler {
+	public static final int DEFAULT_REPORT_SIZE = 5;
+	private static final ConcurrentHashMap<String, Probe> PROBES = new ConcurrentHashMap<String, Probe>();
+	private static final CopyOnWriteArrayList<Probe> PROBE_LIST = new CopyOnWriteArrayList<Probe>();
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	private static volatile boolean enabled = false;
+	private static volatile boolean cpuTimed = false;
+	private static volatile Mode mode = Mode.DISABLED;
+	private static int reportSize = KittenCommandProfiler.DEFAULT_REPORT_SIZE;
+
+	/**
+	 * The part of a command being timed.
+	 */
+	public static enum Section {
+		INITIALIZE, EXECUTE, IS_FINISHED, END;
+	}
+
+	/**
+	 * The robot mode stats are kept for.
+	 */
+	public static enum Mode {
+		DISABLED, AUTONOMOUS, TELEOP, TEST;
+	}
+
+	/**
+	 * Times one command (or every command with the same name).
+	 * Commands run on the robot loop thread, so a probe has one writer
+	 * and readers may see stats that are a section behind.
+	 */
+	public static class Probe {
+		public final String name;
+		protected final long[] counts;
+		protected final long[] wallTotals;
+		protected final long[] wallMaxes;
+		protected final long[] cpuTotals;
+		protected long cpuStart; // Sections of one command never overlap
+
+		protected Probe(String name) {
+			this.name = name;
+			int size = Mode.values().length * Section.values().length;
+			counts = new long[size];
+			wallTotals = new long[size];
+			wallMaxes = new long[size];
+			cpuTotals = new long[size];
+			cpuStart = 0;
+		}
+
+		/**
+		 * Starts timing a section.
+		 *
+		 * @return the start time to pass to {@link #end(Section, long)}
+		 */
+		public long begin() {
+			if (!KittenCommandProfiler.enabled) {
+				return 0;
+			}
+			if (KittenCommandProfiler.cpuTimed) {
+				cpuStart = KittenCommandProfiler.THREADS.getCurrentThreadCpuTime();
+			}
+			return System.nanoTime();
+		}
+
+		/**
+		 * Finishes timing a section.
+		 *
+		 * @param section
+		 * @param start
+		 *        What {@link #begin()} returned
+		 */
+		public void end(Section section, long start) {
+			if (start == 0 || !KittenCommandProfiler.enabled) {
+				return; // Profiling was off when the section started
+			}
+			long wall = System.nanoTime() - start;
+			int index = KittenCommandProfiler.mode.ordinal() * Section.values().length + section.ordinal();
+			counts[index]++;
+			wallTotals[index] += wall;
+			if (wall > wallMaxes[index]) {
+				wallMaxes[index] = wall;
+			}
+			if (KittenCommandProfiler.cpuTimed && cpuStart > 0) {
+				cpuTotals[index] += KittenCommandProfiler.THREADS.getCurrentThreadCpuTime() - cpuStart;
+			}
+		}
+
+		/**
+		 * @param mode
+		 * @return the stats in a mode
+		 */
+		public Stats getStats(Mode mode) {
+			return new Stats(this, mode);
+		}
+
+		protected void reset() {
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = 0;
+				wallTotals[i] = 0;
+				wallMaxes[i] = 0;
+				cpuTotals[i] = 0;
+			}
+		}
+	}
+
+	/**
+	 * A command's stats in one mode when they were read. Durations are in nanoseconds.
+	 */
+	public static class Stats {
+		public final String name;
+		public final Mode mode;
+		public final long[] counts;
+		public final long[] wallTotals;
+		public final long[] wallMaxes;
+		public final long[] cpuTotals;
+
+		protected Stats(Probe probe, Mode mode) {
+			name = probe.name;
+			this.mode = mode;
+			int sections = Section.values().length;
+			counts = new long[sections];
+			wallTotals = new long[sections];
+			wallMaxes = new long[sections];
+			cpuTotals = new long[sections];
+			for (int i = 0; i < sections; i++) {
+				int index = mode.ordinal() * sections + i;
+				counts[i] = probe.counts[index];
+				wallTotals[i] = probe.wallTotals[index];
+				wallMaxes[i] = probe.wallMaxes[index];
+				cpuTotals[i] = probe.cpuTotals[index];
+			}
+		}
+
+		/**
+		 * @return wall time spent in every section
+		 */
+		public long getWallTotal() {
+			long total = 0;
+			for (long wallTotal : wallTotals) {
+				total += wallTotal;
+			}
+			return total;
+		}
+
+		/**
+		 * @return thread CPU time spent in every section (0 unless CPU timing is on)
+		 */
+		public long getCpuTotal() {
+			long total = 0;
+			for (long cpuTotal : cpuTotals) {
+				total += cpuTotal;
+			}
+			return total;
+		}
+
+		/**
+		 * @return the longest execute
+		 */
+		public long getExecuteMax() {
+			return wallMaxes[Section.EXECUTE.ordinal()];
+		}
+
+		/**
+		 * @return the mean execute, or 0 if execute never ran
+		 */
+		public double getExecuteMean() {
+			long count = counts[Section.EXECUTE.ordinal()];
+			return count == 0 ? 0 : (double) wallTotals[Section.EXECUTE.ordinal()] / count;
+		}
+	}
+
+	/**
+	 * Get the probe for a command name, creating it the first time.
+	 * Get probes once (as a field) rather than every tick.
+	 *
+	 * @param name
+	 *        The command's name
+	 * @return the probe
+	 */
+	public static Probe probe(String name) {
+		Probe probe = KittenCommandProfiler.PROBES.get(name);
+		if (probe != null) {
+			return probe;
+		}
+		synchronized (KittenCommandProfiler.PROBES) {
+			probe = KittenCommandProfiler.PROBES.get(name);
+			if (probe == null) {
+				probe = new Probe(name);
+				KittenCommandProfiler.PROBE_LIST.add(probe);
+				KittenCommandProfiler.PROBES.put(name, probe);
+			}
+			return probe;
+		}
+	}
+
+	/**
+	 * Starts profiling commands.
+	 *
+	 * @param cpuTimed
+	 *        Whether to also measure thread CPU time (about a microsecond more per section on the roboRIO),
+	 *        which tells a command that is computing from one that is waiting (such as on CAN)
+	 */
+	public static void enable(boolean cpuTimed) {
+		KittenCommandProfiler.cpuTimed = cpuTimed && KittenCommandProfiler.THREADS.isCurrentThreadCpuTimeSupported();
+		if (KittenCommandProfiler.cpuTimed && !KittenCommandProfiler.THREADS.isThreadCpuTimeEnabled()) {
+			KittenCommandProfiler.THREADS.setThreadCpuTimeEnabled(true);
+		}
+		KittenCommandProfiler.enabled = true;
+	}
+
+	/**
+	 * Starts profiling commands (wall time only).
+	 */
+	public static void enable() {
+		KittenCommandProfiler.enable(false);
+	}
+
+	/**
+	 * Stops profiling commands. Stats are kept.
+	 */
+	public static void disable() {
+		KittenCommandProfiler.enabled = false;
+	}
+
+	/**
+	 * @return whether commands are being profiled
+	 */
+	public static boolean isEnabled() {
+		return KittenCommandProfiler.enabled;
+	}
+
+	/**
+	 * @param reportSize
+	 *        How many commands each mode's report lists
+	 */
+	public static void setReportSize(int reportSize) {
+		KittenCommandProfiler.reportSize = reportSize;
+	}
+
+	/**
+	 * Sets the mode stats are kept for. If profiling, logs the report
+	 * for the mode being left. Called by CommandRobotBase when the mode changes.
+	 *
+	 * @param mode
+	 */
+	public static void setMode(Mode mode) {
+		if (KittenCommandProfiler.enabled && KittenCommandProfiler.mode != mode) {
+			KittenCommandProfiler.logReport(KittenCommandProfiler.mode);
+		}
+		KittenCommandProfiler.mode = mode;
+	}
+
+	/**
+	 * @param mode
+	 * @param count
+	 *        How many commands to list
+	 * @return the commands that took the most wall time in a mode, most expensive first
+	 */
+	public static List<Stats> getTopCommands(Mode mode, int count) {
+		ArrayList<Stats> stats = new ArrayList<Stats>();
+		for (Probe probe : KittenCommandProfiler.PROBE_LIST) {
+			Stats probeStats = probe.getStats(mode);
+			if (probeStats.getWallTotal() > 0) {
+				stats.add(probeStats);
+			}
+		}
+		stats.sort((a, b) -> Long.compare(b.getWallTotal(), a.getWallTotal()));
+		return stats.subList(0, Math.min(count, stats.size()));
+	}
+
+	/**
+	 * Logs the most expensive commands in a mode, one line each.
+	 *
+	 * @param mode
+	 */
+	public static void logReport(Mode mode) {
+		if (!LogKitten.isEnabled(LogKitten.LEVEL_VERBOSE)) {
+			return;
+		}
+		List<Stats> top = KittenCommandProfiler.getTopCommands(mode, KittenCommandProfiler.reportSize);
+		int rank = 1;
+		for (Stats stats : top) {
+			StringBuilder line = new StringBuilder();
+			line.append(mode).append(" #").append(rank++).append(' ').append(stats.name).append(": ")
+				.append(stats.getWallTotal() / 1000).append("us total");
+			if (KittenCommandProfiler.cpuTimed) {
+				line.append(" (").append(stats.getCpuTotal() / 1000).append("us CPU)");
+			}
+			line.append(", execute ").append(stats.counts[Section.EXECUTE.ordinal()]).append("x mean ")
+				.append((long) stats.getExecuteMean() / 1000).append("us max ").append(stats.getExecuteMax() / 1000)
+				.append("us");
+			LogKitten.v("CommandProfiler", line);
+		}
+	}
+
+	/**
+	 * Forgets every command's stats. Should be called from the robot loop thread.
+	 */
+	public static void reset() {
+		for (Probe probe : KittenCommandProfiler.PROBE_LIST) {
+			probe.reset();
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package org.usfirst.frc4904.standard.logging;
+
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.CyclicBarrier;
+import org.usfirst.frc4904.standard.LogKitten;
+import org.usfirst.frc4904.standard.logging.KittenTimestampFormatter.Precision;
+
+/**
+ * Measures logging from the main loop alone and alongside motion controller threads,
+ * which all log at once. This runs on a laptop, not on the robot:
+ *
+ * <pre>
+ * java org.usfirst.frc4904.standard.logging.KittenConcurrencyBenchmark
+ * </pre>
+ *
+ * Every thread logs the same number of tagged, logfile-only messages (the synchronous writer).
+ * The timestamps alone are also compared with the synchronized SimpleDateFormat LogKitten used
+ * before, which every logging thread waited on. Times are the wall time divided by every message
+ * from every thread; bytes are allocated per message, summed over the threads. Each case is run
+ * several times and the fastest run is reported, so the first runs warm up the JIT.
+ */
+public class KittenConcurrencyBenchmark {
+	public static final int CALLS = 200000; // Per thread
+	public static final int RUNS = 3;
+	public static final int[] CONTROLLER_THREADS = {0, 4};
+	public static final String MESSAGE = "Benchmark message";
+	private static final SimpleDateFormat OLD_FORMAT = new SimpleDateFormat(KittenTimestampFormatter.SECOND_PATTERN);
+	private static final KittenTimestampFormatter FORMATTER = new KittenTimestampFormatter();
+
+	public static enum Work {
+		LOG, OLD_TIMESTAMP, TIMESTAMP;
+	}
+
+	protected static long getAllocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread
+			.currentThread().getId());
+	}
+
+	/**
+	 * How LogKitten used to make every timestamp.
+	 */
+	protected static synchronized String oldTimestamp() {
+		return KittenConcurrencyBenchmark.OLD_FORMAT.format(new Date());
+	}
+
+	/**
+	 * Does the work on one thread.
+	 *
+	 * @return the bytes allocated
+	 */
+	protected static long work(Work work, int calls) {
+		char[] buffer = new char[KittenConcurrencyBenchmark.FORMATTER.getMaxLength()];
+		long before = KittenConcurrencyBenchmark.getAllocatedBytes();
+		for (int i = 0; i < calls; i++) {
+			switch (work) {
+				case LOG:
+					LogKitten.d("Benchmark", KittenConcurrencyBenchmark.MESSAGE);
+					break;
+				case OLD_TIMESTAMP:
+					KittenConcurrencyBenchmark.oldTimestamp();
+					break;
+				case TIMESTAMP:
+					KittenConcurrencyBenchmark.FORMATTER.format(System.currentTimeMillis(), System.nanoTime(),
+						Precision.MILLISECONDS, buffer, 0);
+					break;
+			}
+		}
+		return KittenConcurrencyBenchmark.getAllocatedBytes() - before;
+	}
+
+	/**
+	 * Runs the work on the main thread and some controller threads at once.
+	 *
+	 * @param work
+	 * @param controllerThreads
+	 * @return nanoseconds and bytes allocated per message
+	 */
+	public static double[] run(Work work, int controllerThreads) throws Exception {
+		CyclicBarrier start = new CyclicBarrier(controllerThreads + 1);
+		long[] allocated = new long[controllerThreads + 1];
+		Thread[] threads = new Thread[controllerThreads];
+		for (int i = 0; i < controllerThreads; i++) {
+			final int index = i + 1;
+			threads[i] = new Thread(() -> {
+				try {
+					start.await();
+				}
+				catch (Exception e) {
+					return;
+				}
+				allocated[index] = KittenConcurrencyBenchmark.work(work, KittenConcurrencyBenchmark.CALLS);
+			}, "MotionController " + index);
+			threads[i].start();
+		}
+		start.await();
+		long startNanos = System.nanoTime();
+		allocated[0] = KittenConcurrencyBenchmark.work(work, KittenConcurrencyBenchmark.CALLS);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		long nanos = System.nanoTime() - startNanos;
+		long bytes = 0;
+		for (long threadBytes : allocated) {
+			bytes += threadBytes;
+		}
+		double messages = (double) KittenConcurrencyBenchmark.CALLS * (controllerThreads + 1);
+		return new double[] {nanos / messages, bytes / messages};
+	}
+
+	public static void main(String[] args) throws Exception {
+		System.out.println("work            controller threads  ns/message  bytes/message");
+		for (Work work : Work.values()) {
+			for (int controllerThreads : KittenConcurrencyBenchmark.CONTROLLER_THREADS) {
+				double[] best = null;
+				for (int run = 0; run < KittenConcurrencyBenchmark.RUNS; run++) {
+					double[] result = KittenConcurrencyBenchmark.run(work, controllerThreads);
+					if (best == null || result[0] < best[0]) {
+						best = result;
+					}
+				}
+				System.out.println(String.format("%-15s %18d %11.0f %14.0f", work, controllerThreads, best[0], best[1]));
+			}
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package org.usfirst.frc4904.standard.logging;
+
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import org.usfirst.frc4904.standard.LogKitten.KittenLevel;
+
+/**
+ * Converts a binary LogKitten session (see {@link KittenBinaryWriter})
+ * back to text or CSV. This runs on a laptop, not on the robot:
+ *
+ * <pre>
+ * java org.usfirst.frc4904.standard.logging.KittenDecoder [--csv] [--level LEVEL]
+ *     [--from SECONDS] [--to SECONDS] [--site TEXT] session.kitten
+ * </pre>
+ *
+ * --level keeps messages at least as severe as LEVEL, --from and --to
+ * are seconds since the session started, and --site keeps call sites
+ * (Class#method or tag) containing TEXT.
+ */
+public class KittenDecoder {
+	protected static final KittenLevel[] LEVELS = KittenLevel.values();
+	protected final DataInputStream input;
+	protected final long startEpochMillis;
+	protected final ArrayList<String> strings;
+	protected long lastNanos;
+
+	/**
+	 * A decoded message.
+	 */
+	public static class Entry {
+		public long nanos;
+		public KittenLevel level;
+		public String callSite;
+		public String message;
+
+		/**
+		 * @return seconds since the session started
+		 */
+		public double getSeconds() {
+			return nanos / 1.0e9;
+		}
+	}
+
+	/**
+	 * Converts a binary LogKitten session back to text or CSV.
+	 *
+	 * @param input
+	 *        The session file
+	 * @throws IOException
+	 *         If the header is missing or from an unknown version
+	 */
+	public KittenDecoder(InputStream input) throws IOException {
+		this.input = new DataInputStream(new BufferedInputStream(input));
+		if (this.input.readInt() != KittenBinaryWriter.MAGIC) {
+			throw new IOException("Not a binary LogKitten session");
+		}
+		short version = this.input.readShort();
+		if (version != KittenBinaryWriter.VERSION) {
+			throw new IOException("Unknown binary LogKitten version " + version);
+		}
+		startEpochMillis = this.input.readLong();
+		this.input.readLong(); // The writer's nanoTime origin has no meaning here
+		strings = new ArrayList<String>();
+		lastNanos = 0;
+	}
+
+	/**
+	 * @return wall-clock time the session started
+	 */
+	public long getStartEpochMillis() {
+		return startEpochMillis;
+	}
+
+	/**
+	 * Reads the next message.
+	 *
+	 * @return the message, or null at the end of the session
+	 *         (including a session cut off partway through a record)
+	 * @throws IOException
+	 */
+	public Entry next() throws IOException {
+		try {
+			while (true) {
+				int type = input.read();
+				if (type < 0) {
+					return null;
+				}
+				if (type == KittenBinaryWriter.RECORD_STRING) {
+					int id = readVarInt();
+					String string = readString();
+					while (strings.size() <= id) {
+						strings.add(null);
+					}
+					strings.set(id, string);
+					continue;
+				}
+				Entry entry = new Entry();
+				long zigzag = readVarLong();
+				lastNanos += (zigzag >>> 1) ^ -(zigzag & 1);
+				entry.nanos = lastNanos;
+				entry.level = KittenDecoder.LEVELS[input.readUnsignedByte()];
+				entry.callSite = lookup(readVarInt());
+				if (type == KittenBinaryWriter.RECORD_TEXT) {
+					entry.message = readString();
+				} else if (type == KittenBinaryWriter.RECORD_VALUES) {
+					String format = lookup(readVarInt());
+					int count = input.readUnsignedByte();
+					double[] values = new double[3];
+					for (int i = 0; i < count; i++) {
+						double value = input.readDouble();
+						if (i < values.length) {
+							values[i] = value;
+						}
+					}
+					entry.message = KittenRecord.format(format, Math.min(count, values.length), values[0], values[1], values[2]);
+				} else {
+					throw new IOException("Unknown record type " + type);
+				}
+				return entry;
+			}
+		}
+		catch (EOFException e) {
+			return null;
+		}
+	}
+
+	protected String lookup(int id) throws IOException {
+		if (id >= strings.size() || strings.get(id) == null) {
+			throw new IOException("String " + id + " used before it was defined");
+		}
+		return strings.get(id);
+	}
+
+	protected String readString() throws IOException {
+		byte[] bytes = new byte[readVarInt()];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	protected int readVarInt() throws IOException {
+		int value = 0;
+		int shift = 0;
+		int current;
+		do {
+			current = input.readUnsignedByte();
+			value |= (current & 0x7F) << shift;
+			shift += 7;
+		} while ((current & 0x80) != 0);
+		return value;
+	}
+
+	protected long readVarLong() throws IOException {
+		long value = 0;
+		int shift = 0;
+		int current;
+		do {
+			current = input.readUnsignedByte();
+			value |= (long) (current & 0x7F) << shift;
+			shift += 7;
+		} while ((current & 0x80) != 0);
+		return value;
+	}
+
+	public void close() throws IOException {
+		input.close();
+	}
+
+	protected static String escapeCSV(String field) {
+		if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0) {
+			return field;
+		}
+		return "\"" + field.replace("\"", "\"\"") + "\"";
+	}
+
+	protected static void printUsage() {
+		System.err.println("Usage: KittenDecoder [--csv] [--level LEVEL] [--from SECONDS] [--to SECONDS] [--site TEXT] FILE");
+	}
+
+	public static void main(String[] args) throws IOException {
+		boolean csv = false;
+		KittenLevel level = KittenLevel.DEBUG;
+		double from = Double.NEGATIVE_INFINITY;
+		double to = Double.POSITIVE_INFINITY;
+		String site = null;
+		String path = null;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("--csv")) {
+					csv = true;
+				} else if (args[i].equals("--level")) {
+					level = KittenLevel.valueOf(args[++i].toUpperCase());
+				} else if (args[i].equals("--from")) {
+					from = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("--to")) {
+					to = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("--site")) {
+					site = args[++i];
+				} else {
+					path = args[i];
+				}
+			}
+		}
+		catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+			KittenDecoder.printUsage();
+			System.exit(1);
+		}
+		if (path == null) {
+			KittenDecoder.printUsage();
+			System.exit(1);
+		}
+		KittenDecoder decoder = new KittenDecoder(new FileInputStream(path));
+		SimpleDateFormat timestampFormat = new SimpleDateFormat("yyyy-MM-dd_HH:mm:ss.SSS");
+		PrintStream out = System.out;
+		if (csv) {
+			out.println("seconds,level,site,message");
+		}
+		Entry entry;
+		while ((entry = decoder.next()) != null) {
+			double seconds = entry.getSeconds();
+			if (level.compareTo(entry.level) < 0 || seconds < from || seconds > to
+				|| (site != null && !entry.callSite.contains(site))) {
+				continue;
+			}
+			if (csv) {
+				out.println(seconds + "," + entry.level.getName() + "," + KittenDecoder.escapeCSV(entry.callSite) + ","
+					+ KittenDecoder.escapeCSV(entry.message));
+			} else {
+				out.println(timestampFormat.format(new Date(decoder.getStartEpochMillis() + entry.nanos / 1000000)) + " "
+					+ entry.level.getName() + ": " + entry.callSite + ": " + entry.message);
+			}
+		}
+		decoder.close();
+	}
+}
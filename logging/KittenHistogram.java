@@ -0,0 +1,155 @@
+package org.usfirst.frc4904.standard.logging;
+
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-memory histogram of durations in nanoseconds.
+ * <p>
+ * Values are sorted into buckets that are 1/8 of a power of two wide,
+ * so percentiles are accurate to about 12% from one nanosecond up to
+ * hours, using 496 counters and no allocation after construction.
+ * Each recorded value is also added to a running total and maximum.
+ * <p>
+ * One thread should record (such as the robot loop). Any thread may
+ * read percentiles, and will see every value recorded before the read
+ * started, give or take the values recorded while it is reading.
+ *
+ */
+public class KittenHistogram {
+	protected static final int SUB_BUCKET_BITS = 3;
+	protected static final int SUB_BUCKETS = 1 << KittenHistogram.SUB_BUCKET_BITS;
+	protected static final int BUCKETS = (64 - KittenHistogram.SUB_BUCKET_BITS + 1) * KittenHistogram.SUB_BUCKETS;
+	protected final AtomicLongArray counts;
+	protected volatile long count;
+	protected volatile long total;
+	protected volatile long max;
+
+	/**
+	 * A fixed-memory histogram of durations in nanoseconds.
+	 */
+	public KittenHistogram() {
+		counts = new AtomicLongArray(KittenHistogram.BUCKETS);
+		count = 0;
+		total = 0;
+		max = 0;
+	}
+
+	/**
+	 * @param value
+	 * @return the bucket a (non-negative) value falls into
+	 */
+	protected static int bucketOf(long value) {
+		if (value < KittenHistogram.SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - KittenHistogram.SUB_BUCKET_BITS)) & (KittenHistogram.SUB_BUCKETS - 1);
+		return (exponent - KittenHistogram.SUB_BUCKET_BITS + 1) * KittenHistogram.SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * @param bucket
+	 * @return the largest value that falls into a bucket
+	 */
+	protected static long highestValueOf(int bucket) {
+		if (bucket < KittenHistogram.SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / KittenHistogram.SUB_BUCKETS + KittenHistogram.SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % KittenHistogram.SUB_BUCKETS;
+		long lowest = (KittenHistogram.SUB_BUCKETS + subBucket) << (exponent - KittenHistogram.SUB_BUCKET_BITS);
+		return lowest + (1L << (exponent - KittenHistogram.SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * Records a duration. Called by one thread only.
+	 *
+	 * @param nanos
+	 *        The duration (negative durations are recorded as zero)
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		int bucket = KittenHistogram.bucketOf(nanos);
+		counts.lazySet(bucket, counts.get(bucket) + 1);
+		total += nanos;
+		if (nanos > max) {
+			max = nanos;
+		}
+		count++;
+	}
+
+	/**
+	 * Estimates a percentile, rounding up to the top of its bucket
+	 * (but never above the largest value recorded).
+	 *
+	 * @param percentile
+	 *        Between 0 and 100 (such as 99 for the 99th percentile)
+	 * @return the duration in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long getPercentile(double percentile) {
+		long recorded = 0;
+		for (int i = 0; i < KittenHistogram.BUCKETS; i++) {
+			recorded += counts.get(i);
+		}
+		if (recorded == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(recorded * Math.min(Math.max(percentile, 0), 100) / 100.0);
+		if (rank < 1) {
+			rank = 1;
+		}
+		long seen = 0;
+		for (int i = 0; i < KittenHistogram.BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(KittenHistogram.highestValueOf(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return the number of durations recorded
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the sum of the durations recorded, in nanoseconds
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return the mean duration in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public double getMean() {
+		long recorded = count;
+		return recorded == 0 ? 0 : (double) total / recorded;
+	}
+
+	/**
+	 * @return the longest duration recorded, in nanoseconds
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Forgets every recorded duration.
+	 * Should be called by the recording thread (or while nothing is recording).
+	 */
+	public void reset() {
+		for (int i = 0; i < KittenHistogram.BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count = 0;
+		total = 0;
+		max = 0;
+	}
+}
@@ -0,0 +1,228 @@
+package org.usfirst.frc4904.standard.logging;
+
+
+import org.usfirst.frc4904.standard.LogKitten;
+
+/**
+ * Times each phase of the robot loop (the scheduler, the mode's execute
+ * function and alwaysExecute) so a stuttering robot can be diagnosed.
+ * <p>
+ * Each phase feeds a fixed-memory {@link KittenHistogram}, loops longer than
+ * the budget are counted as overruns, and a one-line summary
+ * ("Loop p50/p99/max ms: ...") is logged periodically.
+ *
+ */
+public class KittenLoopTimer {
+	public static final double DEFAULT_BUDGET_MILLIS = 20.0;
+	public static final double DEFAULT_SUMMARY_PERIOD_SECONDS = 10.0;
+	protected final KittenHistogram[] histograms;
+	protected volatile long budgetNanos;
+	protected volatile long summaryPeriodNanos;
+	protected volatile long overruns;
+	protected volatile long worstOverrunNanos;
+	protected long lastSummaryNanos;
+	protected long overrunsAtLastSummary;
+
+	/**
+	 * The timed parts of a loop.
+	 */
+	public static enum Phase {
+		SCHEDULER("scheduler"), MODE("execute"), ALWAYS("alwaysExecute"), LOOP("loop");
+		private final String name;
+
+		private Phase(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	/**
+	 * The timing of one phase when a snapshot was taken.
+	 * All durations are in nanoseconds.
+	 */
+	public static class PhaseTiming {
+		public final Phase phase;
+		public final long count;
+		public final long p50;
+		public final long p99;
+		public final long max;
+		public final double mean;
+
+		protected PhaseTiming(Phase phase, KittenHistogram histogram) {
+			this.phase = phase;
+			count = histogram.getCount();
+			p50 = histogram.getPercentile(50);
+			p99 = histogram.getPercentile(99);
+			max = histogram.getMax();
+			mean = histogram.getMean();
+		}
+	}
+
+	/**
+	 * The timing of every phase when a snapshot was taken.
+	 */
+	public static class Snapshot {
+		public final PhaseTiming[] phases;
+		public final long budgetNanos;
+		public final long overruns;
+		public final long worstOverrunNanos;
+
+		protected Snapshot(PhaseTiming[] phases, long budgetNanos, long overruns, long worstOverrunNanos) {
+			this.phases = phases;
+			this.budgetNanos = budgetNanos;
+			this.overruns = overruns;
+			this.worstOverrunNanos = worstOverrunNanos;
+		}
+
+		/**
+		 * @param phase
+		 * @return the timing of a phase
+		 */
+		public PhaseTiming get(Phase phase) {
+			return phases[phase.ordinal()];
+		}
+	}
+
+	/**
+	 * Times each phase of the robot loop.
+	 *
+	 * @param budgetMillis
+	 *        Loops longer than this are counted as overruns
+	 * @param summaryPeriodSeconds
+	 *        How often a summary is logged (0 or less to never log one)
+	 */
+	public KittenLoopTimer(double budgetMillis, double summaryPeriodSeconds) {
+		histograms = new KittenHistogram[Phase.values().length];
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new KittenHistogram();
+		}
+		setBudget(budgetMillis);
+		setSummaryPeriod(summaryPeriodSeconds);
+		overruns = 0;
+		worstOverrunNanos = 0;
+		lastSummaryNanos = System.nanoTime();
+		overrunsAtLastSummary = 0;
+	}
+
+	/**
+	 * Times each phase of the robot loop against a 20 millisecond budget,
+	 * logging a summary every 10 seconds.
+	 */
+	public KittenLoopTimer() {
+		this(KittenLoopTimer.DEFAULT_BUDGET_MILLIS, KittenLoopTimer.DEFAULT_SUMMARY_PERIOD_SECONDS);
+	}
+
+	/**
+	 * @param budgetMillis
+	 *        Loops longer than this are counted as overruns
+	 */
+	public void setBudget(double budgetMillis) {
+		budgetNanos = (long) (budgetMillis * 1.0e6);
+	}
+
+	/**
+	 * @param summaryPeriodSeconds
+	 *        How often a summary is logged (0 or less to never log one)
+	 */
+	public void setSummaryPeriod(double summaryPeriodSeconds) {
+		summaryPeriodNanos = (long) (summaryPeriodSeconds * 1.0e9);
+	}
+
+	/**
+	 * Records one loop. Called by the robot loop thread with
+	 * System.nanoTime() at the start of each phase and at the end of the loop.
+	 *
+	 * @param start
+	 *        Before the scheduler ran
+	 * @param scheduled
+	 *        After the scheduler ran, before the mode's execute function
+	 * @param executed
+	 *        After the mode's execute function, before alwaysExecute
+	 * @param end
+	 *        After alwaysExecute
+	 */
+	public void record(long start, long scheduled, long executed, long end) {
+		histograms[Phase.SCHEDULER.ordinal()].record(scheduled - start);
+		histograms[Phase.MODE.ordinal()].record(executed - scheduled);
+		histograms[Phase.ALWAYS.ordinal()].record(end - executed);
+		long loop = end - start;
+		histograms[Phase.LOOP.ordinal()].record(loop);
+		if (loop > budgetNanos) {
+			overruns++;
+			if (loop - budgetNanos > worstOverrunNanos) {
+				worstOverrunNanos = loop - budgetNanos;
+			}
+		}
+		if (summaryPeriodNanos > 0 && end - lastSummaryNanos >= summaryPeriodNanos) {
+			lastSummaryNanos = end;
+			logSummary();
+		}
+	}
+
+	/**
+	 * Logs a one-line summary of every phase and the overruns since the last summary.
+	 */
+	public void logSummary() {
+		if (!LogKitten.isEnabled(LogKitten.LEVEL_VERBOSE)) {
+			overrunsAtLastSummary = overruns;
+			return;
+		}
+		StringBuilder summary = new StringBuilder("Loop p50/p99/max ms:");
+		for (Phase phase : Phase.values()) {
+			KittenHistogram histogram = histograms[phase.ordinal()];
+			summary.append(' ').append(phase.getName()).append(' ');
+			KittenLoopTimer.appendMillis(summary, histogram.getPercentile(50)).append('/');
+			KittenLoopTimer.appendMillis(summary, histogram.getPercentile(99)).append('/');
+			KittenLoopTimer.appendMillis(summary, histogram.getMax());
+		}
+		long total = overruns;
+		summary.append(", ").append(total - overrunsAtLastSummary).append(" overruns of ");
+		KittenLoopTimer.appendMillis(summary, budgetNanos).append("ms (").append(total).append(" total)");
+		overrunsAtLastSummary = total;
+		LogKitten.v("LoopTimer", summary);
+	}
+
+	protected static StringBuilder appendMillis(StringBuilder builder, long nanos) {
+		long hundredths = (nanos + 5000) / 10000;
+		builder.append(hundredths / 100).append('.');
+		long fraction = hundredths % 100;
+		if (fraction < 10) {
+			builder.append('0');
+		}
+		return builder.append(fraction);
+	}
+
+	/**
+	 * @return the timing of every phase since the timer was created or reset
+	 */
+	public Snapshot getSnapshot() {
+		Phase[] phases = Phase.values();
+		PhaseTiming[] timings = new PhaseTiming[phases.length];
+		for (Phase phase : phases) {
+			timings[phase.ordinal()] = new PhaseTiming(phase, histograms[phase.ordinal()]);
+		}
+		return new Snapshot(timings, budgetNanos, overruns, worstOverrunNanos);
+	}
+
+	/**
+	 * @return the number of loops longer than the budget
+	 */
+	public long getOverrunCount() {
+		return overruns;
+	}
+
+	/**
+	 * Forgets every recorded loop. Should be called from the robot loop thread.
+	 */
+	public void reset() {
+		for (KittenHistogram histogram : histograms) {
+			histogram.reset();
+		}
+		overruns = 0;
+		worstOverrunNanos = 0;
+		overrunsAtLastSummary = 0;
+	}
+}
@@ -0,0 +1,186 @@
+package org.usfirst.frc4904.standard.logging;
+
+
+import java.util.concurrent.ConcurrentHashMap;
+import org.usfirst.frc4904.standard.LogKitten.KittenLevel;
+
+/**
+ * Limits how often each call site may log, so that a fault which
+ * logs on every tick (like a CAN device going quiet) does not flood
+ * the logfile and driver station.
+ * <p>
+ * Each call site gets a token bucket. On top of that, a message identical
+ * to the call site's previous message is only let through once per summary
+ * interval. Suppressed messages are counted so they can be summarized
+ * ("suppressed 412 similar messages in last 1.0s") instead of being lost.
+ *
+ */
+public class KittenRateLimiter {
+	protected final double messagesPerNano;
+	protected final double burst;
+	protected final long summaryIntervalNanos;
+	protected final ConcurrentHashMap<String, ConcurrentHashMap<String, CallSite>> callSites;
+
+	/**
+	 * Receives the suppressed message count for a call site.
+	 */
+	public static interface Summarizer {
+		void summarize(CallSite callSite, KittenLevel level, int suppressed, double seconds);
+	}
+
+	/**
+	 * Limits how often each call site may log.
+	 *
+	 * @param messagesPerSecond
+	 *        Sustained messages per second allowed from each call site
+	 * @param burst
+	 *        Messages a call site may log at once before it is limited
+	 * @param summaryIntervalSeconds
+	 *        How often suppressed messages are summarized, and how often an
+	 *        identical message is let through
+	 */
+	public KittenRateLimiter(double messagesPerSecond, double burst, double summaryIntervalSeconds) {
+		messagesPerNano = messagesPerSecond / 1.0e9;
+		this.burst = Math.max(burst, 1.0);
+		summaryIntervalNanos = (long) (summaryIntervalSeconds * 1.0e9);
+		callSites = new ConcurrentHashMap<String, ConcurrentHashMap<String, CallSite>>();
+	}
+
+	/**
+	 * Get the state for a call site, creating it the first time.
+	 *
+	 * @param className
+	 *        The calling class, or null if the method name is a tag
+	 * @param methodName
+	 *        The calling method or tag
+	 */
+	public CallSite getCallSite(String className, String methodName) {
+		String classKey = className == null ? "" : className;
+		ConcurrentHashMap<String, CallSite> methods = callSites.get(classKey);
+		if (methods == null) {
+			methods = new ConcurrentHashMap<String, CallSite>();
+			ConcurrentHashMap<String, CallSite> existing = callSites.putIfAbsent(classKey, methods);
+			if (existing != null) {
+				methods = existing;
+			}
+		}
+		CallSite callSite = methods.get(methodName);
+		if (callSite == null) {
+			callSite = new CallSite(className, methodName);
+			CallSite existing = methods.putIfAbsent(methodName, callSite);
+			if (existing != null) {
+				callSite = existing;
+			}
+		}
+		return callSite;
+	}
+
+	/**
+	 * Reports every call site whose suppressed messages are due to be summarized.
+	 *
+	 * @param nowNanos
+	 *        System.nanoTime()
+	 * @param force
+	 *        Report every call site with suppressed messages, even if the interval has not passed
+	 * @param summarizer
+	 *        Receives each summary
+	 */
+	public void summarize(long nowNanos, boolean force, Summarizer summarizer) {
+		for (ConcurrentHashMap<String, CallSite> methods : callSites.values()) {
+			for (CallSite callSite : methods.values()) {
+				callSite.summarize(nowNanos, force, summarizer);
+			}
+		}
+	}
+
+	/**
+	 * The rate limiting state of one call site.
+	 */
+	public class CallSite {
+		public final String className;
+		public final String methodName;
+		protected double tokens;
+		protected long lastRefillNanos;
+		protected long lastAllowedNanos;
+		protected String lastMessage;
+		protected String lastFormat;
+		protected int lastArgumentCount;
+		protected double lastA;
+		protected double lastB;
+		protected double lastC;
+		protected int suppressed;
+		protected long suppressedSinceNanos;
+		protected KittenLevel suppressedLevel;
+
+		protected CallSite(String className, String methodName) {
+			this.className = className;
+			this.methodName = methodName;
+			tokens = burst;
+			lastRefillNanos = System.nanoTime();
+			lastAllowedNanos = Long.MIN_VALUE;
+		}
+
+		/**
+		 * Decides whether a message may be logged, counting it if not.
+		 *
+		 * @param message
+		 *        the finished message, or null if there is a template
+		 * @param format
+		 *        the message template, or null if there is a finished message
+		 * @return whether to log the message
+		 */
+		public synchronized boolean allow(long nowNanos, KittenLevel level, String message, String format,
+			int argumentCount, double a, double b, double c) {
+			tokens = Math.min(burst, tokens + (nowNanos - lastRefillNanos) * messagesPerNano);
+			lastRefillNanos = nowNanos;
+			boolean repeated = isRepeat(message, format, argumentCount, a, b, c);
+			if ((repeated && nowNanos - lastAllowedNanos < summaryIntervalNanos) || tokens < 1.0) {
+				if (suppressed == 0) {
+					suppressedSinceNanos = nowNanos;
+				}
+				suppressed++;
+				if (suppressedLevel == null || level.compareTo(suppressedLevel) < 0) {
+					suppressedLevel = level; // Summarize at the most severe level that was suppressed
+				}
+				return false;
+			}
+			tokens -= 1.0;
+			lastAllowedNanos = nowNanos;
+			lastMessage = message;
+			lastFormat = format;
+			lastArgumentCount = argumentCount;
+			lastA = a;
+			lastB = b;
+			lastC = c;
+			return true;
+		}
+
+		protected boolean isRepeat(String message, String format, int argumentCount, double a, double b, double c) {
+			if (message != null) {
+				return message.equals(lastMessage);
+			}
+			return format != null && format.equals(lastFormat) && argumentCount == lastArgumentCount && a == lastA
+				&& b == lastB && c == lastC;
+		}
+
+		/**
+		 * Reports the suppressed message count if it is due, then resets it.
+		 */
+		public void summarize(long nowNanos, boolean force, Summarizer summarizer) {
+			KittenLevel level;
+			int count;
+			double seconds;
+			synchronized (this) {
+				if (suppressed == 0 || (!force && nowNanos - suppressedSinceNanos < summaryIntervalNanos)) {
+					return;
+				}
+				level = suppressedLevel;
+				count = suppressed;
+				seconds = (nowNanos - suppressedSinceNanos) / 1.0e9;
+				suppressed = 0;
+				suppressedLevel = null;
+			}
+			summarizer.summarize(this, level, count, seconds);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package org.usfirst.frc4904.standard.logging;
+
+
+import org.usfirst.frc4904.standard.LogKitten.KittenLevel;
+
+/**
+ * A single LogKitten message waiting to be written.
+ * Records are allocated once by a KittenRingBuffer
+ * and then reused, so every field is mutable.
+ * <p>
+ * A record holds either a finished message or a template
+ * with up to three numeric arguments, which is only
+ * formatted when a text sink needs it.
+ *
+ */
+public class KittenRecord {
+	public KittenLevel level;
+	public String message;
+	public String format;
+	public int argumentCount;
+	public double a;
+	public double b;
+	public double c;
+	public String callerClassName;
+	public String callerMethodName;
+	public boolean override;
+	public long timeMillis;
+	public long timeNanos;
+	long position; // Ring buffer bookkeeping, not copied
+
+	/**
+	 * Copies every field of another record into this one.
+	 *
+	 * @param other
+	 *        The record to copy
+	 */
+	public void copyFrom(KittenRecord other) {
+		level = other.level;
+		message = other.message;
+		format = other.format;
+		argumentCount = other.argumentCount;
+		a = other.a;
+		b = other.b;
+		c = other.c;
+		callerClassName = other.callerClassName;
+		callerMethodName = other.callerMethodName;
+		override = other.override;
+		timeMillis = other.timeMillis;
+		timeNanos = other.timeNanos;
+	}
+
+	/**
+	 * Drops references held by this record so that
+	 * messages are not kept alive by the ring buffer.
+	 */
+	public void clear() {
+		level = null;
+		message = null;
+		format = null;
+		callerClassName = null;
+		callerMethodName = null;
+	}
+
+	/**
+	 * @return whether this record holds a template and numeric arguments rather than a finished message
+	 */
+	public boolean isFormatted() {
+		return message == null && format != null;
+	}
+
+	/**
+	 * Get the text of the message, formatting the template the first time it is needed.
+	 *
+	 * @return the message
+	 */
+	public String getMessage() {
+		if (message == null && format != null) {
+			message = KittenRecord.format(format, argumentCount, a, b, c);
+		}
+		return message;
+	}
+
+	/**
+	 * Replaces each "{}" in a template with the next argument.
+	 * Extra arguments or placeholders are left alone.
+	 *
+	 * @param format
+	 *        the message template
+	 * @param argumentCount
+	 *        the number of arguments (0 to 3) that are used
+	 * @return the formatted message
+	 */
+	public static String format(String format, int argumentCount, double a, double b, double c) {
+		StringBuilder builder = new StringBuilder(format.length() + 24 * argumentCount);
+		int argument = 0;
+		int start = 0;
+		int placeholder;
+		while (argument < argumentCount && (placeholder = format.indexOf("{}", start)) >= 0) {
+			builder.append(format, start, placeholder);
+			builder.append(argument == 0 ? a : argument == 1 ? b : c);
+			argument++;
+			start = placeholder + 2;
+		}
+		builder.append(format, start, format.length());
+		return builder.toString();
+	}
+}
@@ -0,0 +1,272 @@
+package org.usfirst.frc4904.standard.logging;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free, multi-producer ring buffer of KittenRecords.
+ * Any thread may publish; a single writer thread drains.
+ * <p>
+ * Each slot carries a sequence number (Vyukov's bounded queue),
+ * so producers claim slots with a single compare-and-set and never
+ * take a lock. Records are preallocated and reused.
+ * <p>
+ * Once {@link #close()}d, no more slots can be claimed, and
+ * {@link #awaitCommitted()} waits for the ones already claimed to be filled,
+ * so the last drain sees every message.
+ *
+ */
+public class KittenRingBuffer {
+	/**
+	 * What to do when a message is published while the buffer is full.
+	 */
+	public static enum OverflowPolicy {
+		/**
+		 * Discard the oldest unwritten message to make room.
+		 */
+		DROP_OLDEST,
+		/**
+		 * Discard the message being published.
+		 */
+		DROP_NEWEST,
+		/**
+		 * Wait for the writer to make room.
+		 * This can stall the calling thread, so it should not be used
+		 * from the control loop.
+		 */
+		BLOCK;
+	}
+
+	protected static final long BLOCK_PARK_NANOS = 100000; // 0.1 milliseconds
+	protected static final int SPINS_BEFORE_YIELD = 100;
+	protected static final long CLOSED = Long.MIN_VALUE; // Set on the enqueue position once closed
+	protected final KittenRecord[] records;
+	protected final AtomicLongArray sequences;
+	protected final int mask;
+	protected final OverflowPolicy overflowPolicy;
+	protected final AtomicLong enqueuePosition;
+	protected final AtomicLong dequeuePosition;
+	protected final AtomicLong commitCount;
+	protected final AtomicLong droppedOldest;
+	protected final AtomicLong droppedNewest;
+
+	/**
+	 * A bounded, lock-free, multi-producer ring buffer of KittenRecords.
+	 *
+	 * @param capacity
+	 *        The number of records to preallocate.
+	 *        Rounded up to the next power of two.
+	 * @param overflowPolicy
+	 *        What to do when the buffer is full
+	 */
+	public KittenRingBuffer(int capacity, OverflowPolicy overflowPolicy) {
+		if (capacity < 2) {
+			capacity = 2;
+		}
+		int size = Integer.highestOneBit(capacity - 1) << 1;
+		this.overflowPolicy = overflowPolicy;
+		records = new KittenRecord[size];
+		sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			records[i] = new KittenRecord();
+			sequences.set(i, i);
+		}
+		mask = size - 1;
+		enqueuePosition = new AtomicLong(0);
+		dequeuePosition = new AtomicLong(0);
+		commitCount = new AtomicLong(0);
+		droppedOldest = new AtomicLong(0);
+		droppedNewest = new AtomicLong(0);
+	}
+
+	/**
+	 * Claims the next free record, applying the overflow policy if the buffer is full.
+	 * The caller fills the record and then passes it to {@link #commit(KittenRecord)}.
+	 *
+	 * @return the record to fill, or null if the message should be dropped
+	 *         (or written some other way, if the buffer is closed)
+	 */
+	public KittenRecord claim() {
+		int spins = 0;
+		while (true) {
+			KittenRecord record = tryClaim();
+			if (record != null) {
+				return record;
+			}
+			if (isClosed()) {
+				return null;
+			}
+			switch (overflowPolicy) {
+				case DROP_OLDEST:
+					if (discardOldest()) {
+						droppedOldest.incrementAndGet();
+					} else if (++spins > KittenRingBuffer.SPINS_BEFORE_YIELD) {
+						// The oldest slot is claimed but not yet committed, so let its producer finish
+						Thread.yield();
+					}
+					break;
+				case BLOCK:
+					LockSupport.parkNanos(KittenRingBuffer.BLOCK_PARK_NANOS);
+					break;
+				case DROP_NEWEST:
+				default:
+					droppedNewest.incrementAndGet();
+					return null;
+			}
+		}
+	}
+
+	/**
+	 * Tries to claim a slot.
+	 *
+	 * @return the claimed record, or null if the buffer is full or closed
+	 */
+	protected KittenRecord tryClaim() {
+		while (true) {
+			long position = enqueuePosition.get();
+			if (position < 0) {
+				return null; // Closed
+			}
+			int index = (int) position & mask;
+			long difference = sequences.get(index) - position;
+			if (difference == 0) {
+				if (enqueuePosition.compareAndSet(position, position + 1)) {
+					KittenRecord record = records[index];
+					record.position = position;
+					return record;
+				}
+			} else if (difference < 0) {
+				return null;
+			}
+			// Otherwise another producer claimed this position first, so try again
+		}
+	}
+
+	/**
+	 * Hands a filled record to the writer.
+	 *
+	 * @param record
+	 *        A record returned by {@link #claim()}
+	 */
+	public void commit(KittenRecord record) {
+		sequences.lazySet((int) record.position & mask, record.position + 1);
+		commitCount.incrementAndGet();
+	}
+
+	/**
+	 * Stops any more records being claimed. Records already claimed can still be committed.
+	 *
+	 * @return the number of records that were ever claimed
+	 */
+	public long close() {
+		while (true) {
+			long position = enqueuePosition.get();
+			if (position < 0) {
+				return position & ~KittenRingBuffer.CLOSED;
+			}
+			if (enqueuePosition.compareAndSet(position, position | KittenRingBuffer.CLOSED)) {
+				return position;
+			}
+		}
+	}
+
+	/**
+	 * @return whether {@link #close()} has been called
+	 */
+	public boolean isClosed() {
+		return enqueuePosition.get() < 0;
+	}
+
+	/**
+	 * Waits until every record claimed before {@link #close()} has been committed.
+	 * Producers only fill a few fields between claiming and committing,
+	 * so this spins briefly and then yields.
+	 */
+	public void awaitCommitted() {
+		long claimed = close();
+		int spins = 0;
+		while (commitCount.get() < claimed) {
+			if (++spins > KittenRingBuffer.SPINS_BEFORE_YIELD) {
+				Thread.yield();
+			}
+		}
+	}
+
+	/**
+	 * Removes the oldest record and copies it.
+	 *
+	 * @param into
+	 *        The record to copy into (may be null to discard)
+	 * @return false if the buffer is empty
+	 */
+	public boolean poll(KittenRecord into) {
+		while (true) {
+			long position = dequeuePosition.get();
+			int index = (int) position & mask;
+			long difference = sequences.get(index) - (position + 1);
+			if (difference == 0) {
+				if (dequeuePosition.compareAndSet(position, position + 1)) {
+					KittenRecord record = records[index];
+					if (into != null) {
+						into.copyFrom(record);
+					}
+					record.clear();
+					sequences.lazySet(index, position + mask + 1); // Hands the slot back to producers
+					return true;
+				}
+			} else if (difference < 0) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Discards the oldest record to make room.
+	 *
+	 * @return false if there was nothing to discard
+	 */
+	protected boolean discardOldest() {
+		return poll(null);
+	}
+
+	/**
+	 * @return whether there are no records waiting to be written
+	 */
+	public boolean isEmpty() {
+		return dequeuePosition.get() >= (enqueuePosition.get() & ~KittenRingBuffer.CLOSED);
+	}
+
+	/**
+	 * @return the number of records the buffer can hold
+	 */
+	public int getCapacity() {
+		return records.length;
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * @return the number of records discarded by DROP_OLDEST
+	 */
+	public long getDroppedOldestCount() {
+		return droppedOldest.get();
+	}
+
+	/**
+	 * @return the number of records discarded by DROP_NEWEST
+	 */
+	public long getDroppedNewestCount() {
+		return droppedNewest.get();
+	}
+
+	/**
+	 * @return the total number of records discarded because the buffer was full
+	 */
+	public long getDroppedCount() {
+		return droppedOldest.get() + droppedNewest.get();
+	}
+}
@@ -0,0 +1,196 @@
+package org.usfirst.frc4904.standard.logging;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * An OutputStream that writes into preallocated, memory-mapped log segments
+ * of a fixed size. Writes are copies into mapped memory rather than
+ * buffered stream writes, and the kernel writes the pages back to flash.
+ * <p>
+ * When a segment fills up, the next one ([session].[n][extension]) is created
+ * and the alias is pointed at it. Every time a segment is created, the oldest
+ * log files (text, binary and telemetry) from other sessions in the directory are deleted until the
+ * directory fits in the disk budget.
+ *
+ */
+public class KittenSegmentWriter extends OutputStream {
+	public static final String[] LOG_EXTENSIONS = {".log", ".kitten", ".telemetry"}; // Everything LogKitten writes to the log directory
+	protected final File directory;
+	protected final String sessionName;
+	protected final String extension;
+	protected final long segmentSize;
+	protected final long diskBudget;
+	protected final File alias;
+	protected int segmentNumber;
+	protected File segmentFile;
+	protected MappedByteBuffer segment;
+	protected boolean closed;
+
+	/**
+	 * An OutputStream that writes into preallocated, memory-mapped log segments of a fixed size.
+	 *
+	 * @param directory
+	 *        The log directory
+	 * @param sessionName
+	 *        The start of every segment's file name
+	 * @param extension
+	 *        The end of every segment's file name (such as ".log")
+	 * @param segmentSize
+	 *        Bytes per segment
+	 * @param diskBudget
+	 *        Bytes the log directory may use in total
+	 * @param alias
+	 *        A symbolic link kept pointing at the live segment (may be null)
+	 * @throws IOException
+	 *         If the first segment can not be created
+	 */
+	public KittenSegmentWriter(File directory, String sessionName, String extension, int segmentSize, long diskBudget,
+		File alias) throws IOException {
+		if (segmentSize <= 0) {
+			throw new IllegalArgumentException("Segment size must be positive");
+		}
+		this.directory = directory;
+		this.sessionName = sessionName;
+		this.extension = extension;
+		this.segmentSize = segmentSize;
+		this.diskBudget = diskBudget;
+		this.alias = alias;
+		segmentNumber = -1;
+		closed = false;
+		nextSegment();
+	}
+
+	/**
+	 * Finishes the current segment (if any) and maps a new one.
+	 */
+	protected void nextSegment() throws IOException {
+		segmentNumber++;
+		segmentFile = new File(directory, sessionName + "." + segmentNumber + extension);
+		try (FileChannel channel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.CREATE,
+			StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize); // The mapping outlives the channel
+		}
+		if (alias != null) {
+			try {
+				Files.deleteIfExists(alias.toPath());
+				Files.createSymbolicLink(alias.toPath(), segmentFile.toPath());
+			}
+			catch (IOException | UnsupportedOperationException e) {
+				System.out.println("Could not alias log segment");
+			}
+		}
+		prune();
+	}
+
+	/**
+	 * Deletes the oldest log files from other sessions until the
+	 * directory fits in the disk budget.
+	 */
+	protected void prune() {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		long total = 0;
+		ArrayList<File> candidates = new ArrayList<File>();
+		for (File file : files) {
+			if (Files.isSymbolicLink(file.toPath()) || !file.isFile() || !KittenSegmentWriter.isLogFile(file)) {
+				continue;
+			}
+			total += file.length();
+			if (!file.getName().startsWith(sessionName)) {
+				candidates.add(file);
+			}
+		}
+		Collections.sort(candidates, new Comparator<File>() {
+			@Override
+			public int compare(File a, File b) {
+				return Long.compare(a.lastModified(), b.lastModified());
+			}
+		});
+		for (File oldest : candidates) {
+			if (total <= diskBudget) {
+				return;
+			}
+			long length = oldest.length();
+			if (oldest.delete()) {
+				total -= length;
+			}
+		}
+	}
+
+	protected static boolean isLogFile(File file) {
+		for (String extension : KittenSegmentWriter.LOG_EXTENSIONS) {
+			if (file.getName().endsWith(extension)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (closed) {
+			throw new IOException("Log segment closed");
+		}
+		if (!segment.hasRemaining()) {
+			nextSegment();
+		}
+		segment.put((byte) b);
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		if (closed) {
+			throw new IOException("Log segment closed");
+		}
+		while (length > 0) {
+			if (!segment.hasRemaining()) {
+				nextSegment();
+			}
+			int count = Math.min(length, segment.remaining());
+			segment.put(bytes, offset, count);
+			offset += count;
+			length -= count;
+		}
+	}
+
+	/**
+	 * Mapped writes are already visible to the kernel, so there is nothing to flush.
+	 * Use {@link #close()} to force the live segment to flash.
+	 */
+	@Override
+	public void flush() {}
+
+	/**
+	 * Forces the live segment to flash and trims off the unused, preallocated part of it.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		segment.force();
+		try (FileChannel channel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.WRITE)) {
+			channel.truncate(segment.position());
+		}
+	}
+
+	/**
+	 * @return the file currently being written to
+	 */
+	public File getSegmentFile() {
+		return segmentFile;
+	}
+}
@@ -0,0 +1,136 @@
+package org.usfirst.frc4904.standard.logging;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A named stream of numbers recorded for telemetry.
+ * Samples go into preallocated primitive arrays (no boxing, no strings)
+ * and are written out in columns by {@link KittenTelemetry}'s flush thread.
+ * <p>
+ * Any thread may record. Slots are claimed with a compare-and-set
+ * (the same scheme as {@link KittenRingBuffer}), and a sample recorded
+ * while the buffer is full is dropped and counted.
+ *
+ */
+public class KittenSignal {
+	public final String name;
+	public final int id;
+	protected final long[] times;
+	protected final double[] values;
+	protected final AtomicLongArray sequences;
+	protected final int mask;
+	protected final AtomicLong writePosition;
+	protected final AtomicLong dropped;
+	protected long readPosition; // Only touched by the flush thread
+
+	/**
+	 * A named stream of numbers recorded for telemetry.
+	 * Use {@link KittenTelemetry#signal(String)} rather than constructing these directly.
+	 *
+	 * @param name
+	 *        The column name
+	 * @param id
+	 *        The column id within the telemetry file
+	 * @param capacity
+	 *        Samples that can wait to be flushed (rounded up to a power of two)
+	 */
+	protected KittenSignal(String name, int id, int capacity) {
+		this.name = name;
+		this.id = id;
+		if (capacity < 2) {
+			capacity = 2;
+		}
+		int size = Integer.highestOneBit(capacity - 1) << 1;
+		times = new long[size];
+		values = new double[size];
+		sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+		mask = size - 1;
+		writePosition = new AtomicLong(0);
+		dropped = new AtomicLong(0);
+		readPosition = 0;
+	}
+
+	/**
+	 * Records a sample, timestamped now.
+	 * Does nothing unless telemetry is being recorded.
+	 *
+	 * @param value
+	 */
+	public void record(double value) {
+		if (KittenTelemetry.isRecording()) {
+			record(System.nanoTime(), value);
+		}
+	}
+
+	/**
+	 * Records a sample with a given timestamp.
+	 * Samples recorded with the same timestamp (such as a PID controller's input,
+	 * setpoint and output) end up in the same row of the telemetry file.
+	 * Does nothing unless telemetry is being recorded.
+	 *
+	 * @param nanos
+	 *        System.nanoTime() when the value was measured
+	 * @param value
+	 */
+	public void record(long nanos, double value) {
+		if (!KittenTelemetry.isRecording()) {
+			return;
+		}
+		while (true) {
+			long position = writePosition.get();
+			int index = (int) position & mask;
+			long difference = sequences.get(index) - position;
+			if (difference == 0) {
+				if (writePosition.compareAndSet(position, position + 1)) {
+					times[index] = nanos;
+					values[index] = value;
+					sequences.lazySet(index, position + 1); // Hands the sample to the flush thread
+					return;
+				}
+			} else if (difference < 0) {
+				dropped.incrementAndGet(); // Full, so the flush thread is behind
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Moves waiting samples into arrays. Called only by the flush thread.
+	 *
+	 * @return the number of samples copied
+	 */
+	protected int drainTo(long[] timesInto, double[] valuesInto) {
+		int count = 0;
+		while (count < timesInto.length) {
+			int index = (int) readPosition & mask;
+			if (sequences.get(index) != readPosition + 1) {
+				break;
+			}
+			timesInto[count] = times[index];
+			valuesInto[count] = values[index];
+			count++;
+			sequences.lazySet(index, readPosition + mask + 1); // Hands the slot back to recorders
+			readPosition++;
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of samples that can wait to be flushed
+	 */
+	public int getCapacity() {
+		return times.length;
+	}
+
+	/**
+	 * @return the number of samples dropped because the flush thread fell behind
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+}
@@ -0,0 +1,291 @@
+package org.usfirst.frc4904.standard.logging;
+
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records numeric telemetry (PID input, setpoint and output, motor speeds, battery voltage)
+ * as columns of doubles instead of strings in the text log.
+ * <p>
+ * Code registers a named signal once with {@link #signal(String)} and then records
+ * doubles into it every tick. A background thread periodically gathers every
+ * signal's samples into a block with a shared timestamp column and one column
+ * per signal. Samples with the same timestamp share a row; a signal with no sample
+ * at a row's timestamp gets NaN.
+ * <p>
+ * The file starts with a header (magic, version, session start wall-clock time in
+ * milliseconds and session start nanoTime). After that, every record starts with a type byte:
+ * <ul>
+ * <li>SIGNAL: int id, UTF name. Defines a column the first time it is written.</li>
+ * <li>BLOCK: int row count, int column count, row count longs (nanoseconds since the
+ * session started), then for each column an int id and row count doubles.</li>
+ * </ul>
+ *
+ * @see KittenTelemetryDecoder
+ */
+public class KittenTelemetry {
+	public static final int MAGIC = 0x4B544C4D; // "KTLM"
+	public static final short VERSION = 1;
+	public static final byte RECORD_SIGNAL = 0;
+	public static final byte RECORD_BLOCK = 1;
+	public static final int DEFAULT_SIGNAL_CAPACITY = 1024;
+	public static final long DEFAULT_FLUSH_PERIOD_MILLIS = 100;
+	private static final long FLUSHER_JOIN_MILLIS = 500;
+	private static final ConcurrentHashMap<String, KittenSignal> SIGNALS = new ConcurrentHashMap<String, KittenSignal>();
+	private static final CopyOnWriteArrayList<KittenSignal> SIGNAL_LIST = new CopyOnWriteArrayList<KittenSignal>();
+	private static volatile boolean recording = false;
+	private static Flusher flusher = null;
+
+	/**
+	 * Get the signal with a name, registering it the first time.
+	 * Register signals once (such as when telemetry is turned on for a mechanism, with setTelemetryName)
+	 * and keep them, rather than looking them up every tick. Every signal holds a preallocated ring,
+	 * so only register the ones that will be recorded.
+	 *
+	 * @param name
+	 *        The column name (such as "Shooter/speed")
+	 * @return the signal
+	 */
+	public static KittenSignal signal(String name) {
+		KittenSignal signal = KittenTelemetry.SIGNALS.get(name);
+		if (signal != null) {
+			return signal;
+		}
+		synchronized (KittenTelemetry.SIGNALS) {
+			signal = KittenTelemetry.SIGNALS.get(name);
+			if (signal == null) {
+				signal = new KittenSignal(name, KittenTelemetry.SIGNAL_LIST.size(), KittenTelemetry.DEFAULT_SIGNAL_CAPACITY);
+				KittenTelemetry.SIGNAL_LIST.add(signal);
+				KittenTelemetry.SIGNALS.put(name, signal);
+			}
+			return signal;
+		}
+	}
+
+	/**
+	 * Starts recording telemetry.
+	 *
+	 * @param output
+	 *        Where to write the telemetry (buffered and closed by the flush thread)
+	 * @param startEpochMillis
+	 *        Wall-clock time the session started
+	 * @param startNanos
+	 *        System.nanoTime() when the session started
+	 * @param flushPeriodMillis
+	 *        How often samples are written
+	 * @throws IOException
+	 *         If the header can not be written, or the last recording's flush thread is still
+	 *         writing (the output is closed)
+	 */
+	public static synchronized void start(OutputStream output, long startEpochMillis, long startNanos,
+		long flushPeriodMillis) throws IOException {
+		KittenTelemetry.stop();
+		if (KittenTelemetry.flusher != null) {
+			// Signals are drained by one thread at a time, so wait for the old one to finish
+			output.close();
+			throw new IOException("The last telemetry recording is still being written");
+		}
+		KittenTelemetry.flusher = new Flusher(output, startEpochMillis, startNanos, flushPeriodMillis);
+		KittenTelemetry.recording = true;
+		KittenTelemetry.flusher.start();
+	}
+
+	/**
+	 * Stops recording telemetry, writes the samples still waiting and closes the output.
+	 * Waits a short while for the flush thread; if it is still writing, telemetry can not be
+	 * started again until a later call to stop finds it done.
+	 */
+	public static synchronized void stop() {
+		if (KittenTelemetry.flusher == null) {
+			return;
+		}
+		KittenTelemetry.recording = false;
+		if (KittenTelemetry.flusher.finish()) {
+			KittenTelemetry.flusher = null;
+		}
+	}
+
+	/**
+	 * @return whether samples are being recorded
+	 */
+	public static boolean isRecording() {
+		return KittenTelemetry.recording;
+	}
+
+	/**
+	 * The background thread that gathers samples into blocks and writes them.
+	 */
+	private static class Flusher extends Thread {
+		private final DataOutputStream output;
+		private final long startNanos;
+		private final long flushPeriodNanos;
+		private volatile boolean running;
+		private boolean[] defined;
+		private long[][] sampleTimes;
+		private double[][] sampleValues;
+		private int[] sampleCounts;
+		private int[] heads;
+		private long[] rowTimes;
+		private double[][] cells;
+
+		public Flusher(OutputStream output, long startEpochMillis, long startNanos, long flushPeriodMillis)
+			throws IOException {
+			super("Kitten telemetry");
+			this.output = new DataOutputStream(new BufferedOutputStream(output));
+			this.startNanos = startNanos;
+			flushPeriodNanos = flushPeriodMillis * 1000000;
+			running = true;
+			defined = new boolean[0];
+			sampleTimes = new long[0][];
+			sampleValues = new double[0][];
+			sampleCounts = new int[0];
+			heads = new int[0];
+			rowTimes = new long[0];
+			cells = new double[0][];
+			setDaemon(true);
+			setPriority(Thread.MIN_PRIORITY);
+			this.output.writeInt(KittenTelemetry.MAGIC);
+			this.output.writeShort(KittenTelemetry.VERSION);
+			this.output.writeLong(startEpochMillis);
+			this.output.writeLong(startNanos);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (running) {
+					LockSupport.parkNanos(flushPeriodNanos);
+					writeBlock();
+				}
+				writeBlock(); // Catch anything recorded while stopping
+				output.close();
+			}
+			catch (IOException e) {
+				System.out.println("Could not write telemetry");
+				e.printStackTrace();
+			}
+		}
+
+		/**
+		 * Drains every signal and writes one block, merging samples with equal timestamps into rows.
+		 */
+		private void writeBlock() throws IOException {
+			int signalCount = KittenTelemetry.SIGNAL_LIST.size();
+			grow(signalCount);
+			int sampleTotal = 0;
+			int columnCount = 0;
+			for (int i = 0; i < signalCount; i++) {
+				KittenSignal signal = KittenTelemetry.SIGNAL_LIST.get(i);
+				if (sampleTimes[i] == null) {
+					sampleTimes[i] = new long[signal.getCapacity()];
+					sampleValues[i] = new double[signal.getCapacity()];
+				}
+				sampleCounts[i] = signal.drainTo(sampleTimes[i], sampleValues[i]);
+				heads[i] = 0;
+				sampleTotal += sampleCounts[i];
+				if (sampleCounts[i] > 0) {
+					columnCount++;
+					if (!defined[i]) {
+						output.writeByte(KittenTelemetry.RECORD_SIGNAL);
+						output.writeInt(signal.id);
+						output.writeUTF(signal.name);
+						defined[i] = true;
+					}
+				}
+			}
+			if (sampleTotal == 0) {
+				return;
+			}
+			if (rowTimes.length < sampleTotal) {
+				rowTimes = new long[sampleTotal];
+				for (int i = 0; i < signalCount; i++) {
+					cells[i] = null;
+				}
+			}
+			int rows = 0;
+			while (true) {
+				long earliest = Long.MAX_VALUE;
+				boolean found = false;
+				for (int i = 0; i < signalCount; i++) {
+					if (heads[i] < sampleCounts[i] && (!found || sampleTimes[i][heads[i]] < earliest)) {
+						earliest = sampleTimes[i][heads[i]];
+						found = true;
+					}
+				}
+				if (!found) {
+					break;
+				}
+				rowTimes[rows] = earliest;
+				for (int i = 0; i < signalCount; i++) {
+					if (sampleCounts[i] == 0) {
+						continue;
+					}
+					if (cells[i] == null) {
+						cells[i] = new double[rowTimes.length];
+					}
+					if (heads[i] < sampleCounts[i] && sampleTimes[i][heads[i]] == earliest) {
+						cells[i][rows] = sampleValues[i][heads[i]++];
+					} else {
+						cells[i][rows] = Double.NaN;
+					}
+				}
+				rows++;
+			}
+			output.writeByte(KittenTelemetry.RECORD_BLOCK);
+			output.writeInt(rows);
+			output.writeInt(columnCount);
+			for (int row = 0; row < rows; row++) {
+				output.writeLong(rowTimes[row] - startNanos);
+			}
+			for (int i = 0; i < signalCount; i++) {
+				if (sampleCounts[i] == 0) {
+					continue;
+				}
+				output.writeInt(KittenTelemetry.SIGNAL_LIST.get(i).id);
+				for (int row = 0; row < rows; row++) {
+					output.writeDouble(cells[i][row]);
+				}
+			}
+			output.flush();
+		}
+
+		/**
+		 * Makes room for signals registered since the last block.
+		 */
+		private void grow(int signalCount) {
+			if (defined.length >= signalCount) {
+				return;
+			}
+			defined = Arrays.copyOf(defined, signalCount);
+			sampleTimes = Arrays.copyOf(sampleTimes, signalCount);
+			sampleValues = Arrays.copyOf(sampleValues, signalCount);
+			sampleCounts = Arrays.copyOf(sampleCounts, signalCount);
+			heads = Arrays.copyOf(heads, signalCount);
+			cells = Arrays.copyOf(cells, signalCount);
+		}
+
+		/**
+		 * Stops the flush thread and waits for it to write what is left and close the output.
+		 *
+		 * @return whether the thread has exited
+		 */
+		public boolean finish() {
+			running = false;
+			LockSupport.unpark(this);
+			try {
+				join(KittenTelemetry.FLUSHER_JOIN_MILLIS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return !isAlive();
+		}
+	}
+}
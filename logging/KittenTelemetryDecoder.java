@@ -0,0 +1,230 @@
+package org.usfirst.frc4904.standard.logging;
+
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Converts a telemetry file (see {@link KittenTelemetry}) to CSV
+ * with a seconds column and one column per signal.
+ * This runs on a laptop, not on the robot:
+ *
+ * <pre>
+ * java org.usfirst.frc4904.standard.logging.KittenTelemetryDecoder [--from SECONDS] [--to SECONDS]
+ *     [--signal TEXT] session.telemetry
+ * </pre>
+ *
+ * --from and --to are seconds since the session started, and --signal keeps
+ * signals whose names contain TEXT (it may be given more than once).
+ * Empty cells are signals with no sample at that row's time.
+ */
+public class KittenTelemetryDecoder {
+	protected final DataInputStream input;
+	protected final long startEpochMillis;
+	protected final HashMap<Integer, String> names;
+
+	/**
+	 * A decoded block of rows.
+	 */
+	public static class Block {
+		public long[] nanos;
+		public int[] ids;
+		public double[][] columns;
+
+		/**
+		 * @return seconds since the session started for a row
+		 */
+		public double getSeconds(int row) {
+			return nanos[row] / 1.0e9;
+		}
+	}
+
+	/**
+	 * Converts a telemetry file to CSV.
+	 *
+	 * @param input
+	 *        The telemetry file
+	 * @throws IOException
+	 *         If the header is missing or from an unknown version
+	 */
+	public KittenTelemetryDecoder(InputStream input) throws IOException {
+		this.input = new DataInputStream(new BufferedInputStream(input));
+		if (this.input.readInt() != KittenTelemetry.MAGIC) {
+			throw new IOException("Not a LogKitten telemetry file");
+		}
+		short version = this.input.readShort();
+		if (version != KittenTelemetry.VERSION) {
+			throw new IOException("Unknown LogKitten telemetry version " + version);
+		}
+		startEpochMillis = this.input.readLong();
+		this.input.readLong(); // The writer's nanoTime origin has no meaning here
+		names = new HashMap<Integer, String>();
+	}
+
+	/**
+	 * @return wall-clock time the session started
+	 */
+	public long getStartEpochMillis() {
+		return startEpochMillis;
+	}
+
+	/**
+	 * @param id
+	 * @return the name of a signal defined so far, or null
+	 */
+	public String getName(int id) {
+		return names.get(id);
+	}
+
+	/**
+	 * Reads the next block.
+	 *
+	 * @return the block, or null at the end of the file
+	 *         (including a file cut off partway through a block)
+	 * @throws IOException
+	 */
+	public Block next() throws IOException {
+		try {
+			while (true) {
+				int type = input.read();
+				if (type < 0) {
+					return null;
+				}
+				if (type == KittenTelemetry.RECORD_SIGNAL) {
+					int id = input.readInt();
+					names.put(id, input.readUTF());
+					continue;
+				}
+				if (type != KittenTelemetry.RECORD_BLOCK) {
+					throw new IOException("Unknown record type " + type);
+				}
+				Block block = new Block();
+				int rows = input.readInt();
+				int columns = input.readInt();
+				block.nanos = new long[rows];
+				for (int row = 0; row < rows; row++) {
+					block.nanos[row] = input.readLong();
+				}
+				block.ids = new int[columns];
+				block.columns = new double[columns][rows];
+				for (int column = 0; column < columns; column++) {
+					block.ids[column] = input.readInt();
+					if (!names.containsKey(block.ids[column])) {
+						throw new IOException("Signal " + block.ids[column] + " used before it was defined");
+					}
+					for (int row = 0; row < rows; row++) {
+						block.columns[column][row] = input.readDouble();
+					}
+				}
+				return block;
+			}
+		}
+		catch (EOFException e) {
+			return null;
+		}
+	}
+
+	public void close() throws IOException {
+		input.close();
+	}
+
+	protected static void printUsage() {
+		System.err.println("Usage: KittenTelemetryDecoder [--from SECONDS] [--to SECONDS] [--signal TEXT]... FILE");
+	}
+
+	public static void main(String[] args) throws IOException {
+		double from = Double.NEGATIVE_INFINITY;
+		double to = Double.POSITIVE_INFINITY;
+		ArrayList<String> filters = new ArrayList<String>();
+		String path = null;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("--from")) {
+					from = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("--to")) {
+					to = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("--signal")) {
+					filters.add(args[++i]);
+				} else {
+					path = args[i];
+				}
+			}
+		}
+		catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+			KittenTelemetryDecoder.printUsage();
+			System.exit(1);
+		}
+		if (path == null) {
+			KittenTelemetryDecoder.printUsage();
+			System.exit(1);
+		}
+		// Blocks only carry the signals that had samples, so read everything first to know every column
+		KittenTelemetryDecoder decoder = new KittenTelemetryDecoder(new FileInputStream(path));
+		ArrayList<Block> blocks = new ArrayList<Block>();
+		Block block;
+		while ((block = decoder.next()) != null) {
+			blocks.add(block);
+		}
+		decoder.close();
+		ArrayList<Integer> ids = new ArrayList<Integer>();
+		for (Block each : blocks) {
+			for (int id : each.ids) {
+				if (ids.contains(id)) {
+					continue;
+				}
+				String name = decoder.getName(id);
+				boolean kept = filters.isEmpty();
+				for (String filter : filters) {
+					kept |= name.contains(filter);
+				}
+				if (kept) {
+					ids.add(id);
+				}
+			}
+		}
+		ids.sort(null);
+		PrintStream out = System.out;
+		StringBuilder line = new StringBuilder("seconds");
+		for (int id : ids) {
+			line.append(',').append(KittenDecoder.escapeCSV(decoder.getName(id)));
+		}
+		out.println(line);
+		int[] columnOf = new int[ids.size()];
+		for (Block each : blocks) {
+			for (int i = 0; i < ids.size(); i++) {
+				columnOf[i] = -1;
+				for (int column = 0; column < each.ids.length; column++) {
+					if (each.ids[column] == ids.get(i)) {
+						columnOf[i] = column;
+					}
+				}
+			}
+			for (int row = 0; row < each.nanos.length; row++) {
+				double seconds = each.getSeconds(row);
+				if (seconds < from || seconds > to) {
+					continue;
+				}
+				line.setLength(0);
+				line.append(seconds);
+				boolean empty = true;
+				for (int i = 0; i < ids.size(); i++) {
+					line.append(',');
+					if (columnOf[i] >= 0 && !Double.isNaN(each.columns[columnOf[i]][row])) {
+						line.append(each.columns[columnOf[i]][row]);
+						empty = false;
+					}
+				}
+				if (!empty) {
+					out.println(line);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package org.usfirst.frc4904.standard.logging;
+
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reusable buffer for rendering one line of the text logfile.
+ * Each logging thread keeps its own, so lines are rendered without
+ * a lock and the buffers are only reallocated when a longer line comes along.
+ *
+ */
+public class KittenTextLine {
+	protected static final int INITIAL_CAPACITY = 256;
+	protected char[] chars;
+	protected byte[] bytes;
+	protected int length;
+
+	public KittenTextLine() {
+		chars = new char[KittenTextLine.INITIAL_CAPACITY];
+		bytes = new byte[KittenTextLine.INITIAL_CAPACITY];
+		length = 0;
+	}
+
+	public void clear() {
+		length = 0;
+	}
+
+	/**
+	 * Makes room for more characters.
+	 */
+	protected void reserve(int count) {
+		if (length + count > chars.length) {
+			char[] larger = new char[Math.max(chars.length * 2, length + count)];
+			System.arraycopy(chars, 0, larger, 0, length);
+			chars = larger;
+		}
+	}
+
+	public void append(String string) {
+		int count = string.length();
+		reserve(count);
+		string.getChars(0, count, chars, length);
+		length += count;
+	}
+
+	public void append(char character) {
+		reserve(1);
+		chars[length++] = character;
+	}
+
+	/**
+	 * Writes a timestamp into the line.
+	 */
+	public void appendTimestamp(KittenTimestampFormatter formatter, long epochMillis, long nanos,
+		KittenTimestampFormatter.Precision precision) {
+		reserve(formatter.getMaxLength());
+		length = formatter.format(epochMillis, nanos, precision, chars, length);
+	}
+
+	/**
+	 * Encodes the line as UTF-8 into the byte buffer.
+	 * Plain ASCII (nearly every log line) is copied directly.
+	 *
+	 * @return the number of bytes in {@link #getBytes()}
+	 */
+	public int encode() {
+		for (int i = 0; i < length; i++) {
+			if (chars[i] >= 0x80) {
+				byte[] encoded = new String(chars, 0, length).getBytes(StandardCharsets.UTF_8);
+				bytes = encoded.length > bytes.length ? encoded : bytes;
+				System.arraycopy(encoded, 0, bytes, 0, encoded.length);
+				return encoded.length;
+			}
+		}
+		if (length > bytes.length) {
+			bytes = new byte[chars.length];
+		}
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) chars[i];
+		}
+		return length;
+	}
+
+	/**
+	 * @return the bytes from the last {@link #encode()}
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+}
@@ -0,0 +1,148 @@
+package org.usfirst.frc4904.standard.logging;
+
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Formats log timestamps without locking and (apart from once a second) without allocating.
+ * <p>
+ * The "yyyy-MM-dd_HH:mm:ss" part only changes once a second, so it is rendered
+ * once and shared between threads through a volatile, immutable cache entry.
+ * The fractional digits are appended straight into the caller's char buffer.
+ * Microseconds come from System.nanoTime() anchored to the wall clock; the anchor
+ * moves whenever the wall clock jumps (such as when the driver station sets the time).
+ *
+ */
+public class KittenTimestampFormatter {
+	public static final String SECOND_PATTERN = "yyyy-MM-dd_HH:mm:ss";
+	protected static final long REANCHOR_MICROS = 2000; // Wall clock disagreement that moves the anchor
+
+	/**
+	 * How many fractional digits of a second to show.
+	 */
+	public static enum Precision {
+		SECONDS(0), MILLISECONDS(3), MICROSECONDS(6);
+		public final int digits;
+
+		private Precision(int digits) {
+			this.digits = digits;
+		}
+	}
+
+	/**
+	 * A rendered second, never modified after it is published.
+	 */
+	protected static class SecondPrefix {
+		protected final long second;
+		protected final char[] text;
+
+		protected SecondPrefix(long second, char[] text) {
+			this.second = second;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * A wall clock time and the nanoTime it was read at, never modified after it is published.
+	 */
+	protected static class Anchor {
+		protected final long epochMicros;
+		protected final long nanos;
+
+		protected Anchor(long epochMillis, long nanos) {
+			epochMicros = epochMillis * 1000 + 500; // The wall clock was somewhere in this millisecond, so guess the middle
+			this.nanos = nanos;
+		}
+	}
+
+	protected final ThreadLocal<SimpleDateFormat> dateFormats;
+	protected volatile SecondPrefix prefix;
+	protected volatile Anchor anchor;
+
+	/**
+	 * Formats log timestamps without locking.
+	 */
+	public KittenTimestampFormatter() {
+		dateFormats = ThreadLocal.withInitial(() -> new SimpleDateFormat(KittenTimestampFormatter.SECOND_PATTERN));
+		prefix = new SecondPrefix(Long.MIN_VALUE, new char[0]);
+		anchor = new Anchor(System.currentTimeMillis(), System.nanoTime());
+	}
+
+	/**
+	 * @return the most characters {@link #format(long, long, Precision, char[], int)} can write
+	 */
+	public int getMaxLength() {
+		return KittenTimestampFormatter.SECOND_PATTERN.length() + 1 + Precision.MICROSECONDS.digits;
+	}
+
+	/**
+	 * Writes a timestamp into a char buffer.
+	 *
+	 * @param epochMillis
+	 *        System.currentTimeMillis() when the message was logged
+	 * @param nanos
+	 *        System.nanoTime() when the message was logged (only used for microseconds)
+	 * @param precision
+	 *        how many fractional digits to show
+	 * @param into
+	 *        the buffer, with at least {@link #getMaxLength()} characters free after offset
+	 * @param offset
+	 *        where to start writing
+	 * @return the offset just after the timestamp
+	 */
+	public int format(long epochMillis, long nanos, Precision precision, char[] into, int offset) {
+		long epochMicros = epochMillis * 1000;
+		if (precision == Precision.MICROSECONDS) {
+			epochMicros = anchoredMicros(epochMillis, nanos);
+		}
+		long second = Math.floorDiv(epochMicros, 1000000);
+		SecondPrefix current = prefix;
+		if (current.second != second) {
+			current = new SecondPrefix(second, dateFormats.get().format(new Date(second * 1000)).toCharArray());
+			prefix = current; // Racing threads render the same text, so whichever write wins is fine
+		}
+		System.arraycopy(current.text, 0, into, offset, current.text.length);
+		offset += current.text.length;
+		if (precision.digits == 0) {
+			return offset;
+		}
+		into[offset++] = '.';
+		long fraction = Math.floorMod(epochMicros, 1000000);
+		if (precision == Precision.MILLISECONDS) {
+			fraction /= 1000;
+		}
+		for (int i = offset + precision.digits - 1; i >= offset; i--) {
+			into[i] = (char) ('0' + fraction % 10);
+			fraction /= 10;
+		}
+		return offset + precision.digits;
+	}
+
+	/**
+	 * Converts a nanoTime into microseconds since the epoch, moving the anchor
+	 * if it no longer agrees with the wall clock.
+	 */
+	protected long anchoredMicros(long epochMillis, long nanos) {
+		Anchor current = anchor;
+		long epochMicros = current.epochMicros + (nanos - current.nanos) / 1000;
+		if (Math.abs(epochMicros - epochMillis * 1000) > KittenTimestampFormatter.REANCHOR_MICROS) {
+			current = new Anchor(epochMillis, nanos);
+			anchor = current;
+			epochMicros = current.epochMicros;
+		}
+		return epochMicros;
+	}
+
+	/**
+	 * Formats a timestamp as a new String. This allocates, so it is meant for file names and the like.
+	 *
+	 * @param epochMillis
+	 *        milliseconds since the epoch
+	 * @return timestamp in the format "YEAR-MONTH-DAY_HOUR:MIN:SEC"
+	 */
+	public String format(long epochMillis) {
+		char[] text = new char[getMaxLength()];
+		return new String(text, 0, format(epochMillis, 0, Precision.SECONDS, text, 0));
+	}
+}
@@ -3,6 +3,8 @@ package org.usfirst.frc4904.standard.subsystems.motor;
 
 import org.usfirst.frc4904.standard.LogKitten;
 import org.usfirst.frc4904.standard.commands.motor.MotorIdle;
+import org.usfirst.frc4904.standard.logging.KittenSignal;
+import org.usfirst.frc4904.standard.logging.KittenTelemetry;
 import org.usfirst.frc4904.standard.subsystems.motor.speedmodifiers.IdentityModifier;
 import org.usfirst.frc4904.standard.subsystems.motor.speedmodifiers.SpeedModifier;
 
@@ -20,6 +22,7 @@ public class Motor extends Subsystem implements SpeedController {
 	protected final SpeedModifier speedModifier;
 	protected boolean isInverted;
 	protected double lastSpeed;
+	protected KittenSignal speedSignal;
 	
 	/**
 	 * A class that wraps around a variable number of SpeedController objects to give them Subsystem functionality.
@@ -172,6 +175,18 @@ public class Motor extends Subsystem implements SpeedController {
 		setDefaultCommand(new MotorIdle(this));
 	}
 	
+	/**
+	 * Records every speed set as telemetry (name/speed).
+	 * Give each motor its own name: motors sharing one share a column.
+	 *
+	 * @param name
+	 *        The prefix for the signal name (such as "Shooter")
+	 * @see KittenTelemetry
+	 */
+	public void setTelemetryName(String name) {
+		speedSignal = KittenTelemetry.signal(name + "/speed");
+	}
+	
 	/**
 	 * Get a set value from a PIDController.
 	 *
@@ -182,6 +197,9 @@ public class Motor extends Subsystem implements SpeedController {
 	public void pidWrite(double speed) {
 		double newSpeed = speedModifier.modify(speed);
 		lastSpeed = newSpeed;
+		if (speedSignal != null) {
+			speedSignal.record(newSpeed);
+		}
 		for (SpeedController motor : motors) {
 			motor.pidWrite(newSpeed);
 		}
@@ -229,9 +247,14 @@ public class Motor extends Subsystem implements SpeedController {
 	 */
 	@Override
 	public void set(double speed) {
-		LogKitten.v("Motor " + getName() + " @ " + speed);
+		if (LogKitten.isEnabled(LogKitten.LEVEL_VERBOSE)) {
+			LogKitten.v("Motor " + getName() + " @ " + speed);
+		}
 		double newSpeed = speedModifier.modify(speed);
 		lastSpeed = newSpeed;
+		if (speedSignal != null) {
+			speedSignal.record(newSpeed);
+		}
 		for (SpeedController motor : motors) {
 			motor.set(newSpeed);
 		}
@@ -2,6 +2,8 @@ package org.usfirst.frc4904.standard.subsystems.motor;
 
 
 import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionController;
+import org.usfirst.frc4904.standard.custom.motioncontrollers.MotionProfile;
+import org.usfirst.frc4904.standard.custom.sensors.InvalidSensorException;
 import org.usfirst.frc4904.standard.subsystems.motor.speedmodifiers.IdentityModifier;
 import org.usfirst.frc4904.standard.subsystems.motor.speedmodifiers.SpeedModifier;
 import edu.wpi.first.wpilibj.SpeedController;
@@ -45,4 +47,29 @@ public class PositionSensorMotor extends SensorMotor {
 	public void setPosition(double position) {
 		motionController.setSetpoint(position);
 	}
+
+	/**
+	 * Moves the motor's setpoint along a profile, starting now.
+	 * The motion controller should be enabled.
+	 *
+	 * @param profile
+	 */
+	public void followProfile(MotionProfile profile) {
+		motionController.followProfile(profile);
+	}
+
+	/**
+	 * @return true unless the setpoint is partway along a profile
+	 */
+	public boolean isProfileFinished() {
+		return motionController.isProfileFinished();
+	}
+
+	/**
+	 * @return the current position from the motion controller's sensor
+	 * @throws InvalidSensorException
+	 */
+	public double getPositionSafely() throws InvalidSensorException {
+		return motionController.getInputSafely();
+	}
 }
@@ -114,7 +114,9 @@ public abstract class SensorMotor extends Motor {
 		motionController.setSetpoint(position);
 		motionController.enable();
 		double speed = motionController.getSafely();
-		LogKitten.v(getName() + " set to position " + position + " at speed " + speed);
+		if (LogKitten.isEnabled(LogKitten.LEVEL_VERBOSE)) {
+			LogKitten.v(getName() + " set to position " + position + " at speed " + speed);
+		}
 		super.set(speed);
 	}
 
@@ -128,7 +130,9 @@ public abstract class SensorMotor extends Motor {
 		motionController.setSetpoint(position);
 		motionController.enable();
 		double speed = motionController.get();
-		LogKitten.v(getName() + " set to position " + position + " at speed " + speed);
+		if (LogKitten.isEnabled(LogKitten.LEVEL_VERBOSE)) {
+			LogKitten.v(getName() + " set to position " + position + " at speed " + speed);
+		}
 		super.set(speed);
 	}
 
@@ -45,7 +45,7 @@ public class VelocitySensorMotor extends SensorMotor {
 	
 	@Override
 	public void set(double speed) {
-		LogKitten.v(speed + "");
+		LogKitten.verbosef("{}", speed);
 		if (motionController.isEnabled()) {
 			motionController.setSetpoint(speed);
 		} else {
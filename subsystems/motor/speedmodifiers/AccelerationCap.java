@@ -5,6 +5,8 @@ import org.usfirst.frc4904.standard.LogKitten;
 import org.usfirst.frc4904.standard.Util;
 import org.usfirst.frc4904.standard.custom.sensors.InvalidSensorException;
 import org.usfirst.frc4904.standard.custom.sensors.PDP;
+import org.usfirst.frc4904.standard.logging.KittenSignal;
+import org.usfirst.frc4904.standard.logging.KittenTelemetry;
 
 /**
  * A SpeedModifier that does brownout protection and voltage ramping.
@@ -25,6 +27,9 @@ public class AccelerationCap implements SpeedModifier {
 	protected double currentSpeed;
 	protected double voltage;
 	protected double lastVoltage;
+	protected KittenSignal voltageSignal;
+	protected KittenSignal inputSignal;
+	protected KittenSignal outputSignal;
 
 	/**
 	 * A SpeedModifier that does brownout protection and voltage ramping.
@@ -63,6 +68,20 @@ public class AccelerationCap implements SpeedModifier {
 		this(pdp, AccelerationCap.DEFAULT_HARD_STOP_VOLTAGE);
 	}
 
+	/**
+	 * Records the battery voltage, input speed and capped speed as telemetry
+	 * (name/voltage, name/input and name/output), one row per call to modify.
+	 *
+	 * @param name
+	 *        The prefix for the signal names (such as "LeftWheel/AccelerationCap")
+	 * @see KittenTelemetry
+	 */
+	public void setTelemetryName(String name) {
+		voltageSignal = KittenTelemetry.signal(name + "/voltage");
+		inputSignal = KittenTelemetry.signal(name + "/input");
+		outputSignal = KittenTelemetry.signal(name + "/output");
+	}
+
 	protected double calculate(double inputSpeed) {
 		double deltaTime = (System.currentTimeMillis() - lastUpdate) / 1000.0;
 		lastUpdate = System.currentTimeMillis();
@@ -132,7 +151,13 @@ public class AccelerationCap implements SpeedModifier {
 	@Override
 	public double modify(double inputSpeed) {
 		currentSpeed = calculate(inputSpeed);
-		LogKitten.d("AccelerationCap outputed: " + currentSpeed);
+		if (outputSignal != null && KittenTelemetry.isRecording()) {
+			long now = System.nanoTime();
+			voltageSignal.record(now, voltage);
+			inputSignal.record(now, inputSpeed);
+			outputSignal.record(now, currentSpeed);
+		}
+		LogKitten.debugf("AccelerationCap outputed: {}", currentSpeed);
 		return currentSpeed;
 	}
 }
\ No newline at end of file